@@ -23,6 +23,9 @@ dependencies {
     jmh(project(":xodus-query"))
     jmh(project(":xodus-crypto"))
     jmh(project(":xodus-utils"))
+    jmh(project(":xodus-lucene-directory-v2"))
+    jmh(libs.lucene.core)
+    jmh(libs.lucene.analyzers.common)
     jmh("org.openjdk.jmh:jmh-core:$currentJmhVersion")
     jmh("org.openjdk.jmh:jmh-generator-annprocess:$currentJmhVersion")
     jmh(libs.junit)
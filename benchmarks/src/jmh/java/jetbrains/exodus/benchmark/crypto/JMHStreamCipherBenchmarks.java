@@ -23,6 +23,7 @@ import org.openjdk.jmh.annotations.*;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
+import static jetbrains.exodus.crypto.streamciphers.AesCtrStreamCipherProviderKt.AES_CTR_CIPHER_ID;
 import static jetbrains.exodus.crypto.streamciphers.ChaChaStreamCipherProviderKt.CHACHA_CIPHER_ID;
 import static jetbrains.exodus.crypto.streamciphers.JBChaChaStreamCipherProviderKt.JB_CHACHA_CIPHER_ID;
 import static jetbrains.exodus.crypto.streamciphers.Salsa20StreamCipherProviderKt.SALSA20_CIPHER_ID;
@@ -32,6 +33,7 @@ public class JMHStreamCipherBenchmarks {
 
     private static final byte[] KEY_256_BITS;
     private static long IV;
+    private static final int BLOCK_SIZE = 4096;
 
     static {
         KEY_256_BITS = new byte[32];
@@ -43,15 +45,19 @@ public class JMHStreamCipherBenchmarks {
     private final StreamCipherProvider salsa20Provider = KryptKt.newCipherProvider(SALSA20_CIPHER_ID);
     private final StreamCipherProvider chaChaProvider = KryptKt.newCipherProvider(CHACHA_CIPHER_ID);
     private final StreamCipherProvider jbChaChaProvider = KryptKt.newCipherProvider(JB_CHACHA_CIPHER_ID);
+    private final StreamCipherProvider aesCtrProvider = KryptKt.newCipherProvider(AES_CTR_CIPHER_ID);
     private final StreamCipher salsa20Cipher = salsa20Provider.newCipher();
     private final StreamCipher chaChaCipher = chaChaProvider.newCipher();
     private final StreamCipher jbChaChaCipher = jbChaChaProvider.newCipher();
+    private final StreamCipher aesCtrCipher = aesCtrProvider.newCipher();
+    private final byte[] block = new byte[BLOCK_SIZE];
 
     @Setup
     public void prepare() {
         salsa20Cipher.init(KEY_256_BITS, IV++);
         chaChaCipher.init(KEY_256_BITS, IV++);
         jbChaChaCipher.init(KEY_256_BITS, IV++);
+        aesCtrCipher.init(KEY_256_BITS, IV++);
     }
 
     @Benchmark
@@ -110,4 +116,75 @@ public class JMHStreamCipherBenchmarks {
     public Object jbChaChaCrypt() {
         return jbChaChaCipher.crypt((byte) 0);
     }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object initAesCtrCipher() {
+        aesCtrCipher.init(KEY_256_BITS, IV++);
+        return aesCtrCipher;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object aesCtrCrypt() {
+        return aesCtrCipher.crypt((byte) 0);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object salsa20CryptBlock() {
+        salsa20Cipher.cryptBlock(block, 0, block, 0, BLOCK_SIZE);
+        return block;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object chaChaCryptBlock() {
+        chaChaCipher.cryptBlock(block, 0, block, 0, BLOCK_SIZE);
+        return block;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object jbChaChaCryptBlock() {
+        jbChaChaCipher.cryptBlock(block, 0, block, 0, BLOCK_SIZE);
+        return block;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object aesCtrCryptBlock() {
+        aesCtrCipher.cryptBlock(block, 0, block, 0, BLOCK_SIZE);
+        return block;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public Object jbChaChaCryptBytewise() {
+        for (int i = 0; i < BLOCK_SIZE; ++i) {
+            block[i] = jbChaChaCipher.crypt(block[i]);
+        }
+        return block;
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.entitystore;
+
+import jetbrains.exodus.entitystore.Entity;
+import jetbrains.exodus.entitystore.EntityId;
+import jetbrains.exodus.entitystore.PersistentEntityStore;
+import jetbrains.exodus.entitystore.StoreTransaction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Reproducible dataset for entity store benchmarks: {@linkplain #GROUP_TYPE groups} and {@linkplain #USER_TYPE users}
+ * with string, integer and long properties, each user is linked to a random group. Given the same size and seed,
+ * the dataset is generated identically.
+ */
+public class EntityStoreDataset {
+
+    public static final String USER_TYPE = "User";
+    public static final String GROUP_TYPE = "Group";
+    public static final String NAME = "name";
+    public static final String AGE = "age";
+    public static final String SCORE = "score";
+    public static final String GROUP_LINK = "group";
+    public static final int MAX_AGE = 100;
+
+    private static final int ENTITIES_PER_TRANSACTION = 10000;
+
+    private final EntityId[] users;
+    private final EntityId[] groups;
+    private final long seed;
+
+    private EntityStoreDataset(final EntityId[] users, final EntityId[] groups, final long seed) {
+        this.users = users;
+        this.groups = groups;
+        this.seed = seed;
+    }
+
+    public static EntityStoreDataset generate(@NotNull final PersistentEntityStore store,
+                                              final int userCount,
+                                              final int groupCount,
+                                              final long seed) {
+        final Random rnd = new Random(seed);
+        final EntityId[] groups = new EntityId[groupCount];
+        final EntityId[] users = new EntityId[userCount];
+        store.executeInTransaction(txn -> {
+            for (int i = 0; i < groupCount; ++i) {
+                final Entity group = txn.newEntity(GROUP_TYPE);
+                group.setProperty(NAME, "group" + i);
+                groups[i] = group.getId();
+            }
+        });
+        for (int start = 0; start < userCount; start += ENTITIES_PER_TRANSACTION) {
+            final int from = start;
+            final int to = Math.min(userCount, start + ENTITIES_PER_TRANSACTION);
+            store.executeInTransaction(txn -> {
+                for (int i = from; i < to; ++i) {
+                    users[i] = newUser(txn, i, groups[rnd.nextInt(groupCount)], rnd).getId();
+                }
+            });
+        }
+        return new EntityStoreDataset(users, groups, seed);
+    }
+
+    @NotNull
+    public static Entity newUser(@NotNull final StoreTransaction txn,
+                                 final int index,
+                                 @NotNull final EntityId groupId,
+                                 @NotNull final Random rnd) {
+        final Entity user = txn.newEntity(USER_TYPE);
+        user.setProperty(NAME, "user" + index);
+        user.setProperty(AGE, rnd.nextInt(MAX_AGE));
+        user.setProperty(SCORE, rnd.nextLong());
+        user.setLink(GROUP_LINK, txn.getEntity(groupId));
+        return user;
+    }
+
+    public EntityId[] getUsers() {
+        return users;
+    }
+
+    public EntityId[] getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return new random generator producing the same sequence for each call
+     */
+    public Random newRandom() {
+        return new Random(seed);
+    }
+}
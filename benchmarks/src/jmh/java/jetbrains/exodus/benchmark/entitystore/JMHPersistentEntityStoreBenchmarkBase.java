@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.entitystore;
+
+import jetbrains.exodus.entitystore.*;
+import jetbrains.exodus.env.EnvironmentConfig;
+import jetbrains.exodus.env.Environments;
+import jetbrains.exodus.log.Log;
+import org.jetbrains.annotations.NotNull;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+public abstract class JMHPersistentEntityStoreBenchmarkBase {
+
+    protected static final int USER_COUNT = 100_000;
+    protected static final int GROUP_COUNT = 100;
+
+    private TemporaryFolder temporaryFolder;
+    protected PersistentEntityStoreImpl store;
+    protected EntityStoreDataset dataset;
+
+    public void setup() throws IOException {
+        Log.invalidateSharedCache();
+        temporaryFolder = new TemporaryFolder();
+        temporaryFolder.create();
+        store = PersistentEntityStores.newInstance(
+                adjustEntityStoreConfig(new PersistentEntityStoreConfig()),
+                Environments.newInstance(temporaryFolder.newFolder("data"), new EnvironmentConfig()),
+                "JMHPersistentEntityStoreBenchmark");
+        store.setCloseEnvironment(true);
+        dataset = EntityStoreDataset.generate(store, USER_COUNT, GROUP_COUNT, 42L);
+    }
+
+    public void close() {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+        if (temporaryFolder != null) {
+            temporaryFolder.delete();
+        }
+    }
+
+    protected PersistentEntityStoreConfig adjustEntityStoreConfig(@NotNull final PersistentEntityStoreConfig config) {
+        return config;
+    }
+
+    /**
+     * Iterates over the iterable like an application would do.
+     */
+    protected static int consume(@NotNull final EntityIterable iterable) {
+        int count = 0;
+        for (final EntityIterator it = iterable.iterator(); it.hasNext(); ) {
+            if (it.nextId() != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.entitystore;
+
+import jetbrains.exodus.entitystore.*;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static jetbrains.exodus.benchmark.entitystore.EntityStoreDataset.*;
+
+/**
+ * Read path of {@linkplain PersistentEntityStore}: property access, queries, binary operations on large iterables
+ * and sorted pagination. With {@code cachingDisabled == false}, repeated queries are served by EntityIterableCache
+ * (the hit path), otherwise each query is computed from scratch (the miss path).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JMHPersistentEntityStoreReadBenchmark extends JMHPersistentEntityStoreBenchmarkBase {
+
+    private static final int WARMUP_ITERATIONS = 4;
+    private static final int MEASUREMENT_ITERATIONS = 6;
+    private static final int FORKS = 1;
+    private static final int PAGE_SIZE = 50;
+    // users are linked to random groups, so a group has about this number of full pages of users
+    private static final int PAGE_COUNT = USER_COUNT / GROUP_COUNT / PAGE_SIZE;
+
+    @Param({"false", "true"})
+    public boolean cachingDisabled;
+
+    private Random rnd;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        setup();
+        rnd = dataset.newRandom();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        close();
+    }
+
+    @Override
+    protected PersistentEntityStoreConfig adjustEntityStoreConfig(@NotNull final PersistentEntityStoreConfig config) {
+        return config.setCachingDisabled(cachingDisabled);
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public Object getProperty() {
+        final EntityId id = randomUser();
+        return store.computeInReadonlyTransaction(txn -> txn.getEntity(id).getProperty(NAME));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int find() {
+        final String name = "user" + rnd.nextInt(USER_COUNT);
+        return store.computeInReadonlyTransaction(txn -> consume(txn.find(USER_TYPE, NAME, name)));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int findInRange() {
+        final int minAge = rnd.nextInt(MAX_AGE - 5);
+        return store.computeInReadonlyTransaction(txn -> consume(txn.find(USER_TYPE, AGE, minAge, minAge + 4)));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int findLinks() {
+        final EntityId groupId = randomGroup();
+        return store.computeInReadonlyTransaction(txn ->
+                consume(txn.findLinks(USER_TYPE, txn.getEntity(groupId), GROUP_LINK)));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int intersect() {
+        final int minAge = rnd.nextInt(MAX_AGE / 2);
+        final EntityId groupId = randomGroup();
+        return store.computeInReadonlyTransaction(txn -> consume(
+                txn.find(USER_TYPE, AGE, minAge, minAge + MAX_AGE / 2)
+                        .intersect(txn.findLinks(USER_TYPE, txn.getEntity(groupId), GROUP_LINK))));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int union() {
+        final int minAge = rnd.nextInt(MAX_AGE - 10);
+        final EntityId groupId = randomGroup();
+        return store.computeInReadonlyTransaction(txn -> consume(
+                txn.find(USER_TYPE, AGE, minAge, minAge + 9)
+                        .union(txn.findLinks(USER_TYPE, txn.getEntity(groupId), GROUP_LINK))));
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public int sortedPage() {
+        final int page = rnd.nextInt(PAGE_COUNT);
+        final EntityId groupId = randomGroup();
+        return store.computeInReadonlyTransaction(txn -> consume(
+                txn.sort(USER_TYPE, SCORE, txn.findLinks(USER_TYPE, txn.getEntity(groupId), GROUP_LINK), true)
+                        .skip(page * PAGE_SIZE).take(PAGE_SIZE)));
+    }
+
+    private EntityId randomUser() {
+        final EntityId[] users = dataset.getUsers();
+        return users[rnd.nextInt(users.length)];
+    }
+
+    private EntityId randomGroup() {
+        final EntityId[] groups = dataset.getGroups();
+        return groups[rnd.nextInt(groups.length)];
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.entitystore;
+
+import jetbrains.exodus.entitystore.EntityId;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static jetbrains.exodus.benchmark.entitystore.EntityStoreDataset.SCORE;
+
+/**
+ * Write path of {@linkplain jetbrains.exodus.entitystore.PersistentEntityStore}: creation of entities with
+ * properties and a link, and updates of properties of existing entities. Each operation is a separate transaction.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JMHPersistentEntityStoreWriteBenchmark extends JMHPersistentEntityStoreBenchmarkBase {
+
+    private static final int WARMUP_ITERATIONS = 4;
+    private static final int MEASUREMENT_ITERATIONS = 6;
+    private static final int FORKS = 1;
+
+    private Random rnd;
+    private int nextUser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        setup();
+        rnd = dataset.newRandom();
+        nextUser = USER_COUNT;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        close();
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public Object createEntity() {
+        final EntityId[] groups = dataset.getGroups();
+        final EntityId groupId = groups[rnd.nextInt(groups.length)];
+        return store.computeInTransaction(txn -> EntityStoreDataset.newUser(txn, nextUser++, groupId, rnd).getId());
+    }
+
+    @Benchmark
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public boolean setProperty() {
+        final EntityId[] users = dataset.getUsers();
+        final EntityId id = users[rnd.nextInt(users.length)];
+        final long score = rnd.nextLong();
+        return store.computeInTransaction(txn -> txn.getEntity(id).setProperty(SCORE, score));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.env;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.bindings.IntegerBinding;
+import jetbrains.exodus.env.*;
+import jetbrains.exodus.log.Log;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mixed workload of concurrent readers and writers against a single {@linkplain Environment} with GC enabled.
+ * The benchmark is run in {@linkplain Mode#SampleTime} mode, so JMH reports latency percentiles for each kind
+ * of operation: random {@code get}, cursor {@code scan} and {@code commit} of a transaction with several puts.
+ * Number of threads of each kind can be changed using the {@code -tg} JMH option, e.g. {@code -tg 8,2,4}
+ * for 8 getters, 2 scanners and 4 writers. Along with latencies, number of bytes read from the log (i.e., misses
+ * of the log cache) and number of bytes moved by GC during each iteration are reported as secondary results.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JMHEnvConcurrentMixedWorkloadBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 4;
+    private static final int MEASUREMENT_ITERATIONS = 6;
+    private static final int FORKS = 1;
+    private static final int SCAN_LENGTH = 100;
+    private static final int PUTS_PER_COMMIT = 10;
+
+    @Param("100000")
+    public int keyCount;
+
+    @Param("100")
+    public int valueLength;
+
+    private TemporaryFolder temporaryFolder;
+    private EnvironmentImpl env;
+    private Store store;
+    private final AtomicBoolean iterationReported = new AtomicBoolean();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Log.invalidateSharedCache();
+        temporaryFolder = new TemporaryFolder();
+        temporaryFolder.create();
+        env = (EnvironmentImpl) Environments.newInstance(temporaryFolder.newFolder("data"), new EnvironmentConfig()
+                .setLogFileSize(1024)
+                .setGcEnabled(true)
+                .setGcStartIn(0)
+                .setGcFileMinAge(1)
+                .setGcRunPeriod(1000));
+        store = env.computeInTransaction(txn ->
+                env.openStore("JMHEnvConcurrentMixedWorkload", StoreConfig.WITHOUT_DUPLICATES, txn));
+        final Random rnd = new Random(42);
+        env.executeInTransaction(txn -> {
+            for (int i = 0; i < keyCount; ++i) {
+                store.putRight(txn, key(i), value(rnd));
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void afterIteration() {
+        iterationReported.set(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (env != null) {
+            env.close();
+            env = null;
+        }
+        if (temporaryFolder != null) {
+            temporaryFolder.delete();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public ByteIterable get(final IterationCounters counters) {
+        final ByteIterable key = key(ThreadLocalRandom.current().nextInt(keyCount));
+        return env.computeInReadonlyTransaction(txn -> store.get(txn, key));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public void scan(final Blackhole bh, final IterationCounters counters) {
+        final ByteIterable from = key(ThreadLocalRandom.current().nextInt(keyCount));
+        env.executeInReadonlyTransaction(txn -> {
+            try (Cursor cursor = store.openCursor(txn)) {
+                if (cursor.getSearchKeyRange(from) != null) {
+                    int count = 0;
+                    do {
+                        bh.consume(cursor.getValue());
+                    } while (++count < SCAN_LENGTH && cursor.getNext());
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    @Warmup(iterations = WARMUP_ITERATIONS, time = 1)
+    @Measurement(iterations = MEASUREMENT_ITERATIONS, time = 1)
+    @Fork(FORKS)
+    public void commit(final IterationCounters counters) {
+        final Random rnd = ThreadLocalRandom.current();
+        env.executeInTransaction(txn -> {
+            for (int i = 0; i < PUTS_PER_COMMIT; ++i) {
+                store.put(txn, key(rnd.nextInt(keyCount)), value(rnd));
+            }
+        });
+    }
+
+    private long getStatistics(final EnvironmentStatistics.Type type) {
+        return env.getStatistics().getStatisticsItem(type).getTotal();
+    }
+
+    private static ByteIterable key(final int i) {
+        return IntegerBinding.intToEntry(i);
+    }
+
+    private ByteIterable value(final Random rnd) {
+        final byte[] bytes = new byte[valueLength];
+        rnd.nextBytes(bytes);
+        return new ArrayByteIterable(bytes);
+    }
+
+    /**
+     * Environment-wide statistics of an iteration. JMH sums counters of all threads, so they are reported by the
+     * first thread that starts the iteration, and other threads report zeros.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class IterationCounters {
+
+        public long bytesRead;
+        public long bytesMovedByGc;
+
+        private JMHEnvConcurrentMixedWorkloadBenchmark benchmark;
+        private long bytesReadBefore;
+        private long bytesMovedByGcBefore;
+
+        @Setup(Level.Iteration)
+        public void beforeIteration(final JMHEnvConcurrentMixedWorkloadBenchmark benchmark) {
+            bytesRead = bytesMovedByGc = 0;
+            if (benchmark.iterationReported.compareAndSet(false, true)) {
+                this.benchmark = benchmark;
+                bytesReadBefore = benchmark.getStatistics(EnvironmentStatistics.Type.BYTES_READ);
+                bytesMovedByGcBefore = benchmark.getStatistics(EnvironmentStatistics.Type.BYTES_MOVED_BY_GC);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void afterIteration() {
+            if (benchmark != null) {
+                bytesRead = benchmark.getStatistics(EnvironmentStatistics.Type.BYTES_READ) - bytesReadBefore;
+                bytesMovedByGc = benchmark.getStatistics(EnvironmentStatistics.Type.BYTES_MOVED_BY_GC) - bytesMovedByGcBefore;
+                benchmark = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.benchmark.lucene;
+
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.EnvironmentConfig;
+import jetbrains.exodus.env.Environments;
+import jetbrains.exodus.log.Log;
+import jetbrains.exodus.lucene2.XodusDirectory;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares random term and doc values lookups and term queries in a single-segment index stored in
+ * {@linkplain XodusDirectory}, encrypted or not, and in {@linkplain MMapDirectory}.
+ */
+@State(Scope.Thread)
+public class JMHLuceneDirectoryBenchmarks {
+
+    private static final int DOCS_COUNT = 200_000;
+    private static final String ID_FIELD = "id";
+    private static final String VALUE_FIELD = "value";
+
+    @Param({"xodus", "xodusEncrypted", "mmap"})
+    public String directoryType;
+
+    private TemporaryFolder temporaryFolder;
+    private Directory directory;
+    private DirectoryReader reader;
+    private LeafReader leafReader;
+    private IndexSearcher searcher;
+    private BytesRef[] ids;
+    private int[] docs;
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+        Log.invalidateSharedCache();
+        temporaryFolder = new TemporaryFolder();
+        temporaryFolder.create();
+        if (directoryType.startsWith("xodus")) {
+            final EnvironmentConfig config = new EnvironmentConfig();
+            if ("xodusEncrypted".equals(directoryType)) {
+                config.setCipherId("jetbrains.exodus.crypto.streamciphers.JBChaChaStreamCipherProvider");
+                config.setCipherKey("000102030405060708090a0b0c0d0e0f000102030405060708090a0b0c0d0e0f");
+                config.setCipherBasicIV(314159262718281828L);
+            }
+            final Environment env = Environments.newInstance(temporaryFolder.newFolder("xodus"), config);
+            // the directory closes the environment
+            directory = new XodusDirectory(env);
+        } else {
+            directory = new MMapDirectory(temporaryFolder.newFolder("mmap").toPath());
+        }
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+            for (int doc = 0; doc < DOCS_COUNT; ++doc) {
+                final Document document = new Document();
+                document.add(new StringField(ID_FIELD, id(doc), Field.Store.NO));
+                document.add(new NumericDocValuesField(VALUE_FIELD, doc * 31L));
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+        }
+        reader = DirectoryReader.open(directory);
+        leafReader = reader.leaves().get(0).reader();
+        searcher = new IndexSearcher(reader);
+        final Random rnd = new Random(42);
+        ids = new BytesRef[1024];
+        docs = new int[ids.length];
+        for (int j = 0; j < ids.length; ++j) {
+            ids[j] = new BytesRef(id(rnd.nextInt(DOCS_COUNT)));
+            docs[j] = rnd.nextInt(leafReader.maxDoc());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+        temporaryFolder.delete();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public boolean termLookup() throws IOException {
+        final TermsEnum termsEnum = leafReader.terms(ID_FIELD).iterator();
+        return termsEnum.seekExact(ids[i++ & (ids.length - 1)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public long docValuesLookup() throws IOException {
+        final NumericDocValues values = leafReader.getNumericDocValues(VALUE_FIELD);
+        return values.advanceExact(docs[i++ & (docs.length - 1)]) ? values.longValue() : -1L;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 4, time = 1)
+    @Measurement(iterations = 6, time = 1)
+    @Fork(2)
+    public int termQuery() throws IOException {
+        return searcher.count(new TermQuery(new Term(ID_FIELD, ids[i++ & (ids.length - 1)])));
+    }
+
+    private static String id(final int doc) {
+        return "id" + doc;
+    }
+}
@@ -85,6 +85,14 @@ open class InMemorySortBenchmarkBase {
         return testSort { InMemoryBoundedHeapSortIterable(100, it, comparator) }
     }
 
+    open fun testExternalMergeSort(): Long {
+        return testSort { ExternalMergeSortIterableWithValueGetter(store, it, valueGetter, valueComparator, 5000) }
+    }
+
+    open fun testExternalMergeSortNoSpill(): Long {
+        return testSort { ExternalMergeSortIterableWithValueGetter(store, it, valueGetter, valueComparator, 100000) }
+    }
+
     open fun testNoSort(): Long {
         return store.computeInTransaction {
             val sum = it.getAll("Issue").sumBy { it.getProperty("int") as Int }
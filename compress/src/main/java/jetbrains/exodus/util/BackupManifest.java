@@ -0,0 +1,241 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.util;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Manifest of a backup created by {@linkplain CompressBackupUtil#incrementalBackup}. It is stored in the backup
+ * archive as {@linkplain #MANIFEST_FILE_NAME} and contains id of the backup, id of the base backup which the backup
+ * is incremental to, high address of the backed up log and sizes and checksums of all files of the database at the
+ * moment of backup. Files which were not changed since the base backup are listed in the manifest, but aren't
+ * contained in the archive.
+ *
+ * @see CompressBackupUtil#incrementalBackup(jetbrains.exodus.backup.Backupable, File, boolean, BackupManifest)
+ * @see CompressBackupUtil#restore(java.util.List, File)
+ */
+public final class BackupManifest {
+
+    public static final String MANIFEST_FILE_NAME = "xodus-backup.manifest";
+
+    private static final String HEADER = "xodus backup manifest v1";
+    private static final String ID = "id";
+    private static final String BASE = "base";
+    private static final String HIGH_ADDRESS = "highAddress";
+    private static final String FILE = "file";
+
+    @NotNull
+    private final String id;
+    @Nullable
+    private final String baseId;
+    private final long highAddress;
+    @NotNull
+    private final Map<String, Entry> entries;
+
+    BackupManifest(@Nullable final String baseId, final long highAddress) {
+        this(UUID.randomUUID().toString(), baseId, highAddress, new LinkedHashMap<>());
+    }
+
+    private BackupManifest(@NotNull final String id, @Nullable final String baseId,
+                           final long highAddress, @NotNull final Map<String, Entry> entries) {
+        this.id = id;
+        this.baseId = baseId;
+        this.highAddress = highAddress;
+        this.entries = entries;
+    }
+
+    @NotNull
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return id of the backup which this one is incremental to or {@code null} if this is a full backup
+     */
+    @Nullable
+    public String getBaseId() {
+        return baseId;
+    }
+
+    public boolean isIncremental() {
+        return baseId != null;
+    }
+
+    /**
+     * @return high address of the log in the backup or {@code -1} if it is unknown
+     */
+    public long getHighAddress() {
+        return highAddress;
+    }
+
+    /**
+     * @return unmodifiable map of paths of all files of the backed up database to their manifest entries
+     */
+    @NotNull
+    public Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(entries);
+    }
+
+    @Nullable
+    public Entry getEntry(@NotNull final String path) {
+        return entries.get(path);
+    }
+
+    void addEntry(@NotNull final String path, @NotNull final Entry entry) {
+        entries.put(path, entry);
+    }
+
+    public void write(@NotNull final OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write('\n');
+        writer.write(ID + ' ' + id + '\n');
+        if (baseId != null) {
+            writer.write(BASE + ' ' + baseId + '\n');
+        }
+        writer.write(HIGH_ADDRESS + ' ' + highAddress + '\n');
+        for (final Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            writer.write(FILE + ' ' + entry.size + ' ' + Long.toHexString(entry.checksum) + ' ' + mapEntry.getKey() + '\n');
+        }
+        writer.flush();
+    }
+
+    public byte[] toByteArray() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(output);
+        return output.toByteArray();
+    }
+
+    @NotNull
+    public static BackupManifest read(@NotNull final InputStream input) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            throw new IOException("Invalid backup manifest header");
+        }
+        String id = null;
+        String baseId = null;
+        long highAddress = -1L;
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final int space = line.indexOf(' ');
+            if (space < 0) {
+                throw new IOException("Invalid backup manifest line: " + line);
+            }
+            final String value = line.substring(space + 1);
+            switch (line.substring(0, space)) {
+                case ID:
+                    id = value;
+                    break;
+                case BASE:
+                    baseId = value;
+                    break;
+                case HIGH_ADDRESS:
+                    highAddress = Long.parseLong(value);
+                    break;
+                case FILE:
+                    final String[] parts = value.split(" ", 3);
+                    if (parts.length != 3) {
+                        throw new IOException("Invalid backup manifest line: " + line);
+                    }
+                    entries.put(parts[2], new Entry(Long.parseLong(parts[0]), Long.parseUnsignedLong(parts[1], 16)));
+                    break;
+                default:
+                    throw new IOException("Invalid backup manifest line: " + line);
+            }
+        }
+        if (id == null) {
+            throw new IOException("Backup manifest has no id");
+        }
+        return new BackupManifest(id, baseId, highAddress, entries);
+    }
+
+    /**
+     * Reads manifest of the backup file created by {@linkplain CompressBackupUtil#incrementalBackup}.
+     *
+     * @param backup .zip or .tar.gz backup file
+     * @return manifest of the backup
+     * @throws IOException if the backup has no manifest or it cannot be read
+     */
+    @NotNull
+    public static BackupManifest load(@NotNull final File backup) throws IOException {
+        if (isZip(backup)) {
+            try (ZipFile zip = new ZipFile(backup)) {
+                final ZipArchiveEntry entry = zip.getEntry(MANIFEST_FILE_NAME);
+                if (entry != null) {
+                    try (InputStream input = zip.getInputStream(entry)) {
+                        return read(input);
+                    }
+                }
+            }
+        } else {
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                    new GZIPInputStream(new BufferedInputStream(Files.newInputStream(backup.toPath()))))) {
+                ArchiveEntry entry;
+                while ((entry = tar.getNextEntry()) != null) {
+                    if (MANIFEST_FILE_NAME.equals(entry.getName())) {
+                        return read(tar);
+                    }
+                }
+            }
+        }
+        throw new IOException("No backup manifest found in " + backup.getAbsolutePath());
+    }
+
+    static boolean isZip(@NotNull final File backup) {
+        return backup.getName().endsWith(".zip");
+    }
+
+    /**
+     * Size and CRC32C checksum of a backed up file.
+     */
+    public static final class Entry {
+
+        private final long size;
+        private final long checksum;
+
+        public Entry(final long size, final long checksum) {
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+}
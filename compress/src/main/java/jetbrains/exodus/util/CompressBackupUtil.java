@@ -45,7 +45,11 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Checksum;
 import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class CompressBackupUtil {
@@ -175,15 +179,7 @@ public class CompressBackupUtil {
         final BackupStrategy strategy = source.getBackupStrategy();
         strategy.beforeBackup();
         try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
-            final ArchiveOutputStream archive;
-            if (zip) {
-                final ZipArchiveOutputStream zipArchive = new ZipArchiveOutputStream(output);
-                zipArchive.setLevel(Deflater.BEST_COMPRESSION);
-                archive = zipArchive;
-            } else {
-                archive = new TarArchiveOutputStream(new GZIPOutputStream(output));
-            }
-            try (ArchiveOutputStream aos = archive) {
+            try (ArchiveOutputStream aos = newArchiveOutputStream(output, zip)) {
                 for (final VirtualFileDescriptor fd : strategy.getContents()) {
                     if (strategy.isInterrupted()) {
                         break;
@@ -214,6 +210,226 @@ public class CompressBackupUtil {
         return target;
     }
 
+    /**
+     * For specified {@linkplain Backupable} {@code source} and {@code target} backup file, does incremental backup
+     * against the backup described by {@code base} manifest, or full backup if {@code base} is {@code null}. Backup
+     * file always contains {@linkplain BackupManifest} listing sizes and checksums of all files of the database, but
+     * only files changed since the base backup are archived. Files which are only appended (like {@code .xd} files of
+     * the log or blob files, see {@linkplain BackupStrategy#isAppendOnly(VirtualFileDescriptor)}) are considered
+     * unchanged if their size is the same as in the base backup, for other files checksums are compared.
+     *
+     * <p>The database is restored from the full backup and the chain of incremental backups using
+     * {@linkplain #restore(List, File)}.
+     *
+     * @param source an instance of {@linkplain Backupable}
+     * @param target target backup file (either .zip or .tag.gz)
+     * @param zip    {@code true} to create {@code .zip} backup file, rather than {@code .tar.gz} one
+     * @param base   manifest of the previous backup, see {@linkplain BackupManifest#load(File)}
+     * @return manifest of created backup
+     * @throws Exception something went wrong
+     */
+    @NotNull
+    public static BackupManifest incrementalBackup(@NotNull final Backupable source, @NotNull final File target,
+                                                   final boolean zip, @Nullable final BackupManifest base) throws Exception {
+        if (target.exists()) {
+            throw new IOException("Backup file already exists:" + target.getAbsolutePath());
+        }
+        final BackupStrategy strategy = source.getBackupStrategy();
+        strategy.beforeBackup();
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(target.toPath()))) {
+            final BackupManifest manifest =
+                    new BackupManifest(base == null ? null : base.getId(), strategy.getHighAddress());
+            int skipped = 0;
+            try (ArchiveOutputStream aos = newArchiveOutputStream(output, zip)) {
+                for (final VirtualFileDescriptor fd : strategy.getContents()) {
+                    if (strategy.isInterrupted()) {
+                        break;
+                    }
+                    if (fd.hasContent()) {
+                        final long fileSize = Math.min(fd.getFileSize(), strategy.acceptFile(fd));
+                        if (fileSize > 0L) {
+                            final String path = fd.getPath() + fd.getName();
+                            final BackupManifest.Entry previous = base == null ? null : base.getEntry(path);
+                            if (previous != null && previous.getSize() == fileSize &&
+                                    (strategy.isAppendOnly(fd) || previous.getChecksum() == checksum(fd, fileSize))) {
+                                manifest.addEntry(path, previous);
+                                ++skipped;
+                            } else {
+                                manifest.addEntry(path,
+                                        new BackupManifest.Entry(fileSize, archiveFileWithChecksum(aos, fd, fileSize)));
+                            }
+                        }
+                    }
+                }
+                if (!strategy.isInterrupted()) {
+                    final byte[] manifestBytes = manifest.toByteArray();
+                    putArchiveEntry(aos, BackupManifest.MANIFEST_FILE_NAME, manifestBytes.length, System.currentTimeMillis());
+                    aos.write(manifestBytes);
+                    aos.closeArchiveEntry();
+                }
+            }
+            if (strategy.isInterrupted()) {
+                logger.info("Backup interrupted, deleting \"" + target.getName() + "\"...");
+                IOUtil.deleteFile(target);
+            } else {
+                try (var file = new RandomAccessFile(target, "rw")) {
+                    file.getFD().sync();
+                }
+                logger.info("Backup file \"" + target.getName() + "\" created, " + skipped +
+                        " unchanged file(s) skipped.");
+            }
+            return manifest;
+        } catch (Throwable t) {
+            strategy.onError(t);
+            throw ExodusException.toExodusException(t, "Backup failed");
+        } finally {
+            strategy.afterBackup();
+        }
+    }
+
+    /**
+     * Restores the database to the empty {@code restoreDir} from the full backup followed by the chain of
+     * incremental backups created by {@linkplain #incrementalBackup(Backupable, File, boolean, BackupManifest)}.
+     * Each backup in the chain should be incremental to the previous one.
+     *
+     * @param backups    full backup and incremental backups in the order they were created
+     * @param restoreDir directory which the database is restored to
+     * @throws IOException if the chain of backups is broken or restored files don't match the last manifest
+     */
+    public static void restore(@NotNull final List<File> backups, @NotNull final File restoreDir) throws IOException {
+        if (backups.isEmpty()) {
+            throw new IllegalArgumentException("No backups to restore from");
+        }
+        BackupManifest manifest = null;
+        for (final File backup : backups) {
+            final BackupManifest next = BackupManifest.load(backup);
+            if (manifest == null ? next.isIncremental() : !manifest.getId().equals(next.getBaseId())) {
+                throw new IOException("Backup " + backup.getName() + " doesn't follow previous backup in the chain");
+            }
+            manifest = next;
+        }
+        final Set<String> restored = new HashSet<>();
+        for (final File backup : backups) {
+            extract(backup, restoreDir, restored);
+        }
+        for (final String path : restored) {
+            final BackupManifest.Entry entry = manifest.getEntry(path);
+            final File file = new File(restoreDir, path);
+            if (entry == null) {
+                // the file was deleted from the database after it was backed up
+                IOUtil.deleteFile(file);
+            } else if (file.length() != entry.getSize()) {
+                throw new IOException("Size of restored file " + path + " differs from backup manifest");
+            }
+        }
+        for (final String path : manifest.getEntries().keySet()) {
+            if (!restored.contains(path)) {
+                throw new IOException("File " + path + " is missing in the chain of backups");
+            }
+        }
+        logger.info("Database restored to \"" + restoreDir.getAbsolutePath() + "\" from " + backups.size() + " backup(s).");
+    }
+
+    private static void extract(@NotNull final File backup, @NotNull final File restoreDir,
+                                @NotNull final Set<String> restored) throws IOException {
+        if (BackupManifest.isZip(backup)) {
+            try (ZipFile zip = new ZipFile(backup)) {
+                final Enumeration<ZipArchiveEntry> entries = zip.getEntries();
+                while (entries.hasMoreElements()) {
+                    final ZipArchiveEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && !BackupManifest.MANIFEST_FILE_NAME.equals(entry.getName())) {
+                        try (InputStream input = zip.getInputStream(entry)) {
+                            extractEntry(input, entry.getName(), restoreDir, restored);
+                        }
+                    }
+                }
+            }
+        } else {
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                    new GZIPInputStream(new BufferedInputStream(Files.newInputStream(backup.toPath()))))) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                    if (!entry.isDirectory() && !BackupManifest.MANIFEST_FILE_NAME.equals(entry.getName())) {
+                        extractEntry(tar, entry.getName(), restoreDir, restored);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void extractEntry(@NotNull final InputStream input, @NotNull final String path,
+                                     @NotNull final File restoreDir, @NotNull final Set<String> restored) throws IOException {
+        final File file = new File(restoreDir, path);
+        if (!file.getCanonicalPath().startsWith(restoreDir.getCanonicalPath() + File.separator)) {
+            throw new IOException("Backup entry is outside of the restore directory: " + path);
+        }
+        final File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create " + parent.getAbsolutePath());
+        }
+        Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        restored.add(path);
+    }
+
+    private static long checksum(@NotNull final VirtualFileDescriptor fd, final long fileSize) throws IOException {
+        final Checksum checksum = new CRC32C();
+        final InputStream input = fd.getInputStream();
+        try {
+            IOUtil.copyStreams(new CheckedInputStream(input, checksum), fileSize,
+                    OutputStream.nullOutputStream(), IOUtil.getBUFFER_ALLOCATOR());
+        } finally {
+            if (fd.shouldCloseStream()) {
+                input.close();
+            }
+        }
+        return checksum.getValue();
+    }
+
+    private static long archiveFileWithChecksum(@NotNull final ArchiveOutputStream out,
+                                                @NotNull final VirtualFileDescriptor source,
+                                                final long fileSize) throws IOException {
+        putArchiveEntry(out, source.getPath() + source.getName(), fileSize, source.getTimeStamp());
+        final Checksum checksum = new CRC32C();
+        final InputStream input = source.getInputStream();
+        try {
+            IOUtil.copyStreams(new CheckedInputStream(input, checksum), fileSize, out, IOUtil.getBUFFER_ALLOCATOR());
+        } finally {
+            if (source.shouldCloseStream()) {
+                input.close();
+            }
+        }
+        out.closeArchiveEntry();
+        return checksum.getValue();
+    }
+
+    private static ArchiveOutputStream newArchiveOutputStream(@NotNull final OutputStream output,
+                                                              final boolean zip) throws IOException {
+        if (zip) {
+            final ZipArchiveOutputStream zipArchive = new ZipArchiveOutputStream(output);
+            zipArchive.setLevel(Deflater.BEST_COMPRESSION);
+            return zipArchive;
+        }
+        return new TarArchiveOutputStream(new GZIPOutputStream(output));
+    }
+
+    private static void putArchiveEntry(@NotNull final ArchiveOutputStream out, @NotNull final String name,
+                                        final long size, final long timeStamp) throws IOException {
+        //noinspection ChainOfInstanceofChecks
+        if (out instanceof TarArchiveOutputStream) {
+            final TarArchiveEntry entry = new TarArchiveEntry(name);
+            entry.setSize(size);
+            entry.setModTime(timeStamp);
+            out.putArchiveEntry(entry);
+        } else if (out instanceof ZipArchiveOutputStream) {
+            final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setSize(size);
+            entry.setTime(timeStamp);
+            out.putArchiveEntry(entry);
+        } else {
+            throw new IOException("Unknown archive output stream");
+        }
+    }
+
     @NotNull
     public static File parallelBackup(@NotNull final Backupable source, @NotNull final File backupRoot,
                                       @Nullable final String backupNamePrefix) throws Exception {
@@ -836,20 +1052,7 @@ public class CompressBackupUtil {
         if (!source.hasContent()) {
             throw new IllegalArgumentException("Provided source is not a file: " + source.getPath());
         }
-        //noinspection ChainOfInstanceofChecks
-        if (out instanceof TarArchiveOutputStream) {
-            final TarArchiveEntry entry = new TarArchiveEntry(source.getPath() + source.getName());
-            entry.setSize(fileSize);
-            entry.setModTime(source.getTimeStamp());
-            out.putArchiveEntry(entry);
-        } else if (out instanceof ZipArchiveOutputStream) {
-            final ZipArchiveEntry entry = new ZipArchiveEntry(source.getPath() + source.getName());
-            entry.setSize(fileSize);
-            entry.setTime(source.getTimeStamp());
-            out.putArchiveEntry(entry);
-        } else {
-            throw new IOException("Unknown archive output stream");
-        }
+        putArchiveEntry(out, source.getPath() + source.getName(), fileSize, source.getTimeStamp());
         final InputStream input = source.getInputStream();
         try {
             IOUtil.copyStreams(input, fileSize, out, IOUtil.getBUFFER_ALLOCATOR());
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.crypto.streamciphers
+
+import jetbrains.exodus.crypto.StreamCipher
+import jetbrains.exodus.crypto.StreamCipherProvider
+import org.bouncycastle.util.Pack
+import javax.crypto.Cipher
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+import kotlin.experimental.xor
+
+const val AES_CTR_CIPHER_ID = "jetbrains.exodus.crypto.streamciphers.AesCtrStreamCipherProvider"
+
+/**
+ * AES in counter mode on top of the `javax.crypto` implementation which is hardware-accelerated by JVM intrinsics
+ * on platforms supporting AES instructions. Key of 128, 192 or 256 bits is accepted. 128-bit counter block consists
+ * of 64-bit IV and 64-bit block counter, so the key stream is seekable.
+ */
+class AesCtrStreamCipherProvider : StreamCipherProvider() {
+
+    override fun getId() = AES_CTR_CIPHER_ID
+
+    override fun newCipher(): StreamCipher = AesCtrStreamCipher()
+
+    private class AesCtrStreamCipher : StreamCipher {
+
+        private val cipher = Cipher.getInstance("AES/CTR/NoPadding")
+        private var keyBytes = ByteArray(0)
+        private var key: SecretKeySpec? = null
+        private var iv = 0L
+        // key stream is generated by KEY_STREAM_SIZE bytes which start from the block with number keyStreamBlock
+        private val keyStream = ByteArray(KEY_STREAM_SIZE)
+        private var keyStreamBlock = 0L
+        private var index = 0
+
+        override fun init(key: ByteArray, iv: Long) {
+            if (key.size != 16 && key.size != 24 && key.size != 32) {
+                throw IllegalArgumentException("128, 192 or 256 bit key is required")
+            }
+            if (keyBytes !== key) {
+                keyBytes = key
+                this.key = SecretKeySpec(key, "AES")
+            }
+            this.iv = iv
+            seek(0L)
+        }
+
+        override fun crypt(b: Byte): Byte {
+            val out = keyStream[index] xor b
+            if (++index == KEY_STREAM_SIZE) {
+                nextKeyStream()
+            }
+            return out
+        }
+
+        override fun cryptBlock(input: ByteArray, inputOffset: Int, output: ByteArray, outputOffset: Int, length: Int) {
+            var inputOff = inputOffset
+            var outputOff = outputOffset
+            var len = length
+            while (len > 0) {
+                val start = index
+                val chunkLen = minOf(KEY_STREAM_SIZE - start, len)
+                for (i in 0 until chunkLen) {
+                    output[outputOff + i] = keyStream[start + i] xor input[inputOff + i]
+                }
+                inputOff += chunkLen
+                outputOff += chunkLen
+                len -= chunkLen
+                if (start + chunkLen == KEY_STREAM_SIZE) {
+                    nextKeyStream()
+                } else {
+                    index = start + chunkLen
+                }
+            }
+        }
+
+        override fun skip(count: Long) {
+            if (index + count < KEY_STREAM_SIZE) {
+                index += count.toInt()
+            } else {
+                seek(keyStreamBlock * AES_BLOCK_SIZE + index + count)
+            }
+        }
+
+        private fun seek(position: Long) {
+            val block = position / AES_BLOCK_SIZE
+            val counterBlock = ByteArray(AES_BLOCK_SIZE)
+            Pack.longToBigEndian(iv, counterBlock, 0)
+            Pack.longToBigEndian(block, counterBlock, 8)
+            cipher.init(Cipher.ENCRYPT_MODE, key, IvParameterSpec(counterBlock))
+            keyStreamBlock = block
+            generateKeyStream()
+            index = (position % AES_BLOCK_SIZE).toInt()
+        }
+
+        private fun nextKeyStream() {
+            // the cipher continues incrementing the counter, so there is no need to re-init it
+            keyStreamBlock += KEY_STREAM_SIZE / AES_BLOCK_SIZE
+            generateKeyStream()
+            index = 0
+        }
+
+        private fun generateKeyStream() {
+            cipher.update(ZEROS, 0, KEY_STREAM_SIZE, keyStream, 0)
+        }
+
+        private companion object {
+
+            private const val AES_BLOCK_SIZE = 16
+
+            private const val KEY_STREAM_SIZE = AES_BLOCK_SIZE * 32
+
+            private val ZEROS = ByteArray(KEY_STREAM_SIZE)
+        }
+    }
+}
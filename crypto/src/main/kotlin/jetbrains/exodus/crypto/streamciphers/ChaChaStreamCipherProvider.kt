@@ -46,6 +46,14 @@ class ChaChaStreamCipherProvider : KeyAwareStreamCipherProvider() {
             return engine.returnByte(b)
         }
 
+        override fun cryptBlock(input: ByteArray, inputOffset: Int, output: ByteArray, outputOffset: Int, length: Int) {
+            engine.processBytes(input, inputOffset, length, output, outputOffset)
+        }
+
+        override fun skip(count: Long) {
+            engine.skip(count)
+        }
+
         private companion object {
 
             private const val CHACHA_IV_SIZE = 12
@@ -75,6 +75,46 @@ class JBChaChaStreamCipherProvider : StreamCipherProvider() {
             return out
         }
 
+        override fun cryptBlock(input: ByteArray, inputOffset: Int, output: ByteArray, outputOffset: Int, length: Int) {
+            var inputOff = inputOffset
+            var outputOff = outputOffset
+            var len = length
+            while (len > 0) {
+                val start = index
+                val chunkLen = minOf(STATE_SIZE * 4 - start, len)
+                for (i in 0 until chunkLen) {
+                    output[outputOff + i] = keyStream[start + i] xor input[inputOff + i]
+                }
+                inputOff += chunkLen
+                outputOff += chunkLen
+                len -= chunkLen
+                if (start + chunkLen == STATE_SIZE * 4) {
+                    nextKeyStream(1)
+                } else {
+                    index = start + chunkLen
+                }
+            }
+        }
+
+        override fun skip(count: Long) {
+            val position = index + count
+            val blocks = position / (STATE_SIZE * 4)
+            if (blocks > 0) {
+                nextKeyStream(blocks)
+            }
+            index = (position % (STATE_SIZE * 4)).toInt()
+        }
+
+        private fun nextKeyStream(blocks: Long) {
+            index = 0
+            val counter = (state[12].toLong() and 0xffffffffL) + blocks
+            if (counter > 0xffffffffL) {
+                throw IllegalStateException("Attempt to increase counter past 2^32.")
+            }
+            state[12] = counter.toInt()
+            generateKeyStream()
+        }
+
         fun reset() {
             index = 0
             state[12] = 0
@@ -40,5 +40,13 @@ class Salsa20StreamCipherProvider : KeyAwareStreamCipherProvider() {
         override fun crypt(b: Byte): Byte {
             return engine.returnByte(b)
         }
+
+        override fun cryptBlock(input: ByteArray, inputOffset: Int, output: ByteArray, outputOffset: Int, length: Int) {
+            engine.processBytes(input, inputOffset, length, output, outputOffset)
+        }
+
+        override fun skip(count: Long) {
+            engine.skip(count)
+        }
     }
 }
\ No newline at end of file
@@ -76,6 +76,12 @@ public enum EntityIterableType {
         public boolean isPropertyIndex() {
             return true;
         }
+    },
+    ENTITIES_BY_COMPOSITE_INDEX("Entities with specified values of several properties", 33) {
+        @Override
+        public boolean isPropertyIndex() {
+            return true;
+        }
     };
 
 
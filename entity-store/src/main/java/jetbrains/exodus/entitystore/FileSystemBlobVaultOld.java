@@ -35,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.*;
@@ -252,6 +253,22 @@ public class FileSystemBlobVaultOld extends BlobVault implements DiskBasedBlobVa
         }
     }
 
+    @Override
+    @Nullable
+    public BlobChannel getContentChannel(final long blobHandle, @NotNull final Transaction txn,
+                                         @Nullable final Long expectedLength) throws IOException {
+        final File location = getBlobLocation(blobHandle);
+        if (!location.exists() || expectedLength != null && location.length() != expectedLength.longValue()) {
+            return null;
+        }
+        try {
+            final FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ);
+            return BlobChannel.wrap(channel, 0L, channel.size(), true);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
     @Override
     public long getSize(long blobHandle, @NotNull Transaction txn) {
         return sizeFunctions == null ? getBlobLocation(blobHandle).length() : sizeFunctions.getBlobSize(blobHandle, txn);
@@ -281,6 +298,7 @@ public class FileSystemBlobVaultOld extends BlobVault implements DiskBasedBlobVa
         if (blobStreams != null) {
             blobStreams.forEachEntry((ObjectProcedureThrows<Map.Entry<Long, InputStream>, Exception>) object -> {
                 setContent(object.getKey(), object.getValue());
+                blobFlushed(object.getKey(), null);
                 return true;
             });
         }
@@ -289,6 +307,7 @@ public class FileSystemBlobVaultOld extends BlobVault implements DiskBasedBlobVa
         if (blobFiles != null) {
             blobFiles.forEachEntry((ObjectProcedureThrows<Map.Entry<Long, Path>, Exception>) object -> {
                 setContent(object.getKey(), object.getValue());
+                blobFlushed(object.getKey(), null);
                 return true;
             });
         }
@@ -296,6 +315,7 @@ public class FileSystemBlobVaultOld extends BlobVault implements DiskBasedBlobVa
         if (tmpBlobFiles != null) {
             tmpBlobFiles.forEachEntry((ObjectProcedureThrows<Map.Entry<Long, Path>, Exception>) object -> {
                 setContent(object.getKey(), object.getValue());
+                blobFlushed(object.getKey(), null);
                 return true;
             });
         }
@@ -420,6 +440,12 @@ public class FileSystemBlobVaultOld extends BlobVault implements DiskBasedBlobVa
                     };
                 };
             }
+
+            @Override
+            public boolean isAppendOnly(@NotNull final VirtualFileDescriptor file) {
+                // blob files are never changed once written
+                return file.getName().endsWith(blobExtension);
+            }
         };
     }
 
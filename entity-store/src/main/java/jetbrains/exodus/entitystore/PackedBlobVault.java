@@ -0,0 +1,865 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore;
+
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.ByteIterator;
+import jetbrains.exodus.backup.BackupStrategy;
+import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.bindings.LongBinding;
+import jetbrains.exodus.core.dataStructures.LongArrayList;
+import jetbrains.exodus.core.dataStructures.Pair;
+import jetbrains.exodus.core.dataStructures.hash.LongHashMap;
+import jetbrains.exodus.core.dataStructures.hash.LongIterator;
+import jetbrains.exodus.core.dataStructures.hash.LongSet;
+import jetbrains.exodus.core.execution.Job;
+import jetbrains.exodus.env.*;
+import jetbrains.exodus.util.DeferredIO;
+import jetbrains.exodus.util.IOUtil;
+import jetbrains.exodus.util.LightOutputStream;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@linkplain BlobVault} which appends blobs to large segment files instead of creating a file per blob. Location of
+ * each blob (segment, offset and length) is saved in an index store of the {@linkplain Environment} in the same
+ * transaction which flushes the blob, so the blob becomes visible atomically with the transaction, and readers never
+ * have to wait for its content. Blobs are read by positional reads from a shared {@linkplain FileChannel} per segment.
+ *
+ * <p>Deleted blobs leave garbage in segments. As soon as the share of garbage in a segment reaches
+ * {@linkplain PersistentEntityStoreConfig#getBlobVaultCompactionThreshold()} percent, the segment is compacted in
+ * background: its live blobs are copied to the active segment, the index is updated and the segment file is deleted
+ * after {@linkplain EnvironmentConfig#getGcFilesDeletionDelay()} milliseconds.
+ *
+ * @see PersistentEntityStoreConfig#isBlobVaultPacked()
+ */
+public class PackedBlobVault extends BlobVault implements DiskBasedBlobVault {
+
+    protected static final Logger logger = LoggerFactory.getLogger("PackedBlobVault");
+
+    public static final int VERSION = 2;
+    @NonNls
+    public static final String SEGMENT_EXTENSION = ".pbs";
+    @NonNls
+    private static final String TMP_DIR = "blob-tmp-dir";
+
+    private final PersistentEntityStoreConfig config;
+    private final Path location;
+    @NonNls
+    private final String blobsDirectory;
+    private final Environment environment;
+    private final String indexName;
+    private final TxnProvider txnProvider;
+    private final BlobHandleGenerator blobHandleGenerator;
+    private final Path tmpBlobsDir;
+    private final AtomicLong tempFileCounter = new AtomicLong();
+    private final Map<Long, FileChannel> readChannels = new ConcurrentHashMap<>();
+    // segment -> total length of blobs referenced by the index
+    private final Map<Long, AtomicLong> liveBytes = new ConcurrentHashMap<>();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean();
+    private final AtomicInteger backupsInProgress = new AtomicInteger();
+    private final Object writeLock = new Object();
+    @Nullable
+    private volatile Store index;
+    // the following fields are guarded by writeLock
+    private volatile long activeSegment;
+    @Nullable
+    private FileChannel activeChannel;
+    private long activePosition;
+
+    public PackedBlobVault(@NotNull final PersistentEntityStoreConfig config,
+                           @NotNull final Path location,
+                           @NotNull final Environment environment,
+                           @NotNull final String indexName,
+                           @NotNull final TxnProvider txnProvider,
+                           @NotNull final BlobHandleGenerator blobHandleGenerator) throws IOException {
+        super(config);
+        this.config = config;
+        this.location = location;
+        this.blobsDirectory = location.getFileName().toString();
+        this.environment = environment;
+        this.indexName = indexName;
+        this.txnProvider = txnProvider;
+        this.blobHandleGenerator = blobHandleGenerator;
+        Files.createDirectories(location);
+        final Path versionFile = location.resolve(FileSystemBlobVaultOld.VERSION_FILE);
+        if (Files.exists(versionFile)) {
+            final int version;
+            try (DataInputStream input = new DataInputStream(Files.newInputStream(versionFile))) {
+                version = input.readInt();
+            }
+            if (version != VERSION) {
+                throw new UnexpectedBlobVaultVersionException("Unexpected PackedBlobVault version: " + version);
+            }
+        } else {
+            try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(versionFile))) {
+                output.writeInt(VERSION);
+            }
+        }
+        tmpBlobsDir = location.resolve(TMP_DIR);
+        if (Files.exists(tmpBlobsDir)) {
+            IOUtil.deleteRecursively(tmpBlobsDir.toFile());
+        }
+        Files.createDirectories(tmpBlobsDir);
+        openActiveSegment(loadIndex());
+    }
+
+    /**
+     * @return {@code true} if the directory contains a {@code PackedBlobVault}
+     */
+    public static boolean exists(@NotNull final Path location) {
+        final Path versionFile = location.resolve(FileSystemBlobVaultOld.VERSION_FILE);
+        if (!Files.exists(versionFile)) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(versionFile))) {
+            return input.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return {@code true} if {@code PackedBlobVault} can be created in the directory, i.e. if it doesn't exist or is empty
+     */
+    public static boolean canBeCreated(@NotNull final Path location) {
+        final File[] files = location.toFile().listFiles();
+        return files == null || files.length == 0;
+    }
+
+    @Override
+    public long nextHandle() {
+        return blobHandleGenerator.nextHandle();
+    }
+
+    @NotNull
+    @Override
+    public BlobVaultItem getBlob(final long blobHandle) {
+        return new BlobVaultItem() {
+            @Override
+            public long getHandle() {
+                return blobHandle;
+            }
+
+            @NotNull
+            @Override
+            public String getLocation() {
+                final BlobLocation blob = environment.computeInReadonlyTransaction(txn -> getBlobLocation(blobHandle, txn));
+                return blob == null ? getBlobKey(blobHandle) : getSegmentPath(blob.segment) + ":" + blob.offset;
+            }
+
+            @Override
+            public boolean exists() {
+                return getBlobLength(blobHandle) >= 0;
+            }
+
+            @Override
+            public String toString() {
+                return getLocation();
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public File getBlobLocation(final long blobHandle) {
+        return getBlobLocation(blobHandle, true);
+    }
+
+    /**
+     * Returns segment file containing the blob, or the vault directory if there is no such blob.
+     */
+    @NotNull
+    @Override
+    public File getBlobLocation(final long blobHandle, final boolean readonly) {
+        final BlobLocation blob = environment.computeInReadonlyTransaction(txn -> getBlobLocation(blobHandle, txn));
+        return blob == null ? location.toFile() : getSegmentPath(blob.segment).toFile();
+    }
+
+    @Override
+    public String getBlobKey(final long blobHandle) {
+        return blobsDirectory + super.getBlobKey(blobHandle);
+    }
+
+    /**
+     * @return length of the blob in the latest database snapshot or {@code -1} if there is no such blob
+     */
+    public long getBlobLength(final long blobHandle) {
+        return environment.computeInReadonlyTransaction(txn -> getBlobLength(blobHandle, txn));
+    }
+
+    /**
+     * @return length of the blob visible in the transaction or {@code -1} if there is no such blob
+     */
+    public long getBlobLength(final long blobHandle, @NotNull final Transaction txn) {
+        final BlobLocation blob = getBlobLocation(blobHandle, txn);
+        return blob == null ? -1L : blob.length;
+    }
+
+    @Nullable
+    @Override
+    public InputStream getContent(final long blobHandle, @NotNull final Transaction txn, @Nullable final Long expectedLength) {
+        final BlobLocation blob = getBlobLocation(blobHandle, txn);
+        if (blob == null || expectedLength != null && blob.length != expectedLength) {
+            return null;
+        }
+        try {
+            return new SegmentInputStream(blob);
+        } catch (IOException e) {
+            logger.error("Failed to open segment " + getSegmentPath(blob.segment), e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns channel over the region of the segment, it can be transferred without copying through the JVM heap.
+     */
+    @Nullable
+    @Override
+    public BlobChannel getContentChannel(final long blobHandle, @NotNull final Transaction txn,
+                                         @Nullable final Long expectedLength) throws IOException {
+        final BlobLocation blob = getBlobLocation(blobHandle, txn);
+        if (blob == null || expectedLength != null && blob.length != expectedLength) {
+            return null;
+        }
+        return BlobChannel.wrap(getReadChannel(blob.segment), blob.offset, blob.length, false);
+    }
+
+    @Override
+    public long getSize(final long blobHandle, @NotNull final Transaction txn) {
+        final BlobLocation blob = getBlobLocation(blobHandle, txn);
+        return blob == null ? 0L : blob.length;
+    }
+
+    @Override
+    public boolean delete(final long blobHandle) {
+        final ByteIterable key = LongBinding.longToCompressedEntry(blobHandle);
+        final BlobLocation deleted = environment.computeInTransaction(txn -> {
+            final Store index = getIndex(txn);
+            final ByteIterable value = index == null ? null : index.get(txn, key);
+            if (value == null) {
+                return null;
+            }
+            index.delete(txn, key);
+            return BlobLocation.fromEntry(value);
+        });
+        if (deleted != null) {
+            final AtomicLong live = liveBytes.get(deleted.segment);
+            if (live != null) {
+                live.addAndGet(-deleted.length);
+            }
+            checkCompaction(deleted.segment);
+        }
+        return true;
+    }
+
+    /**
+     * Blobs are appended to segments and their locations are saved to the index within the transaction which
+     * flushes them.
+     */
+    @Override
+    public boolean requiresTxn() {
+        return true;
+    }
+
+    @Override
+    public void flushBlobs(@Nullable final LongHashMap<InputStream> blobStreams,
+                           @Nullable final LongHashMap<Path> blobFiles,
+                           @Nullable final LongHashMap<Path> tmpBlobFiles,
+                           @Nullable final LongSet deferredBlobsToDelete,
+                           @NotNull final Environment environment) throws Exception {
+        final List<Pair<Long, BlobLocation>> written = new ArrayList<>();
+        synchronized (writeLock) {
+            if (blobStreams != null) {
+                for (final Map.Entry<Long, InputStream> entry : blobStreams.entrySet()) {
+                    try (InputStream stream = entry.getValue()) {
+                        written.add(new Pair<>(entry.getKey(), append(stream)));
+                    }
+                }
+            }
+            // files are moved into the vault like FileSystemBlobVault does
+            if (blobFiles != null) {
+                for (final Map.Entry<Long, Path> entry : blobFiles.entrySet()) {
+                    written.add(new Pair<>(entry.getKey(), append(entry.getValue())));
+                    Files.deleteIfExists(entry.getValue());
+                }
+            }
+            if (tmpBlobFiles != null) {
+                for (final Map.Entry<Long, Path> entry : tmpBlobFiles.entrySet()) {
+                    written.add(new Pair<>(entry.getKey(), append(entry.getValue())));
+                    Files.deleteIfExists(entry.getValue());
+                }
+            }
+            if (!written.isEmpty()) {
+                // blobs should be durable before the index referencing them is committed
+                Objects.requireNonNull(activeChannel).force(false);
+                final Transaction txn = txnProvider.getTransaction().getEnvironmentTransaction();
+                final Store index = Objects.requireNonNull(getIndex(txn));
+                for (final Pair<Long, BlobLocation> blob : written) {
+                    index.put(txn, LongBinding.longToCompressedEntry(blob.getFirst()), blob.getSecond().toEntry());
+                    // if the transaction is reverted, the blob is accounted as live until compaction or reopening
+                    liveBytes.computeIfAbsent(blob.getSecond().segment, s -> new AtomicLong()).addAndGet(blob.getSecond().length);
+                }
+            }
+        }
+        if (deferredBlobsToDelete != null) {
+            final LongArrayList copy = new LongArrayList(deferredBlobsToDelete.size());
+            final LongIterator it = deferredBlobsToDelete.iterator();
+            while (it.hasNext()) {
+                copy.add(it.nextLong());
+            }
+            environment.executeTransactionSafeTask(() -> DeferredIO.getJobProcessor().queueIn(new Job() {
+                @Override
+                protected void execute() {
+                    final long[] blobHandles = copy.getInstantArray();
+                    for (int i = 0; i < copy.size(); ++i) {
+                        delete(blobHandles[i]);
+                    }
+                }
+
+                @Override
+                public String getName() {
+                    return "Delete obsolete blobs from packed segments";
+                }
+
+                @Override
+                public String getGroup() {
+                    return environment.getLocation();
+                }
+            }, environment.getEnvironmentConfig().getGcFilesDeletionDelay()));
+        }
+    }
+
+    @Override
+    public long size() {
+        long result = 0;
+        for (final long segment : listSegments()) {
+            result += IOUtil.getAdjustedFileLength(getSegmentPath(segment).toFile());
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            closeChannels();
+            for (final long segment : listSegments()) {
+                try {
+                    Files.deleteIfExists(getSegmentPath(segment));
+                } catch (IOException e) {
+                    logger.error("Failed to delete segment " + getSegmentPath(segment), e);
+                }
+            }
+            liveBytes.clear();
+            index = null;
+            activeSegment = 0;
+            activePosition = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            closeChannels();
+        }
+        IOUtil.deleteRecursively(tmpBlobsDir.toFile());
+    }
+
+    @NotNull
+    @Override
+    public BackupStrategy getBackupStrategy() {
+        return new BackupStrategy() {
+
+            @Override
+            public void beforeBackup() {
+                // segments are not deleted by compaction while backup is in progress
+                backupsInProgress.incrementAndGet();
+            }
+
+            @Override
+            public Iterable<VirtualFileDescriptor> getContents() {
+                final String prefix = blobsDirectory + File.separator;
+                final List<VirtualFileDescriptor> result = new ArrayList<>();
+                final File versionFile = location.resolve(FileSystemBlobVaultOld.VERSION_FILE).toFile();
+                result.add(new FileDescriptor(versionFile, prefix, versionFile.length(), false));
+                for (final long segment : listSegments()) {
+                    final File file = getSegmentPath(segment).toFile();
+                    final long fileSize = file.length();
+                    if (fileSize > 0) {
+                        result.add(new FileDescriptor(file, prefix, fileSize));
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public void afterBackup() {
+                backupsInProgress.decrementAndGet();
+            }
+
+            @Override
+            public boolean isAppendOnly(@NotNull final VirtualFileDescriptor file) {
+                // segments except the active one are never changed until compaction deletes them,
+                // the active segment can be truncated on startup
+                final long segment = parseSegment(file.getName());
+                return segment >= 0 && segment < activeSegment;
+            }
+        };
+    }
+
+    @Override
+    public @NotNull Pair<Path, Long> copyToTemporaryStore(final long handle, @NotNull final InputStream stream,
+                                                          @Nullable final StoreTransaction transaction) throws IOException {
+        final Path tempFile = tmpBlobsDir.resolve("tmp-blob-" + tempFileCounter.getAndIncrement());
+        long read;
+        try (stream) {
+            try (OutputStream out = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                read = IOUtil.copyStreams(stream, out, IOUtil.getBUFFER_ALLOCATOR());
+            }
+        }
+        return new Pair<>(tempFile, read);
+    }
+
+    @Override
+    public @NotNull InputStream openTmpStream(final long handle, @NotNull final Path path) throws IOException {
+        return new BufferedInputStream(Files.newInputStream(path));
+    }
+
+    public File getVaultLocation() {
+        return location.toFile();
+    }
+
+    @Nullable
+    private BlobLocation getBlobLocation(final long blobHandle, @NotNull final Transaction txn) {
+        final Store index = getIndex(txn);
+        if (index == null) {
+            return null;
+        }
+        final ByteIterable value = index.get(txn, LongBinding.longToCompressedEntry(blobHandle));
+        return value == null ? null : BlobLocation.fromEntry(value);
+    }
+
+    @Nullable
+    private Store getIndex(@NotNull final Transaction txn) {
+        Store result = index;
+        if (result == null) {
+            result = environment.openStore(indexName, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, txn, false);
+            if (result != null) {
+                index = result;
+            } else if (!txn.isReadonly()) {
+                // the store is not cached until the transaction creating it is committed
+                result = environment.openStore(indexName, StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, txn, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes live bytes of segments.
+     *
+     * @return map of segments to the end of the last blob referenced by the index
+     */
+    private Map<Long, Long> loadIndex() {
+        final Map<Long, Long> segmentEnds = new HashMap<>();
+        environment.executeInReadonlyTransaction(txn -> {
+            final Store index = getIndex(txn);
+            if (index != null) {
+                try (Cursor cursor = index.openCursor(txn)) {
+                    while (cursor.getNext()) {
+                        final BlobLocation blob = BlobLocation.fromEntry(cursor.getValue());
+                        liveBytes.computeIfAbsent(blob.segment, s -> new AtomicLong()).addAndGet(blob.length);
+                        segmentEnds.merge(blob.segment, blob.offset + blob.length, Math::max);
+                    }
+                }
+            }
+        });
+        return segmentEnds;
+    }
+
+    private void openActiveSegment(@NotNull final Map<Long, Long> segmentEnds) throws IOException {
+        final long[] segments = listSegments();
+        if (segments.length == 0) {
+            activeSegment = 0;
+            return;
+        }
+        final long last = segments[segments.length - 1];
+        activeSegment = last;
+        if (environment.isReadOnly()) {
+            return;
+        }
+        final FileChannel channel = FileChannel.open(getSegmentPath(last), StandardOpenOption.WRITE);
+        // the tail not referenced by the index was written by a transaction which was not committed
+        final long end = segmentEnds.getOrDefault(last, 0L);
+        if (channel.size() > end) {
+            logger.info("Truncating segment " + getSegmentPath(last) + " from " + channel.size() + " to " + end + " bytes");
+            channel.truncate(end);
+        }
+        activeChannel = channel;
+        activePosition = end;
+    }
+
+    @NotNull
+    private FileChannel ensureActiveSegment() throws IOException {
+        FileChannel result = activeChannel;
+        if (result != null && activePosition < config.getBlobVaultSegmentSize()) {
+            return result;
+        }
+        if (result != null) {
+            result.force(false);
+            result.close();
+            activeChannel = null;
+            ++activeSegment;
+        }
+        result = FileChannel.open(getSegmentPath(activeSegment), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeChannel = result;
+        activePosition = result.size();
+        return result;
+    }
+
+    private BlobLocation append(@NotNull final InputStream stream) throws IOException {
+        final FileChannel channel = ensureActiveSegment();
+        final long offset = activePosition;
+        long position = offset;
+        final byte[] buffer = bufferAllocator.alloc();
+        try {
+            int read;
+            while ((read = stream.read(buffer)) >= 0) {
+                final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+        } finally {
+            bufferAllocator.dispose(buffer);
+        }
+        activePosition = position;
+        return new BlobLocation(activeSegment, offset, position - offset);
+    }
+
+    private BlobLocation append(@NotNull final Path file) throws IOException {
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            return append(source, 0L, source.size());
+        }
+    }
+
+    private BlobLocation append(@NotNull final FileChannel source, final long sourceOffset, final long length) throws IOException {
+        final FileChannel channel = ensureActiveSegment();
+        final long offset = activePosition;
+        channel.position(offset);
+        long transferred = 0;
+        while (transferred < length) {
+            final long count = source.transferTo(sourceOffset + transferred, length - transferred, channel);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of blob content at " + (sourceOffset + transferred));
+            }
+            transferred += count;
+        }
+        activePosition = offset + length;
+        return new BlobLocation(activeSegment, offset, length);
+    }
+
+    private void checkCompaction(final long segment) {
+        if (segment != activeSegment && needsCompaction(segment) && compactionQueued.compareAndSet(false, true)) {
+            DeferredIO.getJobProcessor().queue(new Job() {
+                @Override
+                protected void execute() {
+                    try {
+                        for (final long s : listSegments()) {
+                            if (s != activeSegment && needsCompaction(s)) {
+                                compact(s);
+                            }
+                        }
+                    } finally {
+                        compactionQueued.set(false);
+                    }
+                }
+
+                @Override
+                public String getName() {
+                    return "Compact packed blob segments";
+                }
+
+                @Override
+                public String getGroup() {
+                    return environment.getLocation();
+                }
+            });
+        }
+    }
+
+    private boolean needsCompaction(final long segment) {
+        final long segmentLength = getSegmentPath(segment).toFile().length();
+        if (segmentLength == 0) {
+            return false;
+        }
+        final AtomicLong live = liveBytes.get(segment);
+        final long garbage = segmentLength - (live == null ? 0L : live.get());
+        return garbage * 100 >= segmentLength * config.getBlobVaultCompactionThreshold();
+    }
+
+    /**
+     * Copies live blobs of the segment to the active segment and schedules deletion of the segment.
+     */
+    private void compact(final long segment) {
+        final List<Pair<ByteIterable, BlobLocation>> moved = new ArrayList<>();
+        synchronized (writeLock) {
+            environment.executeInTransaction(txn -> {
+                moved.clear();
+                final Store index = getIndex(txn);
+                if (index == null) {
+                    return;
+                }
+                final List<Pair<ByteIterable, BlobLocation>> blobs = new ArrayList<>();
+                try (Cursor cursor = index.openCursor(txn)) {
+                    while (cursor.getNext()) {
+                        final BlobLocation blob = BlobLocation.fromEntry(cursor.getValue());
+                        if (blob.segment == segment) {
+                            blobs.add(new Pair<>(cursor.getKey(), blob));
+                        }
+                    }
+                }
+                try {
+                    final FileChannel source = getReadChannel(segment);
+                    for (final Pair<ByteIterable, BlobLocation> blob : blobs) {
+                        final BlobLocation copy = append(source, blob.getSecond().offset, blob.getSecond().length);
+                        moved.add(new Pair<>(blob.getFirst(), copy));
+                    }
+                    if (activeChannel != null) {
+                        activeChannel.force(false);
+                    }
+                } catch (IOException e) {
+                    throw new EntityStoreException("Failed to compact segment " + getSegmentPath(segment), e);
+                }
+                for (final Pair<ByteIterable, BlobLocation> blob : moved) {
+                    index.put(txn, blob.getFirst(), blob.getSecond().toEntry());
+                }
+            });
+            for (final Pair<ByteIterable, BlobLocation> blob : moved) {
+                liveBytes.computeIfAbsent(blob.getSecond().segment, s -> new AtomicLong()).addAndGet(blob.getSecond().length);
+            }
+            liveBytes.remove(segment);
+        }
+        logger.info("Segment " + getSegmentPath(segment) + " compacted, " + moved.size() + " blobs moved");
+        queueSegmentDeletion(segment);
+    }
+
+    private void queueSegmentDeletion(final long segment) {
+        environment.executeTransactionSafeTask(() -> DeferredIO.getJobProcessor().queueIn(new Job() {
+            @Override
+            protected void execute() {
+                if (backupsInProgress.get() > 0) {
+                    queueSegmentDeletion(segment);
+                    return;
+                }
+                final FileChannel channel = readChannels.remove(segment);
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    Files.deleteIfExists(getSegmentPath(segment));
+                } catch (IOException e) {
+                    logger.error("Failed to delete segment " + getSegmentPath(segment), e);
+                }
+            }
+
+            @Override
+            public String getName() {
+                return "Delete compacted blob segment";
+            }
+
+            @Override
+            public String getGroup() {
+                return environment.getLocation();
+            }
+        }, environment.getEnvironmentConfig().getGcFilesDeletionDelay()));
+    }
+
+    @NotNull
+    private FileChannel getReadChannel(final long segment) throws IOException {
+        FileChannel result = readChannels.get(segment);
+        if (result == null) {
+            result = FileChannel.open(getSegmentPath(segment), StandardOpenOption.READ);
+            final FileChannel prev = readChannels.putIfAbsent(segment, result);
+            if (prev != null) {
+                result.close();
+                result = prev;
+            }
+        }
+        return result;
+    }
+
+    private void closeChannels() {
+        final FileChannel active = activeChannel;
+        activeChannel = null;
+        try {
+            if (active != null) {
+                active.close();
+            }
+            for (final FileChannel channel : readChannels.values()) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to close segment", e);
+        }
+        readChannels.clear();
+    }
+
+    @NotNull
+    private Path getSegmentPath(final long segment) {
+        return location.resolve(String.format("%016x", segment) + SEGMENT_EXTENSION);
+    }
+
+    private long[] listSegments() {
+        final File[] files = location.toFile().listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+        if (files == null) {
+            return new long[0];
+        }
+        final LongArrayList result = new LongArrayList(files.length);
+        for (final File file : files) {
+            final long segment = parseSegment(file.getName());
+            if (segment < 0) {
+                logger.warn("Unexpected file in blob vault: " + file);
+            } else {
+                result.add(segment);
+            }
+        }
+        final long[] segments = result.toArray();
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * @return segment number or {@code -1} if the name is not a segment file name
+     */
+    private static long parseSegment(@NotNull final String name) {
+        if (!name.endsWith(SEGMENT_EXTENSION)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()), 16);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static final class BlobLocation {
+
+        private final long segment;
+        private final long offset;
+        private final long length;
+
+        private BlobLocation(final long segment, final long offset, final long length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private ByteIterable toEntry() {
+            final LightOutputStream output = new LightOutputStream();
+            LongBinding.writeCompressed(output, segment);
+            LongBinding.writeCompressed(output, offset);
+            LongBinding.writeCompressed(output, length);
+            return output.asArrayByteIterable();
+        }
+
+        private static BlobLocation fromEntry(@NotNull final ByteIterable entry) {
+            final ByteIterator it = entry.iterator();
+            return new BlobLocation(LongBinding.readCompressed(it), LongBinding.readCompressed(it), LongBinding.readCompressed(it));
+        }
+    }
+
+    /**
+     * Reads blob by positional reads from the shared channel of the segment.
+     */
+    private final class SegmentInputStream extends InputStream {
+
+        private final long segment;
+        private final long end;
+        private long position;
+        @NotNull
+        private FileChannel channel;
+
+        private SegmentInputStream(@NotNull final BlobLocation blob) throws IOException {
+            segment = blob.segment;
+            position = blob.offset;
+            end = blob.offset + blob.length;
+            channel = getReadChannel(segment);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) <= 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(@NotNull final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            int read;
+            try {
+                read = channel.read(buffer, position);
+            } catch (ClosedByInterruptException e) {
+                throw e;
+            } catch (ClosedChannelException e) {
+                // shared channel was closed by an interrupted reader, so reopen it once
+                readChannels.remove(segment, channel);
+                channel = getReadChannel(segment);
+                read = channel.read(buffer, position);
+            }
+            if (read < 0) {
+                throw new EOFException("Unexpected end of segment " + getSegmentPath(segment));
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skipped = Math.min(Math.max(n, 0L), end - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(end - position, Integer.MAX_VALUE);
+        }
+    }
+}
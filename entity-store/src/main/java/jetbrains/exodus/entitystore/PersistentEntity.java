@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class PersistentEntity implements Entity, TxnProvider {
 
@@ -156,6 +157,26 @@ public class PersistentEntity implements Entity, TxnProvider {
         }
     }
 
+    @Override
+    @NotNull
+    public CompletableFuture<InputStream> getBlobAsync(@NotNull final String blobName) {
+        final PersistentStoreTransaction txn = getTransaction();
+        QueryCancellingPolicy.cancelIfNecessary(txn.getQueryCancellingPolicy());
+        return store.getBlobAsync(txn, this, blobName);
+    }
+
+    @Override
+    @Nullable
+    public BlobChannel getBlobChannel(@NotNull final String blobName) {
+        final PersistentStoreTransaction txn = getTransaction();
+        QueryCancellingPolicy.cancelIfNecessary(txn.getQueryCancellingPolicy());
+        try {
+            return store.getBlobChannel(txn, this, blobName);
+        } catch (Exception e) {
+            throw ExodusException.toEntityStoreException(e);
+        }
+    }
+
     @Override
     public long getBlobSize(@NotNull String blobName) {
         final PersistentStoreTransaction txn = getTransaction();
@@ -141,6 +141,18 @@ public class PersistentEntityStoreBackupStrategy extends BackupStrategy {
                 blobVaultBackupStrategy.acceptFile(file);
     }
 
+    @Override
+    public long getHighAddress() {
+        return environmentBackupStrategy.getHighAddress();
+    }
+
+    @Override
+    public boolean isAppendOnly(@NotNull final VirtualFileDescriptor file) {
+        return LogUtil.isLogFileName(file.getName()) || StartupMetadata.isStartupFileName(file.getName()) ?
+                environmentBackupStrategy.isAppendOnly(file) :
+                blobVaultBackupStrategy.isAppendOnly(file);
+    }
+
     private static class BackupStrategyDecorator extends BackupStrategy {
 
         @NotNull
@@ -179,5 +191,15 @@ public class PersistentEntityStoreBackupStrategy extends BackupStrategy {
         public long acceptFile(@NotNull VirtualFileDescriptor file) {
             return decorated.acceptFile(file);
         }
+
+        @Override
+        public long getHighAddress() {
+            return decorated.getHighAddress();
+        }
+
+        @Override
+        public boolean isAppendOnly(@NotNull VirtualFileDescriptor file) {
+            return decorated.isAppendOnly(file);
+        }
     }
 }
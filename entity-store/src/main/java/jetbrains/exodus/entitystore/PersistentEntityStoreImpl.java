@@ -30,6 +30,7 @@ import jetbrains.exodus.entitystore.iterate.EntityFromLinkSetIterable;
 import jetbrains.exodus.entitystore.iterate.EntityFromLinksIterable;
 import jetbrains.exodus.entitystore.iterate.EntityIterableBase;
 import jetbrains.exodus.entitystore.management.EntityStoreConfig;
+import jetbrains.exodus.entitystore.management.EntityStoreLatencyMetrics;
 import jetbrains.exodus.entitystore.management.EntityStoreStatistics;
 import jetbrains.exodus.entitystore.replication.PersistentEntityStoreReplicator;
 import jetbrains.exodus.entitystore.tables.*;
@@ -49,10 +50,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @SuppressWarnings({"UnusedDeclaration", "ThisEscapedInObjectConstruction", "VolatileLongOrDoubleField",
         "ObjectAllocationInLoop", "ReuseOfLocalVariable", "rawtypes"})
@@ -118,6 +127,7 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
     private OpenTablesCache blobsTables;
     private OpenTablesCache blobHashesTables;
     private Store blobFileLengths;
+    private BlobReferences blobReferences;
     private Store internalSettings;
     private Store sequences;
 
@@ -132,10 +142,14 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
 
     @NotNull
     private final PersistentEntityStoreStatistics statistics;
+    @NotNull
+    private final PersistentEntityStoreLatencyMetrics latencyMetrics;
     @Nullable
     private final EntityStoreConfig configMBean;
     @Nullable
     private final EntityStoreStatistics statisticsMBean;
+    @Nullable
+    private final EntityStoreLatencyMetrics latencyMetricsMBean;
     @NotNull
     private final PersistentEntityStoreSettingsListener entityStoreSettingsListener;
 
@@ -178,6 +192,7 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         }
 
         namingRulez = new StoreNamingRules(name);
+        latencyMetrics = new PersistentEntityStoreLatencyMetrics(config.getLatencyMetrics());
         iterableCache = new EntityIterableCache(this);
         explainer = new Explainer(config.isExplainOn());
         propertyDataGetter = new PropertyDataGetter();
@@ -194,9 +209,11 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
             configMBean = new EntityStoreConfig(this);
             // if we don't gather statistics then we should not expose corresponding managed bean
             statisticsMBean = config.getGatherStatistics() ? new EntityStoreStatistics(this) : null;
+            latencyMetricsMBean = new EntityStoreLatencyMetrics(this);
         } else {
             configMBean = null;
             statisticsMBean = null;
+            latencyMetricsMBean = null;
         }
         entityStoreSettingsListener = new PersistentEntityStoreSettingsListener(this);
         config.addChangedSettingsListener(entityStoreSettingsListener);
@@ -297,18 +314,31 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         sequences = environment.openStore(SEQUENCES_STORE, StoreConfig.WITHOUT_DUPLICATES, envTxn);
         blobFileLengths = environment.openStore(namingRulez.getBlobFileLengthsTable(),
                 StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, envTxn);
+        blobReferences = new BlobReferences(
+                environment.openStore(namingRulez.getBlobContentHashesTable(), StoreConfig.WITHOUT_DUPLICATES, envTxn),
+                environment.openStore(namingRulez.getBlobRefCountsTable(), StoreConfig.WITHOUT_DUPLICATES_WITH_PREFIXING, envTxn));
     }
 
     private BlobVault initBlobVault() {
         if (readerWriterProvider.isInMemory()) {
             return new DummyBlobVault(config);
         }
-        final FileSystemBlobVaultOld fsVault = createDefaultFSBlobVault();
-        DiskBasedBlobVault result = fsVault;
+        final Path blobPath = getBlobVaultLocation();
         final StreamCipherProvider cipherProvider = environment.getCipherProvider();
-        if (cipherProvider != null) {
-            result = new EncryptedBlobVault(fsVault, cipherProvider,
-                    Objects.requireNonNull(environment.getCipherKey()), environment.getCipherBasicIV());
+        DiskBasedBlobVault result;
+        if (cipherProvider == null &&
+                (PackedBlobVault.exists(blobPath) || config.isBlobVaultPacked() && PackedBlobVault.canBeCreated(blobPath))) {
+            result = createPackedBlobVault(blobPath);
+        } else {
+            if (config.isBlobVaultPacked()) {
+                logger.warn("Packed blob vault can't be used with encrypted database or existing file system blob vault at " + blobPath);
+            }
+            final FileSystemBlobVaultOld fsVault = createDefaultFSBlobVault(blobPath);
+            result = fsVault;
+            if (cipherProvider != null) {
+                result = new EncryptedBlobVault(fsVault, cipherProvider,
+                        Objects.requireNonNull(environment.getCipherKey()), environment.getCipherBasicIV());
+            }
         }
         final PersistentEntityStoreReplicator replicator = config.getStoreReplicator();
         if (replicator != null) {
@@ -419,22 +449,32 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         }
     }
 
-    private FileSystemBlobVaultOld createDefaultFSBlobVault() {
-        final Path blobPath;
+    private Path getBlobVaultLocation() {
         final String blobLocation = config.getBlobsDirectoryLocation();
         final Path locationPath = Paths.get(location);
 
         if (blobLocation == null) {
-            blobPath = locationPath.resolve(BLOBS_DIR);
-        } else {
-            Path path = Paths.get(blobLocation);
-            if (path.isAbsolute()) {
-                blobPath = path;
-            } else {
-                blobPath = locationPath.resolve(path);
-            }
+            return locationPath.resolve(BLOBS_DIR);
         }
+        final Path path = Paths.get(blobLocation);
+        return path.isAbsolute() ? path : locationPath.resolve(path);
+    }
 
+    private PackedBlobVault createPackedBlobVault(@NotNull final Path blobPath) {
+        try {
+            final PackedBlobVault blobVault = new PackedBlobVault(config, blobPath, environment,
+                    namingRulez.getBlobVaultIndexTable(), txnProvider, new PersistentSequenceBlobHandleGenerator(
+                    () -> getSequence(getAndCheckCurrentTransaction(), BLOB_HANDLES_SEQUENCE)));
+
+            logger.info("Packed blob vault has been created at " + blobPath);
+
+            return blobVault;
+        } catch (IOException e) {
+            throw ExodusException.toExodusException(e);
+        }
+    }
+
+    private FileSystemBlobVaultOld createDefaultFSBlobVault(@NotNull final Path blobPath) {
         try {
             FileSystemBlobVaultOld blobVault;
             final PersistentSequenceBlobHandleGenerator.PersistentSequenceGetter persistentSequenceGetter =
@@ -472,6 +512,20 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         }
     }
 
+    /**
+     * Replicates changes of the primary database to this store using the replicator specified by
+     * {@linkplain PersistentEntityStoreConfig#getStoreReplicator()}.
+     *
+     * @see PersistentEntityStoreConfig#REPLICATOR
+     */
+    public void replicate() {
+        final PersistentEntityStoreReplicator replicator = config.getStoreReplicator();
+        if (replicator == null) {
+            throw new IllegalStateException("Store replicator is not configured");
+        }
+        replicate(replicator, null);
+    }
+
     private void replicate(@NotNull PersistentEntityStoreReplicator replicator, @Nullable BlobVault blobVault) {
         if (blobVault != null) {
             throw new UnsupportedOperationException("Can only replicate default blob value");
@@ -538,14 +592,7 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
             return result;
         });
         if (!blobsToReplicate.isEmpty()) {
-            final BlobVault vault = computeInReadonlyTransaction(txn -> {
-                initBasicStores(((PersistentStoreTransaction) txn).getEnvironmentTransaction());
-                return initBlobVault();
-            });
-
-            replicator.replicateBlobVault(delta, vault, blobsToReplicate);
-
-            this.blobVault = vault;
+            replicator.replicateBlobVault(delta, blobVault, blobsToReplicate);
         }
     }
 
@@ -629,42 +676,30 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
                         var blobHandle = entryToBlobHandle(blobIterable);
 
                         if (!isEmptyOrInPlaceBlobHandle(blobHandle)) {
-                            int counter = 0;
-                            final int sleepInterval = 50;
-                            final int counterMaxValue = config.getBlobMaxReadWaitingInterval() * 1000 / sleepInterval;
-
-                            while (true) {
-                                var blobLocation = blobVault.getBlobLocation(blobHandle);
-                                var blobLength = getBlobFileLength(blobHandle, envTransaction);
-                                if (blobLength == null || blobLocation.exists() && blobLocation.length() == blobLength) {
-                                    break;
-                                }
-
-                                if (counter > counterMaxValue) {
-                                    if (!blobLocation.exists()) {
-                                        throw new ExodusException("Blob file " + blobLocation.getAbsolutePath() +
-                                                " does not exist in expected location.");
-                                    }
-
-                                    var expectedBlobLength = getBlobFileLength(blobHandle, envTransaction).longValue();
-                                    if (blobLocation.length() != expectedBlobLength) {
-                                        throw new ExodusException("Blob file " + blobLocation.getAbsolutePath() +
-                                                " expected length is " + expectedBlobLength + " but actual is " +
-                                                blobLocation.length());
-                                    }
-
-                                    break;
-                                }
-
-                                if (force) {
-                                    counter++;
-                                    //noinspection BusyWait
-                                    Thread.sleep(sleepInterval);
-                                } else {
-                                    var propertyKey = PropertyKey.entryToPropertyKey(blobCursor.getKey());
-                                    result.add(new long[]{entityTypeId, propertyKey.getEntityLocalId(), propertyKey.getPropertyId()});
-                                    break;
-                                }
+                            var blobLength = getBlobFileLength(blobHandle, envTransaction);
+                            if (blobLength == null || getStoredBlobLength(blobHandle, envTransaction) == blobLength) {
+                                continue;
+                            }
+                            if (!force) {
+                                var propertyKey = PropertyKey.entryToPropertyKey(blobCursor.getKey());
+                                result.add(new long[]{entityTypeId, propertyKey.getEntityLocalId(), propertyKey.getPropertyId()});
+                                continue;
+                            }
+                            try {
+                                blobVault.getBlobCompletion(blobHandle).get(config.getBlobMaxReadWaitingInterval(), TimeUnit.SECONDS);
+                            } catch (ExecutionException | TimeoutException e) {
+                                // the checks below report the failure
+                            }
+                            var blobLocation = blobVault.getBlobLocation(blobHandle);
+                            var storedBlobLength = getStoredBlobLength(blobHandle, envTransaction);
+                            if (storedBlobLength < 0) {
+                                throw new ExodusException("Blob file " + blobLocation.getAbsolutePath() +
+                                        " does not exist in expected location.");
+                            }
+                            if (storedBlobLength != blobLength) {
+                                throw new ExodusException("Blob file " + blobLocation.getAbsolutePath() +
+                                        " expected length is " + blobLength + " but actual is " +
+                                        storedBlobLength);
                             }
                         }
                     }
@@ -677,6 +712,17 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         return result;
     }
 
+    /**
+     * @return length of the blob stored in the vault or {@code -1} if the vault doesn't contain the blob
+     */
+    private long getStoredBlobLength(final long blobHandle, @NotNull final Transaction envTxn) {
+        if (blobVault instanceof PackedBlobVault) {
+            return ((PackedBlobVault) blobVault).getBlobLength(blobHandle, envTxn);
+        }
+        final File blobLocation = blobVault.getBlobLocation(blobHandle);
+        return blobLocation.exists() ? blobLocation.length() : -1L;
+    }
+
     @Override
     public void clear() {
         environment.clear();
@@ -1024,6 +1070,64 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         return valueIdx.openCursor(txn.getEnvironmentTransaction());
     }
 
+    /**
+     * Creates composite index of values of specified properties of entities of specified type, or does nothing
+     * if the index already exists. The index is used to answer intersections of
+     * {@linkplain StoreTransaction#find(String, String, Comparable) equality} conditions on its first properties and
+     * optionally a {@linkplain StoreTransaction#find(String, String, Comparable, Comparable) range} condition on
+     * the next one, as well as to {@linkplain StoreTransaction#sort(String, String, EntityIterable, boolean) sort}
+     * results of such conditions by the property next to equality ones.
+     *
+     * @param txn           transaction
+     * @param entityType    entity type
+     * @param propertyNames names of properties in the order of index components
+     */
+    public void createCompositeIndex(@NotNull final PersistentStoreTransaction txn,
+                                     @NotNull final String entityType,
+                                     @NotNull final String... propertyNames) {
+        final int entityTypeId = getEntityTypeId(txn, entityType, true);
+        getPropertiesTable(txn, entityTypeId).createCompositeIndex(txn, getCompositeIndexPropertyIds(txn, propertyNames, true));
+    }
+
+    /**
+     * Removes composite index of values of specified properties of entities of specified type.
+     *
+     * @param txn           transaction
+     * @param entityType    entity type
+     * @param propertyNames names of properties in the order of index components
+     * @return {@code true} if the index existed
+     */
+    public boolean deleteCompositeIndex(@NotNull final PersistentStoreTransaction txn,
+                                        @NotNull final String entityType,
+                                        @NotNull final String... propertyNames) {
+        final int entityTypeId = getEntityTypeId(txn, entityType, false);
+        if (entityTypeId < 0) {
+            return false;
+        }
+        final int[] propertyIds = getCompositeIndexPropertyIds(txn, propertyNames, false);
+        return propertyIds != null && getPropertiesTable(txn, entityTypeId).deleteCompositeIndex(txn, propertyIds);
+    }
+
+    @Nullable
+    private int[] getCompositeIndexPropertyIds(@NotNull final PersistentStoreTransaction txn,
+                                               @NotNull final String[] propertyNames,
+                                               final boolean allowCreate) {
+        final int[] result = new int[propertyNames.length];
+        for (int i = 0; i < propertyNames.length; ++i) {
+            final int propertyId = getPropertyId(txn, propertyNames[i], allowCreate);
+            if (propertyId < 0) {
+                return null;
+            }
+            for (int j = 0; j < i; ++j) {
+                if (result[j] == propertyId) {
+                    throw new EntityStoreException("Property is used twice in composite index: " + propertyNames[i]);
+                }
+            }
+            result[i] = propertyId;
+        }
+        return result;
+    }
+
     @NotNull
     public Iterable<Pair<Integer, Long>> getEntityWithPropIterable(@NotNull final PersistentStoreTransaction txn,
                                                                    int entityTypeId, int propertyId) {
@@ -1145,35 +1249,125 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         result = blobVault.getContent(blobHandle, envTxn, blobLength);
 
         if (result == null) {
-            int counter = 0;
+            awaitBlobContent(txn, entity, blobName, blobHandle, blobLength);
+            result = blobVault.getContent(blobHandle, envTxn, blobLength);
+            if (result == null) {
+                throw new ExodusException(generateBlobBrokenMessage(txn, entity, blobName, blobHandle, blobLength));
+            }
+        }
 
-            final int sleepInterval = 50;
-            final int counterMaxValue = config.getBlobMaxReadWaitingInterval() * 1000 / sleepInterval;
+        return result;
+    }
 
-            while (true) {
-                try {
-                    Thread.sleep(sleepInterval);
-                } catch (InterruptedException e) {
-                    throw new ExodusException("Store : " + getName() +
-                            " . Reading of blob content was interrupted.", e);
+    /**
+     * Asynchronous version of {@linkplain #getBlob(PersistentStoreTransaction, PersistentEntity, String)}. If content
+     * of the blob is being written by the transaction that created it, the returned future is completed as soon as
+     * writing is finished, or completed exceptionally after {@linkplain PersistentEntityStoreConfig#getBlobMaxReadWaitingInterval()}
+     * seconds. The transaction should not be finished until the future is completed.
+     */
+    @NotNull
+    public CompletableFuture<InputStream> getBlobAsync(@NotNull final PersistentStoreTransaction txn,
+                                                       @NotNull final PersistentEntity entity,
+                                                       @NotNull final String blobName) {
+        try {
+            final Pair<Long, InputStream> blobStream = getInPlaceBlobStream(txn, entity, blobName);
+            if (blobStream == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            final long blobHandle = blobStream.getFirst();
+            if (blobHandle == EMPTY_BLOB_HANDLE) {
+                return CompletableFuture.completedFuture(EMPTY_INPUT_STREAM);
+            }
+            if (blobStream.getSecond() != null) {
+                return CompletableFuture.completedFuture(blobStream.getSecond());
+            }
+            final Transaction envTxn = txn.getEnvironmentTransaction();
+            final Long blobLength = getBlobFileLength(blobHandle, envTxn);
+            final InputStream result = blobVault.getContent(blobHandle, envTxn, blobLength);
+            if (result != null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            return blobVault.getBlobCompletion(blobHandle).thenApply(ignored -> {
+                final InputStream content = blobVault.getContent(blobHandle, envTxn, blobLength);
+                if (content == null) {
+                    throw new ExodusException(generateBlobBrokenMessage(txn, entity, blobName, blobHandle, blobLength));
                 }
-                counter++;
-
-                result = blobVault.getContent(blobHandle, envTxn,
-                        blobLength);
+                return content;
+            }).orTimeout(config.getBlobMaxReadWaitingInterval(), TimeUnit.SECONDS);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-                if (result != null) {
-                    break;
-                }
+    /**
+     * Waits until content of the blob is written by the transaction that created it, if it is being written.
+     */
+    private void awaitBlobContent(@NotNull final PersistentStoreTransaction txn,
+                                  @NotNull final PersistentEntity entity,
+                                  @NotNull final String blobName,
+                                  final long blobHandle,
+                                  @Nullable final Long blobLength) {
+        try {
+            blobVault.getBlobCompletion(blobHandle).get(config.getBlobMaxReadWaitingInterval(), TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExodusException("Store : " + getName() +
+                    " . Reading of blob content was interrupted.", e);
+        } catch (ExecutionException | TimeoutException e) {
+            final String message = generateBlobBrokenMessage(txn, entity, blobName, blobHandle, blobLength);
+            throw new ExodusException(message, e instanceof ExecutionException ? e.getCause() : e);
+        }
+    }
 
-                if (counter >= counterMaxValue) {
-                    final String message = generateBlobBrokenMessage(txn, entity, blobName, blobHandle, blobLength);
-                    throw new ExodusException(message);
-                }
+    /**
+     * Returns blob content as {@linkplain BlobChannel}. Content of in-place blobs is not copied, the channel reads
+     * a view of the bytes of the blob entry. Content of blobs stored in the vault is transferred directly from files
+     * if the vault supports it.
+     */
+    @Nullable
+    public BlobChannel getBlobChannel(@NotNull final PersistentStoreTransaction txn,
+                                      @NotNull final PersistentEntity entity,
+                                      @NotNull final String blobName) throws IOException {
+        final ByteIterable valueEntry = getBlobValueEntry(txn, entity, blobName);
+        if (valueEntry == null) {
+            return null;
+        }
+        final ByteIterator valueIterator = valueEntry.iterator();
+        final long blobHandle = readBlobHandle(valueIterator);
+        if (blobHandle == EMPTY_BLOB_HANDLE) {
+            return BlobChannel.wrap(ByteBuffer.allocate(0));
+        }
+        if (isInPlaceBlobHandle(blobHandle)) {
+            final int size = (int) CompressedUnsignedLongByteIterable.getLong(valueIterator);
+            if (blobHandle == IN_PLACE_BLOB_HANDLE) {
+                // content of in-place blob is the tail of the entry
+                return BlobChannel.wrap(getByteBufferView(valueEntry, valueEntry.getLength() - size, size));
+            }
+            final ByteIterable hashEntry = new ArrayByteIterable(valueIterator);
+            final ByteIterable duplicateEntry = getBlobHashesTable(txn,
+                    entity.getId().getTypeId()).getDatabase().get(txn.getEnvironmentTransaction(), hashEntry);
+            if (duplicateEntry == null) {
+                throw new EntityStoreException("No duplicate entry is available to in-place blob reference");
             }
+            return BlobChannel.wrap(getByteBufferView(duplicateEntry, 0, Math.min(size, duplicateEntry.getLength())));
         }
+        final InputStream txnStream = txn.getBlobStream(blobHandle);
+        if (txnStream != null) {
+            return BlobChannel.wrap(txnStream, txn.getBlobSize(blobHandle));
+        }
+        final Transaction envTxn = txn.getEnvironmentTransaction();
+        final BlobChannel result = blobVault.getContentChannel(blobHandle, envTxn, getBlobFileLength(blobHandle, envTxn));
+        if (result != null) {
+            return result;
+        }
+        // content is not available yet, getBlob() waits for it
+        final InputStream stream = getBlob(txn, entity, blobName);
+        return stream == null ? null : BlobChannel.wrap(stream, getBlobSize(txn, entity, blobName));
+    }
 
-        return result;
+    @NotNull
+    private static ByteBuffer getByteBufferView(@NotNull final ByteIterable entry, final int offset, final int length) {
+        return ByteBuffer.wrap(entry.getBaseBytes(), entry.baseOffset() + offset, length);
     }
 
     @Nullable
@@ -1209,32 +1403,12 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
                         return blobString;
                     }
 
-                    int counter = 0;
-                    final int sleepInterval = 50;
-                    final int counterMaxValue = config.getBlobMaxReadWaitingInterval() * 1000 / sleepInterval;
-
-                    while (true) {
-                        try {
-                            Thread.sleep(sleepInterval);
-                        } catch (InterruptedException e) {
-                            throw new ExodusException("Store : " + getName() +
-                                    " . Reading of blob content was interrupted.", e);
-                        }
-                        counter++;
-
-                        blobString = blobVault.getStringContent(blobHandle, envTxn,
-                                blobLength);
-
-                        if (blobString != null) {
-                            return blobString;
-                        }
-
-                        if (counter >= counterMaxValue) {
-                            final String message = generateBlobBrokenMessage(txn,
-                                    entity, blobName, blobHandle, blobLength);
-                            throw new ExodusException(message);
-                        }
+                    awaitBlobContent(txn, entity, blobName, blobHandle, blobLength);
+                    blobString = blobVault.getStringContent(blobHandle, envTxn, blobLength);
+                    if (blobString == null) {
+                        throw new ExodusException(generateBlobBrokenMessage(txn, entity, blobName, blobHandle, blobLength));
                     }
+                    return blobString;
                 }
                 result = UTFUtil.readUTF(stream);
             } catch (UTFDataFormatException e) {
@@ -1255,7 +1429,8 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         String message = "Store : '" + getName() + "' data is broken. " +
                 "Can not read blob located at '" + blobLocation +
                 "'. Blob property name '" + blobName + "'. Entity id : '" + entity.getId() +
-                "'. Entity type : '" + entity.getType() + "'. Real length " + blobLocation.length() + " bytes. ";
+                "'. Entity type : '" + entity.getType() + "'. Real length " +
+                getStoredBlobLength(blobHandle, txn.getEnvironmentTransaction()) + " bytes. ";
 
         if (blobLength != null) {
             message += "Expected blob length " + blobLength + " bytes.";
@@ -1270,15 +1445,26 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
     Pair<Long, ByteIterator> getBlobHandleAndValue(@NotNull final PersistentStoreTransaction txn,
                                                    @NotNull final PersistentEntity entity,
                                                    @NotNull final String blobName) {
-        final int blobId = getPropertyId(txn, blobName, false);
-        if (blobId < 0) {
-            return null;
-        }
-        final ByteIterable valueEntry = getRawValue(txn, entity.getId(), blobId, blobDataGetter);
+        final ByteIterable valueEntry = getBlobValueEntry(txn, entity, blobName);
         if (valueEntry == null) {
             return null;
         }
         final ByteIterator valueIterator = valueEntry.iterator();
+        return new Pair<>(readBlobHandle(valueIterator), valueIterator);
+    }
+
+    @Nullable
+    private ByteIterable getBlobValueEntry(@NotNull final PersistentStoreTransaction txn,
+                                           @NotNull final PersistentEntity entity,
+                                           @NotNull final String blobName) {
+        final int blobId = getPropertyId(txn, blobName, false);
+        if (blobId < 0) {
+            return null;
+        }
+        return getRawValue(txn, entity.getId(), blobId, blobDataGetter);
+    }
+
+    private long readBlobHandle(@NotNull final ByteIterator valueIterator) {
         long blobHandle = LongBinding.readCompressed(valueIterator);
         if (!useVersion1Format()) {
             if (blobHandle == 0L)
@@ -1290,7 +1476,7 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
             } else
                 blobHandle -= BLOB_HANDLE_ADDEND;
         }
-        return new Pair<>(blobHandle, valueIterator);
+        return blobHandle;
     }
 
     private boolean useIntForLocalId() {
@@ -1396,14 +1582,22 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
 
         if (!isEmptyOrInPlaceBlobHandle(blobHandle)) {
             final long tmpHandle = tmpHandleIdGen.nextLong();
+            // blobs set by handle can't be deduplicated since their temporary files can be reused
+            final MessageDigest digest = deleteOnRollback && config.isBlobVaultDeduplication() ?
+                    BlobReferences.newDigest() : null;
 
             final Pair<Path, Long> tmpFilePair =
                     ((DiskBasedBlobVault) blobVault).copyToTemporaryStore(tmpHandle,
-                            bufferedStream, txn);
+                            digest == null ? bufferedStream : new DigestInputStream(bufferedStream, digest), txn);
 
             final Path path = tmpFilePair.first;
             final long fileSize = tmpFilePair.second;
 
+            if (digest != null && deduplicateBlob(txn, entity, blobName, blobHandle, digest, fileSize)) {
+                Files.deleteIfExists(path);
+                return new TmpBlobHandle(null, null, fileSize, tmpHandle);
+            }
+
             txn.addBlobStream(blobHandle, tmpHandle,
                     tmpFilePair.first, deleteOnRollback);
             setBlobFileLength(txn, blobHandle, tmpFilePair.second);
@@ -1460,6 +1654,13 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
             final long blobHandle = createBlobHandle(txn, entity, blobName, copy, streamSize);
 
             if (!isEmptyOrInPlaceBlobHandle(blobHandle)) {
+                if (deleteOnRollback && config.isBlobVaultDeduplication()) {
+                    final MessageDigest digest = BlobReferences.newDigest();
+                    digest.update(copy.toByteArray(), 0, streamSize);
+                    if (deduplicateBlob(txn, entity, blobName, blobHandle, digest, streamSize)) {
+                        return new TmpBlobHandle(null, copy, streamSize, 0);
+                    }
+                }
                 setBlobFileLength(txn, blobHandle, copy.size());
                 final long tmpHandle = tmpHandleIdGen.nextLong();
                 final Pair<Path, Long> tmpStream =
@@ -1529,6 +1730,43 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         return blobHandle;
     }
 
+    /**
+     * Makes the entity blob reference already stored blob with the same content if it exists, otherwise registers
+     * the blob with specified handle as a candidate for deduplication.
+     *
+     * @return {@code true} if the blob references already stored blob, so its content shouldn't be saved
+     */
+    private boolean deduplicateBlob(@NotNull final PersistentStoreTransaction txn,
+                                    @NotNull final PersistentEntity entity,
+                                    @NotNull final String blobName,
+                                    final long blobHandle,
+                                    @NotNull final MessageDigest digest,
+                                    final long length) {
+        if (length < config.getBlobVaultDeduplicationMinSize()) {
+            return false;
+        }
+        final Transaction envTxn = txn.getEnvironmentTransaction();
+        final byte[] hash = digest.digest();
+        final long duplicate = blobReferences.getBlob(envTxn, hash, length);
+        final Long duplicateLength = duplicate < 0 ? null : getBlobFileLength(duplicate, envTxn);
+        if (duplicateLength == null || duplicateLength != length) {
+            blobReferences.addBlob(envTxn, blobHandle, hash, length);
+            return false;
+        }
+        blobReferences.addReference(envTxn, duplicate);
+        final EntityId id = entity.getId();
+        getBlobsTable(txn, id.getTypeId()).put(envTxn, id.getLocalId(),
+                getPropertyId(txn, blobName, false), blobHandleToEntry(duplicate));
+        return true;
+    }
+
+    /**
+     * @return number of entity blobs referencing the blob stored in the vault, {@code 0} if the blob isn't deduplicated
+     */
+    public long getBlobReferenceCount(@NotNull final PersistentStoreTransaction txn, final long blobHandle) {
+        return blobReferences.getReferenceCount(txn.getEnvironmentTransaction(), blobHandle);
+    }
+
     @Nullable
     ByteIterable findDuplicate(@NotNull final PersistentStoreTransaction txn,
                                final int typeId,
@@ -2048,6 +2286,11 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
             return;
         }
 
+        final List<String> tableNames = new ArrayList<>();
+        for (final CompositeIndex index : getPropertiesTable(txn, entityTypeId).getCompositeIndexes(txn)) {
+            tableNames.add(index.getStore().getName());
+        }
+
         entitiesTables.remove(entityTypeId);
         propertiesTables.remove(entityTypeId);
         linksTables.remove(entityTypeId);
@@ -2061,8 +2304,9 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         final String blobsObsoleteTableName = namingRulez.getBlobsObsoleteTableName(entityTypeId);
         final String blobsTableName = namingRulez.getBlobsTableName(entityTypeId);
 
-        truncateStores(txn, Arrays.asList(
-                        entityTableName, linksTableName, secondLinksTableName, propertiesTableName, blobsObsoleteTableName, blobsTableName),
+        tableNames.addAll(Arrays.asList(
+                entityTableName, linksTableName, secondLinksTableName, propertiesTableName, blobsObsoleteTableName, blobsTableName));
+        truncateStores(txn, tableNames,
                 () -> new Iterator<>() { // enumerate all property value indexes
                     private int propertyId = 0;
 
@@ -2313,6 +2557,14 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         return statistics;
     }
 
+    /**
+     * @return latencies of operations measured if {@linkplain PersistentEntityStoreConfig#LATENCY_METRICS} is on
+     */
+    @NotNull
+    public PersistentEntityStoreLatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+
     public void setCloseEnvironment(boolean closeEnvironment) {
         this.closeEnvironment = closeEnvironment;
     }
@@ -2328,8 +2580,12 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         if (statisticsMBean != null) {
             statisticsMBean.unregister();
         }
+        if (latencyMetricsMBean != null) {
+            latencyMetricsMBean.unregister();
+        }
         try {
             getAsyncProcessor().finish();
+            iterableCache.close();
             synchronized (this) {
                 blobVault.close();
                 // by default, do not close underlying environment since it can be used also by another EntityStore or in a different way
@@ -2396,6 +2652,10 @@ public class PersistentEntityStoreImpl implements PersistentEntityStore, FlushLo
         if (isEmptyOrInPlaceBlobHandle(blobHandle)) {
             return;
         }
+        if (blobReferences.removeReference(txn.getEnvironmentTransaction(), blobHandle)) {
+            // content of the blob is shared with other entity blobs
+            return;
+        }
         deleteBlobFileLength(txn, blobHandle);
         txn.deleteBlob(blobHandle);
         txn.deferBlobDeletion(blobHandle);
@@ -24,6 +24,8 @@ import jetbrains.exodus.core.dataStructures.*;
 import jetbrains.exodus.core.dataStructures.hash.*;
 import jetbrains.exodus.crypto.EncryptedBlobVault;
 import jetbrains.exodus.entitystore.iterate.*;
+import jetbrains.exodus.entitystore.tables.CompositeIndex;
+import jetbrains.exodus.entitystore.tables.PropertiesTable;
 import jetbrains.exodus.env.*;
 import jetbrains.exodus.util.StringBuilderSpinAllocator;
 import org.jetbrains.annotations.NotNull;
@@ -77,6 +79,12 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
     private LongHashMap<Path> blobFiles;
 
     private LongSet deferredBlobsToDelete;
+    // handles of blobs which will be written to the vault after commit
+    @Nullable
+    private LongArrayList pendingBlobHandles;
+    // catalogues of composite indexes created or deleted in the transaction, they are published on commit
+    @Nullable
+    private Map<PropertiesTable, List<CompositeIndex>> compositeIndexes;
     private QueryCancellingPolicy queryCancellingPolicy;
 
     private boolean checkInvalidateBlobsFlag;
@@ -193,6 +201,7 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
     public void abort() {
         try {
             closeOpenedBlobStreams();
+            completePendingBlobs(store.getBlobVault(), null);
             store.unregisterTransaction(this);
             revertCaches();
         } finally {
@@ -226,6 +235,8 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
     @Override
     public void revert() {
         closeOpenedBlobStreams();
+        // blobs of the reverted transaction are not visible to readers
+        completePendingBlobs(store.getBlobVault(), null);
         txn.revert();
         revertCaches();
 
@@ -514,6 +525,12 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
         if (propertyId < 0 || rightOrder == EntityIterableBase.EMPTY) {
             return rightOrder;
         }
+        if (!rightOrder.isSortResult()) {
+            final EntityIterableBase composite = CompositeIndexIterable.sort((EntityIterableBase) rightOrder, propertyId, ascending);
+            if (composite != null) {
+                return composite;
+            }
+        }
         return new SortIterable(this, findWithPropSortedByValue(
                 entityType, propertyName), (EntityIterableBase) rightOrder, entityTypeId, propertyId, ascending);
     }
@@ -976,6 +993,24 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
         blobStreams = null;
         blobFiles = null;
         deferredBlobsToDelete = null;
+        compositeIndexes = null;
+    }
+
+    /**
+     * @return catalogue of composite indexes of the table changed in the transaction or {@code null} if it wasn't
+     * changed.
+     */
+    @Nullable
+    public List<CompositeIndex> getCompositeIndexes(@NotNull final PropertiesTable table) {
+        final Map<PropertiesTable, List<CompositeIndex>> compositeIndexes = this.compositeIndexes;
+        return compositeIndexes == null ? null : compositeIndexes.get(table);
+    }
+
+    public void setCompositeIndexes(@NotNull final PropertiesTable table, @NotNull final List<CompositeIndex> indexes) {
+        if (compositeIndexes == null) {
+            compositeIndexes = new HashMap<>();
+        }
+        compositeIndexes.put(table, indexes);
     }
 
     // exposed only for tests
@@ -990,10 +1025,13 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
                 // out of disk space not expected there
                 throw ExodusException.toEntityStoreException(e);
             }
+        } else {
+            markBlobsPending(blobVault);
         }
 
         txn.setCommitHook(() -> {
             log.flushed();
+            publishCompositeIndexes();
             final EntityIterableCacheAdapterMutable cache = PersistentStoreTransaction.this.mutableCache;
             if (cache != null) { // mutableCache can be null if only blobs are modified
                 applyAtomicCaches(cache);
@@ -1001,6 +1039,13 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
         });
     }
 
+    private void publishCompositeIndexes() {
+        final Map<PropertiesTable, List<CompositeIndex>> compositeIndexes = this.compositeIndexes;
+        if (compositeIndexes != null) {
+            compositeIndexes.forEach(PropertiesTable::compositeIndexesCommitted);
+        }
+    }
+
     private void closeOpenedBlobStreams() {
         if (openedBlobStreams != null) {
             int closed = 0;
@@ -1055,7 +1100,8 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
     }
 
     private void flushBlobs(final BlobVault blobVault) throws Exception {
-        if (blobStreams != null || blobFiles != null) {
+        // a transaction which only deletes blobs should pass them to the vault as well
+        if (blobStreams != null || blobFiles != null || deferredBlobsToDelete != null) {
             closeOpenedBlobStreams();
 
             final LongHashMap<Path> tmpBlobFiles;
@@ -1129,7 +1175,9 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
             ((EnvironmentImpl) txn.getEnvironment()).flushAndSync();
             try {
                 flushBlobs(blobVault);
+                completePendingBlobs(blobVault, null);
             } catch (Exception e) {
+                completePendingBlobs(blobVault, e);
                 handleOutOfDiskSpace(e);
                 throw ExodusException.toEntityStoreException(e);
             }
@@ -1137,6 +1185,43 @@ public class PersistentStoreTransaction implements StoreTransaction, TxnGetterSt
 
     }
 
+    /**
+     * Registers blobs which are written to the vault after commit, so that readers of the committed transaction
+     * could wait for their content.
+     */
+    private void markBlobsPending(@NotNull final BlobVault blobVault) {
+        if (blobStreams != null || blobFiles != null) {
+            final LongArrayList handles = new LongArrayList();
+            if (blobStreams != null) {
+                for (final long blobHandle : blobStreams.keySet()) {
+                    handles.add(blobHandle);
+                }
+            }
+            if (blobFiles != null) {
+                for (final long blobHandle : blobFiles.keySet()) {
+                    handles.add(blobHandle);
+                }
+            }
+            for (int i = 0; i < handles.size(); ++i) {
+                blobVault.blobPending(handles.get(i));
+            }
+            pendingBlobHandles = handles;
+        }
+    }
+
+    /**
+     * Completes blobs which the vault hasn't completed itself.
+     */
+    private void completePendingBlobs(@NotNull final BlobVault blobVault, @Nullable final Throwable error) {
+        final LongArrayList handles = pendingBlobHandles;
+        if (handles != null) {
+            pendingBlobHandles = null;
+            for (int i = 0; i < handles.size(); ++i) {
+                blobVault.blobFlushed(handles.get(i), error);
+            }
+        }
+    }
+
     private EntityIterableCacheAdapterMutable mutableCache() {
         EntityIterableCacheAdapterMutable cache = mutableCache;
         if (mutableCache == null) {
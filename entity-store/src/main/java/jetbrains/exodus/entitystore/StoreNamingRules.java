@@ -50,6 +50,12 @@ final class StoreNamingRules {
     @NonNls
     private static final String BLOB_FILE_LENGTHS = "blobFileLengths";
     @NonNls
+    private static final String BLOB_VAULT_INDEX = "blobVaultIndex";
+    @NonNls
+    private static final String BLOB_CONTENT_HASHES = "blobContentHashes";
+    @NonNls
+    private static final String BLOB_REF_COUNTS = "blobRefCounts";
+    @NonNls
     private static final String INTERNAL_SETTINGS = "----internal.settings----";
 
     @NotNull
@@ -138,6 +144,18 @@ final class StoreNamingRules {
         return getFQName(BLOB_FILE_LENGTHS);
     }
 
+    String getBlobVaultIndexTable() {
+        return getFQName(BLOB_VAULT_INDEX);
+    }
+
+    String getBlobContentHashesTable() {
+        return getFQName(BLOB_CONTENT_HASHES);
+    }
+
+    String getBlobRefCountsTable() {
+        return getFQName(BLOB_REF_COUNTS);
+    }
+
     @NotNull
     String getInternalSettingsName() {
         return getFQName(INTERNAL_SETTINGS);
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore.iterate;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.bindings.LongBinding;
+import jetbrains.exodus.core.dataStructures.hash.IntHashMap;
+import jetbrains.exodus.core.dataStructures.hash.LongHashSet;
+import jetbrains.exodus.core.dataStructures.hash.LongSet;
+import jetbrains.exodus.entitystore.*;
+import jetbrains.exodus.entitystore.iterate.binop.IntersectionIterable;
+import jetbrains.exodus.entitystore.tables.CompositeIndex;
+import jetbrains.exodus.entitystore.tables.PropertyTypes;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.util.LightOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Entities matching equality conditions on the first properties of a {@linkplain CompositeIndex composite index}
+ * and optionally a range condition on the next one, read from a single cursor of the index. If the iterable is
+ * sorted, entities go in the order of values of the property next to equality ones, entities not having this
+ * property go last.
+ */
+@SuppressWarnings({"rawtypes"})
+public final class CompositeIndexIterable extends EntityIterableBase {
+
+    private static final int UNSORTED = 0;
+    private static final int ASCENDING = 1;
+    private static final int DESCENDING = 2;
+
+    private final int entityTypeId;
+    @NotNull
+    private final int[] indexPropertyIds;
+    @NotNull
+    private final Comparable[] values;
+    @Nullable
+    private final Comparable min;
+    @Nullable
+    private final Comparable max;
+    private final int order;
+
+    private CompositeIndexIterable(@NotNull final PersistentStoreTransaction txn,
+                                   final int entityTypeId,
+                                   @NotNull final int[] indexPropertyIds,
+                                   @NotNull final Comparable[] values,
+                                   @Nullable final Comparable min,
+                                   @Nullable final Comparable max,
+                                   final int order) {
+        super(txn);
+        this.entityTypeId = entityTypeId;
+        this.indexPropertyIds = indexPropertyIds;
+        this.values = values;
+        this.min = min;
+        this.max = max;
+        this.order = order;
+    }
+
+    /**
+     * Tries to replace intersection of property value and property range iterables with a single iterable
+     * reading a composite index.
+     *
+     * @return {@code null} if there is no composite index covering exactly all the conditions.
+     */
+    @Nullable
+    public static EntityIterableBase intersect(@NotNull final EntityIterableBase left, @NotNull final EntityIterableBase right) {
+        if (!isCandidate(left) || !isCandidate(right)) {
+            return null;
+        }
+        final Conditions conditions = new Conditions();
+        if (!conditions.collect(left) || !conditions.collect(right)) {
+            return null;
+        }
+        return conditions.toIterable(left.getTransaction(), -1, UNSORTED);
+    }
+
+    /**
+     * Tries to sort entities matched by property value and property range iterables using a composite index
+     * which has the sort property next to the equality ones.
+     *
+     * @return {@code null} if there is no suitable composite index.
+     */
+    @Nullable
+    public static EntityIterableBase sort(@NotNull final EntityIterableBase source, final int propertyId, final boolean ascending) {
+        if (!isCandidate(source)) {
+            return null;
+        }
+        final Conditions conditions = new Conditions();
+        if (!conditions.collect(source)) {
+            return null;
+        }
+        return conditions.toIterable(source.getTransaction(), propertyId, ascending ? ASCENDING : DESCENDING);
+    }
+
+    @Override
+    public int getEntityTypeId() {
+        return entityTypeId;
+    }
+
+    @Override
+    public boolean isSortedById() {
+        return false;
+    }
+
+    @Override
+    public boolean canBeReordered() {
+        return order == UNSORTED;
+    }
+
+    @Override
+    @NotNull
+    public EntityIteratorBase getIteratorImpl(@NotNull final PersistentStoreTransaction txn) {
+        return getIterator(txn, false);
+    }
+
+    @Override
+    @NotNull
+    public EntityIterator getReverseIteratorImpl(@NotNull final PersistentStoreTransaction txn) {
+        return getIterator(txn, true);
+    }
+
+    @Override
+    @NotNull
+    protected EntityIterableHandle getHandleImpl() {
+        final int[] propertyIds = Arrays.copyOf(indexPropertyIds,
+            min != null || order != UNSORTED ? values.length + 1 : values.length);
+        return new ConstantEntityIterableHandle(getStore(), getType()) {
+
+            @NotNull
+            @Override
+            public int[] getPropertyIds() {
+                return propertyIds;
+            }
+
+            @Override
+            public void toString(@NotNull final StringBuilder builder) {
+                super.toString(builder);
+                builder.append(entityTypeId);
+                builder.append('-');
+                for (int i = 0; i < indexPropertyIds.length; ++i) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(indexPropertyIds[i]);
+                }
+                builder.append('-');
+                for (int i = 0; i < values.length; ++i) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    builder.append(values[i]);
+                }
+                builder.append('-');
+                builder.append(min);
+                builder.append('-');
+                builder.append(max);
+                builder.append('-');
+                builder.append(order);
+            }
+
+            @Override
+            public void hashCode(@NotNull final EntityIterableHandleHash hash) {
+                hash.apply(entityTypeId);
+                hash.applyDelimiter();
+                for (final int propertyId : indexPropertyIds) {
+                    hash.apply(propertyId);
+                    hash.applyDelimiter();
+                }
+                for (final Comparable value : values) {
+                    hash.apply(value.toString());
+                    hash.applyDelimiter();
+                }
+                hash.apply(String.valueOf(min));
+                hash.applyDelimiter();
+                hash.apply(String.valueOf(max));
+                hash.applyDelimiter();
+                hash.apply(order);
+            }
+
+            @Override
+            public int getEntityTypeId() {
+                return entityTypeId;
+            }
+
+            @Override
+            public boolean isMatchedPropertyChanged(@NotNull final EntityId id,
+                                                    final int propId,
+                                                    @Nullable final Comparable oldValue,
+                                                    @Nullable final Comparable newValue) {
+                if (entityTypeId != id.getTypeId()) {
+                    return false;
+                }
+                for (final int propertyId : propertyIds) {
+                    if (propertyId == propId) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    private static EntityIterableType getType() {
+        return EntityIterableType.ENTITIES_BY_COMPOSITE_INDEX;
+    }
+
+    @NotNull
+    private EntityIteratorBase getIterator(@NotNull final PersistentStoreTransaction txn, final boolean reverse) {
+        final CompositeIndex index = getIndex(txn, entityTypeId, indexPropertyIds);
+        if (index == null) {
+            return EntityIteratorBase.EMPTY;
+        }
+        // descending order is read from the upper bound backwards
+        return new CompositeIndexIterator(index.getStore().openCursor(txn.getEnvironmentTransaction()),
+            getKeyBounds(reverse), reverse != (order == DESCENDING));
+    }
+
+    /**
+     * @return pairs of inclusive lower bound of keys and inclusive upper bound of key prefixes in the order they
+     * should be iterated.
+     */
+    @NotNull
+    private ByteIterable[][] getKeyBounds(final boolean reverse) {
+        final PropertyTypes propertyTypes = getStore().getPropertyTypes();
+        final LightOutputStream output = new LightOutputStream();
+        for (final Comparable value : values) {
+            CompositeIndex.writeComponent(output, propertyTypes, value);
+        }
+        final byte[] prefix = Arrays.copyOf(output.getBufferBytes(), output.size());
+        if (min != null && max != null) {
+            CompositeIndex.writeComponent(output, propertyTypes, min);
+            final ArrayByteIterable low = output.asArrayByteIterable();
+            final LightOutputStream highOutput = new LightOutputStream();
+            highOutput.write(prefix);
+            CompositeIndex.writeComponent(highOutput, propertyTypes, max);
+            return new ByteIterable[][]{{low, highOutput.asArrayByteIterable()}};
+        }
+        if (order == UNSORTED) {
+            final ArrayByteIterable prefixEntry = new ArrayByteIterable(prefix);
+            return new ByteIterable[][]{{prefixEntry, prefixEntry}};
+        }
+        // entities having the property in sort order, then entities not having it
+        final ArrayByteIterable missing = appendByte(prefix, CompositeIndex.MISSING_COMPONENT);
+        final ByteIterable[] present = {
+            appendByte(prefix, (byte) (CompositeIndex.MISSING_COMPONENT + 1)), appendByte(prefix, (byte) 0xff)
+        };
+        return reverse ? new ByteIterable[][]{{missing, missing}, present} : new ByteIterable[][]{present, {missing, missing}};
+    }
+
+    @NotNull
+    private static ArrayByteIterable appendByte(@NotNull final byte[] prefix, final byte b) {
+        final byte[] result = Arrays.copyOf(prefix, prefix.length + 1);
+        result[prefix.length] = b;
+        return new ArrayByteIterable(result);
+    }
+
+    /**
+     * @return the least byte sequence which is greater than any sequence starting with specified prefix,
+     * or {@code null} if there is no such sequence.
+     */
+    @Nullable
+    private static ByteIterable getSuccessor(@NotNull final ByteIterable prefix) {
+        final byte[] bytes = prefix.getBytesUnsafe();
+        for (int i = prefix.getLength() - 1; i >= 0; --i) {
+            if (bytes[i] != (byte) 0xff) {
+                final byte[] result = Arrays.copyOf(bytes, i + 1);
+                ++result[i];
+                return new ArrayByteIterable(result);
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static CompositeIndex getIndex(@NotNull final PersistentStoreTransaction txn,
+                                           final int entityTypeId,
+                                           @NotNull final int[] propertyIds) {
+        for (final CompositeIndex index : txn.getStore().getPropertiesTable(txn, entityTypeId).getCompositeIndexes(txn)) {
+            if (index.hasPropertyIds(propertyIds)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCandidate(@NotNull final EntityIterableBase it) {
+        return it instanceof PropertyValueIterable || it instanceof PropertyRangeIterable ||
+            it instanceof IntersectionIterable || it instanceof CompositeIndexIterable;
+    }
+
+    /**
+     * Equality conditions and at most one range condition on properties of entities of the same type.
+     */
+    private static final class Conditions {
+
+        private int entityTypeId = -1;
+        private final IntHashMap<Comparable> values = new IntHashMap<>();
+        private int rangePropertyId = -1;
+        private Comparable min;
+        private Comparable max;
+
+        private boolean collect(@NotNull final EntityIterableBase it) {
+            if (it instanceof PropertyValueIterable) {
+                final PropertyValueIterable valueIterable = (PropertyValueIterable) it;
+                return checkEntityType(it) && addValue(valueIterable.getPropertyId(), valueIterable.getValue());
+            }
+            if (it instanceof PropertyRangeIterable) {
+                final PropertyRangeIterable rangeIterable = (PropertyRangeIterable) it;
+                return checkEntityType(it) &&
+                    addRange(rangeIterable.getPropertyId(), rangeIterable.getMin(), rangeIterable.getMax());
+            }
+            if (it instanceof IntersectionIterable) {
+                final IntersectionIterable intersection = (IntersectionIterable) it;
+                return intersection.isCommutative() && collect(intersection.getLeft()) && collect(intersection.getRight());
+            }
+            if (it instanceof CompositeIndexIterable) {
+                final CompositeIndexIterable composite = (CompositeIndexIterable) it;
+                if (composite.order != UNSORTED || !checkEntityType(it)) {
+                    return false;
+                }
+                final int valueCount = composite.values.length;
+                for (int i = 0; i < valueCount; ++i) {
+                    if (!addValue(composite.indexPropertyIds[i], composite.values[i])) {
+                        return false;
+                    }
+                }
+                return composite.min == null || addRange(composite.indexPropertyIds[valueCount], composite.min, composite.max);
+            }
+            return false;
+        }
+
+        private boolean checkEntityType(@NotNull final EntityIterableBase it) {
+            final int typeId = it.getEntityTypeId();
+            if (entityTypeId < 0) {
+                entityTypeId = typeId;
+            }
+            return entityTypeId == typeId;
+        }
+
+        private boolean addValue(final int propertyId, @NotNull final Comparable value) {
+            return propertyId != rangePropertyId && values.put(propertyId, value) == null;
+        }
+
+        private boolean addRange(final int propertyId, @NotNull final Comparable min, @NotNull final Comparable max) {
+            if (rangePropertyId >= 0 || values.containsKey(propertyId)) {
+                return false;
+            }
+            rangePropertyId = propertyId;
+            this.min = min;
+            this.max = max;
+            return true;
+        }
+
+        @Nullable
+        private EntityIterableBase toIterable(@NotNull final PersistentStoreTransaction txn,
+                                              final int sortPropertyId,
+                                              final int order) {
+            if (entityTypeId < 0) {
+                return null;
+            }
+            if (sortPropertyId >= 0 && rangePropertyId >= 0 && rangePropertyId != sortPropertyId) {
+                return null;
+            }
+            final int valueCount = values.size();
+            final int nextPropertyId = rangePropertyId >= 0 ? rangePropertyId : sortPropertyId;
+            for (final CompositeIndex index : txn.getStore().getPropertiesTable(txn, entityTypeId).getCompositeIndexes(txn)) {
+                final int[] propertyIds = index.getPropertyIds();
+                if (propertyIds.length < (nextPropertyId >= 0 ? valueCount + 1 : valueCount)) {
+                    continue;
+                }
+                final Comparable[] indexValues = new Comparable[valueCount];
+                boolean matches = true;
+                for (int i = 0; i < valueCount; ++i) {
+                    final Comparable value = values.get(propertyIds[i]);
+                    if (value == null) {
+                        matches = false;
+                        break;
+                    }
+                    indexValues[i] = value;
+                }
+                if (matches && (nextPropertyId < 0 || propertyIds[valueCount] == nextPropertyId)) {
+                    return new CompositeIndexIterable(txn, entityTypeId, propertyIds, indexValues,
+                        rangePropertyId >= 0 ? min : null, rangePropertyId >= 0 ? max : null, order);
+                }
+            }
+            return null;
+        }
+    }
+
+    private final class CompositeIndexIterator extends EntityIteratorBase {
+
+        @NotNull
+        private final ByteIterable[][] bounds;
+        private final boolean reverse;
+        @Nullable
+        private final LongSet returnedIds;
+        private int boundsIndex;
+        private boolean hasNext;
+
+        private CompositeIndexIterator(@NotNull final Cursor cursor,
+                                       @NotNull final ByteIterable[][] bounds,
+                                       final boolean reverse) {
+            super(CompositeIndexIterable.this);
+            setCursor(cursor);
+            this.bounds = bounds;
+            this.reverse = reverse;
+            // an entity can be met several times only if it has a ComparableSet value
+            // of a property which is not matched by equality
+            returnedIds = values.length < indexPropertyIds.length ? new LongHashSet() : null;
+            boundsIndex = -1;
+            hasNext = moveToNextBounds();
+            skipReturned();
+        }
+
+        @Override
+        protected boolean hasNextImpl() {
+            return hasNext;
+        }
+
+        @Override
+        @Nullable
+        protected EntityId nextIdImpl() {
+            if (hasNext) {
+                explain(getType());
+                final long localId = LongBinding.compressedEntryToLong(getCursor().getValue());
+                if (returnedIds != null) {
+                    returnedIds.add(localId);
+                }
+                hasNext = moveNext();
+                skipReturned();
+                return new PersistentEntityId(entityTypeId, localId);
+            }
+            return null;
+        }
+
+        private void skipReturned() {
+            if (returnedIds != null) {
+                while (hasNext && returnedIds.contains(LongBinding.compressedEntryToLong(getCursor().getValue()))) {
+                    hasNext = moveNext();
+                }
+            }
+        }
+
+        private boolean moveNext() {
+            final Cursor cursor = getCursor();
+            if ((reverse ? cursor.getPrev() : cursor.getNext()) && isWithinBounds()) {
+                return true;
+            }
+            return moveToNextBounds();
+        }
+
+        private boolean moveToNextBounds() {
+            final Cursor cursor = getCursor();
+            while (++boundsIndex < bounds.length) {
+                final boolean success;
+                if (reverse) {
+                    final ByteIterable successor = getSuccessor(bounds[boundsIndex][1]);
+                    success = successor == null || cursor.getSearchKeyRange(successor) == null ? cursor.getLast() : cursor.getPrev();
+                } else {
+                    success = cursor.getSearchKeyRange(bounds[boundsIndex][0]) != null;
+                }
+                if (success && isWithinBounds()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isWithinBounds() {
+            final ByteIterable key = getCursor().getKey();
+            final ByteIterable low = bounds[boundsIndex][0];
+            final ByteIterable high = bounds[boundsIndex][1];
+            final int highLength = high.getLength();
+            return key.compareTo(low) >= 0 && key.compareTo(Math.min(key.getLength(), highLength), high, highLength) <= 0;
+        }
+    }
+}
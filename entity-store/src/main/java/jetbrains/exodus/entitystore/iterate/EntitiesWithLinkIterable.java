@@ -18,6 +18,7 @@ package jetbrains.exodus.entitystore.iterate;
 import jetbrains.exodus.entitystore.EntityId;
 import jetbrains.exodus.entitystore.EntityIterableHandle;
 import jetbrains.exodus.entitystore.EntityIterableType;
+import jetbrains.exodus.entitystore.PersistentEntityId;
 import jetbrains.exodus.entitystore.PersistentStoreTransaction;
 import org.jetbrains.annotations.NotNull;
 
@@ -65,6 +66,23 @@ public class EntitiesWithLinkIterable extends EntityIterableBase {
         return new EntitiesWithLinkIterableHandle();
     }
 
+    @Override
+    protected CachedInstanceIterable createCachedInstance(@NotNull final PersistentStoreTransaction txn) {
+        return hasEntityMatcher() ?
+            new UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this) :
+            super.createCachedInstance(txn);
+    }
+
+    @Override
+    public boolean hasEntityMatcher() {
+        return true;
+    }
+
+    @Override
+    public boolean isEntityMatched(@NotNull final PersistentStoreTransaction txn, @NotNull final EntityId id) {
+        return id.getTypeId() == entityTypeId && getStore().getRawLinkAsEntityId(txn, (PersistentEntityId) id, linkId) != null;
+    }
+
     protected class EntitiesWithLinkIterableHandle extends ConstantEntityIterableHandle {
 
         public EntitiesWithLinkIterableHandle() {
@@ -110,5 +128,16 @@ public class EntitiesWithLinkIterable extends EntityIterableBase {
                                             final int linkId) {
             return entityTypeId == source.getTypeId();
         }
+
+        @Override
+        public boolean onLinkAdded(@NotNull final LinkChangedHandleChecker handleChecker) {
+            return hasEntityMatcher() && updateCachedInstance(handleChecker, this, handleChecker.getSourceId());
+        }
+
+        @Override
+        public boolean onLinkDeleted(@NotNull final LinkChangedHandleChecker handleChecker) {
+            // the source can still have other links with the same name, so its membership is re-checked
+            return hasEntityMatcher() && updateCachedInstance(handleChecker, this, handleChecker.getSourceId());
+        }
     }
 }
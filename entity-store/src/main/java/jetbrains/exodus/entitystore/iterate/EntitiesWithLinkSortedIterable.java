@@ -45,6 +45,11 @@ public class EntitiesWithLinkSortedIterable extends EntitiesWithLinkIterable {
         return true;
     }
 
+    @Override
+    public boolean hasEntityMatcher() {
+        return false;
+    }
+
     @Override
     @NotNull
     public EntityIteratorBase getIteratorImpl(@NotNull final PersistentStoreTransaction txn) {
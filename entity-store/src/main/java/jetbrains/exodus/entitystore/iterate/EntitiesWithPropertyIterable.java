@@ -63,6 +63,16 @@ public class EntitiesWithPropertyIterable extends EntityIterableBase {
         return new UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this);
     }
 
+    @Override
+    public boolean hasEntityMatcher() {
+        return true;
+    }
+
+    @Override
+    public boolean isEntityMatched(@NotNull final PersistentStoreTransaction txn, @NotNull final EntityId id) {
+        return id.getTypeId() == entityTypeId && getStore().getRawProperty(txn, (PersistentEntityId) id, propertyId) != null;
+    }
+
     private final class EntitiesWithPropertyIterableHandle extends ConstantEntityIterableHandle {
 
         private EntitiesWithPropertyIterableHandle() {
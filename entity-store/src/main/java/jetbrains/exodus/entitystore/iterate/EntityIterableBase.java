@@ -92,9 +92,9 @@ public abstract class EntityIterableBase implements EntityIterable {
 
     private static final String INDENT = "|   ";
     // amount of fields appended to iterable string handle
-    static final int[] fields = {0, 1, 2, 3, 4, 2, 2, 2, 3, 4, 2, 0, 0, 0, 0, 0, 2, 2, 0, 0, 0, 0, 1, 1, 2, 2, 0, 0, 1, 1, 2, 3, 4};
+    static final int[] fields = {0, 1, 2, 3, 4, 2, 2, 2, 3, 4, 2, 0, 0, 0, 0, 0, 2, 2, 0, 0, 0, 0, 1, 1, 2, 2, 0, 0, 1, 1, 2, 3, 4, 6};
     // amount of children recursively appended to iterable string handle
-    static final int[] children = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 2, 2, 2, 1, 1, 2, 0, 1, 1, 1, 1, 1, 0, 0, 2, 1, 1, 2, 0, 0, 0};
+    static final int[] children = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 2, 2, 2, 1, 1, 2, 0, 1, 1, 1, 1, 1, 0, 0, 2, 1, 1, 2, 0, 0, 0, 0};
 
     @Nullable
     private final PersistentEntityStoreImpl store;
@@ -262,6 +262,10 @@ public abstract class EntityIterableBase implements EntityIterable {
         if (this == EMPTY || right == EMPTY) {
             return EMPTY;
         }
+        final EntityIterableBase composite = CompositeIndexIterable.intersect(this, (EntityIterableBase) right);
+        if (composite != null) {
+            return composite;
+        }
         return new IntersectionIterable(getTransaction(), this, (EntityIterableBase) right);
     }
 
@@ -525,10 +529,12 @@ public abstract class EntityIterableBase implements EntityIterable {
             cached = txn.getCachedInstance(this);
         }
         if (cached == null || cached.getHandle().isExpired()) {
+            final long started = System.nanoTime();
             cached = createCachedInstance(txn);
             if (canBeReordered() && !store.getConfig().isReorderingDisabled() && !cached.isSortedById()) {
                 cached = cached.orderById();
             }
+            cache.getHandleStats().instantiated(getHandle(), System.nanoTime() - started, cached.size());
             if (canBeCached) {
                 // if this iterable may be inconsistent and the transaction is read-only
                 // then revert it in order to hold the latest cache adapter instance
@@ -539,8 +545,11 @@ public abstract class EntityIterableBase implements EntityIterable {
             } else {
                 cache.setCachedCount(getHandle(), cached.size());
             }
-        } else if (forceCount) {
-            cache.setCachedCount(getHandle(), cached.size());
+        } else {
+            cache.getHandleStats().cacheHit(getHandle());
+            if (forceCount) {
+                cache.setCachedCount(getHandle(), cached.size());
+            }
         }
         return cached;
     }
@@ -603,6 +612,52 @@ public abstract class EntityIterableBase implements EntityIterable {
         return EntityIdArrayCachedInstanceIterableFactory.createInstance(txn, this);
     }
 
+    /**
+     * Can membership of a single entity in the iterable be checked by {@linkplain #isEntityMatched(PersistentStoreTransaction, EntityId)}.
+     * Membership of such an iterable depends only on the state of the entity itself, so its cached instances
+     * (and cached instances of intersections and unions of such iterables) can be updated on changes of
+     * the entity instead of being invalidated.
+     *
+     * @return true if {@linkplain #isEntityMatched(PersistentStoreTransaction, EntityId)} is supported
+     */
+    public boolean hasEntityMatcher() {
+        return false;
+    }
+
+    /**
+     * Checks if the entity with specified id belongs to the iterable in specified transaction using point lookups,
+     * i.e. without iterating. Is supported only if {@linkplain #hasEntityMatcher()} returns true.
+     */
+    public boolean isEntityMatched(@NotNull final PersistentStoreTransaction txn, @NotNull final EntityId id) {
+        throw new UnsupportedOperationException("Entity matcher is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Updates {@linkplain UpdatableEntityIdSortedSetCachedInstanceIterable} cached for specified handle on change of
+     * the entity with specified id. Is applicable only if {@linkplain #hasEntityMatcher()} returns true.
+     *
+     * @return false if there is no appropriate cached instance, so the handle should be invalidated
+     */
+    protected boolean updateCachedInstance(@NotNull final HandleChecker handleChecker,
+                                           @NotNull final EntityIterableHandle handle,
+                                           @NotNull final EntityId id) {
+        if (id.getTypeId() != handle.getEntityTypeId()) {
+            // membership depends only on the state of the entity, so the iterable isn't affected
+            return true;
+        }
+        final UpdatableEntityIdSortedSetCachedInstanceIterable iterable =
+            PersistentStoreTransaction.getUpdatable(handleChecker, handle, UpdatableEntityIdSortedSetCachedInstanceIterable.class);
+        if (iterable == null) {
+            return false;
+        }
+        if (isEntityMatched(handleChecker.getTxn(), id)) {
+            iterable.addEntity(id);
+        } else {
+            iterable.removeEntity(id);
+        }
+        return true;
+    }
+
     public static String getHumanReadablePresentation(@NotNull final EntityIterableHandle handle) {
         return getHumanReadablePresentation(handle.toString());
     }
@@ -61,6 +61,16 @@ public final class PropertyRangeIterable extends PropertyRangeOrValueIterableBas
         max = Objects.requireNonNull(PropertyTypes.toLowerCase(maxValue));
     }
 
+    @NotNull
+    public Comparable getMin() {
+        return min;
+    }
+
+    @NotNull
+    public Comparable getMax() {
+        return max;
+    }
+
     @Override
     public boolean isSortedById() {
         return false;
@@ -114,6 +124,48 @@ public final class PropertyRangeIterable extends PropertyRangeOrValueIterableBas
         return new PropertyRangeReverseIterator(valueIdx);
     }
 
+    @Override
+    protected CachedInstanceIterable createCachedInstance(@NotNull final PersistentStoreTransaction txn) {
+        // updatable instance is sorted by id, so it can be used only if the result is allowed to be reordered
+        return isCachedInstanceUpdatable() ?
+                new UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this) :
+                super.createCachedInstance(txn);
+    }
+
+    @Override
+    public boolean hasEntityMatcher() {
+        return true;
+    }
+
+    @Override
+    public boolean isEntityMatched(@NotNull final PersistentStoreTransaction txn, @NotNull final EntityId id) {
+        final Comparable value = getPropertyValue(txn, id);
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof ComparableSet) {
+            for (final Object item : (ComparableSet) value) {
+                if (isInRange((Comparable) item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return isInRange(value);
+    }
+
+    private boolean isCachedInstanceUpdatable() {
+        return !getStore().getConfig().isReorderingDisabled();
+    }
+
+    private boolean isInRange(@NotNull final Comparable value) {
+        if (value.getClass() != min.getClass()) {
+            return false;
+        }
+        final Comparable lowercaseValue = PropertyTypes.toLowerCase(value);
+        return min.compareTo(lowercaseValue) <= 0 && max.compareTo(lowercaseValue) >= 0;
+    }
+
     @Override
     @NotNull
     protected EntityIterableHandle getHandleImpl() {
@@ -180,6 +232,12 @@ public final class PropertyRangeIterable extends PropertyRangeOrValueIterableBas
                 final Comparable lowercaseValue = PropertyTypes.toLowerCase(value);
                 return min.compareTo(lowercaseValue) <= 0 && max.compareTo(lowercaseValue) >= 0;
             }
+
+            @Override
+            public boolean onPropertyChanged(@NotNull final PropertyChangedHandleChecker handleChecker) {
+                return isCachedInstanceUpdatable() &&
+                        updateCachedInstance(handleChecker, this, new PersistentEntityId(entityTypeId, handleChecker.getLocalId()));
+            }
         };
     }
 
@@ -16,6 +16,7 @@
 package jetbrains.exodus.entitystore.iterate;
 
 import jetbrains.exodus.entitystore.EntityId;
+import jetbrains.exodus.entitystore.EntityIterable;
 import jetbrains.exodus.entitystore.EntityIterableHandle;
 import jetbrains.exodus.entitystore.EntityIterableType;
 import jetbrains.exodus.entitystore.PersistentStoreTransaction;
@@ -51,6 +52,20 @@ public class SkipEntityIterable extends EntityIterableDecoratorBase {
         return false;
     }
 
+    @NotNull
+    @Override
+    public EntityIterable take(final int number) {
+        final int limit = itemsToSkip + number;
+        final EntityIterableBase sorted = source instanceof SortResultIterable ? ((SortResultIterable) source).source : source;
+        // skip(n).take(m) over sorting needs only first n + m sorted entities
+        if (number > 0 && limit > 0 && sorted instanceof SortIterable) {
+            final PersistentStoreTransaction txn = getTransaction();
+            return new TakeEntityIterable(txn,
+                new SkipEntityIterable(txn, ((SortIterable) sorted).withLimit(limit), itemsToSkip), number);
+        }
+        return super.take(number);
+    }
+
     @Override
     @NotNull
     public EntityIteratorBase getIteratorImpl(@NotNull final PersistentStoreTransaction txn) {
@@ -36,6 +36,7 @@ public final class SortIterable extends EntityIterableDecoratorBase {
     private final int propertyId;
     private final boolean ascending;
     private final boolean stableSort;
+    private final int limit;
 
     static {
         registerType(getType(), (txn, store, parameters) -> new SortIterable(txn, (EntityIterableBase) parameters[3],
@@ -57,12 +58,28 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                         final int sourceTypeId,
                         final int propertyId,
                         final boolean ascending) {
+        this(txn, propIndex, source, sourceTypeId, propertyId, ascending, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Top-K sort: only first {@code limit} entities of the sorted sequence are returned. Such an iterable is not
+     * cached, and it is never exposed directly, only wrapped by {@linkplain TakeEntityIterable}. Its handle differs
+     * from the handle of the sort of the whole source, so cached counts and statistics of the latter are not affected.
+     */
+    private SortIterable(@NotNull final PersistentStoreTransaction txn,
+                         @NotNull final EntityIterableBase propIndex,
+                         @NotNull final EntityIterableBase source,
+                         final int sourceTypeId,
+                         final int propertyId,
+                         final boolean ascending,
+                         final int limit) {
         super(txn, source);
         this.propIndex = propIndex;
         this.sourceTypeId = sourceTypeId;
         this.propertyId = propertyId;
         this.ascending = ascending;
         stableSort = source.isSortResult();
+        this.limit = limit;
     }
 
     @Override
@@ -70,6 +87,10 @@ public final class SortIterable extends EntityIterableDecoratorBase {
         return sourceTypeId;
     }
 
+    public EntityIterableBase getPropertyIndex() {
+        return propIndex;
+    }
+
     @Override
     public boolean setOrigin(Object origin) {
         if (super.setOrigin(origin)) {
@@ -83,6 +104,37 @@ public final class SortIterable extends EntityIterableDecoratorBase {
         return EntityIterableType.SORTING;
     }
 
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Pushes the limit down to sorting, so that only first {@code number} entities are sorted:
+     * in-memory sort keeps a bounded heap, sort by property index stops scanning the index as soon
+     * as the limit is reached.
+     */
+    @NotNull
+    @Override
+    public EntityIterable take(final int number) {
+        if (number <= 0) {
+            return EMPTY;
+        }
+        return new TakeEntityIterable(getTransaction(), withLimit(number), number);
+    }
+
+    @NotNull
+    SortIterable withLimit(final int limit) {
+        if (limit >= this.limit) {
+            return this;
+        }
+        return new SortIterable(getTransaction(), propIndex, source, sourceTypeId, propertyId, ascending, limit);
+    }
+
+    @Override
+    public boolean canBeCached() {
+        return limit == Integer.MAX_VALUE && super.canBeCached();
+    }
+
     @Override
     public boolean isEmpty() {
         return source.isEmpty();
@@ -90,29 +142,32 @@ public final class SortIterable extends EntityIterableDecoratorBase {
 
     @Override
     public long size() {
-        return source.size();
+        return Math.min(source.size(), limit);
     }
 
     @Override
     public long count() {
-        return source.count();
+        final long count = source.count();
+        return count < 0 ? count : Math.min(count, limit);
     }
 
     @Override
     public long getRoughCount() {
-        return source.getRoughCount();
+        final long roughCount = source.getRoughCount();
+        return roughCount < 0 ? roughCount : Math.min(roughCount, limit);
     }
 
     @Override
     public long getRoughSize() {
-        return source.getRoughSize();
+        final long roughSize = source.getRoughSize();
+        return roughSize < 0 ? roughSize : Math.min(roughSize, limit);
     }
 
     @Override
     protected long countImpl(@NotNull final PersistentStoreTransaction txn) {
         int count = 0;
         final EntityIterator sorted = new EntityTypeFilteredIterator(source, sourceTypeId);
-        while (sorted.hasNext()) {
+        while (count < limit && sorted.hasNext()) {
             sorted.nextId();
             ++count;
         }
@@ -122,6 +177,18 @@ public final class SortIterable extends EntityIterableDecoratorBase {
     @Override
     @NotNull
     public EntityIterator getIteratorImpl(@NotNull final PersistentStoreTransaction txn) {
+        if (limit == Integer.MAX_VALUE) {
+            return getSortedIterator(txn);
+        }
+        // if the whole sorted sequence is already cached then there is nothing to sort
+        final CachedInstanceIterable cached = txn.getCachedInstanceFast(
+            new SortIterable(txn, propIndex, source, sourceTypeId, propertyId, ascending));
+        final EntityIterator sorted = cached == null ? getSortedIterator(txn) : cached.getIteratorImpl(txn);
+        return new TopKIterator(this, sorted, limit);
+    }
+
+    @NotNull
+    private EntityIterator getSortedIterator(@NotNull final PersistentStoreTransaction txn) {
         if (propIndex == EntityIterableBase.EMPTY) {
             return new EntityTypeFilteredIterator(source, sourceTypeId);
         }
@@ -136,9 +203,11 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                 final long indexSize = cachedPropertyIndex.size();
                 final long log2IndexSize = MathUtil.longLogarithm(indexSize);
                 final long sizeMulLog = sourceSize * log2IndexSize;
+                // with the limit, sort by property index stops after scanning approximately limit / sourceSize of the index
+                final long scannedIndexSize = limit < sourceSize ? indexSize / sourceSize * limit : indexSize;
                 final boolean isCachedInstance = cachedPropertyIndex.isCachedInstance();
-                if ((isCachedInstance && sizeMulLog * sourceSize < indexSize) ||
-                    (!isCachedInstance && sizeMulLog * log2IndexSize < indexSize)) {
+                if ((isCachedInstance && sizeMulLog * sourceSize < scannedIndexSize) ||
+                    (!isCachedInstance && sizeMulLog * log2IndexSize < scannedIndexSize)) {
                     return new OptionallyStableInMemorySortIterator((int) sourceSize, stableSort);
                 }
             }
@@ -181,6 +250,10 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                 builder.append(ascending ? 0 : 1);
                 builder.append('-');
                 builder.append(stableSort ? 0 : 1);
+                if (limit != Integer.MAX_VALUE) {
+                    builder.append('-');
+                    builder.append(limit);
+                }
             }
 
             @Override
@@ -194,6 +267,10 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                 hash.apply(ascending ? 0 : 1);
                 hash.applyDelimiter();
                 hash.apply(stableSort ? 0 : 1);
+                if (limit != Integer.MAX_VALUE) {
+                    hash.applyDelimiter();
+                    hash.apply(limit);
+                }
             }
 
             @Override
@@ -385,7 +462,7 @@ public final class SortIterable extends EntityIterableDecoratorBase {
         private OptionallyStableInMemorySortIterator(final int sourceSize, final boolean stable) {
             super(propIndex);
 
-            pairs = new ArrayList<>(sourceSize / 2);
+            pairs = new ArrayList<>(Math.min(sourceSize / 2, limit));
             hasNull = false;
             cursor = 0;
 
@@ -401,29 +478,7 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                 throw new IllegalStateException("Property name is not registered");
             }
 
-            final TransactionBase envTxn = (TransactionBase) txn.getEnvironmentTransaction();
-            final boolean isStoreGetCacheDisabled = envTxn.isDisableStoreGetCache();
-            try {
-                envTxn.setDisableStoreGetCache(true);
-                final EntityIterator it = source.iterator();
-                while (it.hasNext()) {
-                    final PersistentEntityId nextId = (PersistentEntityId) it.nextId();
-                    if (nextId == null) {
-                        hasNull = true;
-                    } else if (nextId.getTypeId() == sourceTypeId) {
-                        final PropertyValue propValue = store.getPropertyValue(txn, new PersistentEntity(store, nextId), propertyId);
-                        pairs.add(new IdValuePair(nextId.getLocalId(), propValue == null ? null : propValue.getData()));
-                    }
-                }
-            } finally {
-                envTxn.setDisableStoreGetCache(isStoreGetCacheDisabled);
-            }
-
-            // finally sort
-            final Object[] array = pairs.toArray();
-            Arrays.sort(array, (Comparator) (o1, o2) -> {
-                final IdValuePair pair1 = (IdValuePair) o1;
-                final IdValuePair pair2 = (IdValuePair) o2;
+            final Comparator<IdValuePair> comparator = (pair1, pair2) -> {
                 final Comparable propValue1 = pair1.propValue;
                 final Comparable propValue2 = pair2.propValue;
                 int result;
@@ -443,20 +498,47 @@ public final class SortIterable extends EntityIterableDecoratorBase {
                             propValue2.compareTo(propValue1);
                     }
                 }
-                if (!stable && result == 0) {
-                    if (pair1.localId < pair2.localId) {
-                        result = -1;
-                    } else if (pair1.localId > pair2.localId) {
-                        result = 1;
-                    }
+                if (result == 0) {
+                    // stable sort preserves order of the source, non-stable one orders by id
+                    result = stable ? Integer.compare(pair1.position, pair2.position) : Long.compare(pair1.localId, pair2.localId);
                 }
                 return result;
-            });
-            final ListIterator<IdValuePair> i = pairs.listIterator();
-            for (final Object o : array) {
-                i.next();
-                i.set((IdValuePair) o);
+            };
+            // top-K sort keeps only limit least pairs in a max-heap
+            final PriorityQueue<IdValuePair> heap = limit < sourceSize ? new PriorityQueue<>(limit + 1, comparator.reversed()) : null;
+
+            final TransactionBase envTxn = (TransactionBase) txn.getEnvironmentTransaction();
+            final boolean isStoreGetCacheDisabled = envTxn.isDisableStoreGetCache();
+            try {
+                envTxn.setDisableStoreGetCache(true);
+                final EntityIterator it = source.iterator();
+                int position = 0;
+                while (it.hasNext()) {
+                    final PersistentEntityId nextId = (PersistentEntityId) it.nextId();
+                    if (nextId == null) {
+                        hasNull = true;
+                    } else if (nextId.getTypeId() == sourceTypeId) {
+                        final PropertyValue propValue = store.getPropertyValue(txn, new PersistentEntity(store, nextId), propertyId);
+                        final IdValuePair pair = new IdValuePair(nextId.getLocalId(), position++, propValue == null ? null : propValue.getData());
+                        if (heap == null) {
+                            pairs.add(pair);
+                        } else if (heap.size() < limit) {
+                            heap.offer(pair);
+                        } else if (comparator.compare(pair, heap.peek()) < 0) {
+                            heap.poll();
+                            heap.offer(pair);
+                        }
+                    }
+                }
+            } finally {
+                envTxn.setDisableStoreGetCache(isStoreGetCacheDisabled);
+            }
+            if (heap != null) {
+                pairs.addAll(heap);
             }
+
+            // finally sort
+            pairs.sort(comparator);
         }
 
         @Override
@@ -488,15 +570,49 @@ public final class SortIterable extends EntityIterableDecoratorBase {
     private static final class IdValuePair {
 
         final long localId;
+        final int position;
         @Nullable
         final Comparable propValue;
 
-        IdValuePair(final long localId, @Nullable final Comparable propValue) {
+        IdValuePair(final long localId, final int position, @Nullable final Comparable propValue) {
             this.localId = localId;
+            this.position = position;
             this.propValue = propValue;
         }
     }
 
+    private static final class TopKIterator extends NonDisposableEntityIterator implements PropertyValueIterator {
+
+        @NotNull
+        private final EntityIterator iterator;
+        private int remaining;
+
+        private TopKIterator(@NotNull final EntityIterableBase iterable,
+                             @NotNull final EntityIterator iterator,
+                             final int limit) {
+            super(iterable);
+            this.iterator = iterator;
+            remaining = limit;
+        }
+
+        @Override
+        protected boolean hasNextImpl() {
+            return remaining > 0 && iterator.hasNext();
+        }
+
+        @Override
+        @Nullable
+        public EntityId nextIdImpl() {
+            --remaining;
+            return iterator.nextId();
+        }
+
+        @Override
+        public Comparable currentValue() {
+            return iterator instanceof PropertyValueIterator ? ((PropertyValueIterator) iterator).currentValue() : null;
+        }
+    }
+
     private static final class PropertyValueIteratorFixingDecorator extends NonDisposableEntityIterator implements PropertyValueIterator {
 
         private final PropertyValueIterator index;
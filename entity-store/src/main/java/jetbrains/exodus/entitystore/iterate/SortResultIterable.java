@@ -60,6 +60,12 @@ public class SortResultIterable extends EntityIterableDecoratorBase {
         return indexOfImpl(entity.getId());
     }
 
+    @NotNull
+    @Override
+    public EntityIterable take(final int number) {
+        return source instanceof SortIterable ? source.take(number) : super.take(number);
+    }
+
     @Override
     public boolean isSortedById() {
         return source.isSortedById();
@@ -18,9 +18,9 @@ package jetbrains.exodus.entitystore.iterate.binop;
 import jetbrains.exodus.entitystore.EntityId;
 import jetbrains.exodus.entitystore.EntityIterableHandle;
 import jetbrains.exodus.entitystore.EntityIterableType;
+import jetbrains.exodus.entitystore.PersistentEntityId;
 import jetbrains.exodus.entitystore.PersistentStoreTransaction;
-import jetbrains.exodus.entitystore.iterate.EntityIterableBase;
-import jetbrains.exodus.entitystore.iterate.EntityIterableHandleBase;
+import jetbrains.exodus.entitystore.iterate.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -103,12 +103,21 @@ public abstract class BinaryOperatorEntityIterable extends EntityIterableBase {
         return (depth & CAN_BE_CACHED_FLAG) != 0;
     }
 
-    protected final boolean isCommutative() {
+    public final boolean isCommutative() {
         return (depth & COMMUTATIVE_FLAG) != 0;
     }
 
     protected abstract EntityIterableType getIterableType();
 
+    /**
+     * Can cached instance of the binary operation be updated on changes of a single entity instead of being
+     * invalidated. If true, {@linkplain #createCachedInstance(PersistentStoreTransaction)} should create
+     * {@linkplain UpdatableEntityIdSortedSetCachedInstanceIterable}.
+     */
+    protected boolean canBeUpdatedIncrementally() {
+        return false;
+    }
+
     @Override
     @NotNull
     protected EntityIterableHandleBase getHandleImpl() {
@@ -242,6 +251,32 @@ public abstract class BinaryOperatorEntityIterable extends EntityIterableBase {
                         || iterable2.getHandle().isMatchedPropertyChanged(id, propertyId, oldValue, newValue));
             }
 
+            @Override
+            public boolean onEntityAdded(@NotNull final EntityAddedOrDeletedHandleChecker handleChecker) {
+                return canBeUpdatedIncrementally() && updateCachedInstance(handleChecker, this, handleChecker.getId());
+            }
+
+            @Override
+            public boolean onEntityDeleted(@NotNull final EntityAddedOrDeletedHandleChecker handleChecker) {
+                return canBeUpdatedIncrementally() && updateCachedInstance(handleChecker, this, handleChecker.getId());
+            }
+
+            @Override
+            public boolean onLinkAdded(@NotNull final LinkChangedHandleChecker handleChecker) {
+                return canBeUpdatedIncrementally() && updateCachedInstance(handleChecker, this, handleChecker.getSourceId());
+            }
+
+            @Override
+            public boolean onLinkDeleted(@NotNull final LinkChangedHandleChecker handleChecker) {
+                return canBeUpdatedIncrementally() && updateCachedInstance(handleChecker, this, handleChecker.getSourceId());
+            }
+
+            @Override
+            public boolean onPropertyChanged(@NotNull final PropertyChangedHandleChecker handleChecker) {
+                return canBeUpdatedIncrementally() && updateCachedInstance(handleChecker, this,
+                    new PersistentEntityId(handleChecker.getTypeId(), handleChecker.getLocalId()));
+            }
+
             @Override
             public boolean isConsistent() {
                 return iterable1.getHandle().isConsistent() && iterable2.getHandle().isConsistent();
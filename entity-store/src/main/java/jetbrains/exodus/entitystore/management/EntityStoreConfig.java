@@ -261,6 +261,16 @@ public class EntityStoreConfig extends MBeanBase implements EntityStoreConfigMBe
         config.setEntityIterableCacheHeavyIterablesLifeSpan(lifeSpan);
     }
 
+    @Override
+    public boolean getEntityIterableCacheParallelInstantiation() {
+        return config.getEntityIterableCacheParallelInstantiation();
+    }
+
+    @Override
+    public void setEntityIterableCacheParallelInstantiation(boolean parallelInstantiation) {
+        config.setEntityIterableCacheParallelInstantiation(parallelInstantiation);
+    }
+
     @Override
     public int getTransactionPropsCacheSize() {
         return config.getTransactionPropsCacheSize();
@@ -296,6 +306,36 @@ public class EntityStoreConfig extends MBeanBase implements EntityStoreConfigMBe
         return config.getGatherStatistics();
     }
 
+    @Override
+    public int getEntityIterableStatisticsSize() {
+        return config.getEntityIterableStatisticsSize();
+    }
+
+    @Override
+    public void setEntityIterableStatisticsSize(int size) {
+        config.setEntityIterableStatisticsSize(size);
+    }
+
+    @Override
+    public int getEntityIterableStatisticsSamplingPeriod() {
+        return config.getEntityIterableStatisticsSamplingPeriod();
+    }
+
+    @Override
+    public void setEntityIterableStatisticsSamplingPeriod(int samplingPeriod) {
+        config.setEntityIterableStatisticsSamplingPeriod(samplingPeriod);
+    }
+
+    @Override
+    public int getSlowQueryThreshold() {
+        return config.getSlowQueryThreshold();
+    }
+
+    @Override
+    public void setSlowQueryThreshold(int millis) {
+        config.setSlowQueryThreshold(millis);
+    }
+
     @Override
     public void startBlobsDeduplication() {
         ((EnvironmentImpl)store.getEnvironment()).getGC().getCleanerJobProcessor().queue(new Job() {
@@ -109,6 +109,10 @@ public interface EntityStoreConfigMBean {
 
     void setEntityIterableCacheHeavyIterablesLifeSpan(long lifeSpan);
 
+    boolean getEntityIterableCacheParallelInstantiation();
+
+    void setEntityIterableCacheParallelInstantiation(boolean parallelInstantiation);
+
     int getTransactionPropsCacheSize();
 
     void setTransactionPropsCacheSize(int transactionPropsCacheSize);
@@ -123,6 +127,18 @@ public interface EntityStoreConfigMBean {
 
     boolean getGatherStatistics();
 
+    int getEntityIterableStatisticsSize();
+
+    void setEntityIterableStatisticsSize(int size);
+
+    int getEntityIterableStatisticsSamplingPeriod();
+
+    void setEntityIterableStatisticsSamplingPeriod(int samplingPeriod);
+
+    int getSlowQueryThreshold();
+
+    void setSlowQueryThreshold(int millis);
+
     void startBlobsDeduplication();
 
     void close();
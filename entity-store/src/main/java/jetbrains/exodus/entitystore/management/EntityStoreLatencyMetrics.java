@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore.management;
+
+import jetbrains.exodus.entitystore.PersistentEntityStoreImpl;
+import jetbrains.exodus.entitystore.PersistentEntityStoreLatencyMetrics;
+import jetbrains.exodus.management.MBeanBase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+public class EntityStoreLatencyMetrics extends MBeanBase implements EntityStoreLatencyMetricsMBean {
+
+    @NotNull
+    private final PersistentEntityStoreImpl store;
+
+    public EntityStoreLatencyMetrics(@NotNull final PersistentEntityStoreImpl store) {
+        super(getObjectName(store));
+        this.store = store;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return getMetrics().isEnabled();
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        store.getConfig().setLatencyMetrics(enabled);
+    }
+
+    @Override
+    public String[] getOperations() {
+        return Arrays.stream(getMetrics().getOperations()).map(Enum::name).toArray(String[]::new);
+    }
+
+    @Override
+    public String[] getLatencies() {
+        return getMetrics().getSummary();
+    }
+
+    @Override
+    public long getCount(final String operation) {
+        final PersistentEntityStoreLatencyMetrics metrics = getMetrics();
+        return metrics.getHistogram(metrics.getOperation(operation)).getCount();
+    }
+
+    @Override
+    public double getPercentileMicros(final String operation, final double percentile) {
+        final PersistentEntityStoreLatencyMetrics metrics = getMetrics();
+        return metrics.getHistogram(metrics.getOperation(operation)).getPercentileNanos(percentile) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros(final String operation) {
+        final PersistentEntityStoreLatencyMetrics metrics = getMetrics();
+        return metrics.getHistogram(metrics.getOperation(operation)).getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        getMetrics().reset();
+    }
+
+    private PersistentEntityStoreLatencyMetrics getMetrics() {
+        return store.getLatencyMetrics();
+    }
+
+    public static String getObjectName(@NotNull final PersistentEntityStoreImpl store) {
+        return OBJECT_NAME_PREFIX + ", location=" + escapeLocation(store.getLocation()) + ", name=" + store.getName();
+    }
+}
@@ -114,6 +114,21 @@ public class EntityStoreStatistics extends MBeanBase implements EntityStoreStati
         return store.getBlobVault().getStringContentCacheHitRate();
     }
 
+    @Override
+    public String[] getEntityIterableStatistics() {
+        return store.getEntityIterableCache().getHandleStats().getTop().stream().map(Object::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public long getTotalSlowQueries() {
+        return store.getEntityIterableCache().getHandleStats().getTotalSlowInstantiations();
+    }
+
+    @Override
+    public void resetEntityIterableStatistics() {
+        store.getEntityIterableCache().getHandleStats().reset();
+    }
+
     public static String getObjectName(@NotNull final PersistentEntityStoreImpl store) {
         return OBJECT_NAME_PREFIX + ", location=" + escapeLocation(store.getLocation()) + ", name=" + store.getName();
     }
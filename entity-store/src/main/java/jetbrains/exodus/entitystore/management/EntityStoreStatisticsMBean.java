@@ -50,4 +50,10 @@ public interface EntityStoreStatisticsMBean {
     int getEntityIterableCacheCount();
 
     float getBlobStringsCacheHitRate();
+
+    String[] getEntityIterableStatistics();
+
+    long getTotalSlowQueries();
+
+    void resetEntityIterableStatistics();
 }
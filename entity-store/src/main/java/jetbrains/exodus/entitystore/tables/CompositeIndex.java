@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore.tables;
+
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.bindings.ComparableSet;
+import jetbrains.exodus.bindings.ComparableValueType;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.util.LightOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Secondary index of values of several properties of entities of the same type. A key of the index is
+ * a concatenation of components, each component is either a typed lowercase property value or the
+ * {@linkplain #MISSING_COMPONENT} byte if an entity doesn't have the property. Entities not having the first
+ * property are not indexed. For ComparableSet values, a key is created for each item of the set.
+ * Value of the index is entity local id.
+ */
+public final class CompositeIndex {
+
+    public static final byte MISSING_COMPONENT = 0;
+
+    @NotNull
+    private final int[] propertyIds;
+    @NotNull
+    private final Store store;
+
+    CompositeIndex(@NotNull final int[] propertyIds, @NotNull final Store store) {
+        this.propertyIds = propertyIds;
+        this.store = store;
+    }
+
+    @NotNull
+    public int[] getPropertyIds() {
+        return propertyIds;
+    }
+
+    @NotNull
+    public Store getStore() {
+        return store;
+    }
+
+    public int getComponentCount() {
+        return propertyIds.length;
+    }
+
+    /**
+     * @param propertyId property id.
+     * @return index of the component which contains values of specified property or {@code -1}.
+     */
+    public int getComponentIndex(final int propertyId) {
+        for (int i = 0; i < propertyIds.length; ++i) {
+            if (propertyIds[i] == propertyId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasPropertyIds(@NotNull final int[] propertyIds) {
+        return Arrays.equals(this.propertyIds, propertyIds);
+    }
+
+    /**
+     * Writes property value as a component of a composite key.
+     *
+     * @param output        output stream.
+     * @param propertyTypes property types.
+     * @param value         property value, lowercased if it is a string.
+     */
+    public static void writeComponent(@NotNull final LightOutputStream output,
+                                      @NotNull final PropertyTypes propertyTypes,
+                                      @NotNull final Comparable value) {
+        PropertyTypes.propertyValueToEntry(propertyTypes.dataToPropertyValue(value)).writeTo(output);
+    }
+
+    /**
+     * Creates keys of the index for specified raw property values.
+     *
+     * @param propertyTypes property types.
+     * @param values        raw values of the index properties, {@code null} for missing ones.
+     * @return keys of the index.
+     */
+    @NotNull
+    ByteIterable[] createKeys(@NotNull final PropertyTypes propertyTypes, @NotNull final ByteIterable[] values) {
+        if (values[0] == null) {
+            return new ByteIterable[0];
+        }
+        // cartesian product of components
+        List<LightOutputStream> keys = new ArrayList<>(1);
+        keys.add(new LightOutputStream());
+        for (final ByteIterable value : values) {
+            final ArrayByteIterable[] components = createComponents(propertyTypes, value);
+            final List<LightOutputStream> nextKeys = new ArrayList<>(keys.size() * components.length);
+            for (final LightOutputStream key : keys) {
+                for (final ArrayByteIterable component : components) {
+                    final LightOutputStream nextKey = new LightOutputStream();
+                    nextKey.write(key.getBufferBytes(), 0, key.size());
+                    component.writeTo(nextKey);
+                    nextKeys.add(nextKey);
+                }
+            }
+            keys = nextKeys;
+        }
+        final ByteIterable[] result = new ByteIterable[keys.size()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = keys.get(i).asArrayByteIterable();
+        }
+        return result;
+    }
+
+    @NotNull
+    private static ArrayByteIterable[] createComponents(@NotNull final PropertyTypes propertyTypes, @Nullable final ByteIterable value) {
+        if (value == null) {
+            return new ArrayByteIterable[]{new ArrayByteIterable(new byte[]{MISSING_COMPONENT})};
+        }
+        final PropertyValue propValue = propertyTypes.entryToPropertyValue(value);
+        final int valueTypeId = propValue.getType().getTypeId();
+        if (valueTypeId == ComparableValueType.STRING_VALUE_TYPE) {
+            return new ArrayByteIterable[]{PropertyTypes.propertyValueToEntry(
+                new PropertyValue(propValue.getType(), ((String) propValue.getData()).toLowerCase()))};
+        }
+        if (valueTypeId == ComparableValueType.COMPARABLE_SET_VALUE_TYPE) {
+            final ComparableSet data = (ComparableSet) propValue.getData();
+            final ArrayByteIterable[] result = new ArrayByteIterable[data.size()];
+            //noinspection unchecked
+            data.forEach((item, index) -> result[index] = PropertyTypes.propertyValueToEntry(
+                propertyTypes.dataToPropertyValue(PropertyTypes.toLowerCase((Comparable) item))));
+            return result;
+        }
+        return new ArrayByteIterable[]{new ArrayByteIterable(value)};
+    }
+}
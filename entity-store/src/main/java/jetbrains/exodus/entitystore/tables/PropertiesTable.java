@@ -20,6 +20,7 @@ import jetbrains.exodus.bindings.ComparableBinding;
 import jetbrains.exodus.bindings.ComparableSet;
 import jetbrains.exodus.bindings.ComparableValueType;
 import jetbrains.exodus.bindings.LongBinding;
+import jetbrains.exodus.core.dataStructures.Pair;
 import jetbrains.exodus.core.dataStructures.hash.IntHashMap;
 import jetbrains.exodus.entitystore.EntityStoreException;
 import jetbrains.exodus.entitystore.PersistentEntityStoreImpl;
@@ -31,6 +32,8 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -40,12 +43,17 @@ public final class PropertiesTable extends Table {
 
     @NonNls
     private static final String PROP_VALUE_IDX = "#value_idx";
+    @NonNls
+    private static final String COMPOSITE_IDX = "#composite_idx";
 
     @NotNull
     private final PersistentEntityStoreImpl store;
     private final Store primaryStore;
     private final IntHashMap<Store> valueIndexes;
     private final FieldIndex allPropsIndex;
+    // committed catalogue of composite indexes, transactions changing it keep their own catalogues until commit
+    @Nullable
+    private volatile List<CompositeIndex> compositeIndexes;
 
     public PropertiesTable(@NotNull final PersistentStoreTransaction txn,
                            @NotNull final String name,
@@ -98,6 +106,9 @@ public final class PropertiesTable extends Table {
                 success = false;
             }
         }
+        if (!updateCompositeIndexes(txn, localId, propertyId, oldValue, value)) {
+            success = false;
+        }
         checkStatus(success, "Failed to put");
     }
 
@@ -113,6 +124,7 @@ public final class PropertiesTable extends Table {
         deleteFromStore(envTxn, getOrCreateValueIndex(txn, propertyId),
             secondaryValue, createSecondaryKeys(store.getPropertyTypes(), value, type));
         allPropsIndex.remove(envTxn, propertyId, localId);
+        updateCompositeIndexes(txn, localId, propertyId, value, null);
     }
 
     public Store getPrimaryIndex() {
@@ -157,6 +169,131 @@ public final class PropertiesTable extends Table {
         }
     }
 
+    /**
+     * @return composite indexes of properties of entities of the type visible in the transaction.
+     */
+    @NotNull
+    public List<CompositeIndex> getCompositeIndexes(@NotNull final PersistentStoreTransaction txn) {
+        final List<CompositeIndex> changed = txn.getCompositeIndexes(this);
+        if (changed != null) {
+            return changed;
+        }
+        final List<CompositeIndex> committed = getCommittedCompositeIndexes(txn);
+        // indexes committed after the transaction had started don't exist in its snapshot
+        final Transaction envTxn = txn.getEnvironmentTransaction();
+        final Environment env = envTxn.getEnvironment();
+        List<CompositeIndex> result = null;
+        for (int i = 0; i < committed.size(); ++i) {
+            final CompositeIndex index = committed.get(i);
+            if (env.storeExists(index.getStore().getName(), envTxn)) {
+                if (result != null) {
+                    result.add(index);
+                }
+            } else if (result == null) {
+                result = new ArrayList<>(committed.subList(0, i));
+            }
+        }
+        return result == null ? committed : result;
+    }
+
+    /**
+     * Publishes catalogue of composite indexes changed by a transaction. Is called on commit of the transaction.
+     */
+    public void compositeIndexesCommitted(@NotNull final List<CompositeIndex> indexes) {
+        compositeIndexes = indexes;
+    }
+
+    @NotNull
+    private List<CompositeIndex> getCommittedCompositeIndexes(@NotNull final PersistentStoreTransaction txn) {
+        List<CompositeIndex> result = compositeIndexes;
+        if (result == null) {
+            synchronized (this) {
+                result = compositeIndexes;
+                if (result == null) {
+                    result = new ArrayList<>();
+                    final Transaction envTxn = txn.getEnvironmentTransaction();
+                    final Environment env = envTxn.getEnvironment();
+                    final String prefix = primaryStore.getName() + COMPOSITE_IDX;
+                    for (final String storeName : env.getAllStoreNames(envTxn)) {
+                        if (storeName.startsWith(prefix)) {
+                            final Store indexStore = env.openStore(storeName, StoreConfig.USE_EXISTING, envTxn, false);
+                            if (indexStore != null) {
+                                result.add(new CompositeIndex(parsePropertyIds(storeName.substring(prefix.length())), indexStore));
+                            }
+                        }
+                    }
+                    compositeIndexes = result = Collections.unmodifiableList(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates composite index of specified properties and fills it with values of existing entities.
+     * If the index already exists, it is returned as is.
+     *
+     * @param propertyIds ids of properties in the order of index components.
+     * @return composite index.
+     */
+    @NotNull
+    public CompositeIndex createCompositeIndex(@NotNull final PersistentStoreTransaction txn, @NotNull final int[] propertyIds) {
+        if (propertyIds.length == 0) {
+            throw new EntityStoreException("Can't create composite index on empty list of properties");
+        }
+        synchronized (this) {
+            final List<CompositeIndex> indexes = getCompositeIndexes(txn);
+            for (final CompositeIndex index : indexes) {
+                if (index.hasPropertyIds(propertyIds)) {
+                    return index;
+                }
+            }
+            final Transaction envTxn = txn.getEnvironmentTransaction();
+            final Store indexStore = envTxn.getEnvironment().openStore(
+                compositeIndexName(propertyIds), StoreConfig.WITH_DUPLICATES, envTxn);
+            store.trackTableCreation(indexStore, txn);
+            final CompositeIndex result = new CompositeIndex(propertyIds.clone(), indexStore);
+            // index existing entities having the first property
+            final int firstPropertyId = propertyIds[0];
+            for (final Pair<Integer, Long> pair : allPropsIndex.iterable(envTxn, firstPropertyId)) {
+                if (pair.getFirst() != firstPropertyId) {
+                    break;
+                }
+                final long localId = pair.getSecond();
+                final ByteIterable secondaryValue = LongBinding.longToCompressedEntry(localId);
+                for (final ByteIterable key : result.createKeys(store.getPropertyTypes(), getCompositeIndexValues(envTxn, result, localId))) {
+                    indexStore.put(envTxn, key, secondaryValue);
+                }
+            }
+            final List<CompositeIndex> newIndexes = new ArrayList<>(indexes);
+            newIndexes.add(result);
+            txn.setCompositeIndexes(this, Collections.unmodifiableList(newIndexes));
+            return result;
+        }
+    }
+
+    /**
+     * Removes composite index of specified properties.
+     *
+     * @param propertyIds ids of properties in the order of index components.
+     * @return {@code true} if the index existed.
+     */
+    public boolean deleteCompositeIndex(@NotNull final PersistentStoreTransaction txn, @NotNull final int[] propertyIds) {
+        synchronized (this) {
+            final List<CompositeIndex> newIndexes = new ArrayList<>(getCompositeIndexes(txn));
+            for (final CompositeIndex index : newIndexes) {
+                if (index.hasPropertyIds(propertyIds)) {
+                    final Transaction envTxn = txn.getEnvironmentTransaction();
+                    envTxn.getEnvironment().removeStore(index.getStore().getName(), envTxn);
+                    newIndexes.remove(index);
+                    txn.setCompositeIndexes(this, Collections.unmodifiableList(newIndexes));
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     public static ByteIterable[] createSecondaryKeys(@NotNull final PropertyTypes propertyTypes,
                                                      @NotNull final ByteIterable value,
                                                      @NotNull final ComparableValueType type) {
@@ -182,6 +319,70 @@ public final class PropertiesTable extends Table {
         return primaryStore.getName() + PROP_VALUE_IDX + propertyId;
     }
 
+    private String compositeIndexName(@NotNull final int[] propertyIds) {
+        final StringBuilder builder = new StringBuilder(primaryStore.getName()).append(COMPOSITE_IDX);
+        for (final int propertyId : propertyIds) {
+            builder.append('#').append(propertyId);
+        }
+        return builder.toString();
+    }
+
+    private static int[] parsePropertyIds(@NotNull final String suffix) {
+        // suffix looks like "#1#2#3"
+        final String[] ids = suffix.substring(1).split("#");
+        final int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; ++i) {
+            result[i] = Integer.parseInt(ids[i]);
+        }
+        return result;
+    }
+
+    private boolean updateCompositeIndexes(@NotNull final PersistentStoreTransaction txn,
+                                           final long localId,
+                                           final int propertyId,
+                                           @Nullable final ByteIterable oldValue,
+                                           @Nullable final ByteIterable value) {
+        boolean result = true;
+        final List<CompositeIndex> indexes = getCompositeIndexes(txn);
+        if (indexes.isEmpty()) {
+            return result;
+        }
+        final Transaction envTxn = txn.getEnvironmentTransaction();
+        final PropertyTypes propertyTypes = store.getPropertyTypes();
+        final ByteIterable secondaryValue = LongBinding.longToCompressedEntry(localId);
+        for (final CompositeIndex index : indexes) {
+            final int component = index.getComponentIndex(propertyId);
+            if (component < 0) {
+                continue;
+            }
+            final ByteIterable[] values = getCompositeIndexValues(envTxn, index, localId);
+            values[component] = oldValue;
+            final ByteIterable[] oldKeys = index.createKeys(propertyTypes, values);
+            if (oldKeys.length > 0 && !deleteFromStore(envTxn, index.getStore(), secondaryValue, oldKeys)) {
+                result = false;
+            }
+            values[component] = value;
+            for (final ByteIterable key : index.createKeys(propertyTypes, values)) {
+                if (!index.getStore().put(envTxn, key, secondaryValue)) {
+                    result = false;
+                }
+            }
+        }
+        return result;
+    }
+
+    @NotNull
+    private ByteIterable[] getCompositeIndexValues(@NotNull final Transaction envTxn,
+                                                   @NotNull final CompositeIndex index,
+                                                   final long localId) {
+        final int[] propertyIds = index.getPropertyIds();
+        final ByteIterable[] result = new ByteIterable[propertyIds.length];
+        for (int i = 0; i < propertyIds.length; ++i) {
+            result[i] = primaryStore.get(envTxn, PropertyKey.propertyKeyToEntry(new PropertyKey(localId, propertyIds[i])));
+        }
+        return result;
+    }
+
     private static boolean deleteFromStore(@NotNull final Transaction txn,
                                            @NotNull final Store store,
                                            @NotNull final ByteIterable value,
@@ -88,6 +88,10 @@ public final class PropertyTypes {
         return result;
     }
 
+    public boolean isPropertyType(@NotNull final Class<? extends Comparable> clazz) {
+        return typesByClass.containsKey(clazz);
+    }
+
     public void registerCustomPropertyType(int typeId,
                                            @NotNull final Class<? extends Comparable> clazz,
                                            @NotNull final ComparableBinding binding) {
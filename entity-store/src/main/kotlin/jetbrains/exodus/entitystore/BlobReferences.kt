@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore
+
+import jetbrains.exodus.ArrayByteIterable
+import jetbrains.exodus.ByteIterable
+import jetbrains.exodus.CompoundByteIterable
+import jetbrains.exodus.bindings.LongBinding
+import jetbrains.exodus.env.Store
+import jetbrains.exodus.env.Transaction
+import jetbrains.exodus.log.CompressedUnsignedLongByteIterable
+import java.security.MessageDigest
+
+/**
+ * Content hashes and reference counts of deduplicated blobs stored in the blob vault. Content of a blob is identified
+ * by its SHA-256 digest and length. Reference count of a blob is the number of entity blobs having its handle, the
+ * blob can be deleted from the vault only if its reference count drops to zero.
+ */
+class BlobReferences(private val hashes: Store, private val refCounts: Store) {
+
+    /**
+     * @return handle of the blob with specified content digest and length or `-1` if there is no such blob
+     */
+    fun getBlob(txn: Transaction, digest: ByteArray, length: Long): Long {
+        return hashes.get(txn, hashKey(digest, length))?.toHandle ?: -1L
+    }
+
+    /**
+     * Registers a new blob referenced once.
+     */
+    fun addBlob(txn: Transaction, blobHandle: Long, digest: ByteArray, length: Long) {
+        val key = hashKey(digest, length)
+        hashes.put(txn, key, blobHandle.toEntry)
+        putRefCount(txn, blobHandle, 1L, key)
+    }
+
+    fun addReference(txn: Transaction, blobHandle: Long) {
+        val (refCount, key) = getRefCount(txn, blobHandle)
+            ?: throw EntityStoreException("No reference count is available for blob $blobHandle")
+        putRefCount(txn, blobHandle, refCount + 1, key)
+    }
+
+    /**
+     * Removes a reference to the blob.
+     *
+     * @return `true` if the blob is still referenced, so its content shouldn't be deleted
+     */
+    fun removeReference(txn: Transaction, blobHandle: Long): Boolean {
+        val (refCount, key) = getRefCount(txn, blobHandle) ?: return false
+        if (refCount > 1) {
+            putRefCount(txn, blobHandle, refCount - 1, key)
+            return true
+        }
+        refCounts.delete(txn, blobHandle.toEntry)
+        if (hashes.get(txn, key)?.toHandle == blobHandle) {
+            hashes.delete(txn, key)
+        }
+        return false
+    }
+
+    /**
+     * @return number of references to the blob or `0` if the blob is not deduplicated
+     */
+    fun getReferenceCount(txn: Transaction, blobHandle: Long) = getRefCount(txn, blobHandle)?.first ?: 0L
+
+    private fun getRefCount(txn: Transaction, blobHandle: Long): Pair<Long, ByteIterable>? {
+        val entry = refCounts.get(txn, blobHandle.toEntry) ?: return null
+        val iterator = entry.iterator()
+        val refCount = CompressedUnsignedLongByteIterable.getLong(iterator)
+        return refCount to ArrayByteIterable(iterator)
+    }
+
+    private fun putRefCount(txn: Transaction, blobHandle: Long, refCount: Long, key: ByteIterable) {
+        refCounts.put(txn, blobHandle.toEntry,
+            CompoundByteIterable(arrayOf(CompressedUnsignedLongByteIterable.getIterable(refCount), key)))
+    }
+
+    companion object {
+
+        private const val DIGEST_ALGORITHM = "SHA-256"
+
+        @JvmStatic
+        fun newDigest(): MessageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM)
+
+        private fun hashKey(digest: ByteArray, length: Long): ByteIterable =
+            CompoundByteIterable(arrayOf(ArrayByteIterable(digest), CompressedUnsignedLongByteIterable.getIterable(length)))
+
+        private val ByteIterable.toHandle: Long
+            get() = LongBinding.compressedEntryToLong(this)
+        private val Long.toEntry: ByteIterable
+            get() = LongBinding.longToCompressedEntry(this)
+    }
+}
@@ -21,11 +21,18 @@ import jetbrains.exodus.core.dataStructures.Priority
 import jetbrains.exodus.core.execution.Job
 import jetbrains.exodus.core.execution.SharedTimer.ExpirablePeriodicTask
 import jetbrains.exodus.core.execution.SharedTimer.registerPeriodicTask
+import jetbrains.exodus.entitystore.PersistentEntityStoreLatencyMetrics.Operation.ENTITY_ITERABLE_CACHE_INSTANTIATION
 import jetbrains.exodus.entitystore.iterate.EntityIterableBase
+import jetbrains.exodus.entitystore.iterate.SortIterable
+import jetbrains.exodus.entitystore.iterate.binop.BinaryOperatorEntityIterable
 import jetbrains.exodus.env.ReadonlyTransactionException
 import mu.KLogging
 import java.lang.Long.max
 import java.lang.ref.WeakReference
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
+import java.util.concurrent.ForkJoinWorkerThread
+import java.util.concurrent.RecursiveAction
 
 typealias ConcurrentCache = ConcurrentObjectCache<Any, Long>
 
@@ -34,11 +41,14 @@ class EntityIterableCache internal constructor(private val store: PersistentEnti
     private val config = store.config
     private var cacheAdapter = EntityIterableCacheAdapter(config)
     val stats = EntityIterableCacheStatistics()
+    val handleStats = EntityIterableHandleStatistics(config)
     private var deferredIterablesCache = ConcurrentCache(config.entityIterableCacheSize)
     private var iterableCountsCache =
         ConcurrentObjectCache<Any, Pair<Long, Long>>(config.entityIterableCacheCountsCacheSize)
     private val heavyIterablesCache = ConcurrentCache(config.entityIterableCacheHeavyIterablesCacheSize)
     val processor = EntityStoreSharedAsyncProcessor(config.entityIterableCacheThreadCount).apply { start() }
+    @Volatile
+    private var parallelInstantiationPool: ForkJoinPool? = null
 
     // the value is updated by PersistentEntityStoreSettingsListener
     var cachingDisabled = config.isCachingDisabled
@@ -78,6 +88,7 @@ class EntityIterableCache internal constructor(private val store: PersistentEnti
             if (!cached.handle.isExpired) {
                 txn.localCacheHit()
                 stats.incTotalHits()
+                handleStats.cacheHit(handle)
                 return cached
             }
             localCache.remove(handle)
@@ -141,7 +152,65 @@ class EntityIterableCache internal constructor(private val store: PersistentEnti
         iterableCountsCache.cacheObject(handle.identity, count to System.currentTimeMillis())
     }
 
-    val isDispatcherThread: Boolean get() = processor.isDispatcherThread
+    val isDispatcherThread: Boolean
+        get() = processor.isDispatcherThread || isParallelInstantiationThread
+
+    private val isParallelInstantiationThread: Boolean
+        get() = ForkJoinTask.getPool().let { pool -> pool != null && pool === parallelInstantiationPool }
+
+    fun close() {
+        synchronized(this) {
+            parallelInstantiationPool?.let { pool ->
+                parallelInstantiationPool = null
+                pool.shutdownNow()
+            }
+        }
+    }
+
+    private fun getParallelInstantiationPool(): ForkJoinPool {
+        parallelInstantiationPool?.let { return it }
+        synchronized(this) {
+            return parallelInstantiationPool ?: ForkJoinPool(config.entityIterableCacheThreadCount, { pool ->
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool).apply {
+                    name = "EntityIterableCache parallel instantiation ${store.location}: $poolIndex"
+                    isDaemon = true
+                }
+            }, null, false).also { parallelInstantiationPool = it }
+        }
+    }
+
+    /**
+     * Instantiates not yet cached independent operands of the iterable concurrently, each in its own read-only
+     * snapshot of the transaction. Instantiated operands are put to the local cache shared by all snapshots,
+     * so subsequent instantiation of the iterable itself just reads them.
+     */
+    private fun instantiateOperandsInParallel(txn: PersistentStoreTransaction,
+                                              it: EntityIterableBase,
+                                              cancellingPolicy: QueryCancellingPolicy) {
+        val operands = getIndependentOperands(it).filter { operand ->
+            operand !== EntityIterableBase.EMPTY && operand.canBeCached() && txn.getCachedInstanceFast(operand) == null
+        }
+        // there is nothing to parallelize
+        if (operands.size < 2) return
+        val actions = operands.map { operand -> ParallelInstantiation(txn, operand, cancellingPolicy) }
+        if (isParallelInstantiationThread) {
+            ForkJoinTask.invokeAll(actions)
+        } else {
+            getParallelInstantiationPool().invoke(object : RecursiveAction() {
+                override fun compute() {
+                    ForkJoinTask.invokeAll(actions)
+                }
+            })
+        }
+    }
+
+    private fun getIndependentOperands(it: EntityIterableBase): List<EntityIterableBase> {
+        return when (it) {
+            is BinaryOperatorEntityIterable -> listOf(it.left, it.right)
+            is SortIterable -> listOf(it.decorated, it.propertyIndex)
+            else -> emptyList()
+        }
+    }
 
     fun compareAndSetCacheAdapter(old: Any, new: Any): Boolean {
         if (cacheAdapter === old) {
@@ -214,7 +283,12 @@ class EntityIterableCache internal constructor(private val store: PersistentEnti
                 cancellingPolicy.setLocalCache(txn.localCache)
                 txn.queryCancellingPolicy = cancellingPolicy
                 try {
+                    val instantiationStarted = store.latencyMetrics.start()
+                    if (config.entityIterableCacheParallelInstantiation) {
+                        instantiateOperandsInParallel(txn, it, cancellingPolicy)
+                    }
                     it.getOrCreateCachedInstance(txn, !isConsistent)
+                    store.latencyMetrics.record(ENTITY_ITERABLE_CACHE_INSTANTIATION, instantiationStarted)
                     if (logger.isInfoEnabled) {
                         val cachedIn = System.currentTimeMillis() - started
                         if (cachedIn > 1000) {
@@ -243,6 +317,26 @@ class EntityIterableCache internal constructor(private val store: PersistentEnti
         }
     }
 
+    private inner class ParallelInstantiation(
+        private val source: PersistentStoreTransaction,
+        private val it: EntityIterableBase,
+        private val cancellingPolicy: QueryCancellingPolicy
+    ) : RecursiveAction() {
+
+        override fun compute() {
+            val snapshot = source.snapshot
+            store.registerTransaction(snapshot)
+            try {
+                snapshot.queryCancellingPolicy = cancellingPolicy
+                instantiateOperandsInParallel(snapshot, it, cancellingPolicy)
+                it.getOrCreateCachedInstance(snapshot)
+            } finally {
+                store.unregisterTransaction(snapshot)
+                snapshot.abort()
+            }
+        }
+    }
+
     private class TooLongEntityIterableInstantiationException(val reason: TooLongEntityIterableInstantiationReason) :
         ExodusException(reason.message)
 
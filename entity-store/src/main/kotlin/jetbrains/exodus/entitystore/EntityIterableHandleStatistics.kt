@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore
+
+import jetbrains.exodus.entitystore.iterate.EntityIterableBase
+import mu.KLogging
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAccumulator
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Sampled statistics of instantiations of [EntityIterable]s grouped by their handles. Only handles with the most
+ * total instantiation time are kept, their number is limited by
+ * [PersistentEntityStoreConfig.ENTITY_ITERABLE_STATISTICS_SIZE]. Instantiations slower than
+ * [PersistentEntityStoreConfig.SLOW_QUERY_THRESHOLD] are logged.
+ */
+class EntityIterableHandleStatistics(private val config: PersistentEntityStoreConfig) {
+
+    private val items = ConcurrentHashMap<Any, Item>()
+    private val slowInstantiations = AtomicLong()
+
+    val totalSlowInstantiations: Long get() = slowInstantiations.get()
+
+    /**
+     * Items sorted by total instantiation time in descending order.
+     */
+    val top: List<Item>
+        get() = items.values.sortedByDescending { it.totalNanos }.take(config.entityIterableStatisticsSize)
+
+    fun instantiated(handle: EntityIterableHandle, nanos: Long, resultSize: Long) {
+        val slowThresholdMillis = config.slowQueryThreshold
+        val isSlow = slowThresholdMillis > 0 && nanos >= slowThresholdMillis * 1_000_000L
+        if (isSlow) {
+            slowInstantiations.incrementAndGet()
+            logger.warn {
+                "Slow query: instantiation took ${nanos / 1_000_000L} ms, result size = $resultSize, handle = $handle, plan:\n" +
+                        EntityIterableBase.getHumanReadablePresentation(handle)
+            }
+        }
+        val maxSize = config.entityIterableStatisticsSize
+        if (maxSize <= 0) return
+        if (!isSlow && ThreadLocalRandom.current().nextInt(config.entityIterableStatisticsSamplingPeriod.coerceAtLeast(1)) != 0) {
+            return
+        }
+        items.computeIfAbsent(handle.identity) { Item(handle) }.instantiated(nanos, resultSize)
+        // trim lazily to let recently seen handles accumulate some time before competing with the top ones
+        if (items.size > maxSize * 2) {
+            trim(maxSize)
+        }
+    }
+
+    fun cacheHit(handle: EntityIterableHandle) {
+        items[handle.identity]?.cacheHits?.increment()
+    }
+
+    fun reset() {
+        items.clear()
+        slowInstantiations.set(0L)
+    }
+
+    @Synchronized
+    private fun trim(maxSize: Int) {
+        val size = items.size
+        if (size > maxSize) {
+            items.values.sortedBy { it.totalNanos }.take(size - maxSize).forEach { items.remove(it.handle.identity, it) }
+        }
+    }
+
+    class Item(val handle: EntityIterableHandle) {
+
+        private val instantiationCount = LongAdder()
+        private val total = LongAdder()
+        private val max = LongAccumulator({ left, right -> maxOf(left, right) }, 0L)
+        private val maxResult = LongAccumulator({ left, right -> maxOf(left, right) }, 0L)
+        internal val cacheHits = LongAdder()
+        @Volatile
+        var lastResultSize = 0L
+            private set
+
+        val instantiations: Long get() = instantiationCount.sum()
+
+        val totalNanos: Long get() = total.sum()
+
+        val maxNanos: Long get() = max.get()
+
+        val maxResultSize: Long get() = maxResult.get()
+
+        val totalCacheHits: Long get() = cacheHits.sum()
+
+        internal fun instantiated(nanos: Long, resultSize: Long) {
+            instantiationCount.increment()
+            total.add(nanos)
+            max.accumulate(nanos)
+            maxResult.accumulate(resultSize)
+            lastResultSize = resultSize
+        }
+
+        override fun toString() =
+                "$handle: instantiations = $instantiations, total = ${totalNanos / 1000L} µs, " +
+                        "max = ${maxNanos / 1000L} µs, result size = $lastResultSize (max $maxResultSize), " +
+                        "cache hits = $totalCacheHits"
+    }
+
+    companion object : KLogging()
+}
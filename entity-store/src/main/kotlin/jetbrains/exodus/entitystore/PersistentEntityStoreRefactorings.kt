@@ -158,7 +158,11 @@ class PersistentEntityStoreRefactorings(private val store: PersistentEntityStore
                         if (!isEmptyOrInPlaceBlobHandle(blobHandle)) {
                             store.setBlobFileLength(
                                 txn, blobHandle,
-                                diskVault.getBlobLocation(blobHandle).length()
+                                if (diskVault is PackedBlobVault) {
+                                    diskVault.getBlobLength(blobHandle, envTxn)
+                                } else {
+                                    diskVault.getBlobLocation(blobHandle).length()
+                                }
                             )
                         }
                     }
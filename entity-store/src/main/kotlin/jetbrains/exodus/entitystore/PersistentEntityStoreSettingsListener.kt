@@ -26,6 +26,8 @@ internal class PersistentEntityStoreSettingsListener(private val store: Persiste
             store.entityIterableCache.clear()
             val cachingDisabled = store.config.isCachingDisabled
             store.entityIterableCache.cachingDisabled = cachingDisabled
+        } else if (PersistentEntityStoreConfig.LATENCY_METRICS == key) {
+            store.latencyMetrics.isEnabled = store.config.latencyMetrics
         }
     }
 
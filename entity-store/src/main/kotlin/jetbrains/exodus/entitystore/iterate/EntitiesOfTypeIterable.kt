@@ -80,6 +80,11 @@ open class EntitiesOfTypeIterable(txn: PersistentStoreTransaction, private val e
 
     override fun countImpl(txn: PersistentStoreTransaction) = store.getEntitiesCount(txn, entityTypeId)
 
+    override fun hasEntityMatcher() = true
+
+    override fun isEntityMatched(txn: PersistentStoreTransaction, id: EntityId) =
+        id.typeId == entityTypeId && store.getLastVersion(txn, id) >= 0
+
     private class EntitiesOfTypeIterator(
         iterable: EntitiesOfTypeIterable,
         index: Cursor,
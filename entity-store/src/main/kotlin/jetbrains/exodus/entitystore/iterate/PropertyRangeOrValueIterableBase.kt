@@ -15,6 +15,8 @@
  */
 package jetbrains.exodus.entitystore.iterate
 
+import jetbrains.exodus.entitystore.EntityId
+import jetbrains.exodus.entitystore.PersistentEntityId
 import jetbrains.exodus.entitystore.PersistentStoreTransaction
 import jetbrains.exodus.env.Cursor
 import jetbrains.exodus.kotlin.notNull
@@ -39,4 +41,10 @@ abstract class PropertyRangeOrValueIterableBase(
     }
 
     protected val propertyValueIndex: EntityIterableBase get() = propertiesIterable.notNull.asProbablyCached()
+
+    protected fun getPropertyValue(txn: PersistentStoreTransaction, id: EntityId): Comparable<*>? {
+        if (id.typeId != entityTypeId) return null
+        val entry = store.getRawProperty(txn, id as PersistentEntityId, propertyId) ?: return null
+        return store.propertyTypes.entryToPropertyValue(entry).data
+    }
 }
@@ -29,7 +29,7 @@ class PropertyValueIterable(
     value: Comparable<*>
 ) : PropertyRangeOrValueIterableBase(txn, entityTypeId, propertyId) {
 
-    private val value = PropertyTypes.toLowerCase(value)
+    val value: Comparable<*> = PropertyTypes.toLowerCase(value)
     private val valueClass = value.javaClass
     private var forceCached = false
 
@@ -88,6 +88,14 @@ class PropertyValueIterable(
 
     override fun nonCachedHasFastCountAndIsEmpty() = true
 
+    override fun createCachedInstance(txn: PersistentStoreTransaction): CachedInstanceIterable =
+        UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this)
+
+    override fun hasEntityMatcher() = true
+
+    override fun isEntityMatched(txn: PersistentStoreTransaction, id: EntityId) =
+        isValueMatched(getPropertyValue(txn, id))
+
     override fun getHandleImpl(): EntityIterableHandle {
         val entityTypeId = entityTypeId
         val propertyId = propertyId
@@ -125,15 +133,18 @@ class PropertyValueIterable(
                 ))
             }
 
-            private fun isValueMatched(value: Comparable<*>?): Boolean {
-                value ?: return false
-                if (value is ComparableSet<*>) {
-                    return value.containsItem(this@PropertyValueIterable.value)
-                }
-                if (value.javaClass != valueClass) return false
-                return PropertyTypes.toLowerCase(value).compareTo(this@PropertyValueIterable.value) == 0
-            }
+            override fun onPropertyChanged(handleChecker: PropertyChangedHandleChecker) =
+                updateCachedInstance(handleChecker, this, PersistentEntityId(entityTypeId, handleChecker.localId))
+        }
+    }
+
+    private fun isValueMatched(value: Comparable<*>?): Boolean {
+        value ?: return false
+        if (value is ComparableSet<*>) {
+            return value.containsItem(this.value)
         }
+        if (value.javaClass != valueClass) return false
+        return PropertyTypes.toLowerCase(value).compareTo(this.value) == 0
     }
 
     override fun countImpl(txn: PersistentStoreTransaction): Long {
@@ -70,6 +70,19 @@ class IntersectionIterable @JvmOverloads constructor(
         }
     }
 
+    override fun hasEntityMatcher() = iterable1.hasEntityMatcher() && iterable2.hasEntityMatcher()
+
+    override fun isEntityMatched(txn: PersistentStoreTransaction, id: EntityId) =
+        iterable1.isEntityMatched(txn, id) && iterable2.isEntityMatched(txn, id)
+
+    override fun canBeUpdatedIncrementally() = isSortedById && handle.entityTypeId >= 0 && hasEntityMatcher()
+
+    override fun createCachedInstance(txn: PersistentStoreTransaction): CachedInstanceIterable =
+        if (canBeUpdatedIncrementally())
+            UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this)
+        else
+            super.createCachedInstance(txn)
+
     override fun countImpl(txn: PersistentStoreTransaction) = if (isEmptyFast(txn)) 0 else super.countImpl(txn)
 
     override fun isEmptyImpl(txn: PersistentStoreTransaction) = isEmptyFast(txn) || super.isEmptyImpl(txn)
@@ -18,9 +18,7 @@ package jetbrains.exodus.entitystore.iterate.binop
 import jetbrains.exodus.entitystore.EntityId
 import jetbrains.exodus.entitystore.EntityIterableType
 import jetbrains.exodus.entitystore.PersistentStoreTransaction
-import jetbrains.exodus.entitystore.iterate.EntityIterableBase
-import jetbrains.exodus.entitystore.iterate.EntityIteratorFixingDecorator
-import jetbrains.exodus.entitystore.iterate.NonDisposableEntityIterator
+import jetbrains.exodus.entitystore.iterate.*
 
 class UnionIterable(txn: PersistentStoreTransaction?,
                     iterable1: EntityIterableBase,
@@ -35,6 +33,19 @@ class UnionIterable(txn: PersistentStoreTransaction?,
 
     override fun getIteratorImpl(txn: PersistentStoreTransaction) = EntityIteratorFixingDecorator(this, SortedIterator(this, iterable1, iterable2))
 
+    override fun hasEntityMatcher() = iterable1.hasEntityMatcher() && iterable2.hasEntityMatcher()
+
+    override fun isEntityMatched(txn: PersistentStoreTransaction, id: EntityId) =
+        iterable1.isEntityMatched(txn, id) || iterable2.isEntityMatched(txn, id)
+
+    override fun canBeUpdatedIncrementally() = handle.entityTypeId >= 0 && hasEntityMatcher()
+
+    override fun createCachedInstance(txn: PersistentStoreTransaction): CachedInstanceIterable =
+        if (canBeUpdatedIncrementally())
+            UpdatableEntityIdSortedSetCachedInstanceIterable(txn, this)
+        else
+            super.createCachedInstance(txn)
+
     private class SortedIterator(iterable: EntityIterableBase,
                                  iterable1: EntityIterableBase,
                                  iterable2: EntityIterableBase) : NonDisposableEntityIterator(iterable) {
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore.replication
+
+import jetbrains.exodus.core.dataStructures.Pair
+import jetbrains.exodus.entitystore.BlobVault
+import jetbrains.exodus.entitystore.DiskBasedBlobVault
+import jetbrains.exodus.entitystore.FileSystemBlobVaultOld
+import jetbrains.exodus.entitystore.PersistentEntityStore
+import jetbrains.exodus.entitystore.PersistentEntityStoreImpl
+import jetbrains.exodus.env.Environment
+import jetbrains.exodus.env.EnvironmentImpl
+import jetbrains.exodus.env.replication.EnvironmentReplicationDelta
+import jetbrains.exodus.env.tryUpdate
+import jetbrains.exodus.io.CompressedLogFile
+import jetbrains.exodus.log.LogUtil
+import mu.KLogging
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * [PersistentEntityStoreReplicator] shipping the log and the blob vault of a primary database located in
+ * [primaryLocation] to the database of a replica store. Sealed `.xd` files are copied as is, the active file is
+ * appended with the data written since previous replication. Blobs of the file system blob vault created since
+ * previous replication are copied from [primaryBlobsLocation]. Once data is shipped, the replica environment is
+ * updated to the last database root found in the shipped data, so that new transactions of the replica see the data.
+ *
+ * Primary and replica can run in different processes sharing the file system. The replica should be restored from
+ * a backup of the primary database, its environment should be opened in read-only mode, and it is updated on each
+ * call to [PersistentEntityStoreImpl.replicate].
+ */
+class LogShippingReplicator @JvmOverloads constructor(
+    private val primaryLocation: File,
+    private val primaryBlobsLocation: File = File(primaryLocation, PersistentEntityStoreImpl.BLOBS_DIR)
+) : PersistentEntityStoreReplicator {
+
+    private val deltaIds = AtomicLong()
+
+    override fun beginReplication(environment: Environment): EnvironmentReplicationDelta {
+        val log = (environment as EnvironmentImpl).log
+        val startAddress = log.highAddress
+        val startFileAddress = log.getFileAddress(startAddress)
+        val files = mutableListOf<Long>()
+        val fileLengths = mutableListOf<Long>()
+        var highAddress = startAddress
+        LogUtil.listFiles(primaryLocation).map { LogUtil.getAddress(it.name) to it }.sortedBy { it.first }
+            .forEach { (address, file) ->
+                if (address >= startFileAddress) {
+                    val length = CompressedLogFile.getLogicalLength(file)
+                    if (address + length > startAddress) {
+                        files.add(address)
+                        fileLengths.add(length)
+                        highAddress = address + length
+                    }
+                }
+            }
+        return LogShippingDelta(deltaIds.incrementAndGet(), startAddress, highAddress, log.fileLengthBound,
+            files.toLongArray(), fileLengths.toLongArray(), environment.cipherProvider != null)
+    }
+
+    override fun replicateEnvironment(delta: EnvironmentReplicationDelta, environment: Environment) {
+        val shipped = delta as? LogShippingDelta
+            ?: throw IllegalArgumentException("Unexpected replication delta: $delta")
+        val env = environment as EnvironmentImpl
+        val replicaLocation = File(env.location)
+        shipped.files.forEachIndexed { i, address ->
+            shipFile(LogUtil.getLogFilename(address), shipped.fileLengths[i], replicaLocation)
+        }
+        if (shipped.files.isNotEmpty() && !env.tryUpdate()) {
+            logger.info { "No new database root is shipped to ${env.location} up to address ${shipped.highAddress}" }
+        }
+    }
+
+    override fun replicateBlobVault(delta: EnvironmentReplicationDelta,
+                                    vault: BlobVault,
+                                    blobsToReplicate: List<Pair<Long, Long>>) {
+        val fsVault = vault.sourceVault as? FileSystemBlobVaultOld
+            ?: throw UnsupportedOperationException("Only file system blob vault can be replicated")
+        val vaultPath = fsVault.vaultLocation.toPath()
+        blobsToReplicate.forEach { blob ->
+            val target = fsVault.getBlobLocation(blob.first).toPath()
+            val source = primaryBlobsLocation.toPath().resolve(vaultPath.relativize(target))
+            if (!Files.exists(source)) {
+                // the blob is already deleted in the primary database
+                return@forEach
+            }
+            if (!Files.exists(target) || Files.size(target) != Files.size(source)) {
+                Files.createDirectories(target.parent)
+                val tmp = target.resolveSibling(target.fileName.toString() + TMP_FILE_EXTENSION)
+                Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING)
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            }
+        }
+    }
+
+    override fun decorateBlobVault(vault: DiskBasedBlobVault, store: PersistentEntityStore) = vault
+
+    override fun endReplication(delta: EnvironmentReplicationDelta) {
+        logger.debug { "Replication ${delta.id} is finished at address ${delta.highAddress}" }
+    }
+
+    /**
+     * Appends to the file of the replica the data of the primary file from the current length of the replica file
+     * up to [length]. Compressed primary files are shipped decompressed.
+     */
+    private fun shipFile(name: String, length: Long, replicaLocation: File) {
+        val target = File(replicaLocation, name)
+        val offset = if (target.exists()) target.length() else 0L
+        if (offset >= length) {
+            return
+        }
+        CompressedLogFile.newInputStream(File(primaryLocation, name)).use { input ->
+            var skipped = 0L
+            while (skipped < offset) {
+                val n = input.skip(offset - skipped)
+                if (n <= 0) {
+                    throw IOException("Can't skip shipped data of $name")
+                }
+                skipped += n
+            }
+            FileOutputStream(target, true).use { output ->
+                val buffer = ByteArray(BUFFER_SIZE)
+                var remaining = length - offset
+                while (remaining > 0) {
+                    val read = input.read(buffer, 0, minOf(remaining, BUFFER_SIZE.toLong()).toInt())
+                    if (read < 0) {
+                        break
+                    }
+                    output.write(buffer, 0, read)
+                    remaining -= read
+                }
+                output.fd.sync()
+            }
+        }
+    }
+
+    private class LogShippingDelta(
+        override val id: Long,
+        override val startAddress: Long,
+        override val highAddress: Long,
+        override val fileLengthBound: Long,
+        override val files: LongArray,
+        val fileLengths: LongArray,
+        override val encrypted: Boolean
+    ) : EnvironmentReplicationDelta {
+
+        // shipped data is read by the replica as is, so the addresses of roots are not known in advance
+        override val metaTreeAddress get() = -1L
+        override val rootAddress get() = -1L
+    }
+
+    companion object : KLogging() {
+
+        private const val BUFFER_SIZE = 1 shl 16
+        private const val TMP_FILE_EXTENSION = ".replicated"
+    }
+}
@@ -16,11 +16,17 @@
 package jetbrains.exodus.entitystore;
 
 import jetbrains.exodus.TestFor;
+import jetbrains.exodus.entitystore.iterate.CachedInstanceIterable;
 import jetbrains.exodus.entitystore.iterate.EntityIterableBase;
 import jetbrains.exodus.entitystore.iterate.EntityIteratorBase;
+import jetbrains.exodus.entitystore.iterate.ExcludeNullIterableDecorator;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
 
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class BinaryOperatorsTests extends EntityStoreTestBase {
 
@@ -137,6 +143,100 @@ public class BinaryOperatorsTests extends EntityStoreTestBase {
             txn.getAll("Issue")).iterator()).getIterable().isCachedInstance());
     }
 
+    public void testIntersectIsUpdatedIncrementally() {
+        getEntityStore().getConfig().setCachingDisabled(false);
+        final StoreTransaction txn = getStoreTransaction();
+        final Entity project = Objects.requireNonNull(txn).newEntity("Project");
+        for (int i = 0; i < 100; ++i) {
+            final Entity issue = txn.newEntity("Issue");
+            issue.setProperty("state", i % 2 == 0 ? "Open" : "Fixed");
+            if (i < 50) {
+                issue.setLink("project", project);
+            }
+        }
+        txn.flush();
+        final EntityIterable openInProject = txn.find("Issue", "state", "Open").intersect(txn.findWithLinks("Issue", "project"));
+        Assert.assertEquals(25, (int) openInProject.size());
+        Assert.assertTrue(((EntityIterableBase) openInProject).isCached());
+        final Entity issue = Objects.requireNonNull(txn.find("Issue", "state", "Fixed").intersect(txn.findWithLinks("Issue", "project")).getFirst());
+        issue.setProperty("state", "Open");
+        txn.flush();
+        Assert.assertTrue(((EntityIterableBase) openInProject).isCached());
+        Assert.assertEquals(26, (int) openInProject.size());
+        issue.deleteLinks("project");
+        txn.flush();
+        Assert.assertTrue(((EntityIterableBase) openInProject).isCached());
+        Assert.assertEquals(25, (int) openInProject.size());
+        Assert.assertFalse(openInProject.contains(issue));
+    }
+
+    public void testUnionIsUpdatedIncrementally() {
+        getEntityStore().getConfig().setCachingDisabled(false);
+        final StoreTransaction txn = getStoreTransaction();
+        for (int i = 0; i < 100; ++i) {
+            final Entity issue = Objects.requireNonNull(txn).newEntity("Issue");
+            issue.setProperty("priority", i % 10);
+        }
+        txn.flush();
+        final EntityIterable lowOrCritical = txn.find("Issue", "priority", 0).union(txn.find("Issue", "priority", 9, 9));
+        Assert.assertEquals(20, (int) lowOrCritical.size());
+        Assert.assertTrue(((EntityIterableBase) lowOrCritical).isCached());
+        final Entity issue = Objects.requireNonNull(txn.find("Issue", "priority", 5).getFirst());
+        issue.setProperty("priority", 9);
+        txn.flush();
+        Assert.assertTrue(((EntityIterableBase) lowOrCritical).isCached());
+        Assert.assertEquals(21, (int) lowOrCritical.size());
+        issue.delete();
+        txn.flush();
+        Assert.assertEquals(20, (int) lowOrCritical.size());
+        Assert.assertFalse(lowOrCritical.contains(issue));
+    }
+
+    public void testParallelInstantiation() throws InterruptedException {
+        final PersistentEntityStoreImpl store = getEntityStore();
+        store.getConfig().setCachingDisabled(false);
+        store.getConfig().setEntityIterableCacheParallelInstantiation(true);
+        final StoreTransaction txn = getStoreTransaction();
+        for (int i = 0; i < 1000; ++i) {
+            final Entity issue = Objects.requireNonNull(txn).newEntity("Issue");
+            issue.setProperty("priority", i % 10);
+            issue.setProperty("state", i % 2 == 0 ? "Open" : "Fixed");
+        }
+        txn.flush();
+        // the operand which is instantiated first is blocked until the other one is cached
+        final AtomicBoolean first = new AtomicBoolean(true);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        final EntityIterableBase[] operands = new EntityIterableBase[2];
+        final EntityIterableBase lowOrCritical = store.computeInReadonlyTransaction(t -> {
+            final PersistentStoreTransaction roTxn = (PersistentStoreTransaction) t;
+            operands[0] = new BlockingIterable(roTxn, roTxn.find("Issue", "priority", 0), first, blocked, released);
+            operands[1] = new BlockingIterable(roTxn, roTxn.find("Issue", "priority", 9), first, blocked, released);
+            final EntityIterableBase result = (EntityIterableBase) operands[0].union(operands[1]);
+            store.getEntityIterableCache().putIfNotCached(result);
+            return result;
+        });
+        try {
+            Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (!isCached(store, operands[0]) && !isCached(store, operands[1])) {
+                Assert.assertTrue(System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, released.getCount());
+        } finally {
+            released.countDown();
+        }
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!isCached(store, lowOrCritical)) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(isCached(store, operands[0]));
+        Assert.assertTrue(isCached(store, operands[1]));
+        Assert.assertEquals(200, (long) store.computeInReadonlyTransaction(t -> lowOrCritical.size()));
+    }
+
     public void testSingularUnion() {
         final StoreTransaction txn = getStoreTransaction();
         for (int i = 0; i < 100; ++i) {
@@ -261,4 +361,42 @@ public class BinaryOperatorsTests extends EntityStoreTestBase {
         Assert.assertFalse(concat.isCached());
         Assert.assertEquals(2, toList(concat).size());
     }
+
+    private static boolean isCached(@NotNull final PersistentEntityStoreImpl store, @NotNull final EntityIterableBase it) {
+        return store.computeInReadonlyTransaction(t -> ((PersistentStoreTransaction) t).getCachedInstanceFast(it) != null);
+    }
+
+    /**
+     * Blocks cached instantiation of the iterable which is instantiated first until it is released.
+     */
+    private static final class BlockingIterable extends ExcludeNullIterableDecorator {
+
+        private final AtomicBoolean first;
+        private final CountDownLatch blocked;
+        private final CountDownLatch released;
+
+        private BlockingIterable(@NotNull final PersistentStoreTransaction txn,
+                                 @NotNull final EntityIterable source,
+                                 @NotNull final AtomicBoolean first,
+                                 @NotNull final CountDownLatch blocked,
+                                 @NotNull final CountDownLatch released) {
+            super(txn, (EntityIterableBase) source);
+            this.first = first;
+            this.blocked = blocked;
+            this.released = released;
+        }
+
+        @Override
+        protected CachedInstanceIterable createCachedInstance(@NotNull final PersistentStoreTransaction txn) {
+            if (first.compareAndSet(true, false)) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    throw new EntityStoreException(e);
+                }
+            }
+            return super.createCachedInstance(txn);
+        }
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore.iterate;
+
+import jetbrains.exodus.entitystore.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Assert;
+
+import java.util.List;
+
+public class CompositeIndexTests extends EntityStoreTestBase {
+
+    public void testEqualityPrefix() {
+        final PersistentStoreTransaction txn = createIssues();
+        getEntityStore().createCompositeIndex(txn, "Issue", "project", "state", "updated");
+        txn.flush();
+        final EntityIterable openInProject = txn.find("Issue", "project", "Project 2").intersect(txn.find("Issue", "state", "Open"));
+        Assert.assertTrue(openInProject instanceof CompositeIndexIterable);
+        final List<Entity> issues = toList(openInProject);
+        Assert.assertEquals(10, issues.size());
+        for (final Entity issue : issues) {
+            Assert.assertEquals("Project 2", issue.getProperty("project"));
+            Assert.assertEquals("Open", issue.getProperty("state"));
+        }
+        Assert.assertEquals(10, txn.find("Issue", "project", "project 2").intersect(txn.find("Issue", "state", "OPEN")).size());
+    }
+
+    public void testRange() {
+        final PersistentStoreTransaction txn = createIssues();
+        getEntityStore().createCompositeIndex(txn, "Issue", "project", "updated");
+        txn.flush();
+        final EntityIterable updatedInProject = txn.find("Issue", "project", "Project 1").intersect(txn.find("Issue", "updated", 20L, 60L));
+        Assert.assertTrue(updatedInProject instanceof CompositeIndexIterable);
+        long lastUpdated = Long.MIN_VALUE;
+        int count = 0;
+        for (final Entity issue : updatedInProject) {
+            final long updated = (Long) issue.getProperty("updated");
+            Assert.assertTrue(updated >= 20L && updated <= 60L);
+            Assert.assertTrue(updated > lastUpdated);
+            lastUpdated = updated;
+            ++count;
+        }
+        Assert.assertEquals(8, count);
+    }
+
+    public void testSort() {
+        final PersistentStoreTransaction txn = createIssues();
+        final Entity notUpdated = txn.newEntity("Issue");
+        notUpdated.setProperty("project", "Project 3");
+        notUpdated.setProperty("state", "Open");
+        getEntityStore().createCompositeIndex(txn, "Issue", "project", "state", "updated");
+        txn.flush();
+        final EntityIterable sorted = txn.sort("Issue", "updated",
+            txn.find("Issue", "project", "Project 3").intersect(txn.find("Issue", "state", "Open")), false);
+        Assert.assertTrue(sorted instanceof CompositeIndexIterable);
+        final List<Entity> issues = toList(sorted);
+        Assert.assertEquals(11, issues.size());
+        for (int i = 1; i < 10; ++i) {
+            Assert.assertTrue((Long) issues.get(i - 1).getProperty("updated") > (Long) issues.get(i).getProperty("updated"));
+        }
+        Assert.assertEquals(notUpdated, issues.get(10));
+    }
+
+    public void testSortAscending() {
+        final PersistentStoreTransaction txn = createIssues();
+        final Entity notUpdated = txn.newEntity("Issue");
+        notUpdated.setProperty("project", "Project 3");
+        notUpdated.setProperty("state", "Open");
+        getEntityStore().createCompositeIndex(txn, "Issue", "project", "state", "updated");
+        txn.flush();
+        final EntityIterable sorted = txn.sort("Issue", "updated",
+            txn.find("Issue", "project", "Project 3").intersect(txn.find("Issue", "state", "Open")), true);
+        Assert.assertTrue(sorted instanceof CompositeIndexIterable);
+        final List<Entity> issues = toList(sorted);
+        Assert.assertEquals(11, issues.size());
+        for (int i = 1; i < 10; ++i) {
+            Assert.assertTrue((Long) issues.get(i - 1).getProperty("updated") < (Long) issues.get(i).getProperty("updated"));
+        }
+        Assert.assertEquals(notUpdated, issues.get(10));
+    }
+
+    public void testIndexIsUpdated() {
+        final PersistentStoreTransaction txn = createIssues();
+        getEntityStore().createCompositeIndex(txn, "Issue", "project", "state");
+        txn.flush();
+        final Entity issue = txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Fixed")).getFirst();
+        Assert.assertNotNull(issue);
+        issue.setProperty("state", "Open");
+        txn.flush();
+        Assert.assertEquals(11, txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Open")).size());
+        Assert.assertEquals(9, txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Fixed")).size());
+        issue.deleteProperty("project");
+        txn.flush();
+        Assert.assertEquals(10, txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Open")).size());
+        Assert.assertTrue(getEntityStore().deleteCompositeIndex(txn, "Issue", "project", "state"));
+        txn.flush();
+        final EntityIterable openInProject = txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Open"));
+        Assert.assertFalse(openInProject instanceof CompositeIndexIterable);
+        Assert.assertEquals(10, openInProject.size());
+    }
+
+    public void testCreatedIndexIsGoneOnAbort() {
+        createIssues();
+        final PersistentEntityStoreImpl store = getEntityStore();
+        final PersistentStoreTransaction txn = store.beginTransaction();
+        try {
+            store.createCompositeIndex(txn, "Issue", "project", "state");
+            Assert.assertTrue(findOpenInProject(txn) instanceof CompositeIndexIterable);
+            // the index isn't visible to other transactions until it is committed
+            transactionalReadonly(t -> Assert.assertFalse(findOpenInProject(t) instanceof CompositeIndexIterable));
+        } finally {
+            txn.abort();
+        }
+        transactionalReadonly(t -> {
+            final EntityIterable openInProject = findOpenInProject(t);
+            Assert.assertFalse(openInProject instanceof CompositeIndexIterable);
+            Assert.assertEquals(10, openInProject.size());
+        });
+    }
+
+    public void testDeletedIndexIsKeptOnAbort() {
+        getEntityStore().createCompositeIndex(createIssues(), "Issue", "project", "state");
+        getStoreTransaction().flush();
+        final PersistentEntityStoreImpl store = getEntityStore();
+        final PersistentStoreTransaction txn = store.beginTransaction();
+        try {
+            Assert.assertTrue(store.deleteCompositeIndex(txn, "Issue", "project", "state"));
+            Assert.assertFalse(findOpenInProject(txn) instanceof CompositeIndexIterable);
+            transactionalReadonly(t -> Assert.assertTrue(findOpenInProject(t) instanceof CompositeIndexIterable));
+        } finally {
+            txn.abort();
+        }
+        transactionalReadonly(t -> {
+            final EntityIterable openInProject = findOpenInProject(t);
+            Assert.assertTrue(openInProject instanceof CompositeIndexIterable);
+            Assert.assertEquals(10, openInProject.size());
+        });
+    }
+
+    private static EntityIterable findOpenInProject(@NotNull final StoreTransaction txn) {
+        return txn.find("Issue", "project", "Project 0").intersect(txn.find("Issue", "state", "Open"));
+    }
+
+    private PersistentStoreTransaction createIssues() {
+        final PersistentStoreTransaction txn = getStoreTransactionSafe();
+        for (int i = 0; i < 100; ++i) {
+            final Entity issue = txn.newEntity("Issue");
+            issue.setProperty("project", "Project " + i % 5);
+            issue.setProperty("state", i % 2 == 0 ? "Open" : "Fixed");
+            issue.setProperty("updated", (long) i);
+        }
+        txn.flush();
+        return txn;
+    }
+}
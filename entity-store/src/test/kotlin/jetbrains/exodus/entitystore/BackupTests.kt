@@ -24,6 +24,7 @@ import jetbrains.exodus.core.execution.JobProcessorExceptionHandler
 import jetbrains.exodus.core.execution.ThreadJobProcessor
 import jetbrains.exodus.env.EnvironmentImpl
 import jetbrains.exodus.kotlin.notNull
+import jetbrains.exodus.util.BackupManifest
 import jetbrains.exodus.util.CompressBackupUtil
 import jetbrains.exodus.util.IOUtil
 import jetbrains.exodus.util.Random
@@ -75,6 +76,53 @@ class BackupTests : EntityStoreTestBase() {
         }
     }
 
+    fun testIncremental() {
+        val store = entityStore
+        store.config.maxInPlaceBlobSize = 0 // no in-place blobs
+        store.executeInTransaction { txn ->
+            txn.newEntity("Issue").setBlobString("description", "first")
+        }
+        val backupDir = TestUtil.createTempDir()
+        try {
+            val full = File(backupDir, "full.zip")
+            val fullManifest = CompressBackupUtil.incrementalBackup(store, full, true, null)
+            assertFalse(fullManifest.isIncremental)
+            // blob files are never changed, so they are compared by size rather than by checksum
+            val strategy = store.backupStrategy
+            val blobFiles = strategy.contents.filter { it.hasContent() && it.name.endsWith(PersistentEntityStoreImpl.BLOBS_EXTENSION) }
+            assertFalse(blobFiles.isEmpty())
+            assertTrue(blobFiles.all { strategy.isAppendOnly(it) })
+            store.executeInTransaction { txn ->
+                txn.newEntity("Issue").setBlobString("description", "second")
+            }
+            val incremental = File(backupDir, "incremental.zip")
+            val manifest = CompressBackupUtil.incrementalBackup(store, incremental, true, BackupManifest.load(full))
+            assertEquals(fullManifest.id, manifest.baseId)
+            assertTrue(manifest.highAddress > fullManifest.highAddress)
+            // the blob of the first issue is not changed, so it's listed in the manifest only
+            val archived = ZipFile(incremental).use { zip -> zip.entries.toList().map { it.name } }
+            assertTrue(archived.size <= manifest.entries.size)
+            assertTrue(manifest.entries.keys.any { it !in archived })
+            val restoreDir = TestUtil.createTempDir()
+            try {
+                CompressBackupUtil.restore(listOf(full, incremental), restoreDir)
+                PersistentEntityStores.newInstance(restoreDir).use { newStore ->
+                    newStore.executeInReadonlyTransaction { txn ->
+                        assertEquals(listOf("first", "second"),
+                            txn.getAll("Issue").map { it.getBlobString("description") })
+                    }
+                }
+            } finally {
+                IOUtil.deleteRecursively(restoreDir)
+            }
+            // incremental backup can't be restored without its base
+            TestUtil.runWithExpectedException({ CompressBackupUtil.restore(listOf(incremental), backupDir) },
+                IOException::class.java)
+        } finally {
+            IOUtil.deleteRecursively(backupDir)
+        }
+    }
+
     fun testSingularDynamic() {
         val store = entityStore
         store.config.maxInPlaceBlobSize = 0 // no in-place blobs
@@ -88,6 +88,31 @@ class BlobVaultTests : EntityStoreTestBase() {
         Assert.assertEquals((count - 1).toLong(), max)
     }
 
+    fun testBlobCompletion() {
+        val blobVault = entityStore.blobVault
+        Assert.assertTrue(blobVault.getBlobCompletion(100).isDone)
+        blobVault.blobPending(100)
+        val completion = blobVault.getBlobCompletion(100)
+        Assert.assertFalse(completion.isDone)
+        blobVault.blobFlushed(100, null)
+        Assert.assertTrue(completion.isDone)
+        Assert.assertTrue(blobVault.getBlobCompletion(100).isDone)
+        blobVault.blobPending(101)
+        blobVault.blobFlushed(101, IllegalStateException())
+        Assert.assertTrue(blobVault.getBlobCompletion(101).isDone)
+    }
+
+    fun testGetBlobAsync() {
+        val txn = storeTransaction
+        entityStore.config.maxInPlaceBlobSize = 0
+        val e = txn.newEntity("E")
+        e.setBlob("b", ByteArrayInputStream("content".toByteArray()))
+        Assert.assertEquals("content", String(e.getBlobAsync("b").get().notNull.readBytes()))
+        txn.flush()
+        Assert.assertEquals("content", String(e.getBlobAsync("b").get().notNull.readBytes()))
+        Assert.assertNull(e.getBlobAsync("c").get())
+    }
+
     @TestFor(issue = "XD-679")
     fun testSaveReadStream() {
         val txn = storeTransaction
@@ -162,6 +187,35 @@ class BlobVaultTests : EntityStoreTestBase() {
         Assert.assertEquals(2L, store.blobFileCount(txn))
     }
 
+    fun testBlobDeduplication() {
+        val store = entityStore
+        val txn = storeTransaction
+        store.config.maxInPlaceBlobSize = 0
+        store.config.isBlobVaultDeduplication = true
+        val content = "duplicated content"
+        val e1 = txn.newEntity("E")
+        e1.setBlob("b", ByteArrayInputStream(content.toByteArray()))
+        val e2 = txn.newEntity("E")
+        e2.setBlob("b", ByteArrayInputStream(content.toByteArray()))
+        txn.newEntity("E").setBlob("b", ByteArrayInputStream("unique content".toByteArray()))
+        Assert.assertTrue(txn.flush())
+        Assert.assertEquals(2L, store.blobFileCount(txn))
+        Assert.assertEquals(2L, store.getBlobReferenceCount(txn, 0L))
+        Assert.assertEquals(content, String(e2.getBlob("b").notNull.readBytes()))
+        e1.deleteBlob("b")
+        Assert.assertTrue(txn.flush())
+        Assert.assertEquals(1L, store.getBlobReferenceCount(txn, 0L))
+        Assert.assertEquals(content, String(e2.getBlob("b").notNull.readBytes()))
+        e2.deleteBlob("b")
+        Assert.assertTrue(txn.flush())
+        Assert.assertEquals(0L, store.getBlobReferenceCount(txn, 0L))
+        Assert.assertEquals(1L, store.blobFileCount(txn))
+        // deleted content is not deduplicated
+        txn.newEntity("E").setBlob("b", ByteArrayInputStream(content.toByteArray()))
+        Assert.assertTrue(txn.flush())
+        Assert.assertEquals(2L, store.blobFileCount(txn))
+    }
+
     fun testBlobBatchRemovalAndAddition() {
         val blobHandleGenerator = object : BlobHandleGenerator {
             var handle: Long = 0
@@ -21,6 +21,8 @@ import jetbrains.exodus.TestUtil
 import jetbrains.exodus.kotlin.notNull
 import org.junit.Assert
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
 
 @Suppress("DEPRECATION")
 class EntityBlobTests : EntityStoreTestBase() {
@@ -249,6 +251,15 @@ class EntityBlobTests : EntityStoreTestBase() {
         }
     }
 
+    fun testInPlaceBlobChannel() {
+        checkBlobChannel(storeTransaction)
+    }
+
+    fun testBlobChannel() {
+        entityStore.config.maxInPlaceBlobSize = 0
+        checkBlobChannel(storeTransaction)
+    }
+
     @TestFor(issues = ["JT-63580", "JT-63582"])
     fun testDeleteDuplicate() {
         val store = entityStore
@@ -287,6 +298,36 @@ private fun checkBlobs(txn: StoreTransaction) {
     Assert.assertEquals((length + 2).toLong(), entity.getBlobSize("body2"))
 }
 
+private fun checkBlobChannel(txn: StoreTransaction) {
+    val entity = txn.newEntity("Issue")
+    Assert.assertNull(entity.getBlobChannel("body"))
+    entity.setBlob("body", string2Stream("body"))
+    entity.setBlob("empty", string2Stream(""))
+    Assert.assertEquals("body", transferBlob(entity, "body"))
+    txn.flush()
+    Assert.assertEquals("body", transferBlob(entity, "body"))
+    Assert.assertEquals("", transferBlob(entity, "empty"))
+    entity.getBlobChannel("body").notNull.use { channel ->
+        Assert.assertEquals(4L, channel.size())
+        val buffer = ByteBuffer.allocate(2)
+        Assert.assertEquals(2, channel.read(buffer))
+        Assert.assertEquals("bo", String(buffer.array()))
+        Assert.assertEquals(2L, channel.position())
+        val output = ByteArrayOutputStream()
+        Assert.assertEquals(2L, channel.transferTo(Channels.newChannel(output)))
+        Assert.assertEquals("dy", output.toString())
+        Assert.assertEquals(-1, channel.read(buffer))
+    }
+}
+
+private fun transferBlob(entity: Entity, blobName: String): String {
+    val output = ByteArrayOutputStream()
+    entity.getBlobChannel(blobName).notNull.use { channel ->
+        Assert.assertEquals(channel.size(), channel.transferTo(Channels.newChannel(output)))
+    }
+    return output.toString()
+}
+
 private fun createTempFile(content: String): File {
     val tempFile = File.createTempFile("test", null)
     val output = DataOutputStream(FileOutputStream(tempFile))
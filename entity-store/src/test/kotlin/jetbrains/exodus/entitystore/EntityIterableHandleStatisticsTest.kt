@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore
+
+import jetbrains.exodus.entitystore.iterate.EntityIterableBase
+import org.junit.Assert
+
+class EntityIterableHandleStatisticsTest : EntityStoreTestBase() {
+
+    fun testInstantiationsAreSampled() {
+        val txn = storeTransaction
+        entityStore.config.setEntityIterableStatisticsSamplingPeriod(1)
+        for (i in 0 until 10) {
+            txn.newEntity("Issue").setProperty("size", i)
+        }
+        txn.flush()
+        val handleStats = entityStore.entityIterableCache.handleStats
+        handleStats.reset()
+        val iterable = txn.find("Issue", "size", 0, 4) as EntityIterableBase
+        iterable.getOrCreateCachedInstance(txn)
+        iterable.getOrCreateCachedInstance(txn)
+        val item = handleStats.top.single { it.handle == iterable.handle }
+        Assert.assertTrue(item.instantiations > 0L)
+        Assert.assertEquals(2L, item.instantiations + item.totalCacheHits)
+        Assert.assertEquals(5L, item.maxResultSize)
+        Assert.assertTrue(item.totalNanos > 0L)
+    }
+
+    fun testOnlyTopHandlesAreKept() {
+        val txn = storeTransaction
+        entityStore.config.setEntityIterableStatisticsSamplingPeriod(1)
+        entityStore.config.setEntityIterableStatisticsSize(2)
+        for (i in 0 until 10) {
+            txn.newEntity("Issue").setProperty("size", i)
+        }
+        txn.flush()
+        val handleStats = entityStore.entityIterableCache.handleStats
+        handleStats.reset()
+        for (i in 0 until 10) {
+            (txn.find("Issue", "size", i) as EntityIterableBase).getOrCreateCachedInstance(txn)
+        }
+        Assert.assertEquals(2, handleStats.top.size)
+        entityStore.config.setEntityIterableStatisticsSize(0)
+        handleStats.reset()
+        (txn.find("Issue", "size", 0) as EntityIterableBase).getOrCreateCachedInstance(txn)
+        Assert.assertTrue(handleStats.top.isEmpty())
+    }
+}
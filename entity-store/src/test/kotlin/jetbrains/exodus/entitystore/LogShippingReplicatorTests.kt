@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore
+
+import jetbrains.exodus.TestUtil
+import jetbrains.exodus.entitystore.replication.LogShippingReplicator
+import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.Environments
+import jetbrains.exodus.util.CompressBackupUtil
+import jetbrains.exodus.util.IOUtil
+import org.junit.Assert
+import java.io.File
+
+class LogShippingReplicatorTests : EntityStoreTestBase() {
+
+    override fun needsImplicitTxn() = false
+
+    fun testReplicate() {
+        val store = entityStore
+        store.config.maxInPlaceBlobSize = 0 // no in-place blobs
+        store.executeInTransaction { txn ->
+            txn.newEntity("Issue").setBlobString("description", "first")
+        }
+        val backupDir = TestUtil.createTempDir()
+        val replicaDir = TestUtil.createTempDir()
+        try {
+            BackupTests.extractEntireZip(CompressBackupUtil.backup(store, backupDir, null, true), replicaDir)
+            val config = PersistentEntityStoreConfig()
+                .setStoreReplicator(LogShippingReplicator(File(store.location)))
+            val replica = PersistentEntityStores.newInstance(config,
+                Environments.newInstance(replicaDir, EnvironmentConfig().setEnvIsReadonly(true)),
+                "persistentEntityStore")
+            replica.setCloseEnvironment(true)
+            replica.use {
+                assertIssues(replica, "first")
+                store.executeInTransaction { txn ->
+                    txn.newEntity("Issue").setBlobString("description", "second")
+                }
+                replica.replicate()
+                assertIssues(replica, "first", "second")
+                // nothing to ship
+                replica.replicate()
+                assertIssues(replica, "first", "second")
+            }
+        } finally {
+            IOUtil.deleteRecursively(replicaDir)
+            IOUtil.deleteRecursively(backupDir)
+        }
+    }
+
+    private fun assertIssues(replica: PersistentEntityStore, vararg descriptions: String) {
+        replica.executeInReadonlyTransaction { txn ->
+            Assert.assertEquals(descriptions.toList(), txn.getAll("Issue").map { it.getBlobString("description") })
+        }
+    }
+}
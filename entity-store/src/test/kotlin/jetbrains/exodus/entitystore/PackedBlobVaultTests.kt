@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore
+
+import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.Environments
+import jetbrains.exodus.kotlin.notNull
+import org.junit.Assert
+import java.io.ByteArrayInputStream
+import java.io.File
+
+class PackedBlobVaultTests : EntityStoreTestBase() {
+
+    override fun createStoreInternal(dbTempFolder: String): PersistentEntityStoreImpl {
+        val config = PersistentEntityStoreConfig()
+            .setBlobVaultPacked(true)
+            .setBlobVaultSegmentSize(SEGMENT_SIZE.toLong())
+            .setMaxInPlaceBlobSize(0)
+        val env = Environments.newInstance(dbTempFolder, EnvironmentConfig().setGcFilesDeletionDelay(0))
+        return PersistentEntityStores.newInstance(config, env, "persistentEntityStore").apply { setCloseEnvironment(true) }
+    }
+
+    fun testSetAndGetBlobs() {
+        val store = entityStore
+        Assert.assertTrue(store.blobVault is PackedBlobVault)
+        var txn = storeTransaction
+        for (i in 0 until COUNT) {
+            val entity = txn.newEntity("E")
+            entity.setBlob("b", ByteArrayInputStream(content(i).toByteArray()))
+            entity.setBlobString("s", content(i))
+        }
+        Assert.assertTrue(txn.flush())
+        assertBlobs(txn) { true }
+        // blobs are packed into several segments
+        Assert.assertTrue(getSegments().size in 2 until COUNT)
+        reinit()
+        txn = storeTransaction
+        Assert.assertTrue(entityStore.blobVault is PackedBlobVault)
+        assertBlobs(txn) { true }
+    }
+
+    fun testDeleteAndCompaction() {
+        val txn = storeTransaction
+        for (i in 0 until COUNT) {
+            txn.newEntity("E").setBlob("b", ByteArrayInputStream(content(i).toByteArray()))
+        }
+        Assert.assertTrue(txn.flush())
+        val firstSegment = getSegments().first()
+        val sizeBefore = entityStore.blobVault.size()
+        // the transaction only deletes blobs
+        txn.getAll("E").forEachIndexed { i, entity ->
+            if (i % 4 != 0) {
+                entity.deleteBlob("b")
+            }
+        }
+        Assert.assertTrue(txn.flush())
+        val deadline = System.currentTimeMillis() + 10000
+        while (firstSegment.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50)
+        }
+        Assert.assertFalse(firstSegment.exists())
+        Assert.assertTrue(entityStore.blobVault.size() < sizeBefore)
+        assertBlobs(txn) { i -> i % 4 == 0 }
+        reinit()
+        assertBlobs(storeTransaction) { i -> i % 4 == 0 }
+    }
+
+    private fun assertBlobs(txn: StoreTransaction, exists: (Int) -> Boolean) {
+        txn.getAll("E").forEachIndexed { i, entity ->
+            if (exists(i)) {
+                Assert.assertEquals(content(i), String(entity.getBlob("b").notNull.readBytes()))
+            } else {
+                Assert.assertNull(entity.getBlob("b"))
+            }
+        }
+    }
+
+    private fun getSegments(): List<File> {
+        val vault = entityStore.blobVault as PackedBlobVault
+        return vault.vaultLocation.listFiles { _, name -> name.endsWith(PackedBlobVault.SEGMENT_EXTENSION) }.notNull.sorted()
+    }
+
+    private fun content(i: Int) = "blob number $i ".repeat(20)
+
+    companion object {
+
+        private const val COUNT = 100
+        private const val SEGMENT_SIZE = 2048
+    }
+}
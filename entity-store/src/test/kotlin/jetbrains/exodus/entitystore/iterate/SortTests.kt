@@ -429,6 +429,57 @@ class SortTests : EntityStoreTestBase() {
         Assert.assertEquals(divBuckets.toLong(), buckets.toLong())
     }
 
+    fun testTakeFromSort() {
+        val txn = storeTransaction
+        for (i in 0..999) {
+            val issue = txn.newEntity("Issue")
+            issue.setProperty("size", (i * 7919) % 1000)
+            issue.setProperty("odd", i % 2 == 1)
+        }
+        txn.flush()
+        val odd = txn.find("Issue", "odd", true)
+        Assert.assertEquals((1..39 step 2).toList(), txn.sort("Issue", "size", odd, true).take(20).map { it.getProperty("size") })
+        Assert.assertEquals((959 downTo 921 step 2).toList(),
+            txn.sort("Issue", "size", odd, false).skip(20).take(20).map { it.getProperty("size") })
+        Assert.assertEquals(20, txn.sort("Issue", "size", odd, true).take(20).size())
+    }
+
+    fun testTakeFromInMemorySort() {
+        // switch in-memory sort on
+        entityStore.config.isDebugAllowInMemorySort = true
+
+        val txn = storeTransaction
+        for (i in 0 until 50000) {
+            val issue = txn.newEntity("Issue")
+            issue.setProperty("size", i / 10)
+            if (i % 500 == 0) {
+                issue.setProperty("hasComment", true)
+            }
+        }
+        txn.flush()
+        val unsorted = txn.findWithProp("Issue", "hasComment")
+        Assert.assertEquals(listOf(0, 50, 100), txn.sort("Issue", "size", unsorted, true).take(3).map { it.getProperty("size") })
+        Assert.assertEquals(listOf(4800, 4750), txn.sort("Issue", "size", unsorted, false).skip(3).take(2).map { it.getProperty("size") })
+    }
+
+    fun testTakeFromSortHasOwnHandle() {
+        val txn = storeTransaction
+        for (i in 0..999) {
+            val issue = txn.newEntity("Issue")
+            issue.setProperty("size", (i * 7919) % 1000)
+            issue.setProperty("odd", i % 2 == 1)
+        }
+        txn.flush()
+        val sorted = txn.sort("Issue", "size", txn.find("Issue", "odd", true), true) as SortIterable
+        val limited = sorted.withLimit(20)
+        Assert.assertNotEquals(sorted.handle, limited.handle)
+        // cache the whole sort synchronously, then caching of the limited one shouldn't affect it
+        Assert.assertEquals(500, sorted.getOrCreateCachedInstance(txn).size())
+        Assert.assertEquals(20, limited.getOrCreateCachedInstance(txn).size())
+        Assert.assertEquals(500L, entityStore.entityIterableCache.getCachedCount(sorted.handle))
+        Assert.assertEquals(500, sorted.size())
+    }
+
     fun testSortByTwoColumnsAscendingStable() {
         sortByTwoColumns(true, true)
     }
@@ -17,6 +17,8 @@ package jetbrains.exodus.backup;
 
 import jetbrains.exodus.crypto.EnvKryptKt;
 import jetbrains.exodus.crypto.StreamCipherProvider;
+import jetbrains.exodus.io.IOCause;
+import jetbrains.exodus.io.IOTracer;
 import jetbrains.exodus.log.BufferedDataWriter;
 import jetbrains.exodus.log.Log;
 import jetbrains.exodus.log.LogUtil;
@@ -150,6 +152,8 @@ public class FileDescriptorInputStream extends InputStream {
         final int toRead = (int) Math.min(pageSize, storedDataFilesSize - position);
         assert toRead >= 0;
 
+        final IOTracer tracer = log == null ? null : log.getConfig().getIOTracer();
+        final long started = tracer == null ? 0L : System.nanoTime();
         int read = 0;
         while (read < toRead) {
             final int r = fileInputStream.read(page, read, toRead - read);
@@ -166,6 +170,9 @@ public class FileDescriptorInputStream extends InputStream {
         }
 
         final long pageAddress = fileAddress + position;
+        if (tracer != null) {
+            tracer.trace(IOTracer.Operation.READ, IOCause.BACKUP, pageAddress, read, System.nanoTime() - started);
+        }
         if (read < pageSize) {
             Arrays.fill(page, read, pageSize - BufferedDataWriter.HASH_CODE_SIZE, (byte) 0x80);
 
@@ -15,9 +15,11 @@
  */
 package jetbrains.exodus.env;
 
+import jetbrains.exodus.ExodusException;
 import jetbrains.exodus.backup.BackupStrategy;
 import jetbrains.exodus.backup.FileDescriptorInputStream;
 import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.io.CompressedLogFile;
 import jetbrains.exodus.log.DataCorruptionException;
 import jetbrains.exodus.log.LogUtil;
 import jetbrains.exodus.log.StartupMetadata;
@@ -82,8 +84,10 @@ class EnvironmentBackupStrategyImpl extends BackupStrategy {
                             final File file = files[i++];
 
                             if (file.isFile()) {
-                                final long fileSize = file.length();
                                 final String logFileName = file.getName();
+                                final long fileSize = logFileName.endsWith(LogUtil.LOG_FILE_EXTENSION) ?
+                                        // compressed files are backed up uncompressed
+                                        getLogicalLength(file) : file.length();
 
                                 if (fileSize != 0 && logFileName.endsWith(LogUtil.LOG_FILE_EXTENSION)) {
                                     final long fileAddress = LogUtil.getAddress(file.getName());
@@ -102,7 +106,7 @@ class EnvironmentBackupStrategyImpl extends BackupStrategy {
                                     next = new FileDescriptor(file, "", updatedFileSize) {
                                         @Override
                                         public @NotNull InputStream getInputStream() throws IOException {
-                                            return new FileDescriptorInputStream(new FileInputStream(file),
+                                            return new FileDescriptorInputStream(CompressedLogFile.newInputStream(file),
                                                     fileAddress, pageSize, getFileSize(),
                                                     highAddress - fileAddress,
                                                     environment.getLog(), environment.getCipherProvider(),
@@ -182,8 +186,26 @@ class EnvironmentBackupStrategyImpl extends BackupStrategy {
         return environment.getEnvironmentConfig().getCipherKey() != null;
     }
 
+    @Override
+    public long getHighAddress() {
+        return highAddress;
+    }
+
+    @Override
+    public boolean isAppendOnly(@NotNull final VirtualFileDescriptor file) {
+        return LogUtil.isLogFileName(file.getName());
+    }
+
     @Override
     public void afterBackup() {
         environment.resumeGC();
     }
+
+    private static long getLogicalLength(@NotNull final File file) {
+        try {
+            return CompressedLogFile.getLogicalLength(file);
+        } catch (IOException e) {
+            throw new ExodusException("Can't get length of file " + file.getAbsolutePath(), e);
+        }
+    }
 }
@@ -23,6 +23,7 @@ import jetbrains.exodus.core.dataStructures.Pair;
 import jetbrains.exodus.core.execution.SharedTimer;
 import jetbrains.exodus.crypto.StreamCipherProvider;
 import jetbrains.exodus.debug.StackTrace;
+import jetbrains.exodus.debug.StoreProfiler;
 import jetbrains.exodus.debug.TxnProfiler;
 import jetbrains.exodus.entitystore.MetaServer;
 import jetbrains.exodus.env.management.BackupController;
@@ -31,6 +32,8 @@ import jetbrains.exodus.env.management.EnvironmentConfigWithOperations;
 import jetbrains.exodus.gc.GarbageCollector;
 import jetbrains.exodus.gc.UtilizationProfile;
 import jetbrains.exodus.io.DataReaderWriterProvider;
+import jetbrains.exodus.io.IOTraceRingBuffer;
+import jetbrains.exodus.io.IOTracer;
 import jetbrains.exodus.io.RemoveBlockType;
 import jetbrains.exodus.io.StorageTypeNotAllowedException;
 import jetbrains.exodus.log.*;
@@ -93,14 +96,22 @@ public class EnvironmentImpl implements Environment {
     private final ReentrantTransactionDispatcher txnDispatcher;
     @NotNull
     private final EnvironmentStatistics statistics;
+    @NotNull
+    private final EnvironmentLatencyMetrics latencyMetrics;
     @Nullable
     private final TxnProfiler txnProfiler;
+    @NotNull
+    private final StoreProfiler storeProfiler;
     @Nullable
     private final jetbrains.exodus.env.management.EnvironmentConfig configMBean;
     @Nullable
     private final jetbrains.exodus.env.management.EnvironmentStatistics statisticsMBean;
     @Nullable
     private final DatabaseProfiler profilerMBean;
+    @Nullable
+    private final jetbrains.exodus.env.management.StoreProfiler storeProfilerMBean;
+    @Nullable
+    private final jetbrains.exodus.env.management.EnvironmentLatencyMetrics latencyMetricsMBean;
 
     @NotNull
     private final BackupController backupController;
@@ -168,7 +179,11 @@ public class EnvironmentImpl implements Environment {
             txnDispatcher = new ReentrantTransactionDispatcher(ec.getEnvMaxParallelTxns());
 
             statistics = new EnvironmentStatistics(this);
+            latencyMetrics = new EnvironmentLatencyMetrics(ec.getEnvLatencyMetrics());
+            log.setLatencyMetrics(latencyMetrics);
             txnProfiler = ec.getProfilerEnabled() ? new TxnProfiler() : null;
+            storeProfiler = new StoreProfiler(ec.getEnvStoreProfilerSamplingPeriod());
+            log.setStoreProfiler(storeProfiler);
             final jetbrains.exodus.env.management.EnvironmentConfig configMBean =
                     ec.isManagementEnabled() ? createConfigMBean(this) : null;
             if (configMBean != null) {
@@ -176,10 +191,14 @@ public class EnvironmentImpl implements Environment {
                 // if we don't gather statistics then we should not expose corresponding managed bean
                 statisticsMBean = ec.getEnvGatherStatistics() ? new jetbrains.exodus.env.management.EnvironmentStatistics(this) : null;
                 profilerMBean = txnProfiler == null ? null : new DatabaseProfiler(this);
+                latencyMetricsMBean = new jetbrains.exodus.env.management.EnvironmentLatencyMetrics(this);
+                storeProfilerMBean = new jetbrains.exodus.env.management.StoreProfiler(this);
             } else {
                 this.configMBean = null;
                 statisticsMBean = null;
                 profilerMBean = null;
+                latencyMetricsMBean = null;
+                storeProfilerMBean = null;
             }
 
             backupController = new BackupController(this);
@@ -262,6 +281,24 @@ public class EnvironmentImpl implements Environment {
         return statistics;
     }
 
+    /**
+     * @return latencies of operations measured if {@linkplain EnvironmentConfig#ENV_LATENCY_METRICS} is on
+     */
+    @NotNull
+    public EnvironmentLatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+
+    /**
+     * @return last traced physical I/O operations or {@code null} if {@linkplain EnvironmentConfig#ENV_IO_TRACE_BUFFER_SIZE}
+     * is {@code 0}
+     */
+    @Nullable
+    public IOTraceRingBuffer getIOTrace() {
+        final IOTracer tracer = log.getConfig().getIOTracer();
+        return tracer instanceof IOTraceRingBuffer ? (IOTraceRingBuffer) tracer : null;
+    }
+
     public GarbageCollector getGC() {
         return gc;
     }
@@ -280,6 +317,15 @@ public class EnvironmentImpl implements Environment {
         return txnProfiler;
     }
 
+    /**
+     * @return profiler of stores which samples operations if {@linkplain EnvironmentConfig#ENV_STORE_PROFILER_SAMPLING_PERIOD}
+     * is positive
+     */
+    @NotNull
+    public StoreProfiler getStoreProfiler() {
+        return storeProfiler;
+    }
+
     @Override
     @NotNull
     public StoreImpl openStore(@NotNull final String name,
@@ -492,9 +538,15 @@ public class EnvironmentImpl implements Environment {
         if (statisticsMBean != null) {
             statisticsMBean.unregister();
         }
+        if (latencyMetricsMBean != null) {
+            latencyMetricsMBean.unregister();
+        }
         if (profilerMBean != null) {
             profilerMBean.unregister();
         }
+        if (storeProfilerMBean != null) {
+            storeProfilerMBean.unregister();
+        }
         runAllTransactionSafeTasks();
         // in order to avoid deadlock, do not finish gc inside lock
         // it is safe to invoke gc.finish() several times
@@ -872,6 +924,7 @@ public class EnvironmentImpl implements Environment {
             return true;
         }
 
+        final long started = latencyMetrics.start();
         final ExpiredLoggableCollection expiredLoggables;
         final long initialHighAddress;
         final long resultingHighAddress;
@@ -941,6 +994,7 @@ public class EnvironmentImpl implements Environment {
             statistics.getStatisticsItem(BYTES_MOVED_BY_GC).addTotal(resultingHighAddress - initialHighAddress);
         }
         statistics.getStatisticsItem(FLUSHED_TRANSACTIONS).incTotal();
+        latencyMetrics.record(EnvironmentLatencyMetrics.Operation.COMMIT, started);
 
         return true;
     }
@@ -1380,6 +1434,10 @@ public class EnvironmentImpl implements Environment {
                 log.getConfig().setSyncPeriod(ec.getLogSyncPeriod());
             } else if (key.equals(EnvironmentConfig.LOG_DURABLE_WRITE)) {
                 log.getConfig().setDurableWrite(ec.getLogDurableWrite());
+            } else if (key.equals(EnvironmentConfig.ENV_LATENCY_METRICS)) {
+                latencyMetrics.setEnabled(ec.getEnvLatencyMetrics());
+            } else if (key.equals(EnvironmentConfig.ENV_STORE_PROFILER_SAMPLING_PERIOD)) {
+                storeProfiler.setSamplingPeriod(ec.getEnvStoreProfilerSamplingPeriod());
             } else if (key.equals(EnvironmentConfig.ENV_IS_READONLY) && !isReadOnly()) {
                 resumeGC();
             } else if (key.equals(EnvironmentConfig.GC_UTILIZATION_FROM_SCRATCH) && ec.getGcUtilizationFromScratch()) {
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env;
+
+import jetbrains.exodus.management.LatencyMetrics;
+
+/**
+ * Latencies of operations of {@linkplain Environment}. Enabled by {@linkplain EnvironmentConfig#ENV_LATENCY_METRICS}.
+ *
+ * @see EnvironmentImpl#getLatencyMetrics()
+ */
+public class EnvironmentLatencyMetrics extends LatencyMetrics<EnvironmentLatencyMetrics.Operation> {
+
+    public enum Operation {
+        COMMIT,
+        FSYNC,
+        LOG_CACHE_MISS_READ,
+        STORE_GET,
+        CURSOR_OPEN,
+        GC_FILE_CLEANING
+    }
+
+    EnvironmentLatencyMetrics(final boolean enabled) {
+        super(Operation.values(), enabled);
+    }
+}
@@ -17,6 +17,7 @@ package jetbrains.exodus.env;
 
 import jetbrains.exodus.ArrayByteIterable;
 import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.debug.StoreProfiler;
 import jetbrains.exodus.log.Log;
 import jetbrains.exodus.log.Loggable;
 import jetbrains.exodus.log.RandomAccessLoggable;
@@ -64,6 +65,28 @@ public class StoreImpl implements Store {
     @Override
     @Nullable
     public ByteIterable get(@NotNull final Transaction txn, @NotNull final ByteIterable key) {
+        final EnvironmentLatencyMetrics metrics = environment.getLatencyMetrics();
+        final long started = metrics.start();
+        final StoreProfiler profiler = environment.getStoreProfiler();
+        final ByteIterable result;
+        if (profiler.isSampled()) {
+            final StoreProfiler.StoreProfile profile = profiler.readStarted(name, key);
+            ByteIterable value = null;
+            try {
+                value = doGet(txn, key);
+            } finally {
+                profiler.readFinished(profile, value);
+            }
+            result = value;
+        } else {
+            result = doGet(txn, key);
+        }
+        metrics.record(EnvironmentLatencyMetrics.Operation.STORE_GET, started);
+        return result;
+    }
+
+    @Nullable
+    private ByteIterable doGet(@NotNull final Transaction txn, @NotNull final ByteIterable key) {
         final TransactionBase tx = (TransactionBase) txn;
         final ITree tree = tx.getTree(this);
         if (!tx.isDisableStoreGetCache()) {
@@ -108,6 +131,7 @@ public class StoreImpl implements Store {
                        @NotNull final ByteIterable key,
                        @NotNull final ByteIterable value) {
         final ITreeMutable mutableTree = EnvironmentImpl.throwIfReadonly(txn, "Can't put in read-only transaction").getMutableTree(this);
+        profileWrite(key, value);
         if (mutableTree.put(key, value)) {
             TreeCursorMutable.notifyCursors(mutableTree);
             return true;
@@ -126,6 +150,7 @@ public class StoreImpl implements Store {
                          @NotNull final ByteIterable key,
                          @NotNull final ByteIterable value) {
         final ITreeMutable mutableTree = EnvironmentImpl.throwIfReadonly(txn, "Can't put in read-only transaction").getMutableTree(this);
+        profileWrite(key, value);
         mutableTree.putRight(key, value);
         TreeCursorMutable.notifyCursors(mutableTree);
     }
@@ -135,6 +160,7 @@ public class StoreImpl implements Store {
                        @NotNull final ByteIterable key,
                        @NotNull final ByteIterable value) {
         final ITreeMutable mutableTree = EnvironmentImpl.throwIfReadonly(txn, "Can't add in read-only transaction").getMutableTree(this);
+        profileWrite(key, value);
         if (mutableTree.add(key, value)) {
             TreeCursorMutable.notifyCursors(mutableTree);
             return true;
@@ -149,13 +175,18 @@ public class StoreImpl implements Store {
 
     @Override
     public Cursor openCursor(@NotNull final Transaction txn) {
-        return new CursorImpl(this, (TransactionBase) txn);
+        final EnvironmentLatencyMetrics metrics = environment.getLatencyMetrics();
+        final long started = metrics.start();
+        final Cursor result = new CursorImpl(this, (TransactionBase) txn);
+        metrics.record(EnvironmentLatencyMetrics.Operation.CURSOR_OPEN, started);
+        return result;
     }
 
     @Override
     public boolean delete(@NotNull final Transaction txn,
                           @NotNull final ByteIterable key) {
         final ITreeMutable mutableTree = EnvironmentImpl.throwIfReadonly(txn, "Can't delete in read-only transaction").getMutableTree(this);
+        profileWrite(key, null);
         if (mutableTree.delete(key)) {
             TreeCursorMutable.notifyCursors(mutableTree);
             return true;
@@ -169,6 +200,13 @@ public class StoreImpl implements Store {
         return name;
     }
 
+    private void profileWrite(@NotNull final ByteIterable key, @Nullable final ByteIterable value) {
+        final StoreProfiler profiler = environment.getStoreProfiler();
+        if (profiler.isSampled()) {
+            profiler.written(name, key, value);
+        }
+    }
+
     @Override
     public void close() {
     }
@@ -22,6 +22,7 @@ import jetbrains.exodus.core.dataStructures.Pair;
 import jetbrains.exodus.log.LogUtil;
 import jetbrains.exodus.system.JVMConstants;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +49,8 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
 
     private final LockingManager lockingManager;
     private long position;
+    @Nullable
+    private volatile IOTracer ioTracer;
 
     public AsyncFileDataWriter(final FileDataReader reader) {
         this(reader, null);
@@ -108,8 +111,10 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
         var buffer = ByteBuffer.wrap(b, off, len);
 
         var future = new CompletableFuture<LongIntPair>();
+        final IOTracer tracer = ioTracer;
         channel.write(buffer, position, null, new WriteCompletionHandler(buffer, future,
-                lockingManager, channel, position, block.getAddress(), len));
+                lockingManager, channel, position, block.getAddress(), len,
+                tracer, tracer == null ? null : IOCause.current(), tracer == null ? 0L : System.nanoTime()));
         position += len;
 
         return new Pair<>(block, future);
@@ -120,6 +125,11 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
         return position;
     }
 
+    @Override
+    public void setIOTracer(@Nullable final IOTracer tracer) {
+        ioTracer = tracer;
+    }
+
 
     @Override
     public boolean lock(long timeout) {
@@ -139,7 +149,14 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
     @Override
     protected void syncImpl() {
         try {
-            channel.force(false);
+            final IOTracer tracer = ioTracer;
+            if (tracer == null) {
+                channel.force(false);
+            } else {
+                final long started = System.nanoTime();
+                channel.force(false);
+                tracer.trace(IOTracer.Operation.SYNC, IOCause.current(), block.getAddress(), 0, System.nanoTime() - started);
+            }
         } catch (IOException e) {
             throw new ExodusException("Can not synchronize file " + block.getAbsolutePath(), e);
         }
@@ -192,7 +209,12 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
     public void syncDirectory() {
         try {
             if (dirChannel != null) {
+                final IOTracer tracer = ioTracer;
+                final long started = tracer == null ? 0L : System.nanoTime();
                 dirChannel.force(false);
+                if (tracer != null) {
+                    tracer.trace(IOTracer.Operation.SYNC_DIRECTORY, IOCause.current(), -1L, 0, System.nanoTime() - started);
+                }
             }
         } catch (IOException e) {
             warnCantFsyncDirectory();
@@ -324,11 +346,16 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
 
         private final int len;
 
+        private final @Nullable IOTracer tracer;
+        private final @Nullable IOCause cause;
+        private final long started;
+
         private WriteCompletionHandler(@NotNull ByteBuffer buffer,
                                        @NotNull CompletableFuture<LongIntPair> future,
                                        @NotNull LockingManager lockingManager,
                                        @NotNull AsynchronousFileChannel channel, final long position,
-                                       final long address, int len) {
+                                       final long address, int len,
+                                       @Nullable IOTracer tracer, @Nullable IOCause cause, long started) {
             this.buffer = buffer;
             this.future = future;
             this.lockingManager = lockingManager;
@@ -336,6 +363,9 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
             this.position = position;
             this.address = address;
             this.len = len;
+            this.tracer = tracer;
+            this.cause = cause;
+            this.started = started;
         }
 
 
@@ -346,6 +376,9 @@ public class AsyncFileDataWriter extends AbstractDataWriter {
                 return;
             }
 
+            if (tracer != null && cause != null) {
+                tracer.trace(IOTracer.Operation.WRITE, cause, address + position, len, System.nanoTime() - started);
+            }
             future.complete(new LongIntPair(address + position, len));
         }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Single I/O operation traced by {@linkplain IOTraceRingBuffer}. Dumped events are formatted as tab-separated
+ * lines which can be parsed back using {@linkplain #parse(String)}.
+ */
+public final class IOTraceEvent {
+
+    public static final String HEADER = "time\toperation\tcause\taddress\tbytes\tdurationNanos";
+
+    private final long time;
+    @NotNull
+    private final IOTracer.Operation operation;
+    @NotNull
+    private final IOCause cause;
+    private final long address;
+    private final int bytes;
+    private final long durationNanos;
+
+    public IOTraceEvent(final long time,
+                        @NotNull final IOTracer.Operation operation,
+                        @NotNull final IOCause cause,
+                        final long address,
+                        final int bytes,
+                        final long durationNanos) {
+        this.time = time;
+        this.operation = operation;
+        this.cause = cause;
+        this.address = address;
+        this.bytes = bytes;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return time when the event was traced in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @NotNull
+    public IOTracer.Operation getOperation() {
+        return operation;
+    }
+
+    @NotNull
+    public IOCause getCause() {
+        return cause;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public int getBytes() {
+        return bytes;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(time) + '\t' + operation + '\t' + cause + '\t' + address + '\t' + bytes + '\t' + durationNanos;
+    }
+
+    @NotNull
+    public static IOTraceEvent parse(@NotNull final String line) {
+        final String[] fields = line.split("\t");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Invalid I/O trace event: " + line);
+        }
+        return new IOTraceEvent(Long.parseLong(fields[0]), IOTracer.Operation.valueOf(fields[1]),
+                IOCause.valueOf(fields[2]), Long.parseLong(fields[3]), Integer.parseInt(fields[4]), Long.parseLong(fields[5]));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@linkplain IOTracer} keeping last traced events in a fixed-size ring buffer. Tracing an event costs claiming
+ * a sequence number with single atomic increment and publishing an immutable event to its slot, so the buffer can
+ * be left on in production. {@linkplain #getEvents()} returns events in the order they were traced skipping slots
+ * which are already overwritten by newer events or not yet written.
+ *
+ * @see jetbrains.exodus.env.EnvironmentConfig#ENV_IO_TRACE_BUFFER_SIZE
+ */
+public class IOTraceRingBuffer implements IOTracer {
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicReferenceArray<Slot> slots;
+
+    public IOTraceRingBuffer(final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size of I/O trace ring buffer should be positive");
+        }
+        final int capacity = Integer.highestOneBit(size) == size ? size : Integer.highestOneBit(size) << 1;
+        mask = capacity - 1;
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return total number of events traced since creation or last {@linkplain #clear()}
+     */
+    public long getTotalEvents() {
+        return next.get();
+    }
+
+    @Override
+    public void trace(@NotNull final IOTracer.Operation operation,
+                      @NotNull final IOCause cause,
+                      final long address,
+                      final int bytes,
+                      final long durationNanos) {
+        final long sequence = next.getAndIncrement();
+        final int index = (int) (sequence & mask);
+        final Slot slot = new Slot(sequence,
+                new IOTraceEvent(System.currentTimeMillis(), operation, cause, address, bytes, durationNanos));
+        while (true) {
+            final Slot current = slots.get(index);
+            // a writer which has lapped this one could have already published newer event
+            if (current != null && current.sequence > sequence) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return events currently held in the buffer in the order they were traced
+     */
+    @NotNull
+    public List<IOTraceEvent> getEvents() {
+        final long last = next.get();
+        final long first = Math.max(0L, last - getCapacity());
+        final List<IOTraceEvent> result = new ArrayList<>((int) (last - first));
+        for (long sequence = first; sequence < last; ++sequence) {
+            final Slot slot = slots.get((int) (sequence & mask));
+            if (slot != null && slot.sequence == sequence) {
+                result.add(slot.event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes header and events currently held in the buffer, one event per line.
+     *
+     * @return number of written events
+     * @see IOTraceEvent#parse(String)
+     */
+    public int dump(@NotNull final Writer writer) throws IOException {
+        final List<IOTraceEvent> events = getEvents();
+        writer.write(IOTraceEvent.HEADER);
+        writer.write('\n');
+        for (final IOTraceEvent event : events) {
+            writer.write(event.toString());
+            writer.write('\n');
+        }
+        writer.flush();
+        return events.size();
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; ++i) {
+            slots.set(i, null);
+        }
+        next.set(0L);
+    }
+
+    private static final class Slot {
+
+        private final long sequence;
+        @NotNull
+        private final IOTraceEvent event;
+
+        private Slot(final long sequence, @NotNull final IOTraceEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
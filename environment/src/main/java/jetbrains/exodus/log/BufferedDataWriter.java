@@ -21,9 +21,11 @@ import jetbrains.exodus.bindings.BindingUtils;
 import jetbrains.exodus.core.dataStructures.LongIntPair;
 import jetbrains.exodus.core.dataStructures.Pair;
 import jetbrains.exodus.core.dataStructures.hash.LongIterator;
+import jetbrains.exodus.core.execution.RunnableJob;
 import jetbrains.exodus.crypto.EnvKryptKt;
 import jetbrains.exodus.crypto.StreamCipherProvider;
 import jetbrains.exodus.io.*;
+import jetbrains.exodus.util.DeferredIO;
 import net.jpountz.xxhash.StreamingXXHash64;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
@@ -81,6 +83,12 @@ public final class BufferedDataWriter {
     private volatile long lastSyncedAddress;
     private volatile long lastSyncedTs;
 
+    /**
+     * Serializes background compression of complete files with removal of files and closing of the writer.
+     */
+    private final Object compressionLock = new Object();
+    private boolean compressionStopped;
+
     private final long syncPeriod;
 
     private final MessageDigest sha256;
@@ -472,7 +480,9 @@ public final class BufferedDataWriter {
 
         log.notifyBeforeBlockDeleted(block);
         try {
-            writer.removeBlock(blockAddress, rbt);
+            synchronized (compressionLock) {
+                writer.removeBlock(blockAddress, rbt);
+            }
             log.clearFileFromLogCache(blockAddress, 0);
         } finally {
             log.notifyAfterBlockDeleted(blockAddress);
@@ -718,6 +728,10 @@ public final class BufferedDataWriter {
     }
 
     void close(boolean sync) {
+        synchronized (compressionLock) {
+            compressionStopped = true;
+        }
+
         if (sync) {
             sync();
         } else {
@@ -754,7 +768,9 @@ public final class BufferedDataWriter {
         ensureWritesAreCompleted();
 
         writeCache.clear();
-        writer.clear();
+        synchronized (compressionLock) {
+            writer.clear();
+        }
 
         currentHighAddress = 0;
         committedHighAddress = 0;
@@ -950,12 +966,36 @@ public final class BufferedDataWriter {
                     //noinspection ResultOfMethodCallIgnored
                     ((File) block).setReadOnly();
                 }
+
+                // encrypted data is not compressible
+                if (cipherProvider == null && log.getConfig().isCompressFullFiles() &&
+                        refreshed instanceof FileDataReader.FileBlock) {
+                    compressInBackground((File) refreshed, lastFile);
+                }
             }
         } else if (endPosition > fileLengthBound) {
             throw new ExodusException("endPosition > fileLengthBound: " + endPosition + " > " + fileLengthBound);
         }
     }
 
+    /**
+     * Compresses complete file off the writer thread. The file is replaced atomically, and cached handles of
+     * the original file are invalidated, so readers switch to the compressed file as soon as it is ready.
+     */
+    private void compressInBackground(@NotNull final File file, final long address) {
+        DeferredIO.getJobProcessor().queue(new RunnableJob(() -> {
+            synchronized (compressionLock) {
+                // the log could be closed or cleared, or the file could be deleted by GC
+                if (compressionStopped || !log.isImmutableFile(address) || !file.exists()) {
+                    return;
+                }
+                if (CompressedLogFile.compress(file, pageSize) && logger.isDebugEnabled()) {
+                    logger.debug("Compressed file " + LogUtil.getLogFilename(address));
+                }
+            }
+        }));
+    }
+
     void openNewFileIfNeeded(long fileLengthBound, Log log) {
         assert blockSetMutable != null;
 
@@ -50,6 +50,7 @@ public class LogConfig {
     private boolean warmup;
     private long syncPeriod;
     private boolean fullFileReadonly;
+    private boolean compressFullFiles;
     private StreamCipherProvider cipherProvider;
     private byte[] cipherKey;
     private long cipherBasicIV;
@@ -62,8 +63,12 @@ public class LogConfig {
 
     private boolean forceDataCheckOnStart;
 
+    private int checkDataConsistencyThreads;
+
     private boolean proceedDataRestoreAtAnyCost;
 
+    private IOTracer ioTracer;
+
 
     public LogConfig() {
         useV1Format = EnvironmentConfig.DEFAULT.getUseVersion1Format();
@@ -79,6 +84,15 @@ public class LogConfig {
         return this;
     }
 
+    public int getCheckDataConsistencyThreads() {
+        return checkDataConsistencyThreads;
+    }
+
+    public LogConfig setCheckDataConsistencyThreads(int checkDataConsistencyThreads) {
+        this.checkDataConsistencyThreads = checkDataConsistencyThreads;
+        return this;
+    }
+
     public boolean isProceedDataRestoreAtAnyCost() {
         return proceedDataRestoreAtAnyCost;
     }
@@ -311,6 +325,16 @@ public class LogConfig {
         return this;
     }
 
+    @Nullable
+    public IOTracer getIOTracer() {
+        return ioTracer;
+    }
+
+    public LogConfig setIOTracer(@Nullable IOTracer ioTracer) {
+        this.ioTracer = ioTracer;
+        return this;
+    }
+
     public long getSyncPeriod() {
         if (syncPeriod == 0) {
             syncPeriod = EnvironmentConfig.DEFAULT.getLogSyncPeriod();
@@ -334,6 +358,15 @@ public class LogConfig {
         return this;
     }
 
+    public boolean isCompressFullFiles() {
+        return compressFullFiles;
+    }
+
+    public LogConfig setCompressFullFiles(boolean compressFullFiles) {
+        this.compressFullFiles = compressFullFiles;
+        return this;
+    }
+
     public StreamCipherProvider getCipherProvider() {
         return cipherProvider;
     }
@@ -63,22 +63,19 @@ private fun cryptBlocksImpl(cipherProvider: StreamCipherProvider,
     var inputOff = inputOffset
     var len = length
     var outputOff = outputOffset
+    val cipher = cipherProvider.newCipher()
 
     while (len > 0) {
         val offsetInBlock = inputOff % alignment
         val blockLen = minOf(alignment - offsetInBlock, len)
-        val cipher = cipherProvider.newCipher().apply {
-            init(cipherKey, iv.asHashedIV())
-        }
+        cipher.init(cipherKey, iv.asHashedIV())
         // if offset is not the left bound of a block then the cipher should skip some bytes
         if (offsetInBlock > 0) {
-            repeat(offsetInBlock) {
-                cipher.crypt(0)
-            }
-        }
-        repeat(blockLen) {
-            output[outputOff++] = cipher.crypt(input[inputOff++])
+            cipher.skip(offsetInBlock.toLong())
         }
+        cipher.cryptBlock(input, inputOff, output, outputOff, blockLen)
+        inputOff += blockLen
+        outputOff += blockLen
         ++iv
         len -= blockLen
     }
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.debug
+
+import jetbrains.exodus.ByteIterable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Sampling profiler of operations of stores. Each `Store.get()`, `put()`, `add()`, `putRight()` and `delete()`
+ * is sampled with the probability 1 / [samplingPeriod]. For each store, the profiler counts sampled reads, writes,
+ * log cache misses occurred during sampled reads and read and written bytes. Frequencies of keys are estimated by
+ * count-min sketch, keys with highest estimated frequencies are reported as heavy keys.
+ *
+ * All numbers are sampled, i.e. to estimate actual ones they should be multiplied by [samplingPeriod].
+ */
+class StoreProfiler(samplingPeriod: Int) {
+
+    /**
+     * `0` turns the profiler off.
+     */
+    @Volatile
+    var samplingPeriod: Int = samplingPeriod
+
+    private val stores = ConcurrentHashMap<String, StoreProfile>()
+    private val currentRead = ThreadLocal<StoreProfile>()
+
+    val isEnabled: Boolean get() = samplingPeriod > 0
+
+    fun isSampled(): Boolean {
+        val period = samplingPeriod
+        return period > 0 && (period == 1 || ThreadLocalRandom.current().nextInt(period) == 0)
+    }
+
+    /**
+     * Starts profiling of a sampled read. Log cache misses in current thread are attributed to the store until
+     * [readFinished] is called.
+     */
+    fun readStarted(storeName: String, key: ByteIterable): StoreProfile {
+        val profile = getProfile(storeName)
+        profile.reads.increment()
+        profile.keyAccessed(key)
+        currentRead.set(profile)
+        return profile
+    }
+
+    fun readFinished(profile: StoreProfile, value: ByteIterable?) {
+        currentRead.remove()
+        if (value != null) {
+            profile.bytesRead.add(value.length.toLong())
+        }
+    }
+
+    fun written(storeName: String, key: ByteIterable, value: ByteIterable?) {
+        val profile = getProfile(storeName)
+        profile.writes.increment()
+        profile.bytesWritten.add(key.length.toLong() + (value?.length ?: 0))
+        profile.keyAccessed(key)
+    }
+
+    /**
+     * Is called by the log on cache miss.
+     */
+    fun cacheMiss() {
+        currentRead.get()?.cacheMisses?.increment()
+    }
+
+    /**
+     * Profiles of stores sorted by number of sampled operations in descending order.
+     */
+    val profiles: List<StoreProfile>
+        get() = stores.values.sortedByDescending { it.reads.sum() + it.writes.sum() }
+
+    fun reset() = stores.clear()
+
+    private fun getProfile(storeName: String): StoreProfile = stores.computeIfAbsent(storeName) { StoreProfile(it) }
+
+    fun dump(): String = buildString {
+        append("Store profile, sampling period = ").append(samplingPeriod).append('\n')
+        profiles.forEach { profile ->
+            append(profile).append('\n')
+            profile.heavyKeys.forEach { (key, count) ->
+                append("    ").append(key).append(": ~").append(count).append('\n')
+            }
+        }
+    }
+
+    class StoreProfile(val name: String) {
+
+        internal val reads = LongAdder()
+        internal val writes = LongAdder()
+        internal val cacheMisses = LongAdder()
+        internal val bytesRead = LongAdder()
+        internal val bytesWritten = LongAdder()
+        private val sketch = CountMinSketch()
+        // hex presentations of heavy keys with their estimated frequencies
+        private val heavy = HashMap<String, Long>()
+
+        val totalReads: Long get() = reads.sum()
+
+        val totalWrites: Long get() = writes.sum()
+
+        val totalCacheMisses: Long get() = cacheMisses.sum()
+
+        val totalBytesRead: Long get() = bytesRead.sum()
+
+        val totalBytesWritten: Long get() = bytesWritten.sum()
+
+        /**
+         * Hex presentations of keys with highest estimated frequencies sorted in descending order of the frequencies.
+         */
+        val heavyKeys: List<Pair<String, Long>>
+            get() = synchronized(heavy) { heavy.toList() }.sortedByDescending { it.second }
+
+        /**
+         * Estimated frequency of the key, never less than actual number of sampled accesses.
+         */
+        fun estimate(key: ByteIterable) = sketch.estimate(hash(key))
+
+        internal fun keyAccessed(key: ByteIterable) {
+            val estimate = sketch.add(hash(key))
+            synchronized(heavy) {
+                val hex = toHex(key)
+                if (heavy.containsKey(hex) || heavy.size < HEAVY_KEYS) {
+                    heavy[hex] = estimate
+                } else {
+                    val lightest = heavy.minByOrNull { it.value }
+                    if (lightest != null && lightest.value < estimate) {
+                        heavy.remove(lightest.key)
+                        heavy[hex] = estimate
+                    }
+                }
+            }
+        }
+
+        override fun toString() =
+                "$name: reads = $totalReads, writes = $totalWrites, cache misses = $totalCacheMisses, " +
+                        "bytes read = $totalBytesRead, bytes written = $totalBytesWritten"
+    }
+
+    private class CountMinSketch {
+
+        private val counters = AtomicLongArray(DEPTH * WIDTH)
+
+        fun add(hash: Long): Long {
+            var result = Long.MAX_VALUE
+            forEachCell(hash) { cell -> result = minOf(result, counters.incrementAndGet(cell)) }
+            return result
+        }
+
+        fun estimate(hash: Long): Long {
+            var result = Long.MAX_VALUE
+            forEachCell(hash) { cell -> result = minOf(result, counters.get(cell)) }
+            return result
+        }
+
+        private inline fun forEachCell(hash: Long, action: (Int) -> Unit) {
+            val h1 = hash.toInt()
+            val h2 = (hash ushr 32).toInt()
+            for (row in 0 until DEPTH) {
+                // Kirsch-Mitzenmacher: derive row hashes from two halves of the single 64-bit hash
+                val h = h1 + row * h2
+                action(row * WIDTH + (h and (WIDTH - 1)))
+            }
+        }
+    }
+
+    companion object {
+
+        private const val DEPTH = 4
+        private const val WIDTH = 1 shl 12
+        private const val HEAVY_KEYS = 16
+        private const val MAX_HEX_KEY_LENGTH = 64
+
+        private fun hash(key: ByteIterable): Long {
+            val bytes = key.bytesUnsafe
+            var h = -0x340d631b7bdddcdbL // FNV-1a offset basis
+            for (i in 0 until key.length) {
+                h = (h xor (bytes[i].toLong() and 0xff)) * 0x100000001b3L
+            }
+            // final avalanche so that both halves of the hash are well mixed
+            h = (h xor (h ushr 33)) * -0xae502812aa7333L
+            return h xor (h ushr 33)
+        }
+
+        private fun toHex(key: ByteIterable): String {
+            val bytes = key.bytesUnsafe
+            val length = key.length
+            return buildString {
+                for (i in 0 until minOf(length, MAX_HEX_KEY_LENGTH)) {
+                    val b = bytes[i].toInt() and 0xff
+                    append(Character.forDigit(b shr 4, 16)).append(Character.forDigit(b and 0xf, 16))
+                }
+                if (length > MAX_HEX_KEY_LENGTH) {
+                    append("...")
+                }
+            }
+        }
+    }
+}
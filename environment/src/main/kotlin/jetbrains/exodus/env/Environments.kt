@@ -21,6 +21,7 @@ import jetbrains.exodus.core.execution.JobHandler
 import jetbrains.exodus.crypto.newCipherProvider
 import jetbrains.exodus.io.AsyncFileDataWriter
 import jetbrains.exodus.io.DataReaderWriterProvider
+import jetbrains.exodus.io.IOTraceRingBuffer
 import jetbrains.exodus.io.LockingManager
 import jetbrains.exodus.io.SharedOpenFilesCache
 import jetbrains.exodus.log.Log
@@ -117,14 +118,19 @@ object Environments {
             isCleanDirectoryExpected = ec.isLogCleanDirectoryExpected
             isClearInvalidLog = ec.isLogClearInvalid
             isWarmup = ec.logCacheWarmup
+            if (ec.envIOTraceBufferSize > 0) {
+                setIOTracer(IOTraceRingBuffer(ec.envIOTraceBufferSize))
+            }
             syncPeriod = ec.logSyncPeriod
             isFullFileReadonly = ec.isLogFullFileReadonly
+            isCompressFullFiles = ec.isLogCompressFullFiles
             cipherProvider = ec.cipherId?.let { cipherId -> newCipherProvider(cipherId) }
             cipherKey = ec.cipherKey
             cipherBasicIV = ec.cipherBasicIV
             isCheckPagesAtRuntime = ec.checkPagesAtRuntime
             isSkipInvalidLoggableType = ec.isLogSkipInvalidLoggableType
             isForceDataCheckOnStart = ec.logForceCheckDataConsistency
+            checkDataConsistencyThreads = ec.logCheckDataConsistencyThreads
             isProceedDataRestoreAtAnyCost = ec.isLogProceedDataRestoredAtAnyCost
 
             setUseV1Format(ec.useVersion1Format)
@@ -137,6 +143,59 @@ object Environments {
         { SharedOpenFilesCache.setSize(config.cacheOpenFilesCount) }, EnvironmentImpl.CURRENT_FORMAT_VERSION
     )
 
+    /**
+     * Replaces log files and startup metadata of the environment in [location] with the ones of the compacted
+     * environment in [tempDir]. Replaced files are renamed to `*.del` files. The environment in [location] should be
+     * closed.
+     *
+     * @return `false` if log files of the environment can't be renamed
+     */
+    internal fun moveCompactedFiles(location: String, tempDir: File): Boolean {
+        LogUtil.listFiles(File(location)).forEach { file ->
+            if (!AsyncFileDataWriter.renameFile(file)) {
+                EnvironmentImpl.loggerError("Failed to rename file: $file")
+                return false
+            }
+        }
+
+        val locationPath = Paths.get(location)
+
+        val firstMetadataPath = locationPath.resolve(StartupMetadata.FIRST_FILE_NAME)
+
+        if (Files.exists(firstMetadataPath)) {
+            val delFirstMetadataPath = locationPath.resolve(
+                StartupMetadata.FIRST_FILE_NAME +
+                        AsyncFileDataWriter.DELETED_FILE_EXTENSION
+            )
+            Files.move(firstMetadataPath, delFirstMetadataPath)
+        }
+
+        val secondMetadataPath = locationPath.resolve(StartupMetadata.SECOND_FILE_NAME)
+
+        if (Files.exists(secondMetadataPath)) {
+            val delSecondMetadataPath = locationPath.resolve(
+                StartupMetadata.SECOND_FILE_NAME +
+                        AsyncFileDataWriter.DELETED_FILE_EXTENSION
+            )
+            Files.move(secondMetadataPath, delSecondMetadataPath)
+        }
+
+        LogUtil.listFiles(tempDir).forEach { file ->
+            if (!file.renameTo(File(location, file.name))) {
+                throw ExodusException("Failed to rename file: $file")
+            }
+        }
+
+        LogUtil.listMetadataFiles(tempDir).forEach { file ->
+            if (!file.renameTo(File(location, file.name))) {
+                throw ExodusException("Failed to rename file: $file")
+            }
+        }
+
+        Files.deleteIfExists(Paths.get(tempDir.toURI()).resolve(LockingManager.LOCK_FILE_NAME))
+        return true
+    }
+
     private fun <T : EnvironmentImpl> prepare(envCreator: () -> T): T {
         var env = envCreator()
         val ec = env.environmentConfig
@@ -179,49 +238,10 @@ object Environments {
                 }
                 env.close()
 
-                LogUtil.listFiles(File(location)).forEach { file ->
-                    if (!AsyncFileDataWriter.renameFile(file)) {
-                        EnvironmentImpl.loggerError("Failed to rename file: $file")
-                        return@let
-                    }
-                }
-
-                val locationPath = Paths.get(location)
-
-                val firstMetadataPath = locationPath.resolve(StartupMetadata.FIRST_FILE_NAME)
-
-                if (Files.exists(firstMetadataPath)) {
-                    val delFirstMetadataPath = locationPath.resolve(
-                        StartupMetadata.FIRST_FILE_NAME +
-                                AsyncFileDataWriter.DELETED_FILE_EXTENSION
-                    )
-                    Files.move(firstMetadataPath, delFirstMetadataPath)
-                }
-
-                val secondMetadataPath = locationPath.resolve(StartupMetadata.SECOND_FILE_NAME)
-
-                if (Files.exists(secondMetadataPath)) {
-                    val delSecondMetadataPath = locationPath.resolve(
-                        StartupMetadata.SECOND_FILE_NAME +
-                                AsyncFileDataWriter.DELETED_FILE_EXTENSION
-                    )
-                    Files.move(secondMetadataPath, delSecondMetadataPath)
-                }
-
-                LogUtil.listFiles(tempDir).forEach { file ->
-                    if (!file.renameTo(File(location, file.name))) {
-                        throw ExodusException("Failed to rename file: $file")
-                    }
-                }
-
-                LogUtil.listMetadataFiles(tempDir).forEach { file ->
-                    if (!file.renameTo(File(location, file.name))) {
-                        throw ExodusException("Failed to rename file: $file")
-                    }
+                if (!moveCompactedFiles(location, tempDir)) {
+                    return@let
                 }
 
-                Files.deleteIfExists(Paths.get(tempDir.toURI()).resolve(LockingManager.LOCK_FILE_NAME))
-
                 env = envCreator()
 
                 if (needsToBeMigrated) {
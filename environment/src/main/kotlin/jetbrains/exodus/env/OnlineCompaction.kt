@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env
+
+import jetbrains.exodus.ArrayByteIterable
+import jetbrains.exodus.ExodusException
+import jetbrains.exodus.runtime.OOMGuard
+import mu.KLogging
+import java.io.File
+import kotlin.math.min
+
+/**
+ * Compacts open environment to a fresh log without closing it for the most of the time. First, [copySnapshot]
+ * copies the latest snapshot of all stores to a new environment in a temporary directory using successive
+ * [Store.putRight]. Then each [catchUp] replays changes made in the source environment since previous snapshot.
+ * Only stores whose tree root addresses changed are compared with the previous snapshot, though each such store is
+ * compared entirely, so a catch-up round costs as much as the size of the stores modified meanwhile rather than the
+ * number of changes. Finally, [switchOver] makes the source environment read-only, replays the last changes, closes
+ * it, replaces its log with the compacted one and opens the environment again.
+ *
+ * The source environment accepts reads and writes until [switchOver], after it only the returned environment
+ * should be used. Replaced `.xd` files are kept with the `.del` extension like with
+ * [EnvironmentConfig.setEnvCompactOnOpen].
+ *
+ * @see compactOnline
+ */
+class OnlineCompaction(private val env: EnvironmentImpl) {
+
+    private val tempDir = File(env.location, "compactTemp${System.currentTimeMillis()}")
+    private var target: EnvironmentImpl? = null
+    private var snapshot: Transaction? = null
+
+    /**
+     * Copies the latest snapshot of all stores to the compacted environment.
+     *
+     * @return number of copied key/value pairs
+     */
+    fun copySnapshot(): Long {
+        if (target != null) {
+            throw IllegalStateException("Snapshot is already copied")
+        }
+        if (env.isReadOnly) {
+            throw ExodusException("Can't compact readonly environment: ${env.location}")
+        }
+        if (!tempDir.mkdir()) {
+            throw ExodusException("Failed to create temporary directory: $tempDir")
+        }
+        if (tempDir.freeSpace < env.diskUsage) {
+            tempDir.delete()
+            throw ExodusException("Not enough free disk space to compact the database: ${env.location}")
+        }
+        val targetEnv = Environments.newInstance(tempDir, targetConfig()) as EnvironmentImpl
+        target = targetEnv
+        val sourceTxn = env.beginReadonlyTransaction()
+        snapshot = sourceTxn
+        var copied = 0L
+        val guard = newOOMGuard()
+        env.getAllStoreNames(sourceTxn).forEach { name ->
+            targetEnv.executeInExclusiveTransaction { targetTxn ->
+                val sourceStore = env.openStore(name, StoreConfig.USE_EXISTING, sourceTxn)
+                val targetStore = targetEnv.openStore(name, sourceStore.config, targetTxn)
+                sourceStore.openCursor(sourceTxn).forEach {
+                    targetStore.putRight(targetTxn, ArrayByteIterable(key), ArrayByteIterable(value))
+                    if (++copied % FLUSH_PERIOD == 0L || guard.isItCloseToOOM()) {
+                        targetTxn.flush()
+                        guard.reset()
+                    }
+                }
+            }
+        }
+        logger.info { "Copied $copied pairs of ${env.location} to $tempDir" }
+        return copied
+    }
+
+    /**
+     * Replays changes made in the source environment since previous snapshot to the compacted environment.
+     *
+     * @return number of replayed changes
+     */
+    fun catchUp(): Long {
+        val targetEnv = target ?: throw IllegalStateException("Snapshot is not copied")
+        val oldTxn = snapshot ?: throw IllegalStateException("Snapshot is not copied")
+        val newTxn = env.beginReadonlyTransaction()
+        var changes = 0L
+        try {
+            val names = env.getAllStoreNames(newTxn)
+            targetEnv.executeInExclusiveTransaction { targetTxn ->
+                targetEnv.getAllStoreNames(targetTxn).forEach { name ->
+                    if (!env.storeExists(name, newTxn)) {
+                        targetEnv.removeStore(name, targetTxn)
+                        ++changes
+                    }
+                }
+                names.forEach { name ->
+                    changes += catchUpStore(name, oldTxn, newTxn, targetEnv, targetTxn)
+                }
+            }
+        } catch (t: Throwable) {
+            newTxn.abort()
+            throw t
+        }
+        oldTxn.abort()
+        snapshot = newTxn
+        logger.info { "Replayed $changes changes of ${env.location} to $tempDir" }
+        return changes
+    }
+
+    /**
+     * Makes the source environment read-only, replays the last changes, closes the source environment and replaces
+     * its log with the compacted one. All transactions of the source environment should be finished, otherwise
+     * [ExodusException] is thrown, and the source environment is writable again and the compaction can be either
+     * retried or [aborted][abort].
+     *
+     * @return the environment reopened over the compacted log
+     */
+    fun switchOver(): Environment {
+        val targetEnv = target ?: throw IllegalStateException("Snapshot is not copied")
+        val ec = env.environmentConfig
+        // writers get ReadonlyTransactionException from now on
+        ec.setEnvIsReadonly(true)
+        try {
+            catchUp()
+            // closing the environment would fail after it partly shut down, so transactions are checked in advance
+            val notFinished = env.activeTransactions() - 1 // except the snapshot
+            if (notFinished > 0) {
+                throw ExodusException("Can't switch ${env.location} to compacted log: $notFinished transaction(s) not finished")
+            }
+            snapshot?.abort()
+            snapshot = null
+            env.close()
+        } catch (t: Throwable) {
+            // the compacted environment is still open, so the compaction can be aborted
+            ec.setEnvIsReadonly(false)
+            throw t
+        }
+        targetEnv.close()
+        target = null
+        val location = env.location
+        val contextual = env is ContextualEnvironmentImpl
+        if (!Environments.moveCompactedFiles(location, tempDir)) {
+            throw ExodusException("Failed to replace log files of $location with compacted ones")
+        }
+        tempDir.delete()
+        ec.setEnvIsReadonly(false)
+        logger.info { "Switched $location to compacted log" }
+        return if (contextual) Environments.newContextualInstance(location, ec) else Environments.newInstance(location, ec)
+    }
+
+    /**
+     * Cancels the compaction and deletes the compacted environment. The source environment stays intact.
+     */
+    fun abort() {
+        snapshot?.abort()
+        snapshot = null
+        target?.close()
+        target = null
+        if (tempDir.exists()) {
+            tempDir.deleteRecursively()
+        }
+    }
+
+    private fun catchUpStore(name: String,
+                             oldTxn: Transaction,
+                             newTxn: Transaction,
+                             targetEnv: EnvironmentImpl,
+                             targetTxn: Transaction): Long {
+        val newStore = env.openStore(name, StoreConfig.USE_EXISTING, newTxn)
+        val oldStore = if (env.storeExists(name, oldTxn)) env.openStore(name, StoreConfig.USE_EXISTING, oldTxn) else null
+        if (oldStore != null && oldStore.config == newStore.config &&
+            (oldTxn as TransactionBase).getTree(oldStore).rootAddress ==
+            (newTxn as TransactionBase).getTree(newStore).rootAddress) {
+            return 0L
+        }
+        if (oldStore != null && oldStore.config != newStore.config && targetEnv.storeExists(name, targetTxn)) {
+            // the store was recreated with different configuration
+            targetEnv.removeStore(name, targetTxn)
+        }
+        val targetStore = targetEnv.openStore(name, newStore.config, targetTxn)
+        val duplicates = newStore.config.duplicates
+        var changes = 0L
+        val oldCursor = if (oldStore == null || oldStore.config != newStore.config) null else oldStore.openCursor(oldTxn)
+        try {
+            newStore.openCursor(newTxn).use { newCursor ->
+                var hasOld = oldCursor?.next ?: false
+                var hasNew = newCursor.next
+                while (hasOld || hasNew) {
+                    val cmp = when {
+                        !hasOld -> 1
+                        !hasNew -> -1
+                        else -> compare(oldCursor!!, newCursor, duplicates)
+                    }
+                    if (cmp < 0) {
+                        val cursor = oldCursor!!
+                        delete(targetStore, targetTxn, cursor, duplicates)
+                        hasOld = cursor.next
+                        ++changes
+                    } else {
+                        if (cmp > 0 || (!duplicates && oldCursor!!.value.compareTo(newCursor.value) != 0)) {
+                            targetStore.put(targetTxn, ArrayByteIterable(newCursor.key), ArrayByteIterable(newCursor.value))
+                            ++changes
+                        }
+                        if (cmp == 0) {
+                            hasOld = oldCursor!!.next
+                        }
+                        hasNew = newCursor.next
+                    }
+                    if (changes > 0 && changes % FLUSH_PERIOD == 0L) {
+                        targetTxn.flush()
+                    }
+                }
+            }
+        } finally {
+            oldCursor?.close()
+        }
+        return changes
+    }
+
+    private fun targetConfig() = EnvironmentConfig().also { config ->
+        env.environmentConfig.settings.forEach { (key, value) -> config.setSetting(key, value) }
+        config.setEnvIsReadonly(false)
+        config.setEnvCompactOnOpen(false)
+        config.setGcEnabled(false)
+        config.setManagementEnabled(false)
+    }
+
+    companion object : KLogging() {
+
+        private const val FLUSH_PERIOD = 100_000L
+
+        private fun compare(oldCursor: Cursor, newCursor: Cursor, duplicates: Boolean): Int {
+            val cmp = oldCursor.key.compareTo(newCursor.key)
+            return if (cmp != 0 || !duplicates) cmp else oldCursor.value.compareTo(newCursor.value)
+        }
+
+        private fun delete(store: Store, txn: Transaction, cursor: Cursor, duplicates: Boolean) {
+            if (duplicates) {
+                store.openCursor(txn).use { targetCursor ->
+                    if (targetCursor.getSearchBoth(cursor.key, cursor.value)) {
+                        targetCursor.deleteCurrent()
+                    }
+                }
+            } else {
+                store.delete(txn, cursor.key)
+            }
+        }
+
+        private fun newOOMGuard(): OOMGuard {
+            val maxMemory = Runtime.getRuntime().maxMemory()
+            return OOMGuard(if (maxMemory == Long.MAX_VALUE) 20_000_000 else min(maxMemory / 50L, 1000_000_000).toInt())
+        }
+    }
+}
+
+/**
+ * Compacts the environment online using [OnlineCompaction]: copies its latest snapshot to a fresh log, replays
+ * changes made meanwhile in up to [catchUpRounds] rounds while the number of changes decreases, then switches the
+ * environment to the compacted log. The environment is not available for writing only during the last round and
+ * the switch. Limitations:
+ *
+ * - the last round compares each store modified since the previous round entirely, so writers are blocked for
+ *   the time proportional to the size of the modified stores rather than to the number of changes;
+ * - the environment is not switched in place: the receiver is closed and a new instance is returned, so objects
+ *   wrapping the receiver, like `PersistentEntityStore`, should be recreated;
+ * - all transactions should be finished before the switch, otherwise [ExodusException] is thrown, the compaction
+ *   is aborted and the receiver remains open and writable.
+ *
+ * @return the environment reopened over the compacted log, the receiver is closed
+ */
+@JvmOverloads
+fun Environment.compactOnline(catchUpRounds: Int = 3): Environment {
+    val compaction = OnlineCompaction(this as EnvironmentImpl)
+    try {
+        var changes = compaction.copySnapshot()
+        for (i in 0 until catchUpRounds) {
+            val replayed = compaction.catchUp()
+            if (replayed == 0L || replayed >= changes) {
+                break
+            }
+            changes = replayed
+        }
+        return compaction.switchOver()
+    } catch (t: Throwable) {
+        if (isOpen) {
+            compaction.abort()
+        }
+        throw t
+    }
+}
@@ -32,7 +32,13 @@ fun <T> EnvironmentImpl.executeInMetaWriteLock(action: () -> T): T {
     }
 }
 
-internal fun EnvironmentImpl.tryUpdate(): Boolean {
+/**
+ * Updates the environment to the last database root written to the log by another process or shipped from another
+ * database, so that new transactions see the data. Applicable only to environments which don't write to the log.
+ *
+ * @return `true` if the environment was updated
+ */
+fun EnvironmentImpl.tryUpdate(): Boolean {
     return executeInCommitLock {
         tryUpdateUnsafe()
     }
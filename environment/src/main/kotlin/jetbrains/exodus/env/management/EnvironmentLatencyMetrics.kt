@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+import jetbrains.exodus.env.Environment
+import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.EnvironmentImpl
+import jetbrains.exodus.management.MBeanBase
+import java.io.File
+
+class EnvironmentLatencyMetrics(private val env: EnvironmentImpl) : MBeanBase(getObjectName(env)), EnvironmentLatencyMetricsMBean {
+
+    private val metrics = env.latencyMetrics
+
+    override var enabled: Boolean
+        get() = metrics.isEnabled
+        set(value) {
+            env.environmentConfig.setEnvLatencyMetrics(value)
+        }
+
+    override val operations: Array<String>
+        get() = metrics.operations.map { it.name }.toTypedArray()
+
+    override val latencies: Array<String>
+        get() = metrics.summary
+
+    override fun getCount(operation: String) = metrics.getHistogram(metrics.getOperation(operation)).count
+
+    override fun getPercentileMicros(operation: String, percentile: Double) =
+            metrics.getHistogram(metrics.getOperation(operation)).getPercentileNanos(percentile) / 1000.0
+
+    override fun getMaxMicros(operation: String) =
+            metrics.getHistogram(metrics.getOperation(operation)).maxNanos / 1000.0
+
+    override fun reset() = metrics.reset()
+
+    override val ioTraceEvents: Long
+        get() = env.ioTrace?.totalEvents ?: -1L
+
+    override fun dumpIOTrace(path: String): Int {
+        val trace = env.ioTrace ?: throw IllegalStateException("I/O isn't traced, set ${EnvironmentConfig.ENV_IO_TRACE_BUFFER_SIZE}")
+        return File(path).bufferedWriter().use { trace.dump(it) }
+    }
+
+    companion object {
+        internal fun getObjectName(env: Environment) =
+                "$LATENCY_METRICS_OBJECT_NAME_PREFIX, location=${escapeLocation(env.location)}"
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+const val LATENCY_METRICS_OBJECT_NAME_PREFIX = "jetbrains.exodus.env: type=EnvironmentLatencyMetrics"
+
+interface EnvironmentLatencyMetricsMBean {
+    var enabled: Boolean
+    val operations: Array<String>
+    val latencies: Array<String>
+    fun getCount(operation: String): Long
+    fun getPercentileMicros(operation: String, percentile: Double): Double
+    fun getMaxMicros(operation: String): Double
+    fun reset()
+    /**
+     * Total number of traced physical I/O operations or `-1` if I/O isn't traced.
+     */
+    val ioTraceEvents: Long
+    /**
+     * Dumps last traced physical I/O operations to the file, returns number of dumped operations.
+     */
+    fun dumpIOTrace(path: String): Int
+}
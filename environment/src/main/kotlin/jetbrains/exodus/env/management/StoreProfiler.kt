@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+import jetbrains.exodus.env.Environment
+import jetbrains.exodus.env.EnvironmentImpl
+import jetbrains.exodus.management.MBeanBase
+
+class StoreProfiler(private val env: EnvironmentImpl) : MBeanBase(getObjectName(env)), StoreProfilerMBean {
+
+    private val profiler = env.storeProfiler
+
+    override var samplingPeriod: Int
+        get() = profiler.samplingPeriod
+        set(value) {
+            env.environmentConfig.setEnvStoreProfilerSamplingPeriod(value)
+        }
+
+    override val stores: Array<String>
+        get() = profiler.profiles.map { it.toString() }.toTypedArray()
+
+    override fun getHeavyKeys(storeName: String) =
+            profiler.profiles.find { it.name == storeName }?.heavyKeys?.map { (key, count) -> "$key: ~$count" }
+                    ?.toTypedArray() ?: arrayOf()
+
+    override fun dump() = profiler.dump()
+
+    override fun reset() = profiler.reset()
+
+    companion object {
+        internal fun getObjectName(env: Environment) =
+                "$STORE_PROFILER_OBJECT_NAME_PREFIX, location=${escapeLocation(env.location)}"
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+const val STORE_PROFILER_OBJECT_NAME_PREFIX = "jetbrains.exodus.env: type=StoreProfiler"
+
+interface StoreProfilerMBean {
+    /**
+     * Operations of stores are sampled with the probability `1 / samplingPeriod`, `0` turns the profiler off.
+     */
+    var samplingPeriod: Int
+    /**
+     * Sampled statistics of stores, one line per store, the most loaded stores go first.
+     */
+    val stores: Array<String>
+    /**
+     * Hex presentations of keys of the store with highest estimated sampled frequencies.
+     */
+    fun getHeavyKeys(storeName: String): Array<String>
+    fun dump(): String
+    fun reset()
+}
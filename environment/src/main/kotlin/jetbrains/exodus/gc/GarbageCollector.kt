@@ -26,6 +26,7 @@ import jetbrains.exodus.core.execution.LatchJob
 import jetbrains.exodus.core.execution.SharedTimer
 import jetbrains.exodus.env.*
 import jetbrains.exodus.io.Block
+import jetbrains.exodus.io.IOCause
 import jetbrains.exodus.io.RemoveBlockType
 import jetbrains.exodus.log.AbstractBlockListener
 import jetbrains.exodus.log.Log
@@ -147,7 +148,12 @@ class GarbageCollector(internal val environment: EnvironmentImpl) {
      */
     internal fun cleanFiles(fragmentedFiles: Iterator<Long>): Boolean {
         cleaner.checkThread()
-        return doCleanFiles(fragmentedFiles)
+        val prevCause = IOCause.set(IOCause.GC)
+        try {
+            return doCleanFiles(fragmentedFiles)
+        } finally {
+            IOCause.set(prevCause)
+        }
     }
 
     internal fun isFileCleaned(file: Long) = pendingFilesToDelete.contains(file)
@@ -268,8 +274,10 @@ class GarbageCollector(internal val environment: EnvironmentImpl) {
                     continue
                 }
 
+                val cleaningStarted = environment.latencyMetrics.start()
                 try {
                     cleanSingleFile(file, txn)
+                    environment.latencyMetrics.record(EnvironmentLatencyMetrics.Operation.GC_FILE_CLEANING, cleaningStarted)
                 } catch (e: Exception) {
                     brokenFiles.add(file)
                     throw e
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io
+
+import mu.KLogging
+import net.jpountz.lz4.LZ4Exception
+import net.jpountz.lz4.LZ4Factory
+import java.io.*
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Index of a complete and immutable .xd file compressed page by page using LZ4. Compressed file consists of a header,
+ * page frames and a frame index:
+ *
+ * - header: [MAGIC], page size, number of pages and logical (uncompressed) length of the file;
+ * - page frames: LZ4 compressed pages, a frame which is not shorter than its page contains the page as is;
+ * - frame index: offsets of page frames followed by the offset of the end of the last frame.
+ *
+ * [MAGIC] starts with zero byte, whereas the first byte of an ordinary (not encrypted) .xd file is the type of a
+ * loggable with the highest bit set. So compressed and ordinary files can be distinguished by the first bytes.
+ * Logical addresses of data in a compressed file remain the same, i.e. compression is transparent for the log.
+ */
+class CompressedLogFile private constructor(val pageSize: Int,
+                                            val logicalLength: Long,
+                                            private val frameOffsets: LongArray) {
+
+    /**
+     * Reads [count] bytes of uncompressed data starting from [position] to [output].
+     *
+     * @return number of read bytes, it is less than [count] only if [logicalLength] is reached
+     */
+    fun read(file: RandomAccessFile, output: ByteArray, position: Long, offset: Int, count: Int): Int {
+        val end = minOf(position + count, logicalLength)
+        var pos = position
+        var off = offset
+        var frame = EMPTY
+        var page = EMPTY
+        while (pos < end) {
+            val pageIndex = (pos / pageSize).toInt()
+            val pageLength = pageLength(pageIndex)
+            val inPage = (pos - pageIndex.toLong() * pageSize).toInt()
+            val len = minOf(pageLength - inPage, (end - pos).toInt())
+            val frameOffset = frameOffsets[pageIndex]
+            val frameLength = (frameOffsets[pageIndex + 1] - frameOffset).toInt()
+            if (frameLength >= pageLength) {
+                file.seek(frameOffset + inPage)
+                file.readFully(output, off, len)
+            } else {
+                if (frame.size < frameLength) {
+                    frame = ByteArray(frameLength)
+                }
+                file.seek(frameOffset)
+                file.readFully(frame, 0, frameLength)
+                if (inPage == 0 && len == pageLength) {
+                    decompress(frame, frameLength, output, off, pageLength)
+                } else {
+                    if (page.size < pageLength) {
+                        page = ByteArray(pageSize)
+                    }
+                    decompress(frame, frameLength, page, 0, pageLength)
+                    System.arraycopy(page, inPage, output, off, len)
+                }
+            }
+            pos += len
+            off += len
+        }
+        return (pos - position).toInt()
+    }
+
+    private fun pageLength(pageIndex: Int) = minOf(pageSize.toLong(), logicalLength - pageIndex.toLong() * pageSize).toInt()
+
+    private fun decompress(frame: ByteArray, frameLength: Int, output: ByteArray, offset: Int, pageLength: Int) {
+        val decompressed = try {
+            lz4.safeDecompressor().decompress(frame, 0, frameLength, output, offset, pageLength)
+        } catch (e: LZ4Exception) {
+            throw IOException("Corrupted compressed page", e)
+        }
+        if (decompressed != pageLength) {
+            throw IOException("Corrupted compressed page, expected length $pageLength, actual length $decompressed")
+        }
+    }
+
+    companion object : KLogging() {
+
+        // zero byte followed by "XDLZ4", zero byte and format version
+        private const val MAGIC = 0x0058444C5A340001L
+        const val HEADER_SIZE = 24
+        private const val TMP_FILE_EXTENSION = ".lz4tmp"
+        private const val BUFFER_SIZE = 1 shl 16
+        private val EMPTY = ByteArray(0)
+        private val lz4 = LZ4Factory.fastestInstance()
+
+        /**
+         * Reads the index of compressed file.
+         *
+         * @return index of compressed file or `null` if the file is not compressed
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(file: RandomAccessFile): CompressedLogFile? {
+            val fileLength = file.length()
+            if (fileLength < HEADER_SIZE) {
+                return null
+            }
+            file.seek(0)
+            if (file.readLong() != MAGIC) {
+                return null
+            }
+            val pageSize = file.readInt()
+            val pageCount = file.readInt()
+            val logicalLength = file.readLong()
+            val indexBytes = ByteArray((pageCount + 1) * Long.SIZE_BYTES)
+            file.seek(fileLength - indexBytes.size)
+            file.readFully(indexBytes)
+            val frameOffsets = LongArray(pageCount + 1)
+            ByteBuffer.wrap(indexBytes).asLongBuffer().get(frameOffsets)
+            return CompressedLogFile(pageSize, logicalLength, frameOffsets)
+        }
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun isCompressed(file: File) = open(file) != null
+
+        /**
+         * @return logical length of the file, for not compressed file it is the same as its physical length
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun getLogicalLength(file: File): Long {
+            val length = Files.size(file.toPath())
+            if (length < HEADER_SIZE) {
+                return length
+            }
+            return open(file)?.logicalLength ?: length
+        }
+
+        /**
+         * @return input stream of uncompressed contents of the file regardless of whether it is compressed
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun newInputStream(file: File): InputStream {
+            val raf = RandomAccessFile(file, "r")
+            val compressed = try {
+                open(raf)
+            } catch (e: IOException) {
+                raf.close()
+                throw e
+            }
+            if (compressed == null) {
+                raf.close()
+                return FileInputStream(file)
+            }
+            return DecompressingInputStream(raf, compressed)
+        }
+
+        /**
+         * Compresses the file replacing it atomically. Does nothing if the file is already compressed or if its
+         * compressed size is not less than the original one.
+         *
+         * @return `true` if the file was compressed
+         */
+        @JvmStatic
+        fun compress(file: File, pageSize: Int): Boolean {
+            val tmp = tmpFile(file)
+            try {
+                val length = Files.size(file.toPath())
+                if (length == 0L || isCompressed(file)) {
+                    return false
+                }
+                val pageCount = ((length + pageSize - 1) / pageSize).toInt()
+                val compressor = lz4.fastCompressor()
+                val page = ByteArray(pageSize)
+                val frame = ByteArray(compressor.maxCompressedLength(pageSize))
+                val frameOffsets = LongArray(pageCount + 1)
+                var compressedLength = HEADER_SIZE.toLong()
+                RandomAccessFile(file, "r").use { input ->
+                    FileOutputStream(tmp).use { fos ->
+                        val output = DataOutputStream(BufferedOutputStream(fos, BUFFER_SIZE))
+                        output.writeHeader(pageSize, pageCount, length)
+                        for (i in 0 until pageCount) {
+                            val pageLength = minOf(pageSize.toLong(), length - i.toLong() * pageSize).toInt()
+                            input.readFully(page, 0, pageLength)
+                            frameOffsets[i] = compressedLength
+                            val frameLength = compressor.compress(page, 0, pageLength, frame, 0, frame.size)
+                            if (frameLength < pageLength) {
+                                output.write(frame, 0, frameLength)
+                                compressedLength += frameLength
+                            } else {
+                                output.write(page, 0, pageLength)
+                                compressedLength += pageLength
+                            }
+                        }
+                        frameOffsets[pageCount] = compressedLength
+                        frameOffsets.forEach { output.writeLong(it) }
+                        output.flush()
+                        fos.fd.sync()
+                    }
+                }
+                if (compressedLength + (pageCount + 1) * Long.SIZE_BYTES >= length) {
+                    tmp.delete()
+                    return false
+                }
+                replace(file, tmp)
+                return true
+            } catch (e: IOException) {
+                tmp.delete()
+                logger.warn(e) { "Failed to compress file ${file.absolutePath}" }
+                return false
+            }
+        }
+
+        /**
+         * Decompresses the file replacing it atomically. Does nothing if the file is not compressed.
+         *
+         * @return `true` if the file was decompressed
+         */
+        @JvmStatic
+        @Throws(IOException::class)
+        fun decompress(file: File): Boolean {
+            val tmp = tmpFile(file)
+            RandomAccessFile(file, "r").use { input ->
+                val compressed = open(input) ?: return false
+                val page = ByteArray(compressed.pageSize)
+                FileOutputStream(tmp).use { fos ->
+                    var position = 0L
+                    while (position < compressed.logicalLength) {
+                        val read = compressed.read(input, page, position, 0, page.size)
+                        fos.write(page, 0, read)
+                        position += read
+                    }
+                    fos.fd.sync()
+                }
+            }
+            replace(file, tmp)
+            return true
+        }
+
+        /**
+         * Deletes temporary files which could remain if the process was terminated during compression.
+         */
+        @JvmStatic
+        fun deleteTemporaryFiles(dir: File) {
+            dir.listFiles { _, name -> name.endsWith(TMP_FILE_EXTENSION) }?.forEach { it.delete() }
+        }
+
+        private fun open(file: File): CompressedLogFile? = RandomAccessFile(file, "r").use { open(it) }
+
+        private fun tmpFile(file: File) = File(file.parentFile, file.name + TMP_FILE_EXTENSION)
+
+        private fun replace(file: File, tmp: File) {
+            if (!file.canWrite()) {
+                tmp.setReadOnly()
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            // cached handles of the replaced file are no longer valid
+            SharedOpenFilesCache.getInstance().removeFile(file)
+        }
+
+        private fun DataOutputStream.writeHeader(pageSize: Int, pageCount: Int, length: Long) {
+            writeLong(MAGIC)
+            writeInt(pageSize)
+            writeInt(pageCount)
+            writeLong(length)
+        }
+    }
+
+    private class DecompressingInputStream(private val file: RandomAccessFile,
+                                           private val compressed: CompressedLogFile) : InputStream() {
+
+        private var position = 0L
+
+        override fun read(): Int {
+            val b = ByteArray(1)
+            return if (read(b, 0, 1) <= 0) -1 else b[0].toInt() and 0xff
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) {
+                return 0
+            }
+            if (position >= compressed.logicalLength) {
+                return -1
+            }
+            val read = compressed.read(file, b, position, off, len)
+            position += read
+            return read
+        }
+
+        override fun skip(n: Long): Long {
+            val skipped = minOf(maxOf(n, 0L), compressed.logicalLength - position)
+            position += skipped
+            return skipped
+        }
+
+        override fun available() = minOf(compressed.logicalLength - position, Int.MAX_VALUE.toLong()).toInt()
+
+        override fun close() = file.close()
+    }
+}
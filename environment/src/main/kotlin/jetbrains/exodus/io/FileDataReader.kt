@@ -19,6 +19,7 @@ import jetbrains.exodus.ExodusException
 import jetbrains.exodus.core.dataStructures.LongArrayList
 import jetbrains.exodus.log.Log
 import jetbrains.exodus.log.LogUtil
+import jetbrains.exodus.util.SharedRandomAccessFile
 import mu.KLogging
 import java.io.File
 import java.io.IOException
@@ -26,10 +27,22 @@ import java.io.RandomAccessFile
 
 class FileDataReader(val dir: File) : DataReader, KLogging() {
 
-    companion object : KLogging()
+    companion object : KLogging() {
+
+        private val NOT_COMPRESSED = Any()
+
+        // the header is parsed once per file handle, racing threads would just parse it twice
+        private fun getCompressedFile(file: SharedRandomAccessFile): CompressedLogFile? {
+            val attachment = file.attachment
+                    ?: (CompressedLogFile.open(file) ?: NOT_COMPRESSED).also { file.attachment = it }
+            return attachment as? CompressedLogFile
+        }
+    }
 
     private var useNio = false
     private var log: Log? = null
+    @Volatile
+    private var ioTracer: IOTracer? = null
 
     internal var usedWithWatcher = false
 
@@ -61,6 +74,25 @@ class FileDataReader(val dir: File) : DataReader, KLogging() {
         this.log = log
     }
 
+    override fun setIOTracer(tracer: IOTracer?) {
+        ioTracer = tracer
+    }
+
+    private fun traceStarted() = if (ioTracer == null) 0L else System.nanoTime()
+
+    private fun trace(operation: IOTracer.Operation, address: Long, bytes: Int, started: Long) {
+        if (started != 0L) {
+            ioTracer?.trace(operation, IOCause.current(), address, bytes, System.nanoTime() - started)
+        }
+    }
+
+    /**
+     * Files are compressed only if the log is configured so, and encrypted files are never compressed. Without log
+     * it's unknown whether files are compressed, so they have to be checked.
+     */
+    private val canBeCompressed: Boolean
+        get() = log?.config?.let { it.isCompressFullFiles && it.cipherProvider == null } ?: true
+
     override fun getLocation(): String {
         return dir.path
     }
@@ -84,7 +116,17 @@ class FileDataReader(val dir: File) : DataReader, KLogging() {
                 val immutable = log?.isImmutableFile(address) ?: !canWrite()
                 val filesCache = SharedOpenFilesCache.getInstance()
                 val file = if (immutable && !reader.usedWithWatcher) filesCache.getCachedFile(this) else filesCache.openFile(this)
+                val started = reader.traceStarted()
                 file.use { f ->
+                    // only complete and immutable files can be compressed, though without log it's unknown which ones are
+                    if ((immutable || log == null) && reader.canBeCompressed) {
+                        val compressed = getCompressedFile(f)
+                        if (compressed != null) {
+                            return compressed.read(f, output, position, offset, count).also { read ->
+                                reader.trace(IOTracer.Operation.READ_COMPRESSED, address + position, read, started)
+                            }
+                        }
+                    }
                     if (reader.useNio &&
                             /* only read-only (immutable) files can be mapped */ immutable) {
                         try {
@@ -92,6 +134,7 @@ class FileDataReader(val dir: File) : DataReader, KLogging() {
                                 val buffer = mappedBuffer.buffer
                                 buffer.position(position.toInt())
                                 buffer.get(output, offset, count)
+                                reader.trace(IOTracer.Operation.READ_MAPPED, address + position, count, started)
                                 return count
                             }
                         } catch (t: Throwable) {
@@ -104,7 +147,9 @@ class FileDataReader(val dir: File) : DataReader, KLogging() {
 
                     f.seek(position)
 
-                    return readFully(f, output, offset, count)
+                    return readFully(f, output, offset, count).also { read ->
+                        reader.trace(IOTracer.Operation.READ, address + position, read, started)
+                    }
                 }
             } catch (e: IOException) {
                 throw ExodusException("Can't read file $absolutePath", e)
@@ -125,6 +170,34 @@ class FileDataReader(val dir: File) : DataReader, KLogging() {
             return read
         }
 
+        /**
+         * Returns logical length of the file which differs from physical one if the file is compressed.
+         */
+        override fun length(): Long {
+            val length = super.length()
+            if (length < CompressedLogFile.HEADER_SIZE || !reader.canBeCompressed) {
+                return length
+            }
+            val log = reader.log
+            val immutable = log?.isImmutableFile(address) ?: !canWrite()
+            if (log != null && !immutable) {
+                // the file is being written, so it can't be compressed
+                return length
+            }
+            return try {
+                // the header of compressed file is parsed once per cached file handle
+                if (immutable && !reader.usedWithWatcher) {
+                    SharedOpenFilesCache.getInstance().getCachedFile(this).use { f ->
+                        getCompressedFile(f)?.logicalLength ?: length
+                    }
+                } else {
+                    RandomAccessFile(this, "r").use { CompressedLogFile.open(it)?.logicalLength ?: length }
+                }
+            } catch (e: IOException) {
+                length
+            }
+        }
+
         override fun refresh() = this
     }
 }
@@ -22,11 +22,14 @@ import jetbrains.exodus.ExodusException
 import jetbrains.exodus.InvalidSettingException
 import jetbrains.exodus.crypto.InvalidCipherParametersException
 import jetbrains.exodus.crypto.cryptBlocksMutable
+import jetbrains.exodus.debug.StoreProfiler
 import jetbrains.exodus.env.DatabaseRoot
 import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.EnvironmentLatencyMetrics
 import jetbrains.exodus.io.*
 import jetbrains.exodus.io.inMemory.MemoryDataReader
 import jetbrains.exodus.kotlin.notNull
+import jetbrains.exodus.management.LatencyMetrics
 import jetbrains.exodus.tree.ExpiredLoggableCollection
 import jetbrains.exodus.util.DeferredIO
 import jetbrains.exodus.util.IdGenerator
@@ -41,8 +44,14 @@ import java.nio.file.*
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
 import java.util.*
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.FutureTask
 import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
 import kotlin.experimental.xor
+import kotlin.math.min
 
 class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, CacheDataProvider {
 
@@ -65,9 +74,26 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
     private val writer: BufferedDataWriter
     private var writeThread: Thread? = null
 
+    init {
+        config.ioTracer?.let { tracer ->
+            reader.setIOTracer(tracer)
+            dataWriter.setIOTracer(tracer)
+        }
+    }
+
     private val blockListeners = ArrayList<BlockListener>(2)
     private val readBytesListeners = ArrayList<ReadBytesListener>(2)
 
+    /**
+     * Latency metrics of the environment the log belongs to, set by the environment on its creation.
+     */
+    var latencyMetrics: EnvironmentLatencyMetrics? = null
+
+    /**
+     * Profiler of stores of the environment the log belongs to, it's notified of cache misses.
+     */
+    var storeProfiler: StoreProfiler? = null
+
     private var startupMetadata: StartupMetadata
 
     val isClosedCorrectly: Boolean
@@ -340,6 +366,7 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
                         tmpLeftovers = true
                     }
                 }
+                CompressedLogFile.deleteTemporaryFiles(File(location))
             }
 
             var blockSetMutable = BlockSet.Immutable(fileLength).beginWrite()
@@ -350,6 +377,12 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
                 blockSetMutable.add(block.address, block)
             }
 
+            // the last file can be appended, so it should not be compressed
+            val lastFileBlock = blockSetMutable.maximum?.let { blockSetMutable.getBlock(it) }
+            if (lastFileBlock is FileDataReader.FileBlock && CompressedLogFile.decompress(lastFileBlock)) {
+                logger.info("File ${LogUtil.getLogFilename(lastFileBlock.address)} has been decompressed since it is the last one.")
+            }
+
             var incorrectLastSegmentSize = false
             if (!needToPerformMigration && blockSetMutable.size() > 0) {
                 val lastAddress = blockSetMutable.maximum!!
@@ -763,6 +796,16 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
         var corruptedFileAddress = -1L
         var loggablesProcessed = 0
 
+        val verifications = TreeMap<Long, FutureTask<BlockVerification>>()
+        blocks.values.forEach { block ->
+            if (block.length() > 0L) {
+                verifications[block.address] = FutureTask<BlockVerification> { verifyBlock(block) }
+            }
+        }
+        // blocks are verified in parallel, but results are merged in address order to find the last valid root
+        val verificationExecutor = newVerificationExecutor(verifications.size)
+        verificationExecutor?.let { executor -> verifications.values.forEach { executor.execute(it) } }
+
         val fileBlockIterator = blocks.values.iterator()
         try {
             do {
@@ -772,7 +815,6 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
 
                 val block = fileBlockIterator.next()
                 val startBlockAddress = block.address
-                val endBlockAddress = startBlockAddress + fileLengthBound
 
                 logger.info("File ${LogUtil.getLogFilename(startBlockAddress)} is being verified.")
 
@@ -799,96 +841,27 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
                     )
                 }
 
-                val blockDataIterator = BlockDataIterator(
-                    this, block, startBlockAddress,
-                    formatWithHashCodeIsUsed
-                )
-                while (blockDataIterator.hasNext()) {
-                    val loggableAddress = blockDataIterator.address
-
-                    if (loggableAddress >= endBlockAddress) {
-                        break
-                    }
-
-                    val loggableType = blockDataIterator.next() xor 0x80.toByte()
-                    if (loggableType < 0 && config.isSkipInvalidLoggableType) {
-                        continue
-                    }
-
-                    checkLoggableType(loggableType, loggableAddress)
-
-                    if (NullLoggable.isNullLoggable(loggableType)) {
-                        loggablesProcessed++
-                        continue
-                    }
-
-                    if (HashCodeLoggable.isHashCodeLoggable(loggableType)) {
-                        for (i in 0 until Long.SIZE_BYTES) {
-                            blockDataIterator.next()
-                        }
-                        loggablesProcessed++
-                        continue
-                    }
-
-                    val structureId = CompressedUnsignedLongByteIterable.getInt(blockDataIterator)
-                    checkStructureId(structureId, loggableAddress)
-
-                    val dataLength = CompressedUnsignedLongByteIterable.getInt(blockDataIterator)
-                    checkDataLength(dataLength, loggableAddress)
-
-                    if (blockDataIterator.address >= endBlockAddress) {
-                        break
-                    }
-
-                    if (loggableType == DatabaseRoot.DATABASE_ROOT_TYPE) {
-                        if (structureId != Loggable.NO_STRUCTURE_ID) {
-                            DataCorruptionException.raise(
-                                "Invalid structure id ($structureId) for root loggable.",
-                                this, loggableAddress
-                            )
-                        }
-
-                        val loggableData = ByteArray(dataLength)
-                        val dataAddress = blockDataIterator.address
-
-                        for (i in 0 until dataLength) {
-                            loggableData[i] = blockDataIterator.next()
-                        }
-
-                        val rootLoggable = SinglePageLoggable(
-                            loggableAddress,
-                            blockDataIterator.address,
-                            loggableType,
-                            structureId,
-                            dataAddress,
-                            loggableData, 0, dataLength
-                        )
-
-                        val dbRoot = DatabaseRoot(rootLoggable)
-                        if (dbRoot.isValid) {
-                            dbRootAddress = loggableAddress
-                            dbRootEndAddress = blockDataIterator.address
-                        } else {
-                            DataCorruptionException.raise(
-                                "Corrupted database root was found", this,
-                                loggableAddress
-                            )
-                        }
-                    } else {
-                        for (i in 0 until dataLength) {
-                            blockDataIterator.next()
-                        }
-                    }
-
-                    loggablesProcessed++
+                val verification = verifications.getValue(startBlockAddress).await()
+                loggablesProcessed += verification.loggablesProcessed
+                if (verification.dbRootAddress != Long.MIN_VALUE) {
+                    dbRootAddress = verification.dbRootAddress
+                    dbRootEndAddress = verification.dbRootEndAddress
                 }
+                verification.error?.let { throw it }
 
                 blockSetMutable.add(startBlockAddress, block)
                 if (!hasNext && nextBlockCorruptionMessage != null) {
                     DataCorruptionException.raise(nextBlockCorruptionMessage, this, corruptedFileAddress)
                 }
             } while (hasNext)
+            verificationExecutor?.shutdown()
         } catch (exception: Exception) {
+            if (verificationExecutor != null) {
+                // don't interrupt verification threads since interruption closes shared file channels
+                verifications.values.forEach { it.cancel(false) }
+                verificationExecutor.shutdown()
+                verificationExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)
+            }
             logger.error("Error during verification of database $location", exception)
 
             SharedOpenFilesCache.invalidate()
@@ -986,6 +959,7 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
                             @Suppress("NAME_SHADOWING")
                             val endBlock = endBlock as FileDataReader.FileBlock
                             try {
+                                CompressedLogFile.decompress(endBlock)
                                 truncateFile(endBlock, position, lastPage)
                             } catch (e: IOException) {
                                 logger.error("Error during truncation of file $endBlock", e)
@@ -1155,6 +1129,143 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
 
     }
 
+    /**
+     * Scans loggables of the block validating page hash codes, loggable types, structure ids and data lengths.
+     * Blocks are verified independently, so verification of different blocks can run in parallel.
+     */
+    private fun verifyBlock(block: Block): BlockVerification {
+        val startBlockAddress = block.address
+        val endBlockAddress = startBlockAddress + fileLengthBound
+        var dbRootAddress = Long.MIN_VALUE
+        var dbRootEndAddress = Long.MIN_VALUE
+        var loggablesProcessed = 0
+        try {
+            val blockDataIterator = BlockDataIterator(
+                this, block, startBlockAddress,
+                formatWithHashCodeIsUsed
+            )
+            while (blockDataIterator.hasNext()) {
+                val loggableAddress = blockDataIterator.address
+
+                if (loggableAddress >= endBlockAddress) {
+                    break
+                }
+
+                val loggableType = blockDataIterator.next() xor 0x80.toByte()
+                if (loggableType < 0 && config.isSkipInvalidLoggableType) {
+                    continue
+                }
+
+                checkLoggableType(loggableType, loggableAddress)
+
+                if (NullLoggable.isNullLoggable(loggableType)) {
+                    loggablesProcessed++
+                    continue
+                }
+
+                if (HashCodeLoggable.isHashCodeLoggable(loggableType)) {
+                    for (i in 0 until Long.SIZE_BYTES) {
+                        blockDataIterator.next()
+                    }
+                    loggablesProcessed++
+                    continue
+                }
+
+                val structureId = CompressedUnsignedLongByteIterable.getInt(blockDataIterator)
+                checkStructureId(structureId, loggableAddress)
+
+                val dataLength = CompressedUnsignedLongByteIterable.getInt(blockDataIterator)
+                checkDataLength(dataLength, loggableAddress)
+
+                if (blockDataIterator.address >= endBlockAddress) {
+                    break
+                }
+
+                if (loggableType == DatabaseRoot.DATABASE_ROOT_TYPE) {
+                    if (structureId != Loggable.NO_STRUCTURE_ID) {
+                        DataCorruptionException.raise(
+                            "Invalid structure id ($structureId) for root loggable.",
+                            this, loggableAddress
+                        )
+                    }
+
+                    val loggableData = ByteArray(dataLength)
+                    val dataAddress = blockDataIterator.address
+
+                    for (i in 0 until dataLength) {
+                        loggableData[i] = blockDataIterator.next()
+                    }
+
+                    val rootLoggable = SinglePageLoggable(
+                        loggableAddress,
+                        blockDataIterator.address,
+                        loggableType,
+                        structureId,
+                        dataAddress,
+                        loggableData, 0, dataLength
+                    )
+
+                    val dbRoot = DatabaseRoot(rootLoggable)
+                    if (dbRoot.isValid) {
+                        dbRootAddress = loggableAddress
+                        dbRootEndAddress = blockDataIterator.address
+                    } else {
+                        DataCorruptionException.raise(
+                            "Corrupted database root was found", this,
+                            loggableAddress
+                        )
+                    }
+                } else {
+                    for (i in 0 until dataLength) {
+                        blockDataIterator.next()
+                    }
+                }
+
+                loggablesProcessed++
+            }
+
+        } catch (e: Exception) {
+            return BlockVerification(dbRootAddress, dbRootEndAddress, loggablesProcessed, e)
+        }
+        return BlockVerification(dbRootAddress, dbRootEndAddress, loggablesProcessed, null)
+    }
+
+    /**
+     * Creates executor verifying blocks in parallel with the thread merging results of verification, or returns
+     * `null` if blocks should be verified sequentially.
+     */
+    private fun newVerificationExecutor(blockCount: Int): ExecutorService? {
+        val threads = config.checkDataConsistencyThreads.let { threads ->
+            if (threads > 0) threads else Runtime.getRuntime().availableProcessors()
+        }
+        val workers = min(threads, blockCount) - 1
+        if (workers <= 0) {
+            return null
+        }
+        return Executors.newFixedThreadPool(workers) { r ->
+            Thread(r, "Exodus log consistency check: $location").apply { isDaemon = true }
+        }
+    }
+
+    /**
+     * Waits for verification of the block, verifies it in current thread if it is not started yet.
+     */
+    private fun FutureTask<BlockVerification>.await(): BlockVerification {
+        run()
+        return try {
+            get()
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    private class BlockVerification(
+        val dbRootAddress: Long,
+        val dbRootEndAddress: Long,
+        val loggablesProcessed: Int,
+        val error: Exception?
+    )
+
     private fun checkDataLength(dataLength: Int, loggableAddress: Long) {
         if (dataLength < 0) {
             DataCorruptionException.raise(
@@ -1301,7 +1412,12 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
     }
 
     override fun readPage(pageAddress: Long, fileAddress: Long): ByteArray {
-        return writer.readPage(pageAddress)
+        storeProfiler?.cacheMiss()
+        val metrics = latencyMetrics ?: return writer.readPage(pageAddress)
+        val started = metrics.start()
+        val page = writer.readPage(pageAddress)
+        metrics.record(EnvironmentLatencyMetrics.Operation.LOG_CACHE_MISS_READ, started)
+        return page
     }
 
     fun addBlockListener(listener: BlockListener) {
@@ -1445,7 +1561,10 @@ class Log(val config: LogConfig, expectedEnvironmentVersion: Int) : Closeable, C
     }
 
     fun sync() {
+        val metrics = latencyMetrics
+        val started = metrics?.start() ?: LatencyMetrics.NOT_STARTED
         writer.sync()
+        metrics?.record(EnvironmentLatencyMetrics.Operation.FSYNC, started)
         writer.closeFileIfNecessary(fileLengthBound, config.isFullFileReadonly)
     }
 
@@ -17,6 +17,7 @@ package jetbrains.exodus.log
 
 import jetbrains.exodus.core.execution.RunnableJob
 import jetbrains.exodus.core.execution.executeIterable
+import jetbrains.exodus.io.IOCause
 import jetbrains.exodus.util.DeferredIO
 import java.lang.Integer.max
 
@@ -36,10 +37,15 @@ internal fun Log.warmup() {
         Log.logger.info("Warming LogCache up with newest $size ${if (size > 1) "files" else "file"} at $location")
         processor.executeIterable(files) { address ->
             Log.logger.info("Warming up ${LogUtil.getLogFilename(address)}")
-            var pageAddress = address
-            while (pageAddress < address + fileLengthBound && pageAddress + pageSize < highAddress) {
-                it.checkPage(pageAddress)
-                pageAddress += pageSize
+            val prevCause = IOCause.set(IOCause.WARMUP)
+            try {
+                var pageAddress = address
+                while (pageAddress < address + fileLengthBound && pageAddress + pageSize < highAddress) {
+                    it.checkPage(pageAddress)
+                    pageAddress += pageSize
+                }
+            } finally {
+                IOCause.set(prevCause)
             }
         }
     })
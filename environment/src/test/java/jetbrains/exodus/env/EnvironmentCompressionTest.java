@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env;
+
+import jetbrains.exodus.bindings.StringBinding;
+import jetbrains.exodus.io.CompressedLogFile;
+import jetbrains.exodus.log.LogConfig;
+import jetbrains.exodus.log.LogUtil;
+import jetbrains.exodus.util.DeferredIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EnvironmentCompressionTest extends EnvironmentTestsBase {
+
+    private static final int COUNT = 20000;
+
+    @Override
+    protected void createEnvironment() {
+        env = newEnvironmentInstance(LogConfig.create(reader, writer), new EnvironmentConfig()
+                .setLogCacheShared(false)
+                .setLogCachePageSize(4096)
+                .setLogFileSize(128)
+                .setLogCompressFullFiles(true)
+                .setGcEnabled(false));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testCompressedFilesAreReadable() throws IOException {
+        final Store store = openStoreAutoCommit("store", StoreConfig.WITHOUT_DUPLICATES);
+        putValues(store);
+        // values are readable both while files are being compressed and after that
+        assertValues(store);
+        waitForCompression();
+        final List<File> compressed = getCompressedFiles();
+        Assert.assertFalse(compressed.isEmpty());
+        for (final File file : compressed) {
+            Assert.assertEquals(getLog().getFileLengthBound(), CompressedLogFile.getLogicalLength(file));
+            Assert.assertTrue(file.length() < getLog().getFileLengthBound());
+        }
+        getLog().clearCache();
+        invalidateSharedCaches();
+        assertValues(store);
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Store store = openStoreAutoCommit("store", StoreConfig.WITHOUT_DUPLICATES);
+        putValues(store);
+        waitForCompression();
+        reopenEnvironment();
+        final File[] files = LogUtil.listFiles(getEnvDirectory());
+        Arrays.sort(files);
+        Assert.assertFalse(CompressedLogFile.isCompressed(files[files.length - 1]));
+        Assert.assertFalse(getCompressedFiles().isEmpty());
+        store = openStoreAutoCommit("store", StoreConfig.WITHOUT_DUPLICATES);
+        assertValues(store);
+        putAutoCommit(store, StringBinding.stringToEntry("last"), StringBinding.stringToEntry("value"));
+        reopenEnvironment();
+        store = openStoreAutoCommit("store", StoreConfig.WITHOUT_DUPLICATES);
+        assertValues(store);
+        assertNotNullStringValue(store, StringBinding.stringToEntry("last"), "value");
+    }
+
+    private void putValues(final Store store) {
+        env.executeInTransaction(txn -> {
+            for (int i = 0; i < COUNT; ++i) {
+                store.put(txn, StringBinding.stringToEntry("key" + i), StringBinding.stringToEntry(value(i)));
+            }
+        });
+    }
+
+    private void assertValues(final Store store) {
+        env.executeInReadonlyTransaction(txn -> {
+            for (int i = 0; i < COUNT; ++i) {
+                Assert.assertEquals(value(i), StringBinding.entryToString(store.get(txn, StringBinding.stringToEntry("key" + i))));
+            }
+        });
+    }
+
+    /**
+     * Complete files are compressed in background by the shared deferred I/O job processor.
+     */
+    private static void waitForCompression() {
+        DeferredIO.getJobProcessor().waitForJobs(100);
+    }
+
+    private List<File> getCompressedFiles() throws IOException {
+        final List<File> result = new ArrayList<>();
+        for (final File file : LogUtil.listFiles(getEnvDirectory())) {
+            if (CompressedLogFile.isCompressed(file)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    private static String value(final int i) {
+        return "value of the key number " + i + " which is quite compressible";
+    }
+}
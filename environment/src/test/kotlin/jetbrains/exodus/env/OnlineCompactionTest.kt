@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env
+
+import jetbrains.exodus.ByteIterable
+import jetbrains.exodus.ExodusException
+import jetbrains.exodus.TestUtil
+import jetbrains.exodus.bindings.IntegerBinding
+import jetbrains.exodus.bindings.StringBinding
+import jetbrains.exodus.util.IOUtil
+import org.junit.After
+import org.junit.Assert.*
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+
+class OnlineCompactionTest {
+
+    private lateinit var dir: File
+    private lateinit var env: Environment
+
+    @Before
+    fun setUp() {
+        dir = TestUtil.createTempDir()
+        env = Environments.newInstance(dir, EnvironmentConfig().setLogFileSize(1).setGcEnabled(false))
+    }
+
+    @After
+    fun tearDown() {
+        env.close()
+        IOUtil.deleteRecursively(dir)
+    }
+
+    @Test
+    fun testCompactOnline() {
+        env.executeInTransaction { txn ->
+            val store = env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn)
+            val dups = env.openStore("dups", StoreConfig.WITH_DUPLICATES, txn)
+            env.openStore("removed", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), value(0))
+            for (i in 0 until 1000) {
+                store.put(txn, key(i), value(i))
+                dups.put(txn, key(i % 10), value(i))
+            }
+        }
+        // overwrite everything to make the log worth compacting
+        env.executeInTransaction { txn ->
+            val store = env.openStore("store", StoreConfig.USE_EXISTING, txn)
+            for (i in 0 until 1000) {
+                store.put(txn, key(i), value(i + 1))
+            }
+        }
+        val compaction = OnlineCompaction(env as EnvironmentImpl)
+        assertEquals(2001L, compaction.copySnapshot())
+        env.executeInTransaction { txn ->
+            val store = env.openStore("store", StoreConfig.USE_EXISTING, txn)
+            val dups = env.openStore("dups", StoreConfig.USE_EXISTING, txn)
+            store.put(txn, key(0), value(42))
+            store.delete(txn, key(1))
+            store.put(txn, key(1000), value(1000))
+            dups.openCursor(txn).use { cursor ->
+                assertTrue(cursor.getSearchBoth(key(0), value(0)))
+                cursor.deleteCurrent()
+            }
+            env.removeStore("removed", txn)
+        }
+        assertEquals(5L, compaction.catchUp())
+        assertEquals(0L, compaction.catchUp())
+        env.executeInTransaction { txn ->
+            env.openStore("new", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(1), value(1))
+        }
+        env = compaction.switchOver()
+        env.executeInReadonlyTransaction { txn ->
+            assertEquals(listOf("dups", "new", "store"), env.getAllStoreNames(txn).sorted())
+            val store = env.openStore("store", StoreConfig.USE_EXISTING, txn)
+            assertEquals(1000L, store.count(txn))
+            assertEquals("value42", string(store.get(txn, key(0))))
+            assertNull(store.get(txn, key(1)))
+            assertEquals("value3", string(store.get(txn, key(2))))
+            assertEquals("value1000", string(store.get(txn, key(1000))))
+            val dups = env.openStore("dups", StoreConfig.USE_EXISTING, txn)
+            assertEquals(999L, dups.count(txn))
+            dups.openCursor(txn).use { cursor ->
+                assertFalse(cursor.getSearchBoth(key(0), value(0)))
+                assertTrue(cursor.getSearchBoth(key(0), value(10)))
+            }
+            assertEquals("value1", string(env.openStore("new", StoreConfig.USE_EXISTING, txn).get(txn, key(1))))
+        }
+        assertFalse(env.environmentConfig.envIsReadonly)
+    }
+
+    @Test
+    fun testAbort() {
+        env.executeInTransaction { txn ->
+            env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), value(0))
+        }
+        val compaction = OnlineCompaction(env as EnvironmentImpl)
+        compaction.copySnapshot()
+        compaction.abort()
+        assertEquals(0, dir.listFiles { file -> file.isDirectory }?.size ?: 0)
+        env.executeInTransaction { txn ->
+            env.openStore("store", StoreConfig.USE_EXISTING, txn).put(txn, key(1), value(1))
+        }
+    }
+
+    @Test
+    fun testSwitchOverWithOpenTransaction() {
+        env.executeInTransaction { txn ->
+            env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), value(0))
+        }
+        val compaction = OnlineCompaction(env as EnvironmentImpl)
+        compaction.copySnapshot()
+        val txn = env.beginReadonlyTransaction()
+        try {
+            TestUtil.runWithExpectedException({ compaction.switchOver() }, ExodusException::class.java)
+            assertTrue(env.isOpen)
+            assertFalse(env.environmentConfig.envIsReadonly)
+        } finally {
+            txn.abort()
+        }
+        // the compaction is still consistent, so it can be retried
+        env.executeInTransaction { t ->
+            env.openStore("store", StoreConfig.USE_EXISTING, t).put(t, key(1), value(1))
+        }
+        env = compaction.switchOver()
+        env.executeInReadonlyTransaction { t ->
+            assertEquals("value1", string(env.openStore("store", StoreConfig.USE_EXISTING, t).get(t, key(1))))
+        }
+    }
+
+    @Test
+    fun testCompactOnlineWithOpenTransaction() {
+        env.executeInTransaction { txn ->
+            env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), value(0))
+        }
+        val txn = env.beginReadonlyTransaction()
+        try {
+            TestUtil.runWithExpectedException({ env.compactOnline() }, ExodusException::class.java)
+        } finally {
+            txn.abort()
+        }
+        assertTrue(env.isOpen)
+        assertEquals(0, dir.listFiles { file -> file.isDirectory }?.size ?: 0)
+        env.executeInTransaction { t ->
+            env.openStore("store", StoreConfig.USE_EXISTING, t).put(t, key(1), value(1))
+        }
+    }
+
+    private fun key(i: Int) = IntegerBinding.intToEntry(i)
+
+    private fun value(i: Int) = StringBinding.stringToEntry("value$i")
+
+    private fun string(entry: ByteIterable?) = entry?.let { StringBinding.entryToString(it) }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+import jetbrains.exodus.bindings.IntegerBinding
+import jetbrains.exodus.env.EnvironmentLatencyMetrics.Operation
+import jetbrains.exodus.env.EnvironmentTestsBase
+import jetbrains.exodus.env.StoreConfig
+import org.junit.Assert
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import java.util.concurrent.atomic.AtomicInteger
+import javax.management.Attribute
+import javax.management.ObjectName
+
+class EnvironmentLatencyMetricsMBeanTest : EnvironmentTestsBase() {
+
+    @Test
+    fun beanIsAccessible() {
+        val instances = platformMBeanServer.queryMBeans(ObjectName(EnvironmentLatencyMetrics.getObjectName(env)), null)
+        Assert.assertNotNull(instances)
+        Assert.assertFalse(instances.isEmpty())
+    }
+
+    @Test
+    fun operationsAreRecorded() {
+        val metrics = env.latencyMetrics
+        Assert.assertFalse(metrics.isEnabled)
+        env.environmentConfig.setEnvLatencyMetrics(true)
+        Assert.assertTrue(metrics.isEnabled)
+        val notified = AtomicInteger()
+        metrics.addListener { operation, _ ->
+            if (operation == Operation.STORE_GET) {
+                notified.incrementAndGet()
+            }
+        }
+        env.executeInTransaction { txn ->
+            env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), key(0))
+        }
+        env.executeInReadonlyTransaction { txn ->
+            val store = env.openStore("store", StoreConfig.USE_EXISTING, txn)
+            Assert.assertNotNull(store.get(txn, key(0)))
+            store.openCursor(txn).close()
+        }
+        Assert.assertTrue(metrics.getHistogram(Operation.COMMIT).count > 0)
+        val gets = metrics.getHistogram(Operation.STORE_GET).count
+        Assert.assertTrue(gets > 0)
+        Assert.assertTrue(metrics.getHistogram(Operation.CURSOR_OPEN).count > 0)
+        Assert.assertEquals(gets, notified.get().toLong())
+        val name = ObjectName(EnvironmentLatencyMetrics.getObjectName(env))
+        Assert.assertEquals(gets, platformMBeanServer.invoke(name, "getCount", arrayOf("STORE_GET"), arrayOf(String::class.java.name)))
+        platformMBeanServer.setAttribute(name, Attribute("Enabled", false))
+        Assert.assertFalse(metrics.isEnabled)
+        platformMBeanServer.invoke(name, "reset", null, null)
+        env.executeInReadonlyTransaction { txn ->
+            env.openStore("store", StoreConfig.USE_EXISTING, txn).get(txn, key(0))
+        }
+        Assert.assertEquals(0L, metrics.getHistogram(Operation.STORE_GET).count)
+        Assert.assertEquals(gets, notified.get().toLong())
+    }
+
+    private fun key(i: Int) = IntegerBinding.intToEntry(i)
+
+    companion object {
+        private val platformMBeanServer = ManagementFactory.getPlatformMBeanServer()
+    }
+}
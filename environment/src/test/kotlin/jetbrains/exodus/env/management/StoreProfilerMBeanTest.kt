@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env.management
+
+import jetbrains.exodus.bindings.IntegerBinding
+import jetbrains.exodus.env.EnvironmentTestsBase
+import jetbrains.exodus.env.StoreConfig
+import org.junit.Assert
+import org.junit.Test
+import java.lang.management.ManagementFactory
+import javax.management.Attribute
+import javax.management.ObjectName
+
+class StoreProfilerMBeanTest : EnvironmentTestsBase() {
+
+    @Test
+    fun beanIsAccessible() {
+        val instances = platformMBeanServer.queryMBeans(ObjectName(StoreProfiler.getObjectName(env)), null)
+        Assert.assertNotNull(instances)
+        Assert.assertFalse(instances.isEmpty())
+    }
+
+    @Test
+    fun storesAndHeavyKeysAreProfiled() {
+        val profiler = env.storeProfiler
+        Assert.assertFalse(profiler.isSampled())
+        val name = ObjectName(StoreProfiler.getObjectName(env))
+        platformMBeanServer.setAttribute(name, Attribute("SamplingPeriod", 1))
+        Assert.assertEquals(1, env.environmentConfig.envStoreProfilerSamplingPeriod)
+        env.executeInTransaction { txn ->
+            val store = env.openStore("hot", StoreConfig.WITHOUT_DUPLICATES, txn)
+            for (i in 0 until 100) {
+                store.put(txn, key(i), key(i))
+            }
+            env.openStore("cold", StoreConfig.WITHOUT_DUPLICATES, txn).put(txn, key(0), key(0))
+        }
+        env.executeInReadonlyTransaction { txn ->
+            val store = env.openStore("hot", StoreConfig.USE_EXISTING, txn)
+            for (i in 0 until 1000) {
+                Assert.assertNotNull(store.get(txn, key(42)))
+            }
+        }
+        val profiles = profiler.profiles
+        Assert.assertEquals(listOf("hot", "cold"), profiles.map { it.name })
+        val hot = profiles[0]
+        Assert.assertEquals(1000L, hot.totalReads)
+        Assert.assertEquals(100L, hot.totalWrites)
+        Assert.assertEquals(4000L, hot.totalBytesRead)
+        Assert.assertTrue(hot.estimate(key(42)) >= 1001L)
+        val heavyKeys = platformMBeanServer.invoke(name, "getHeavyKeys", arrayOf("hot"), arrayOf(String::class.java.name)) as Array<*>
+        Assert.assertTrue((heavyKeys[0] as String).startsWith("8000002a: ~"))
+        platformMBeanServer.invoke(name, "reset", null, null)
+        Assert.assertTrue(profiler.profiles.isEmpty())
+        platformMBeanServer.setAttribute(name, Attribute("SamplingPeriod", 0))
+        Assert.assertFalse(profiler.isSampled())
+    }
+
+    private fun key(i: Int) = IntegerBinding.intToEntry(i)
+
+    companion object {
+        private val platformMBeanServer = ManagementFactory.getPlatformMBeanServer()
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io
+
+import jetbrains.exodus.TestUtil
+import jetbrains.exodus.bindings.IntegerBinding
+import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.EnvironmentImpl
+import jetbrains.exodus.env.Environments
+import jetbrains.exodus.env.StoreConfig
+import jetbrains.exodus.util.IOUtil
+import org.junit.Assert
+import org.junit.Test
+import java.io.StringWriter
+
+class IOTraceRingBufferTest {
+
+    @Test
+    fun keepsLastEvents() {
+        val buffer = IOTraceRingBuffer(6)
+        Assert.assertEquals(8, buffer.capacity)
+        for (i in 0 until 20) {
+            buffer.trace(IOTracer.Operation.READ, IOCause.USER, i.toLong(), i, i * 1000L)
+        }
+        Assert.assertEquals(20L, buffer.totalEvents)
+        val events = buffer.events
+        Assert.assertEquals((12L until 20L).toList(), events.map { it.address })
+        val writer = StringWriter()
+        Assert.assertEquals(8, buffer.dump(writer))
+        val lines = writer.toString().lines().filter { it.isNotEmpty() }
+        Assert.assertEquals(IOTraceEvent.HEADER, lines[0])
+        val parsed = IOTraceEvent.parse(lines[1])
+        Assert.assertEquals(IOTracer.Operation.READ, parsed.operation)
+        Assert.assertEquals(IOCause.USER, parsed.cause)
+        Assert.assertEquals(12L, parsed.address)
+        Assert.assertEquals(12, parsed.bytes)
+        Assert.assertEquals(12000L, parsed.durationNanos)
+        buffer.clear()
+        Assert.assertTrue(buffer.events.isEmpty())
+    }
+
+    @Test
+    fun concurrentTracing() {
+        val buffer = IOTraceRingBuffer(64)
+        val threads = (0 until 4).map { t ->
+            Thread {
+                for (i in 0 until 10000) {
+                    val value = t * 10000 + i
+                    buffer.trace(IOTracer.Operation.WRITE, IOCause.USER, value.toLong(), value, value.toLong())
+                }
+            }
+        }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        Assert.assertEquals(40000L, buffer.totalEvents)
+        val events = buffer.events
+        Assert.assertTrue(events.size <= buffer.capacity)
+        // each event is consistent, i.e. not mixed up with another one
+        events.forEach {
+            Assert.assertEquals(it.address, it.bytes.toLong())
+            Assert.assertEquals(it.address, it.durationNanos)
+        }
+        Assert.assertEquals(events.size, events.map { it.address }.toSet().size)
+    }
+
+    @Test
+    fun environmentIOIsTraced() {
+        val dir = TestUtil.createTempDir()
+        try {
+            Environments.newInstance(dir, EnvironmentConfig().setEnvIOTraceBufferSize(1024).setGcEnabled(false)).use { env ->
+                val trace = (env as EnvironmentImpl).ioTrace
+                Assert.assertNotNull(trace)
+                env.executeInTransaction { txn ->
+                    val store = env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn)
+                    for (i in 0 until 1000) {
+                        store.put(txn, IntegerBinding.intToEntry(i), IntegerBinding.intToEntry(i))
+                    }
+                }
+                env.flushAndSync()
+                val operations = trace!!.events.map { it.operation }.toSet()
+                Assert.assertTrue(IOTracer.Operation.WRITE in operations)
+                Assert.assertTrue(IOTracer.Operation.SYNC in operations)
+            }
+        } finally {
+            IOUtil.deleteRecursively(dir)
+        }
+    }
+}
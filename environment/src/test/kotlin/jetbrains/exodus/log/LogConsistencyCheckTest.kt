@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.log
+
+import jetbrains.exodus.TestUtil
+import jetbrains.exodus.bindings.IntegerBinding
+import jetbrains.exodus.bindings.StringBinding
+import jetbrains.exodus.env.EnvironmentConfig
+import jetbrains.exodus.env.Environments
+import jetbrains.exodus.env.StoreConfig
+import jetbrains.exodus.util.IOUtil
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.io.RandomAccessFile
+
+class LogConsistencyCheckTest {
+
+    private lateinit var dir: File
+
+    @Before
+    fun setUp() {
+        dir = TestUtil.createTempDir()
+    }
+
+    @After
+    fun tearDown() {
+        IOUtil.deleteRecursively(dir)
+    }
+
+    @Test
+    fun testParallelCheck() {
+        createEnvironment()
+        Environments.newInstance(dir, newEnvironmentConfig(4)).use { env ->
+            env.executeInReadonlyTransaction { txn ->
+                val store = env.openStore("store", StoreConfig.USE_EXISTING, txn)
+                for (i in 0 until ENTRIES) {
+                    Assert.assertEquals(i.toString(), StringBinding.entryToString(store.get(txn, key(i))!!))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun testParallelCheckFindsLastValidRoot() {
+        createEnvironment()
+        val files = LogUtil.listFiles(dir).sortedBy { it.name }
+        Assert.assertTrue(files.size > 4)
+        // corrupt a page in the middle of the file preceding the last one
+        val corrupted = files[files.size - 2]
+        corrupted.setWritable(true)
+        RandomAccessFile(corrupted, "rw").use { file ->
+            file.seek(file.length() / 2)
+            file.write(ByteArray(16) { 0x55 })
+        }
+        val count = Environments.newInstance(dir, newEnvironmentConfig(4).setLogProceedDataRestoredAtAnyCost(true))
+            .use { env ->
+                env.computeInReadonlyTransaction { txn ->
+                    env.openStore("store", StoreConfig.USE_EXISTING, txn).count(txn)
+                }
+            }
+        Assert.assertTrue(count in 1L until ENTRIES.toLong())
+    }
+
+    private fun createEnvironment() {
+        Environments.newInstance(dir, newEnvironmentConfig(1)).use { env ->
+            for (i in 0 until ENTRIES) {
+                env.executeInTransaction { txn ->
+                    env.openStore("store", StoreConfig.WITHOUT_DUPLICATES, txn)
+                        .put(txn, key(i), StringBinding.stringToEntry(i.toString()))
+                }
+            }
+        }
+    }
+
+    private fun newEnvironmentConfig(threads: Int) = EnvironmentConfig()
+        .setLogFileSize(4)
+        .setLogCachePageSize(4096)
+        .setGcEnabled(false)
+        .setLogForceCheckDataConsistency(true)
+        .setLogCheckDataConsistencyThreads(threads)
+
+    private fun key(i: Int) = IntegerBinding.intToCompressedEntry(i)
+
+    companion object {
+        private const val ENTRIES = 2000
+    }
+}
@@ -26,6 +26,7 @@ import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.EnvironmentImpl;
 import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.StoreConfig;
+import jetbrains.exodus.env.Transaction;
 import jetbrains.exodus.io.SharedOpenFilesCache;
 import jetbrains.exodus.log.CacheDataProvider;
 import jetbrains.exodus.log.Log;
@@ -59,6 +60,11 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
     private static final String NAME_TO_ADDRESS_STORE_NAME = "xodus.lucene.v2.nameToAddressStore";
 
+    /**
+     * Size of the buffer of inputs reading files sequentially bypassing the shared log cache.
+     */
+    private static final int SEQUENTIAL_READ_BUFFER_SIZE = 1 << 20;
+
     private static final AtomicLong ticks = new AtomicLong(System.nanoTime());
 
     private final SharedLogCache sharedLogCache;
@@ -70,6 +76,13 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
     private final Store nameToAddressStore;
 
+    /**
+     * In-memory copy of {@linkplain #nameToAddressStore}, it is loaded on startup and updated by commit hooks of
+     * transactions changing the store, so that files are looked up without starting transactions. Negative address
+     * means that the file is being written.
+     */
+    private final ConcurrentHashMap<String, Long> nameToAddress = new ConcurrentHashMap<>();
+
     private final Path luceneOutputPath;
 
     private final Path luceneIndex;
@@ -184,6 +197,15 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
             });
         }
 
+        environment.executeInReadonlyTransaction(txn -> {
+            try (var cursor = nameToAddressStore.openCursor(txn)) {
+                while (cursor.getNext()) {
+                    nameToAddress.put(StringBinding.entryToString(cursor.getKey()),
+                            LongBinding.entryToLong(cursor.getValue()));
+                }
+            }
+        });
+
         long[] maxAddressLengthIv = new long[]{-1, -1, -1};
         var fetchIvs = cipherKey != null;
 
@@ -274,22 +296,17 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
     public String[] listAll() {
         ensureOpen();
 
-        return environment.computeInReadonlyTransaction(txn -> {
-            final ArrayList<String> names = new ArrayList<>();
-
-            try (var cursor = nameToAddressStore.openCursor(txn)) {
-                while (cursor.getNext()) {
-                    var key = cursor.getKey();
-                    var address = LongBinding.entryToLong(cursor.getValue());
-
-                    if (address >= 0) {
-                        names.add(StringBinding.entryToString(key));
-                    }
-                }
+        final ArrayList<String> names = new ArrayList<>();
+        nameToAddress.forEach((name, address) -> {
+            if (address >= 0) {
+                names.add(name);
             }
-
-            return names.toArray(new String[0]);
         });
+
+        var result = names.toArray(new String[0]);
+        Arrays.sort(result);
+
+        return result;
     }
 
     @Override
@@ -326,28 +343,23 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         return diff;
     }
 
-    private long mapNameFileAddress(String name) throws FileNotFoundException {
-        var address = environment.computeInReadonlyTransaction(txn -> {
-            var key = StringBinding.stringToEntry(name);
-            var addr = nameToAddressStore.get(txn, key);
-
-            if (addr == null) {
-                return null;
-            }
-
-            var result = LongBinding.entryToLong(addr);
-            if (result < 0) {
-                return null;
-            }
+    /**
+     * @return address of the file from {@linkplain #nameToAddressStore} as of the transaction, or {@code -1} if the
+     * file doesn't exist or is not written yet
+     */
+    private long getAddress(@NotNull final Transaction txn, @NotNull final ByteIterable key) {
+        final ByteIterable value = nameToAddressStore.get(txn, key);
+        return value == null ? -1L : LongBinding.entryToLong(value);
+    }
 
-            return Long.valueOf(result);
-        });
+    private long mapNameFileAddress(String name) throws FileNotFoundException {
+        var address = nameToAddress.get(name);
 
-        if (address == null) {
+        if (address == null || address < 0) {
             throw new FileNotFoundException("File " + name + " does not exist");
         }
 
-        return address.longValue();
+        return address;
     }
 
     @Override
@@ -355,22 +367,18 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         ensureOpen();
         maybeDeletePendingFiles();
 
-        var exist = environment.computeInTransaction(txn -> {
-            var key = StringBinding.stringToEntry(name);
-            var value = nameToAddressStore.get(txn, key);
-
-            if (value != null) {
-                return Boolean.TRUE;
-            }
-
-            nameToAddressStore.put(txn, key, LongBinding.longToEntry(-1));
-            return Boolean.FALSE;
-        });
-
-        if (exist.booleanValue()) {
+        if (nameToAddress.putIfAbsent(name, -1L) != null) {
             throw new FileAlreadyExistsException("File " + name + " already exists");
         }
 
+        try {
+            environment.executeInTransaction(txn ->
+                    nameToAddressStore.put(txn, StringBinding.stringToEntry(name), LongBinding.longToEntry(-1)));
+        } catch (RuntimeException e) {
+            nameToAddress.remove(name);
+            throw e;
+        }
+
         var index = outputIndex.getAndIncrement();
         var fileName = name + index;
         if (cipherKey == null) {
@@ -394,43 +402,32 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
     public void sync(Collection<String> names) {
         ensureOpen();
 
-        environment.executeInReadonlyTransaction(txn -> {
-            try (var cursor = nameToAddressStore.openCursor(txn)) {
-                for (var fileName : names) {
-                    var key = StringBinding.stringToEntry(fileName);
-                    var value = cursor.getSearchKey(key);
-
-                    if (value == null) {
-                        throw new ExodusException("File " + fileName + " does not exist.");
-                    }
+        for (var fileName : names) {
+            var address = nameToAddress.get(fileName);
 
-                    var address = LongBinding.entryToLong(value);
+            if (address == null || address < 0) {
+                throw new ExodusException("File " + fileName + " does not exist.");
+            }
 
-                    if (address >= 0) {
-                        var indexName = DirUtil.getFileNameByAddress(address);
-                        try {
-                            IOUtils.fsync(luceneIndex.resolve(indexName), false);
-                        } catch (IOException e) {
-                            throw new ExodusException("Error during syncing of file " + fileName, e);
-                        }
+            var indexName = DirUtil.getFileNameByAddress(address);
+            try {
+                IOUtils.fsync(luceneIndex.resolve(indexName), false);
+            } catch (IOException e) {
+                throw new ExodusException("Error during syncing of file " + fileName, e);
+            }
 
-                        if (cipherKey != null) {
-                            var ivFileName = DirUtil.getIvFileName(indexName);
-                            try {
-                                var ivFilePath = luceneIndex.resolve(ivFileName);
-                                if (Files.exists(ivFilePath)) {
-                                    IOUtils.fsync(ivFilePath, false);
-                                }
-                            } catch (IOException e) {
-                                throw new ExodusException("Error during syncing of file " + ivFileName, e);
-                            }
-                        }
-                    } else {
-                        throw new ExodusException("File " + fileName + " does not exist.");
+            if (cipherKey != null) {
+                var ivFileName = DirUtil.getIvFileName(indexName);
+                try {
+                    var ivFilePath = luceneIndex.resolve(ivFileName);
+                    if (Files.exists(ivFilePath)) {
+                        IOUtils.fsync(ivFilePath, false);
                     }
+                } catch (IOException e) {
+                    throw new ExodusException("Error during syncing of file " + ivFileName, e);
                 }
             }
-        });
+        }
 
         maybeDeletePendingFiles();
     }
@@ -451,24 +448,27 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
         maybeDeletePendingFiles();
 
-        environment.executeInTransaction(txn -> {
-            var fromKey = StringBinding.stringToEntry(source);
-            var value = nameToAddressStore.get(txn, fromKey);
-
-            if (value == null) {
-                throw new ExodusException("File " + source + " does not exist.");
-            }
-
-            var address = LongBinding.entryToLong(value);
-            if (address < 0) {
-                throw new ExodusException("File " + source + " does not exist.");
+        // existence is checked in the same transaction which renames the file, and the in-memory
+        // catalogue is updated by the commit hook, so concurrent changes are applied in commit order
+        final Long address = environment.computeInTransaction(txn -> {
+            final ByteIterable sourceKey = StringBinding.stringToEntry(source);
+            final long sourceAddress = getAddress(txn, sourceKey);
+            if (sourceAddress < 0) {
+                txn.setCommitHook(null);
+                return null;
             }
-
-            nameToAddressStore.delete(txn, fromKey);
-
-            var toKey = StringBinding.stringToEntry(dest);
-            nameToAddressStore.put(txn, toKey, value);
+            nameToAddressStore.delete(txn, sourceKey);
+            nameToAddressStore.put(txn, StringBinding.stringToEntry(dest), LongBinding.longToEntry(sourceAddress));
+            txn.setCommitHook(() -> {
+                nameToAddress.put(dest, sourceAddress);
+                nameToAddress.remove(source);
+            });
+            return sourceAddress;
         });
+
+        if (address == null) {
+            throw new ExodusException("File " + source + " does not exist.");
+        }
     }
 
     @Override
@@ -489,29 +489,22 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
     public void deleteFile(String name) throws IOException {
         ensureOpen();
 
-        var addr = environment.computeInTransaction(txn -> {
-            var key = StringBinding.stringToEntry(name);
-            var byteAddr = nameToAddressStore.get(txn, key);
-
-            if (byteAddr == null) {
-                return null;
-            }
-
-            var address = LongBinding.entryToLong(byteAddr);
-            if (address >= 0) {
-                nameToAddressStore.delete(txn, key);
-            } else {
+        final Long addr = environment.computeInTransaction(txn -> {
+            final ByteIterable key = StringBinding.stringToEntry(name);
+            final long address = getAddress(txn, key);
+            if (address < 0) {
+                txn.setCommitHook(null);
                 return null;
             }
-
-            return Long.valueOf(address);
+            nameToAddressStore.delete(txn, key);
+            txn.setCommitHook(() -> nameToAddress.remove(name));
+            return address;
         });
-
         if (addr == null) {
             throw new FileNotFoundException("File " + name + " does not exist");
         }
 
-        var indexFile = DirUtil.getFileNameByAddress(addr.longValue());
+        var indexFile = DirUtil.getFileNameByAddress(addr);
         pendingDeletes.put(name, luceneIndex.resolve(indexFile));
         privateDeleteFile(name);
 
@@ -599,20 +592,22 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         }
 
         if (cipherKey != null) {
-            assert dataRead > Long.BYTES;
-
-            var cipher = cipherProvider.newCipher();
-            var iv = (long) LONG_VAR_HANDLE.get(page, 0);
-
-            cipher.init(cipherKey, iv);
-            for (int i = Long.BYTES; i < dataRead; i++) {
-                page[i] = cipher.crypt(page[i]);
-            }
+            decryptPage(page, 0, dataRead);
         }
 
         return page;
     }
 
+    private void decryptPage(byte[] data, int offset, int length) {
+        assert length > Long.BYTES;
+
+        var cipher = cipherProvider.newCipher();
+        var iv = (long) LONG_VAR_HANDLE.get(data, offset);
+
+        cipher.init(cipherKey, iv);
+        cipher.cryptBlock(data, offset + Long.BYTES, data, offset + Long.BYTES, length - Long.BYTES);
+    }
+
     @Override
     public IndexInput openInput(String name, IOContext context) throws IOException {
         ensureOpen();
@@ -623,14 +618,17 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         var indexFilePath = luceneIndex.resolve(indexFileName);
         var fileSize = Files.size(indexFilePath);
 
+        // merges and one-time reads stream whole files, so they shouldn't evict hot pages from the shared cache
+        var bypassCache = context.context == IOContext.Context.MERGE || context.readOnce;
+
         if (cipherKey != null) {
             return new XodusIndexInput("XodusIndexInput(path=\"" + indexFilePath + "\")", fileAddress,
-                    Long.BYTES, fileSize);
+                    Long.BYTES, fileSize, bypassCache);
 
         }
 
         return new XodusIndexInput("XodusIndexInput(path=\"" + indexFilePath + "\")", fileAddress,
-                0, fileSize);
+                0, fileSize, bypassCache);
     }
 
     float hitRate() {
@@ -739,6 +737,7 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
                     var value = LongBinding.longToEntry(fileAddress);
 
                     nameToAddressStore.put(txn, key, value);
+                    txn.setCommitHook(() -> nameToAddress.put(indexName, fileAddress));
                 });
 
                 closed = true;
@@ -763,6 +762,8 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
         private long maxIv;
 
+        private byte[] buffer;
+
 
         public StreamCipherOutputStream(final @NotNull OutputStream out,
                                         final byte @NotNull [] cipherKey,
@@ -815,35 +816,29 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         }
 
         public void write(byte @NotNull [] b, int off, int len) throws IOException {
-            b = Arrays.copyOfRange(b, off, off + len);
-
-            if (position - ivPosition == pageSize) {
-                ivPosition = position;
-                generateAndStoreCipher();
+            if (buffer == null) {
+                buffer = new byte[pageSize];
             }
 
-            int offset = -1;
-            for (int i = 0; i < b.length; i++) {
-                b[i] = cipher.crypt(b[i]);
-                position++;
-
-                if (position - ivPosition == pageSize && i < b.length - 1) {
-                    out.write(b, offset + 1, i - offset);
-
+            while (len > 0) {
+                if (position - ivPosition == pageSize) {
                     ivPosition = position;
                     generateAndStoreCipher();
-
-                    offset = i;
                 }
-            }
 
-            if (offset < b.length - 1) {
-                out.write(b, offset + 1, b.length - (offset + 1));
+                // encrypt up to the end of the page, the next one starts with a new iv
+                var chunk = (int) Math.min(len, pageSize - (position - ivPosition));
+                cipher.cryptBlock(b, off, buffer, 0, chunk);
+                out.write(buffer, 0, chunk);
+
+                position += chunk;
+                off += chunk;
+                len -= chunk;
             }
         }
     }
 
-    final class XodusIndexInput extends IndexInput {
+    final class XodusIndexInput extends IndexInput implements RandomAccessInput {
 
         private final long fileAddress;
         private long position;
@@ -855,14 +850,25 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         private byte[] page;
         private long pageAddress = -1;
 
+        /**
+         * If {@code true} then pages are read sequentially by large chunks and are not admitted to the shared cache.
+         */
+        private final boolean bypassCache;
+        private byte[] readBuffer;
+        private long readBufferAddress = -1;
+        private int readBufferLength;
+        private byte[] uncachedPage;
+
 
-        private XodusIndexInput(String resourceDescription, long fileAddress, long position, long end) {
+        private XodusIndexInput(String resourceDescription, long fileAddress, long position, long end,
+                                boolean bypassCache) {
             super(resourceDescription);
 
             this.fileAddress = fileAddress;
             this.end = end;
             this.basePosition = position;
             this.position = position;
+            this.bypassCache = bypassCache;
         }
 
         @Override
@@ -924,12 +930,61 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
         private void readPageIfNeeded(long pageAddress) {
             if (this.page == null || this.pageAddress != pageAddress) {
-                this.page = sharedLogCache.getPage(XodusDirectory.this, pageAddress, fileAddress
-                );
+                if (bypassCache) {
+                    this.page = readPageBypassingCache(pageAddress);
+                } else {
+                    this.page = sharedLogCache.getPage(XodusDirectory.this, pageAddress, fileAddress
+                    );
+                }
                 this.pageAddress = pageAddress;
             }
         }
 
+        private byte[] readPageBypassingCache(long pageAddress) {
+            var cachedPage = sharedLogCache.getCachedPage(XodusDirectory.this, pageAddress);
+            if (cachedPage != null) {
+                return cachedPage;
+            }
+
+            if (pageAddress < readBufferAddress || pageAddress >= readBufferAddress + readBufferLength) {
+                fillReadBuffer(pageAddress);
+            }
+
+            if (uncachedPage == null) {
+                uncachedPage = new byte[pageSize];
+            }
+
+            var offset = (int) (pageAddress - readBufferAddress);
+            System.arraycopy(readBuffer, offset, uncachedPage, 0, Math.min(pageSize, readBufferLength - offset));
+
+            return uncachedPage;
+        }
+
+        private void fillReadBuffer(long pageAddress) {
+            if (readBuffer == null) {
+                readBuffer = new byte[Math.max(pageSize, SEQUENTIAL_READ_BUFFER_SIZE / pageSize * pageSize)];
+            }
+
+            var filesCache = SharedOpenFilesCache.getInstance();
+            var fileName = DirUtil.getFileNameByAddress(fileAddress);
+
+            int dataRead;
+            try (var file = filesCache.getCachedFile(luceneIndex.resolve(fileName).toFile())) {
+                dataRead = DirUtil.readFully(file, pageAddress - fileAddress, readBuffer);
+            } catch (IOException e) {
+                throw new ExodusException("Can not access file " + fileName, e);
+            }
+
+            if (cipherKey != null) {
+                for (int pageOffset = 0; pageOffset < dataRead; pageOffset += pageSize) {
+                    decryptPage(readBuffer, pageOffset, Math.min(pageSize, dataRead - pageOffset));
+                }
+            }
+
+            readBufferAddress = pageAddress;
+            readBufferLength = dataRead;
+        }
+
         @Override
         public void close() {
             //nothing
@@ -999,7 +1054,24 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
             var end = correctEndPosition(addWithIvSpace(start, length));
 
             return new XodusIndexInput(sliceDescription, fileAddress, start,
-                    end);
+                    end, bypassCache);
+        }
+
+        @Override
+        public XodusIndexInput clone() {
+            var clone = (XodusIndexInput) super.clone();
+            if (bypassCache) {
+                // buffers of inputs bypassing the cache are mutable, so they can't be shared with clones
+                clone.readBuffer = null;
+                clone.readBufferAddress = -1;
+                clone.readBufferLength = 0;
+                clone.uncachedPage = null;
+                if (page == uncachedPage) {
+                    clone.page = null;
+                    clone.pageAddress = -1;
+                }
+            }
+            return clone;
         }
 
         @Override
@@ -1243,22 +1315,32 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
         public void readLELongs(long[] dst, int offset, int length) throws IOException {
             FutureObjects.checkFromIndexSize(offset, length, dst.length);
 
-            var pageOffset = (int) position & (pageSize - 1);
-            var pageAddress = fileAddress + position - pageOffset;
+            var lastPos = correctEndPosition(addWithIvSpace(position, (long) length * Long.BYTES));
+            if (lastPos > end) {
+                throw new EOFException("Read past EOF. Position: " + position + ", requested longs : " + length);
+            }
 
-            final int bytesNeeded = length * Long.BYTES;
-            final long remaining = Math.min(length - position, pageSize - pageOffset);
+            var index = offset;
+            var endIndex = offset + length;
+
+            while (index < endIndex) {
+                var pageOffset = (int) position & (pageSize - 1);
+                var pageAddress = fileAddress + position - pageOffset;
+
+                var longsInPage = (int) Math.min(endIndex - index, (pageSize - pageOffset) / Long.BYTES);
+                if (longsInPage == 0) {
+                    // the long is split by page boundary
+                    dst[index++] = Long.reverseBytes(super.readLong());
+                    continue;
+                }
 
-            if (remaining >= bytesNeeded) {
                 readPageIfNeeded(pageAddress);
 
-                for (int i = offset; i < length; i++, pageOffset += Long.BYTES) {
-                    dst[i] = (long) LONG_LE_VAR_HANDLE.get(page, pageOffset);
+                for (int i = 0; i < longsInPage; i++, pageOffset += Long.BYTES) {
+                    dst[index++] = (long) LONG_LE_VAR_HANDLE.get(page, pageOffset);
                 }
 
-                movePosition(bytesNeeded);
-            } else {
-                super.readLELongs(dst, offset, length);
+                movePosition(longsInPage * Long.BYTES);
             }
         }
 
@@ -1281,6 +1363,73 @@ public class XodusDirectory extends Directory implements CacheDataProvider {
 
             readPageIfNeeded(pageAddress);
         }
+
+        @Override
+        public byte readByte(long pos) throws IOException {
+            var filePosition = randomAccessPosition(pos, Byte.BYTES);
+            var pageOffset = (int) filePosition & (pageSize - 1);
+
+            readPageIfNeeded(fileAddress + filePosition - pageOffset);
+
+            return page[pageOffset];
+        }
+
+        @Override
+        public short readShort(long pos) throws IOException {
+            var filePosition = randomAccessPosition(pos, Short.BYTES);
+            var pageOffset = (int) filePosition & (pageSize - 1);
+
+            if (pageOffset + Short.BYTES <= pageSize) {
+                readPageIfNeeded(fileAddress + filePosition - pageOffset);
+                return (short) SHORT_VAR_HANDLE.get(page, pageOffset);
+            }
+
+            return (short) (((readByte(pos) & 0xFF) << 8) | (readByte(pos + 1) & 0xFF));
+        }
+
+        @Override
+        public int readInt(long pos) throws IOException {
+            var filePosition = randomAccessPosition(pos, Integer.BYTES);
+            var pageOffset = (int) filePosition & (pageSize - 1);
+
+            if (pageOffset + Integer.BYTES <= pageSize) {
+                readPageIfNeeded(fileAddress + filePosition - pageOffset);
+                return (int) INT_VAR_HANDLE.get(page, pageOffset);
+            }
+
+            return ((readShort(pos) & 0xFFFF) << 16) | (readShort(pos + Short.BYTES) & 0xFFFF);
+        }
+
+        @Override
+        public long readLong(long pos) throws IOException {
+            var filePosition = randomAccessPosition(pos, Long.BYTES);
+            var pageOffset = (int) filePosition & (pageSize - 1);
+
+            if (pageOffset + Long.BYTES <= pageSize) {
+                readPageIfNeeded(fileAddress + filePosition - pageOffset);
+                return (long) LONG_VAR_HANDLE.get(page, pageOffset);
+            }
+
+            return (((long) readInt(pos)) << 32) | (readInt(pos + Integer.BYTES) & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Converts position relative to the start of the input to the position in the file and checks that
+         * {@code len} bytes can be read from it. Unlike {@link #seek(long)}, the current position isn't changed.
+         */
+        private long randomAccessPosition(long pos, int len) throws EOFException {
+            if (pos < 0) {
+                throw new IllegalArgumentException("Negative position requested: " + pos);
+            }
+
+            var filePosition = addWithIvSpace(basePosition, pos);
+            if (correctEndPosition(addWithIvSpace(filePosition, len)) > end) {
+                throw new EOFException("Read past EOF. Position: " + pos + ", requested bytes : " + len
+                        + ", length : " + length());
+            }
+
+            return filePosition;
+        }
     }
 
     @Override
@@ -232,6 +232,17 @@ public class BackupBean implements Backupable {
 
                 return false;
             }
+
+            @Override
+            public long getHighAddress() {
+                // high address makes sense only if there is a single log in the backup
+                return targetsCount == 1 ? wrapped[0].getHighAddress() : -1L;
+            }
+
+            @Override
+            public boolean isAppendOnly(@NotNull VirtualFileDescriptor file) {
+                return targetsCount == 1 && wrapped[0].isAppendOnly(file);
+            }
         };
     }
 }
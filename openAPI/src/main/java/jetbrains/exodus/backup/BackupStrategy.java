@@ -128,6 +128,25 @@ public abstract class BackupStrategy {
         return false;
     }
 
+    /**
+     * @return high address of the log which the backup is consistent with or {@code -1} if the backup doesn't
+     * contain a log
+     */
+    public long getHighAddress() {
+        return -1L;
+    }
+
+    /**
+     * Returns {@code true} if content of the file is never changed once written except appending data to its end.
+     * Incremental backup doesn't copy such file if its size is the same as in previous backup.
+     *
+     * @param file file to be backed up.
+     * @return {@code true} if content of the file can only be appended
+     */
+    public boolean isAppendOnly(@NotNull VirtualFileDescriptor file) {
+        return false;
+    }
+
     /**
      * Descriptor of a file to be put into backup file.
      */
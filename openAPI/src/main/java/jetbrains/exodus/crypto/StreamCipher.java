@@ -42,4 +42,36 @@ public interface StreamCipher {
      * @return encrypted/decrypted byte
      */
     byte crypt(final byte b);
+
+    /**
+     * Encrypts/decrypts {@code length} bytes of {@code input} starting from {@code inputOffset} and writes the result
+     * to {@code output} starting from {@code outputOffset}. Input and output can be the same array. The result is
+     * the same as the one of calling {@linkplain #crypt(byte)} for each byte, though implementations are encouraged
+     * to override the method and apply key stream by blocks.
+     *
+     * @param input        input bytes
+     * @param inputOffset  offset in input
+     * @param output       output bytes
+     * @param outputOffset offset in output
+     * @param length       number of bytes to encrypt/decrypt
+     */
+    default void cryptBlock(@NotNull final byte[] input, final int inputOffset,
+                            @NotNull final byte[] output, final int outputOffset, final int length) {
+        for (int i = 0; i < length; ++i) {
+            output[outputOffset + i] = crypt(input[inputOffset + i]);
+        }
+    }
+
+    /**
+     * Skips specified number of bytes of the key stream. The result is the same as the one of calling
+     * {@linkplain #crypt(byte)} {@code count} times. Implementations with seekable counters are encouraged
+     * to override the method and advance the counter directly.
+     *
+     * @param count number of bytes to skip
+     */
+    default void skip(final long count) {
+        for (long i = 0; i < count; ++i) {
+            crypt((byte) 0);
+        }
+    }
 }
\ No newline at end of file
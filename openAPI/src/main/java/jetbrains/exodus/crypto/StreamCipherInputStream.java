@@ -54,9 +54,7 @@ public class StreamCipherInputStream extends FilterInputStream {
         var read = in.read(b);
 
         if (read != -1) {
-            for (int i = 0; i < read; ++i) {
-                b[i] = cipher.crypt(b[i]);
-            }
+            cipher.cryptBlock(b, 0, b, 0, read);
 
             position += read;
         }
@@ -68,9 +66,7 @@ public class StreamCipherInputStream extends FilterInputStream {
     public int read(byte @NotNull [] b, int off, int len) throws IOException {
         var read = in.read(b, off, len);
         if (read != -1) {
-            for (int i = 0; i < read; ++i) {
-                b[off + i] = cipher.crypt(b[off + i]);
-            }
+            cipher.cryptBlock(b, off, b, off, read);
 
             position += read;
         }
@@ -83,9 +79,7 @@ public class StreamCipherInputStream extends FilterInputStream {
         in.reset();
         cipher = cipherSupplier.get();
 
-        for (int i = 0; i < savedPosition; ++i) {
-            cipher.crypt((byte) 0);
-        }
+        cipher.skip(savedPosition);
 
         position = savedPosition;
     }
@@ -43,9 +43,7 @@ public class StreamCipherOutputStream extends FilterOutputStream {
     public void write(byte @NotNull [] b, int off, int len) throws IOException {
         var encrypted = new byte[len];
 
-        for (int i = 0; i < len; i++) {
-            encrypted[i] = cipher.crypt(b[i + off]);
-        }
+        cipher.cryptBlock(b, off, encrypted, 0, len);
 
         out.write(encrypted, 0, len);
     }
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.entitystore;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@linkplain ReadableByteChannel} over content of a blob. Besides sequential reading, the content can be transferred
+ * to a {@linkplain WritableByteChannel} using {@linkplain #transferTo(WritableByteChannel)}. For blobs stored in files
+ * it uses {@linkplain FileChannel#transferTo(long, long, WritableByteChannel)}, so the content can be sent to a socket
+ * without copying through the JVM heap. For in-place blobs it writes a read-only {@linkplain ByteBuffer} view of the
+ * bytes of the blob entry.
+ *
+ * @see Entity#getBlobChannel(String)
+ */
+public abstract class BlobChannel implements ReadableByteChannel {
+
+    private static final int TRANSFER_BUFFER_SIZE = 1 << 16;
+
+    private boolean closed;
+
+    /**
+     * @return size of blob content in bytes
+     */
+    public abstract long size();
+
+    /**
+     * @return number of bytes already read or transferred
+     */
+    public abstract long position();
+
+    /**
+     * Transfers remaining content of the blob to the target channel.
+     *
+     * @param target target channel
+     * @return number of transferred bytes
+     * @throws IOException if an I/O error occurs
+     */
+    public abstract long transferTo(@NotNull WritableByteChannel target) throws IOException;
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+    }
+
+    protected void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    /**
+     * Creates {@code BlobChannel} over a region of a file channel.
+     *
+     * @param channel      file channel
+     * @param offset       offset of blob content in the file
+     * @param length       length of blob content
+     * @param closeChannel if {@code true} then the file channel is closed with the {@code BlobChannel},
+     *                     shared channels shouldn't be closed
+     */
+    public static BlobChannel wrap(@NotNull final FileChannel channel, final long offset, final long length, final boolean closeChannel) {
+        return new FileRegionChannel(channel, offset, length, closeChannel);
+    }
+
+    /**
+     * Creates {@code BlobChannel} over remaining bytes of the buffer. The buffer is not copied.
+     */
+    public static BlobChannel wrap(@NotNull final ByteBuffer buffer) {
+        return new ByteBufferChannel(buffer.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Creates {@code BlobChannel} over the stream. Such channel transfers content through a heap buffer, it is used
+     * if blob content isn't available as a file region, e.g. if it is encrypted.
+     */
+    public static BlobChannel wrap(@NotNull final InputStream stream, final long size) {
+        return new StreamChannel(stream, size);
+    }
+
+    private static final class FileRegionChannel extends BlobChannel {
+
+        @NotNull
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+        private final boolean closeChannel;
+        private long position;
+
+        private FileRegionChannel(@NotNull final FileChannel channel, final long offset, final long length, final boolean closeChannel) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.closeChannel = closeChannel;
+        }
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public int read(@NotNull final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            final long remaining = length - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                dst.limit(dst.position() + (int) remaining);
+            }
+            try {
+                final int read = channel.read(dst, offset + position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public long transferTo(@NotNull final WritableByteChannel target) throws IOException {
+            ensureOpen();
+            final long start = position;
+            while (position < length) {
+                final long transferred = channel.transferTo(offset + position, length - position, target);
+                if (transferred <= 0) {
+                    // target is not ready to accept more bytes
+                    break;
+                }
+                position += transferred;
+            }
+            return position - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+
+    private static final class ByteBufferChannel extends BlobChannel {
+
+        @NotNull
+        private final ByteBuffer buffer;
+
+        private ByteBufferChannel(@NotNull final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long size() {
+            return buffer.limit();
+        }
+
+        @Override
+        public long position() {
+            return buffer.position();
+        }
+
+        @Override
+        public int read(@NotNull final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(buffer.remaining(), dst.remaining());
+            final ByteBuffer chunk = buffer.duplicate();
+            chunk.limit(chunk.position() + count);
+            dst.put(chunk);
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public long transferTo(@NotNull final WritableByteChannel target) throws IOException {
+            ensureOpen();
+            final int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                if (target.write(buffer) <= 0) {
+                    break;
+                }
+            }
+            return buffer.position() - start;
+        }
+    }
+
+    private static final class StreamChannel extends BlobChannel {
+
+        @NotNull
+        private final InputStream stream;
+        private final long size;
+        private long position;
+
+        private StreamChannel(@NotNull final InputStream stream, final long size) {
+            this.stream = stream;
+            this.size = size;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public int read(@NotNull final ByteBuffer dst) throws IOException {
+            ensureOpen();
+            final int count = dst.remaining();
+            if (count == 0) {
+                return 0;
+            }
+            final int read;
+            if (dst.hasArray()) {
+                read = stream.read(dst.array(), dst.arrayOffset() + dst.position(), count);
+                if (read > 0) {
+                    dst.position(dst.position() + read);
+                }
+            } else {
+                final byte[] bytes = new byte[Math.min(count, TRANSFER_BUFFER_SIZE)];
+                read = stream.read(bytes);
+                if (read > 0) {
+                    dst.put(bytes, 0, read);
+                }
+            }
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long transferTo(@NotNull final WritableByteChannel target) throws IOException {
+            ensureOpen();
+            final long start = position;
+            final ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            while (read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+            return position - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            stream.close();
+        }
+    }
+}
@@ -31,6 +31,9 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@code BlobVault} is base class describing interface to <a href="https://en.wikipedia.org/wiki/Binary_large_object">
@@ -60,15 +63,19 @@ public abstract class BlobVault implements BlobHandleGenerator, Backupable {
     private final PersistentEntityStoreConfig config;
     private final BlobStringsCache stringContentCache;
     private final int vaultIdentity;
+    // blob handle -> completion of writing content of the committed blob
+    private final Map<Long, CompletableFuture<Void>> pendingBlobs;
 
     protected BlobVault(@NotNull final BlobVault source) {
         config = source.config;
         stringContentCache = source.stringContentCache;
         vaultIdentity = source.vaultIdentity;
+        pendingBlobs = source.pendingBlobs;
     }
 
     protected BlobVault(@NotNull final PersistentEntityStoreConfig config) {
         this.config = config;
+        pendingBlobs = new ConcurrentHashMap<>();
         stringContentCache = config.isBlobStringsCacheShared() ?
                 stringContentCacheCreator.getInstance() :
                 new BlobStringsCache.BlobStringsCacheCreator().getInstance();
@@ -128,6 +135,73 @@ public abstract class BlobVault implements BlobHandleGenerator, Backupable {
     public abstract InputStream getContent(final long blobHandle, @NotNull final Transaction txn,
                                            @Nullable Long expectedLength);
 
+    /**
+     * Returns binary content of blob identified by specified blob handle as {@linkplain BlobChannel}. Vaults storing
+     * blobs in files override this method to return a channel over a file region which can be transferred without
+     * copying through the JVM heap, the default implementation wraps {@linkplain #getContent(long, Transaction, Long)}.
+     *
+     * @param blobHandle     blob handle
+     * @param txn            {@linkplain Transaction} instance
+     * @param expectedLength Expected size of content in bytes.
+     *                       If sizes do not match {@code null} will be returned.
+     *                       Can be {@code null} in such case content length verification will be bypassed.
+     * @return binary content of blob as {@linkplain BlobChannel}
+     * @throws IOException if an I/O error occurs
+     * @see Entity#getBlobChannel(String)
+     */
+    @Nullable
+    public BlobChannel getContentChannel(final long blobHandle, @NotNull final Transaction txn,
+                                         @Nullable final Long expectedLength) throws IOException {
+        final InputStream content = getContent(blobHandle, txn, expectedLength);
+        if (content == null) {
+            return null;
+        }
+        return BlobChannel.wrap(content, expectedLength == null ? getSize(blobHandle, txn) : expectedLength);
+    }
+
+    /**
+     * Registers blob whose content will be written by {@linkplain #flushBlobs(LongHashMap, LongHashMap, LongHashMap,
+     * LongSet, Environment)} after the transaction creating the blob is committed. Until the blob is
+     * {@linkplain #blobFlushed(long, Throwable) flushed}, readers can wait for its content using
+     * {@linkplain #getBlobCompletion(long)}. Decorating vaults share pending blobs with the vaults they decorate.
+     *
+     * @param blobHandle blob handle
+     */
+    public void blobPending(final long blobHandle) {
+        pendingBlobs.computeIfAbsent(blobHandle, h -> new CompletableFuture<>());
+    }
+
+    /**
+     * Completes the future returned by {@linkplain #getBlobCompletion(long)} for the blob if it is pending.
+     *
+     * @param blobHandle blob handle
+     * @param error      {@code null} if content of the blob is written, or the reason of the failure
+     */
+    public void blobFlushed(final long blobHandle, @Nullable final Throwable error) {
+        final CompletableFuture<Void> completion = pendingBlobs.remove(blobHandle);
+        if (completion != null) {
+            if (error == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Returns future which is completed when content of the blob is written. If the blob is not pending, completed
+     * future is returned.
+     *
+     * @param blobHandle blob handle
+     * @return future which is completed when content of the blob is written
+     * @see #blobPending(long)
+     */
+    @NotNull
+    public CompletableFuture<Void> getBlobCompletion(final long blobHandle) {
+        final CompletableFuture<Void> completion = pendingBlobs.get(blobHandle);
+        return completion == null ? CompletableFuture.completedFuture(null) : completion;
+    }
+
     /**
      * Returns size of blob identified by specified blob handle in bytes.
      *
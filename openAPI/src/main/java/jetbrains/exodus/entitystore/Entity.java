@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * {@code Entity} is an object in the {@linkplain EntityStore}. Any {@code Entity} has {@linkplain #getType() type} and
@@ -166,6 +167,41 @@ public interface Entity extends Comparable<Entity> {
     @Nullable
     InputStream getBlob(@NotNull final String blobName);
 
+    /**
+     * Asynchronously gets value of blob with specified name as {@linkplain InputStream}. If content of the blob is
+     * still being written by the transaction that created it, the future is completed as soon as writing is finished.
+     * The transaction should not be finished until the future is completed.
+     *
+     * @param blobName name of the blob
+     * @return future of blob stream, the stream is {@code null} if the blob is not set
+     * @see #getBlob(String)
+     */
+    @NotNull
+    default CompletableFuture<InputStream> getBlobAsync(@NotNull final String blobName) {
+        try {
+            return CompletableFuture.completedFuture(getBlob(blobName));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Gets value of blob with specified name as {@linkplain BlobChannel}. Unlike {@linkplain #getBlob(String)},
+     * the channel allows to {@linkplain BlobChannel#transferTo(java.nio.channels.WritableByteChannel) transfer}
+     * blob content to a file or a socket without copying it through the JVM heap if the content is stored in a file
+     * or in place. The channel should be closed after use.
+     *
+     * @param blobName name of the blob
+     * @return blob channel, or {@code null} if the blob is not set
+     * @see #getBlob(String)
+     * @see #getBlobSize(String)
+     */
+    @Nullable
+    default BlobChannel getBlobChannel(@NotNull final String blobName) {
+        final InputStream stream = getBlob(blobName);
+        return stream == null ? null : BlobChannel.wrap(stream, getBlobSize(blobName));
+    }
+
     /**
      * Gets the size of blob with specified name.
      *
@@ -317,6 +317,17 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
      */
     public static final String ENTITY_ITERABLE_CACHE_HEAVY_ITERABLES_LIFE_SPAN = "exodus.entityStore.entityIterableCache.heavyQueriesLifeSpan";
 
+    /**
+     * If is set to {@code true} then EntityIterableCache instantiates independent operands of binary operations
+     * (union, intersection, etc.) and of sortings concurrently in the same read-only snapshot. The number of
+     * threads used for parallel instantiation is equal to {@linkplain #ENTITY_ITERABLE_CACHE_THREAD_COUNT}.
+     * Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #ENTITY_ITERABLE_CACHE_THREAD_COUNT
+     */
+    public static final String ENTITY_ITERABLE_CACHE_PARALLEL_INSTANTIATION = "exodus.entityStore.entityIterableCache.parallelInstantiation";
+
     /**
      * Defines the size of "property values" cache held by each {@linkplain StoreTransaction} instance. This cache
      * reduces load created by de-serialization of property values. Default value is {@code 1024}.
@@ -349,6 +360,48 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
      */
     public static final String GATHER_STATISTICS = "exodus.entityStore.gatherStatistics";
 
+    /**
+     * If is set to {@code true} then {@linkplain PersistentEntityStore} measures latencies of instantiation of
+     * cached EntityIterables and exposes their percentiles via JMX managed bean provided {@linkplain #MANAGEMENT_ENABLED}
+     * is also {@code true}. Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #MANAGEMENT_ENABLED
+     */
+    public static final String LATENCY_METRICS = "exodus.entityStore.latencyMetrics";
+
+    /**
+     * Defines the number of {@linkplain EntityIterable} handles with the most total instantiation time which
+     * {@linkplain PersistentEntityStore} keeps statistics of (number of instantiations, total and maximum time,
+     * result size and cache hits). The statistics are exposed via JMX managed bean provided
+     * {@linkplain #MANAGEMENT_ENABLED} is also {@code true}. {@code 0} turns the statistics off.
+     * Default value is {@code 100}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #ENTITY_ITERABLE_STATISTICS_SAMPLING_PERIOD
+     */
+    public static final String ENTITY_ITERABLE_STATISTICS_SIZE = "exodus.entityStore.entityIterableStatistics.size";
+
+    /**
+     * Defines how often instantiations of {@linkplain EntityIterable EntityIterables} are sampled into the
+     * statistics: each instantiation is sampled with the probability {@code 1 / samplingPeriod}. Instantiations
+     * which are slower than {@linkplain #SLOW_QUERY_THRESHOLD} are always sampled. Default value is {@code 16}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #ENTITY_ITERABLE_STATISTICS_SIZE
+     */
+    public static final String ENTITY_ITERABLE_STATISTICS_SAMPLING_PERIOD = "exodus.entityStore.entityIterableStatistics.samplingPeriod";
+
+    /**
+     * Defines duration in milliseconds of instantiation of an {@linkplain EntityIterable} which is considered to be
+     * a slow query. Slow queries are logged with their handles and plans and are always included in the
+     * statistics of EntityIterables. {@code 0} turns the slow query log off. Default value is {@code 0}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #ENTITY_ITERABLE_STATISTICS_SIZE
+     */
+    public static final String SLOW_QUERY_THRESHOLD = "exodus.entityStore.slowQueryThreshold";
+
     /**
      * If is set to {@code true} then the {@linkplain PersistentEntityStore} exposes two JMX managed beans. One for
      * {@linkplain PersistentEntityStore#getStatistics() statistics} and second for controlling the
@@ -379,6 +432,46 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
      */
     public static final String BLOBS_DIRECTORY_LOCATION = "exodus.entityStore.blobsDirectoryLocation";
 
+    /**
+     * If is set to {@code true} then a new database stores blobs appending them to large segment files instead of
+     * creating a file per each blob. Offsets of blobs in segment files are stored in the {@linkplain Environment}.
+     * The setting affects only databases without blobs stored in the file system, existing vault of any type is
+     * opened as is. The setting is ignored for encrypted databases. Default value is {@code false}.
+     * <p>Mutable at runtime: no
+     */
+    public static final String BLOB_VAULT_PACKED = "exodus.entityStore.blobVault.packed";
+
+    /**
+     * Defines the size in bytes after which a segment file of packed blob vault is no longer appended.
+     * Applicable only if {@linkplain #BLOB_VAULT_PACKED} is {@code true}. Default value is {@code 67108864} (64 MB).
+     * <p>Mutable at runtime: no
+     */
+    public static final String BLOB_VAULT_SEGMENT_SIZE = "exodus.entityStore.blobVault.segmentSize";
+
+    /**
+     * Defines the minimum percentage of space occupied by deleted blobs in a segment file of packed blob vault which
+     * makes the segment to be compacted, i.e. its live blobs to be copied to the active segment and the segment file
+     * to be deleted. Applicable only if {@linkplain #BLOB_VAULT_PACKED} is {@code true}. Default value is {@code 50}.
+     * <p>Mutable at runtime: yes
+     */
+    public static final String BLOB_VAULT_COMPACTION_THRESHOLD = "exodus.entityStore.blobVault.compactionThreshold";
+
+    /**
+     * If is set to {@code true} then content of blobs stored in the blob vault is hashed while it is being saved,
+     * and a blob identical to an already stored one references the stored blob instead of being written to the vault
+     * once again. Stored blob is deleted from the vault only after the last reference to it is deleted.
+     * Blobs stored in-place are deduplicated regardless of this setting. Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     */
+    public static final String BLOB_VAULT_DEDUPLICATION = "exodus.entityStore.blobVault.deduplication";
+
+    /**
+     * Defines the minimum size in bytes of a blob which can be deduplicated if {@linkplain #BLOB_VAULT_DEDUPLICATION}
+     * is {@code true}. Default value is {@code 0}, i.e. any blob stored in the vault can be deduplicated.
+     * <p>Mutable at runtime: yes
+     */
+    public static final String BLOB_VAULT_DEDUPLICATION_MIN_SIZE = "exodus.entityStore.blobVault.deduplicationMinSize";
+
     /**
      * Not for public use, for debugging and troubleshooting purposes. Default value is {@code false}.
      * <p>Mutable at runtime: no
@@ -427,14 +520,24 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
                 new Pair(ENTITY_ITERABLE_CACHE_USE_HUMAN_READABLE, false),
                 new Pair(ENTITY_ITERABLE_CACHE_HEAVY_QUERIES_CACHE_SIZE, 2048),
                 new Pair(ENTITY_ITERABLE_CACHE_HEAVY_ITERABLES_LIFE_SPAN, 60000L),
+                new Pair(ENTITY_ITERABLE_CACHE_PARALLEL_INSTANTIATION, false),
                 new Pair(TRANSACTION_PROPS_CACHE_SIZE, 1024),
                 new Pair(TRANSACTION_LINKS_CACHE_SIZE, 1024),
                 new Pair(TRANSACTION_BLOB_STRINGS_CACHE_SIZE, 256),
                 new Pair(GATHER_STATISTICS, true),
+                new Pair(LATENCY_METRICS, false),
+                new Pair(ENTITY_ITERABLE_STATISTICS_SIZE, 100),
+                new Pair(ENTITY_ITERABLE_STATISTICS_SAMPLING_PERIOD, 16),
+                new Pair(SLOW_QUERY_THRESHOLD, 0),
                 new Pair(MANAGEMENT_ENABLED, !JVMConstants.getIS_ANDROID()),
                 new Pair(REPLICATOR, null),
                 new Pair(BLOB_MAX_READ_WAITING_INTERVAL, 300),
-                new Pair(BLOBS_DIRECTORY_LOCATION, null)
+                new Pair(BLOBS_DIRECTORY_LOCATION, null),
+                new Pair(BLOB_VAULT_PACKED, false),
+                new Pair(BLOB_VAULT_SEGMENT_SIZE, 64L * 1024 * 1024),
+                new Pair(BLOB_VAULT_COMPACTION_THRESHOLD, 50),
+                new Pair(BLOB_VAULT_DEDUPLICATION, false),
+                new Pair(BLOB_VAULT_DEDUPLICATION_MIN_SIZE, 0L)
 
         }, strategy);
     }
@@ -733,6 +836,14 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
         return setSetting(ENTITY_ITERABLE_CACHE_HEAVY_ITERABLES_LIFE_SPAN, lifeSpan);
     }
 
+    public boolean getEntityIterableCacheParallelInstantiation() {
+        return (Boolean) getSetting(ENTITY_ITERABLE_CACHE_PARALLEL_INSTANTIATION);
+    }
+
+    public PersistentEntityStoreConfig setEntityIterableCacheParallelInstantiation(final boolean parallelInstantiation) {
+        return setSetting(ENTITY_ITERABLE_CACHE_PARALLEL_INSTANTIATION, parallelInstantiation);
+    }
+
     public int getTransactionPropsCacheSize() {
         return (Integer) getSetting(TRANSACTION_PROPS_CACHE_SIZE);
     }
@@ -765,6 +876,38 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
         return setSetting(GATHER_STATISTICS, gatherStatistics);
     }
 
+    public boolean getLatencyMetrics() {
+        return (Boolean) getSetting(LATENCY_METRICS);
+    }
+
+    public PersistentEntityStoreConfig setLatencyMetrics(final boolean latencyMetrics) {
+        return setSetting(LATENCY_METRICS, latencyMetrics);
+    }
+
+    public int getEntityIterableStatisticsSize() {
+        return (Integer) getSetting(ENTITY_ITERABLE_STATISTICS_SIZE);
+    }
+
+    public PersistentEntityStoreConfig setEntityIterableStatisticsSize(final int size) {
+        return setSetting(ENTITY_ITERABLE_STATISTICS_SIZE, size);
+    }
+
+    public int getEntityIterableStatisticsSamplingPeriod() {
+        return (Integer) getSetting(ENTITY_ITERABLE_STATISTICS_SAMPLING_PERIOD);
+    }
+
+    public PersistentEntityStoreConfig setEntityIterableStatisticsSamplingPeriod(final int samplingPeriod) {
+        return setSetting(ENTITY_ITERABLE_STATISTICS_SAMPLING_PERIOD, samplingPeriod);
+    }
+
+    public int getSlowQueryThreshold() {
+        return (Integer) getSetting(SLOW_QUERY_THRESHOLD);
+    }
+
+    public PersistentEntityStoreConfig setSlowQueryThreshold(final int millis) {
+        return setSetting(SLOW_QUERY_THRESHOLD, millis);
+    }
+
     public boolean isManagementEnabled() {
         return (Boolean) getSetting(MANAGEMENT_ENABLED);
     }
@@ -789,6 +932,46 @@ public class PersistentEntityStoreConfig extends AbstractConfig {
         return (String) getSetting(BLOBS_DIRECTORY_LOCATION);
     }
 
+    public boolean isBlobVaultPacked() {
+        return (Boolean) getSetting(BLOB_VAULT_PACKED);
+    }
+
+    public PersistentEntityStoreConfig setBlobVaultPacked(final boolean packed) {
+        return setSetting(BLOB_VAULT_PACKED, packed);
+    }
+
+    public long getBlobVaultSegmentSize() {
+        return (Long) getSetting(BLOB_VAULT_SEGMENT_SIZE);
+    }
+
+    public PersistentEntityStoreConfig setBlobVaultSegmentSize(final long segmentSize) {
+        return setSetting(BLOB_VAULT_SEGMENT_SIZE, segmentSize);
+    }
+
+    public int getBlobVaultCompactionThreshold() {
+        return (Integer) getSetting(BLOB_VAULT_COMPACTION_THRESHOLD);
+    }
+
+    public PersistentEntityStoreConfig setBlobVaultCompactionThreshold(final int percent) {
+        return setSetting(BLOB_VAULT_COMPACTION_THRESHOLD, percent);
+    }
+
+    public boolean isBlobVaultDeduplication() {
+        return (Boolean) getSetting(BLOB_VAULT_DEDUPLICATION);
+    }
+
+    public PersistentEntityStoreConfig setBlobVaultDeduplication(final boolean deduplication) {
+        return setSetting(BLOB_VAULT_DEDUPLICATION, deduplication);
+    }
+
+    public long getBlobVaultDeduplicationMinSize() {
+        return (Long) getSetting(BLOB_VAULT_DEDUPLICATION_MIN_SIZE);
+    }
+
+    public PersistentEntityStoreConfig setBlobVaultDeduplicationMinSize(final long minSize) {
+        return setSetting(BLOB_VAULT_DEDUPLICATION_MIN_SIZE, minSize);
+    }
+
     private static int defaultEntityIterableCacheSize() {
         return Math.max((int) (Runtime.getRuntime().maxMemory() >> 20), MAX_DEFAULT_ENTITY_ITERABLE_CACHE_SIZE);
     }
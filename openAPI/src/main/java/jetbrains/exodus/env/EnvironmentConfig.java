@@ -315,6 +315,16 @@ public class EnvironmentConfig extends AbstractConfig {
      */
     public static final String LOG_FORCE_CHECK_DATA_CONSISTENCY = "exodus.log.forceCheckDataConsistency";
 
+    /**
+     * Defines the number of threads verifying {@code Log} files in parallel during the data consistency check on
+     * opening. If it is not positive, the number of available processors is used. Default value is {@code 0}.
+     *
+     * <p>Mutable at runtime: no
+     *
+     * @see #LOG_FORCE_CHECK_DATA_CONSISTENCY
+     */
+    public static final String LOG_CHECK_DATA_CONSISTENCY_THREADS = "exodus.log.checkDataConsistencyThreads";
+
     /**
      * Forces data restore routine to proceed even if it is not possible to restore all the data.
      * Default value is {@code false}.
@@ -330,6 +340,16 @@ public class EnvironmentConfig extends AbstractConfig {
      */
     public static final String LOG_FULL_FILE_READ_ONLY = "exodus.log.fullFileReadonly";
 
+    /**
+     * If is set to {@code true} then each complete and immutable {@code Log} file (.xd file) is compressed page by
+     * page using LZ4 in background. Compressed files are decompressed transparently on reading, so pages are cached in the
+     * {@code LogCache} decompressed. The setting is ignored if the database is encrypted, since encrypted data is not
+     * compressible. Once the log contains compressed files, the setting should not be turned off, otherwise they
+     * can't be read. Default value is {@code false}.
+     * <p>Mutable at runtime: no
+     */
+    public static final String LOG_COMPRESS_FULL_FILES = "exodus.log.compressFullFiles";
+
     /**
      * For {@linkplain DataReaderWriterProvider#DEFAULT_READER_WRITER_PROVIDER} used as {@linkplain
      * DataReaderWriterProvider} service provider interface implementation, if is set to {@code true}
@@ -552,6 +572,40 @@ public class EnvironmentConfig extends AbstractConfig {
      */
     public static final String ENV_GATHER_STATISTICS = "exodus.env.gatherStatistics";
 
+    /**
+     * If is set to {@code true} then the {@linkplain Environment} measures latencies of commits, fsyncs, log cache
+     * miss reads, {@code Store.get()}, opening of cursors and GC file cleaning. If {@linkplain #MANAGEMENT_ENABLED}
+     * is also {@code true} then latency percentiles are exposed by the JMX managed bean.
+     * Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #MANAGEMENT_ENABLED
+     */
+    public static final String ENV_LATENCY_METRICS = "exodus.env.latencyMetrics";
+
+    /**
+     * If is set to a positive value then the {@linkplain Environment} traces physical reads, writes and syncs of
+     * the log with their durations, sizes, addresses and causes (user operations, GC, warmup or backup). Last
+     * traced operations are kept in a ring buffer of the specified size. If {@linkplain #MANAGEMENT_ENABLED} is
+     * also {@code true} then the buffer can be dumped to a file using the JMX managed bean. The value is rounded up
+     * to a power of 2. Default value is {@code 0} which means that I/O isn't traced.
+     * <p>Mutable at runtime: no
+     *
+     * @see #MANAGEMENT_ENABLED
+     */
+    public static final String ENV_IO_TRACE_BUFFER_SIZE = "exodus.env.ioTraceBufferSize";
+
+    /**
+     * If is set to a positive value then the {@linkplain Environment} samples operations of stores with the
+     * probability {@code 1 / samplingPeriod} and profiles them by store name: counts reads, writes, log cache misses
+     * and bytes, and estimates the heaviest keys. If {@linkplain #MANAGEMENT_ENABLED} is also {@code true} then the
+     * profile is exposed by the JMX managed bean. Default value is {@code 0} which means that stores aren't profiled.
+     * <p>Mutable at runtime: yes
+     *
+     * @see #MANAGEMENT_ENABLED
+     */
+    public static final String ENV_STORE_PROFILER_SAMPLING_PERIOD = "exodus.env.storeProfiler.samplingPeriod";
+
     /**
      * If is set to {@code true} then the {@linkplain Environment} will compact itself on opening.
      * Default value is {@code false}.
@@ -772,6 +826,7 @@ public class EnvironmentConfig extends AbstractConfig {
                 new Pair(LOG_CLEAR_INVALID, false),
                 new Pair(LOG_SYNC_PERIOD, 10000L),
                 new Pair(LOG_FULL_FILE_READ_ONLY, true),
+                new Pair(LOG_COMPRESS_FULL_FILES, false),
                 new Pair(LOG_ALLOW_REMOVABLE, false),
                 new Pair(LOG_ALLOW_REMOTE, false),
                 new Pair(LOG_ALLOW_RAM_DISK, false),
@@ -793,6 +848,9 @@ public class EnvironmentConfig extends AbstractConfig {
                 new Pair(ENV_MONITOR_TXNS_EXPIRATION_TIMEOUT, (int) TimeUnit.HOURS.toMillis(8)),
                 new Pair(ENV_MONITOR_TXNS_CHECK_FREQ, 60000),
                 new Pair(ENV_GATHER_STATISTICS, true),
+                new Pair(ENV_LATENCY_METRICS, false),
+                new Pair(ENV_IO_TRACE_BUFFER_SIZE, 0),
+                new Pair(ENV_STORE_PROFILER_SAMPLING_PERIOD, 0),
                 new Pair(ENV_COMPACT_ON_OPEN, false),
                 new Pair(TREE_MAX_PAGE_SIZE, 128),
                 new Pair(TREE_DUP_MAX_PAGE_SIZE, 8),
@@ -816,6 +874,7 @@ public class EnvironmentConfig extends AbstractConfig {
                 new Pair(CHECK_PAGES_AT_RUNTIME, true),
                 new Pair(LOG_SKIP_INVALID_LOGGALE_TYPE, false),
                 new Pair(LOG_FORCE_CHECK_DATA_CONSISTENCY, false),
+                new Pair(LOG_CHECK_DATA_CONSISTENCY_THREADS, 0),
                 new Pair(LOG_PROCEED_DATA_RESTORE_AT_ANY_COST, false),
         }, strategy);
     }
@@ -1234,6 +1293,31 @@ public class EnvironmentConfig extends AbstractConfig {
         return setSetting(LOG_FORCE_CHECK_DATA_CONSISTENCY, checkLogDataConsistency);
     }
 
+    /**
+     * Returns the number of threads verifying {@code Log} files in parallel during the data consistency check on
+     * opening. If it is not positive, the number of available processors is used. Default value is {@code 0}.
+     *
+     * <p>Mutable at runtime: no
+     *
+     * @return number of threads verifying {@code Log} files
+     */
+    public int getLogCheckDataConsistencyThreads() {
+        return (Integer) getSetting(LOG_CHECK_DATA_CONSISTENCY_THREADS);
+    }
+
+    /**
+     * Sets the number of threads verifying {@code Log} files in parallel during the data consistency check on
+     * opening. If it is not positive, the number of available processors is used. Default value is {@code 0}.
+     *
+     * <p>Mutable at runtime: no
+     *
+     * @param threads number of threads verifying {@code Log} files
+     * @return this {@code EnvironmentConfig} instance
+     */
+    public EnvironmentConfig setLogCheckDataConsistencyThreads(final int threads) {
+        return setSetting(LOG_CHECK_DATA_CONSISTENCY_THREADS, threads);
+    }
+
     /**
      * Forces data restore routine to proceed even if it is not possible to restore all the data.
      */
@@ -1571,6 +1655,29 @@ public class EnvironmentConfig extends AbstractConfig {
         return setSetting(LOG_FULL_FILE_READ_ONLY, readonly);
     }
 
+    /**
+     * Returns {@code true} if each complete and immutable {@code Log} file (.xd file) is compressed page by page using
+     * LZ4. The setting is ignored if the database is encrypted. Default value is {@code false}.
+     * <p>Mutable at runtime: no
+     *
+     * @return {@code true} if each complete and immutable .xd file is compressed
+     */
+    public boolean isLogCompressFullFiles() {
+        return (Boolean) getSetting(LOG_COMPRESS_FULL_FILES);
+    }
+
+    /**
+     * Set {@code true} if each complete and immutable {@code Log} file (.xd file) should be compressed page by page
+     * using LZ4. The setting is ignored if the database is encrypted. Default value is {@code false}.
+     * <p>Mutable at runtime: no
+     *
+     * @param compress {@code true} to compress each complete and immutable .xd file
+     * @return this {@code EnvironmentConfig} instance
+     */
+    public EnvironmentConfig setLogCompressFullFiles(final boolean compress) {
+        return setSetting(LOG_COMPRESS_FULL_FILES, compress);
+    }
+
     /**
      * For {@linkplain DataReaderWriterProvider#DEFAULT_READER_WRITER_PROVIDER} used as {@linkplain
      * DataReaderWriterProvider} service provider interface implementation, if is set to {@code true}
@@ -2169,6 +2276,77 @@ public class EnvironmentConfig extends AbstractConfig {
         return setSetting(ENV_GATHER_STATISTICS, gatherStatistics);
     }
 
+    /**
+     * Returns {@code true} if the {@linkplain Environment} measures latencies of commits, fsyncs, log cache
+     * miss reads, {@code Store.get()}, opening of cursors and GC file cleaning.
+     * Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     *
+     * @return {@code true} if the {@linkplain Environment} measures latencies of operations
+     */
+    public boolean getEnvLatencyMetrics() {
+        return (Boolean) getSetting(ENV_LATENCY_METRICS);
+    }
+
+    /**
+     * Set {@code true} if the {@linkplain Environment} should measure latencies of commits, fsyncs, log cache
+     * miss reads, {@code Store.get()}, opening of cursors and GC file cleaning.
+     * Default value is {@code false}.
+     * <p>Mutable at runtime: yes
+     *
+     * @param latencyMetrics {@code true} if the {@linkplain Environment} should measure latencies of operations
+     * @return this {@code EnvironmentConfig} instance
+     */
+    public EnvironmentConfig setEnvLatencyMetrics(final boolean latencyMetrics) {
+        return setSetting(ENV_LATENCY_METRICS, latencyMetrics);
+    }
+
+    /**
+     * Returns size of the ring buffer keeping last traced physical I/O operations of the log.
+     * Default value is {@code 0} which means that I/O isn't traced.
+     * <p>Mutable at runtime: no
+     *
+     * @return size of the ring buffer of traced I/O operations
+     */
+    public int getEnvIOTraceBufferSize() {
+        return (Integer) getSetting(ENV_IO_TRACE_BUFFER_SIZE);
+    }
+
+    /**
+     * Sets size of the ring buffer keeping last traced physical I/O operations of the log: reads, writes and syncs
+     * with their durations, sizes, addresses and causes. Default value is {@code 0} which means that I/O isn't traced.
+     * <p>Mutable at runtime: no
+     *
+     * @param size size of the ring buffer of traced I/O operations
+     * @return this {@code EnvironmentConfig} instance
+     */
+    public EnvironmentConfig setEnvIOTraceBufferSize(final int size) {
+        return setSetting(ENV_IO_TRACE_BUFFER_SIZE, size);
+    }
+
+    /**
+     * Returns sampling period of the profiler of stores: operations of stores are sampled with the probability
+     * {@code 1 / samplingPeriod}. Default value is {@code 0} which means that stores aren't profiled.
+     * <p>Mutable at runtime: yes
+     *
+     * @return sampling period of the profiler of stores
+     */
+    public int getEnvStoreProfilerSamplingPeriod() {
+        return (Integer) getSetting(ENV_STORE_PROFILER_SAMPLING_PERIOD);
+    }
+
+    /**
+     * Sets sampling period of the profiler of stores: operations of stores are sampled with the probability
+     * {@code 1 / samplingPeriod}. Default value is {@code 0} which means that stores aren't profiled.
+     * <p>Mutable at runtime: yes
+     *
+     * @param samplingPeriod sampling period of the profiler of stores
+     * @return this {@code EnvironmentConfig} instance
+     */
+    public EnvironmentConfig setEnvStoreProfilerSamplingPeriod(final int samplingPeriod) {
+        return setSetting(ENV_STORE_PROFILER_SAMPLING_PERIOD, samplingPeriod);
+    }
+
     /**
      * Returns {@code true} if the {@linkplain Environment} will compact itself on opening.
      * Default value is {@code false}.
@@ -16,6 +16,7 @@
 package jetbrains.exodus.io;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * {@code DataReader} defines basic structure of {@code Log}. {@code DataReader} provides access to all {@linkplain
@@ -59,6 +60,15 @@ public interface DataReader {
     @NotNull
     Iterable<Block> getBlocks(long fromAddress);
 
+    /**
+     * Sets {@linkplain IOTracer} which receives timings of reads of {@linkplain Block blocks}. Tracing is optional,
+     * by default {@code DataReader} ignores the tracer.
+     *
+     * @param tracer tracer or {@code null} to turn tracing off
+     */
+    default void setIOTracer(@Nullable IOTracer tracer) {
+    }
+
     /**
      * Closes {@code DataReader} and all open resources associated with it (files, connections, etc.). After the
      * {@code DataReader} is closed, any {@linkplain Block block} got using {@linkplain #getBlocks()} or
@@ -20,6 +20,7 @@ import jetbrains.exodus.core.dataStructures.LongIntPair;
 import jetbrains.exodus.core.dataStructures.Pair;
 import jetbrains.exodus.env.EnvironmentConfig;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 import java.util.concurrent.CompletableFuture;
@@ -172,4 +173,13 @@ public interface DataWriter extends Closeable {
      * @since 3.0
      */
     long position();
+
+    /**
+     * Sets {@linkplain IOTracer} which receives timings of writes and syncs. Tracing is optional, by default
+     * {@code DataWriter} ignores the tracer.
+     *
+     * @param tracer tracer or {@code null} to turn tracing off
+     */
+    default void setIOTracer(@Nullable IOTracer tracer) {
+    }
 }
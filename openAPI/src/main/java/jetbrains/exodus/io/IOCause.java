@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cause of physical I/O reported to {@linkplain IOTracer}. The cause is bound to current thread, by default it is
+ * {@linkplain #USER}. Background activities set their cause for the time they run:
+ * <pre>{@code
+ * final IOCause prevCause = IOCause.set(IOCause.GC);
+ * try {
+ *     // ...
+ * } finally {
+ *     IOCause.set(prevCause);
+ * }
+ * }</pre>
+ */
+public enum IOCause {
+    USER,
+    GC,
+    WARMUP,
+    BACKUP;
+
+    private static final ThreadLocal<IOCause> current = ThreadLocal.withInitial(() -> USER);
+
+    @NotNull
+    public static IOCause current() {
+        return current.get();
+    }
+
+    /**
+     * Sets cause of I/O performed by current thread.
+     *
+     * @param cause new cause
+     * @return previous cause
+     */
+    @NotNull
+    public static IOCause set(@NotNull final IOCause cause) {
+        final IOCause result = current.get();
+        current.set(cause);
+        return result;
+    }
+}
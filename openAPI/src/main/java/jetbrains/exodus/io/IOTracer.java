@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.io;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives timings of physical I/O operations performed by {@linkplain DataReader} and {@linkplain DataWriter}.
+ * Implementations are called synchronously in the thread performing I/O (or completing asynchronous write), so
+ * they should be cheap and thread-safe.
+ *
+ * @see DataReader#setIOTracer(IOTracer)
+ * @see DataWriter#setIOTracer(IOTracer)
+ * @see IOCause
+ */
+public interface IOTracer {
+
+    enum Operation {
+        /**
+         * Reading a file using {@linkplain java.io.RandomAccessFile}.
+         */
+        READ,
+        /**
+         * Reading a memory mapped file, its duration includes page faults.
+         */
+        READ_MAPPED,
+        /**
+         * Reading and decompression of a compressed file.
+         */
+        READ_COMPRESSED,
+        WRITE,
+        SYNC,
+        SYNC_DIRECTORY
+    }
+
+    /**
+     * @param operation     I/O operation
+     * @param cause         why the operation was performed
+     * @param address       log address of the first byte read or written, or address of the synced file
+     * @param bytes         number of bytes read or written, {@code 0} for syncs
+     * @param durationNanos duration of the operation in nanoseconds
+     */
+    void trace(@NotNull Operation operation, @NotNull IOCause cause, long address, int bytes, long durationNanos);
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.management;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener of operations measured by {@linkplain LatencyMetrics}. It is called synchronously in the thread
+ * which performed the operation, so it should be fast.
+ *
+ * @see LatencyMetrics#addListener(LatencyListener)
+ */
+public interface LatencyListener<T extends Enum<T>> {
+
+    void operationCompleted(@NotNull T operation, long durationNanos);
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.management;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Common/base class for measuring latencies of operations of specified kinds. Each kind of operation has its own
+ * {@linkplain LatencyHistogram}, also {@linkplain LatencyListener listeners} are notified of each operation.
+ * Typical usage:
+ * <pre>
+ *     final long started = metrics.start();
+ *     // perform the operation
+ *     metrics.record(operation, started);
+ * </pre>
+ * If the metrics are disabled, {@linkplain #start()} doesn't read the clock and {@linkplain #record(Enum, long)}
+ * does nothing.
+ */
+public class LatencyMetrics<T extends Enum<T>> {
+
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    @NotNull
+    private final T[] operations;
+    @NotNull
+    private final LatencyHistogram[] histograms;
+    @NotNull
+    private final List<LatencyListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean enabled;
+
+    public LatencyMetrics(@NotNull final T[] operations, final boolean enabled) {
+        this.operations = operations;
+        histograms = new LatencyHistogram[operations.length];
+        for (int i = 0; i < histograms.length; ++i) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return start time of an operation to be passed to {@linkplain #record(Enum, long)} or {@linkplain #NOT_STARTED}
+     * if the metrics are disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Records latency of the operation started at specified time.
+     *
+     * @param operation kind of operation
+     * @param started   value returned by {@linkplain #start()} before the operation
+     */
+    public void record(@NotNull final T operation, final long started) {
+        if (started != NOT_STARTED) {
+            final long duration = System.nanoTime() - started;
+            histograms[operation.ordinal()].record(duration);
+            if (!listeners.isEmpty()) {
+                for (final LatencyListener<T> listener : listeners) {
+                    listener.operationCompleted(operation, duration);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    public T[] getOperations() {
+        return operations.clone();
+    }
+
+    @NotNull
+    public LatencyHistogram getHistogram(@NotNull final T operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    public void addListener(@NotNull final LatencyListener<T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NotNull final LatencyListener<T> listener) {
+        listeners.remove(listener);
+    }
+
+    public void reset() {
+        for (final LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * @return human-readable summary of latencies of each kind of operation in microseconds
+     */
+    @NotNull
+    public String[] getSummary() {
+        final String[] result = new String[operations.length];
+        for (int i = 0; i < operations.length; ++i) {
+            final LatencyHistogram histogram = histograms[i];
+            result[i] = String.format(Locale.ROOT,
+                    "%s: count=%d, mean=%.1f us, p50=%.1f us, p99=%.1f us, p99.9=%.1f us, max=%.1f us",
+                    operations[i].name(), histogram.getCount(), histogram.getMeanNanos() / 1000,
+                    histogram.getPercentileNanos(50) / 1000.0, histogram.getPercentileNanos(99) / 1000.0,
+                    histogram.getPercentileNanos(99.9) / 1000.0, histogram.getMaxNanos() / 1000.0);
+        }
+        return result;
+    }
+
+    /**
+     * Parses name of an operation, e.g. passed to a JMX operation.
+     */
+    @NotNull
+    public T getOperation(@NotNull final String name) {
+        for (final T operation : operations) {
+            if (operation.name().equalsIgnoreCase(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.management;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValues() {
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertEquals(i, LatencyHistogram.getBucket(i));
+            Assert.assertEquals(i, LatencyHistogram.getBucketUpperBound(i));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries() {
+        Assert.assertEquals(4, LatencyHistogram.getBucket(4));
+        Assert.assertEquals(7, LatencyHistogram.getBucket(7));
+        Assert.assertEquals(8, LatencyHistogram.getBucket(8));
+        Assert.assertEquals(8, LatencyHistogram.getBucket(9));
+        Assert.assertEquals(9, LatencyHistogram.getBucket(10));
+        Assert.assertEquals(9, LatencyHistogram.getBucketUpperBound(8));
+        Assert.assertEquals(11, LatencyHistogram.getBucketUpperBound(9));
+        int bucket = 0;
+        long upper = 0;
+        while (upper != Long.MAX_VALUE) {
+            upper = LatencyHistogram.getBucketUpperBound(bucket);
+            Assert.assertEquals(bucket, LatencyHistogram.getBucket(upper));
+            if (upper != Long.MAX_VALUE) {
+                Assert.assertEquals(bucket + 1, LatencyHistogram.getBucket(upper + 1));
+            }
+            ++bucket;
+        }
+        // the last bucket ends with Long.MAX_VALUE
+        Assert.assertEquals(bucket - 1, LatencyHistogram.getBucket(Long.MAX_VALUE));
+        Assert.assertEquals(bucket - 1, LatencyHistogram.getBucket(Long.MAX_VALUE - 1));
+        Assert.assertEquals(bucket - 1, LatencyHistogram.getBucket(7L << 60));
+        Assert.assertEquals(bucket - 2, LatencyHistogram.getBucket((7L << 60) - 1));
+    }
+
+    @Test
+    public void relativeError() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 2; value += value / 2 + 1) {
+            assertWithinError(value, LatencyHistogram.getBucketUpperBound(LatencyHistogram.getBucket(value)));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentileNanos(50));
+        for (int i = 1; i <= 10000; ++i) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(10000, histogram.getCount());
+        Assert.assertEquals(10000, histogram.getMaxNanos());
+        assertWithinError(5000, histogram.getPercentileNanos(50));
+        assertWithinError(9900, histogram.getPercentileNanos(99));
+        Assert.assertEquals(10000, histogram.getPercentileNanos(100));
+        Assert.assertEquals(1, histogram.getPercentileNanos(0));
+    }
+
+    @Test
+    public void extremeValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE - 1);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(0, histogram.getPercentileNanos(50));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(99));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new LatencyHistogram().getPercentileNanos(101);
+    }
+
+    private static void assertWithinError(final long expected, final long actual) {
+        Assert.assertTrue("Expected at least " + expected + ", got " + actual, actual >= expected);
+        Assert.assertTrue("Expected at most 25% more than " + expected + ", got " + actual, actual <= expected + expected / 4);
+    }
+}
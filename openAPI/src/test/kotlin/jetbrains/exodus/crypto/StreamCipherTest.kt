@@ -39,6 +39,41 @@ open class StreamCipherTest {
         Assert.assertEquals(RENAT_GILFANOV, String(cipherInputStream.readBytesBlockWise(64)))
     }
 
+    @Test
+    fun testCryptBlock() {
+        val input = RENAT_GILFANOV.toByteArray()
+        val expected = cryptByteWise(input)
+        val cipher = createCipher().init()
+        val actual = ByteArray(input.size)
+        var offset = 0
+        var chunk = 1
+        while (offset < input.size) {
+            val length = minOf(chunk, input.size - offset)
+            cipher.cryptBlock(input, offset, actual, offset, length)
+            offset += length
+            chunk = chunk * 3 + 1
+        }
+        Assert.assertArrayEquals(expected, actual)
+    }
+
+    @Test
+    fun testSkip() {
+        val input = RENAT_GILFANOV.toByteArray()
+        val expected = cryptByteWise(input)
+        for (skipped in intArrayOf(0, 1, 15, 64, 100, 600, 2000)) {
+            val cipher = createCipher().init()
+            cipher.skip(skipped.toLong())
+            val actual = ByteArray(input.size - skipped)
+            cipher.cryptBlock(input, skipped, actual, 0, actual.size)
+            Assert.assertArrayEquals(expected.copyOfRange(skipped, input.size), actual)
+        }
+    }
+
+    private fun cryptByteWise(input: ByteArray): ByteArray {
+        val cipher = createCipher().init()
+        return ByteArray(input.size) { cipher.crypt(input[it]) }
+    }
+
     private fun makeInput(): ByteArrayInputStream {
         val baseOutputStream = LightOutputStream()
         val cipherOutputStream = baseOutputStream encryptBy createCipher().init()
@@ -49,6 +49,14 @@ public abstract class Sort extends UnaryNode {
 
     public abstract Iterable<Entity> applySort(String entityType, Iterable<Entity> iterable, @NotNull final SortEngine sortEngine);
 
+    /**
+     * Applies the sort if only first {@code limit} entities of the result are required. By default, the limit is
+     * ignored, so the caller should truncate the result itself.
+     */
+    public Iterable<Entity> applySort(String entityType, Iterable<Entity> iterable, @NotNull final SortEngine sortEngine, int limit) {
+        return applySort(entityType, iterable, sortEngine);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -48,6 +48,11 @@ public class SortByProperty extends Sort {
         return sortEngine.sort(entityType, propertyName, iterable, getAscending());
     }
 
+    @Override
+    public Iterable<Entity> applySort(String entityType, Iterable<Entity> iterable, @NotNull final SortEngine sortEngine, int limit) {
+        return sortEngine.sort(entityType, propertyName, iterable, getAscending(), limit);
+    }
+
     @Override
     public StringBuilder getHandle(StringBuilder sb) {
         super.getHandle(sb).append('(').append(propertyName).append(',').append(getAscending()).append(')').append('{');
@@ -35,13 +35,23 @@ public class Sorts {
     }
 
     public Iterable<Entity> apply(String entityType, Iterable<Entity> iterable, @NotNull final QueryEngine queryEngine) {
+        return apply(entityType, iterable, queryEngine, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Applies sorts if only first {@code limit} entities of the result are required. The limit is passed to the
+     * last applied sort which defines the primary order, the result can still contain more than {@code limit} entities.
+     */
+    public Iterable<Entity> apply(String entityType, Iterable<Entity> iterable, @NotNull final QueryEngine queryEngine, int limit) {
         if (sorts != null) {
             final SortEngine sortEngine = queryEngine.getSortEngine();
             if (sortEngine == null) {
                 throw new UnsupportedOperationException("Sort engine not provided!");
             }
-            for (final Sort sort : sorts) {
-                iterable = sort.applySort(entityType, iterable, sortEngine);
+            final int last = sorts.size() - 1;
+            for (int i = 0; i <= last; ++i) {
+                final Sort sort = sorts.get(i);
+                iterable = i == last ? sort.applySort(entityType, iterable, sortEngine, limit) : sort.applySort(entityType, iterable, sortEngine);
             }
         }
         return iterable;
@@ -105,9 +105,19 @@ public class TreeKeepingEntityIterable extends StaticTypedEntityIterable {
         this(entityIterable, entityType, queryTree, null, null, queryEngine);
     }
 
-    @SuppressWarnings("UnusedDeclaration")
     @Override
     public Iterable<Entity> instantiate() {
+        return instantiate(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates the query if only first {@code limit} entities of the result are required, so that sorting
+     * can be limited. The result can still contain more than {@code limit} entities.
+     *
+     * @see QueryEngine#take(Iterable, int)
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public Iterable<Entity> instantiate(final int limit) {
         optimize();
         Iterable<Entity> result;
         if (instance == null) {
@@ -121,7 +131,7 @@ public class TreeKeepingEntityIterable extends StaticTypedEntityIterable {
             result = queryEngine.toEntityIterable(queryEngine.intersect(instance, tkei));
         }
         if (sorts != null) {
-            result = sorts.apply(entityType, result, queryEngine);
+            result = sorts.apply(entityType, result, queryEngine, limit);
         }
         if (result == null) {
             result = instantiateForWholeHierarchy();
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.query
+
+import jetbrains.exodus.ArrayByteIterable
+import jetbrains.exodus.entitystore.ComparableGetter
+import jetbrains.exodus.entitystore.Entity
+import jetbrains.exodus.entitystore.EntityId
+import jetbrains.exodus.entitystore.EntityIterator
+import jetbrains.exodus.entitystore.PersistentEntityId
+import jetbrains.exodus.entitystore.PersistentEntityStoreImpl
+import jetbrains.exodus.entitystore.tables.PropertyTypes
+import mu.KLogging
+import java.io.*
+import java.util.*
+
+/**
+ * Sorts source by values returned by [valueGetter]. The source is buffered, and if it turns out to contain not more
+ * than [runSize] entities it is sorted exactly as by [InMemoryMergeSortIterableWithValueGetter], nothing is written
+ * to disk. Otherwise the source is split into runs of [runSize] entities, each run is sorted in memory, and all runs
+ * except the last one are written to a temporary file as sequences of (entity id, serialized value) pairs. The runs
+ * are merged lazily during iteration, so heap consumption is bounded by the run size rather than by the source size.
+ * Values not of a registered property type cannot be written to disk, so once such a value is met the rest of the
+ * source is sorted in memory. The sort is stable.
+ *
+ * The iterator of a spilled sort is an [EntityIterator] holding the temporary file open. The file is closed and
+ * deleted as soon as the iterator is exhausted or [disposed][EntityIterator.dispose].
+ */
+class ExternalMergeSortIterableWithValueGetter @JvmOverloads constructor(
+    private val store: PersistentEntityStoreImpl,
+    private val source: Iterable<Entity>,
+    private val valueGetter: ComparableGetter,
+    private val comparator: Comparator<Comparable<Any>>,
+    private val runSize: Int,
+    private val tempDir: File? = null) : Iterable<Entity> {
+
+    init {
+        if (runSize <= 0) {
+            throw IllegalArgumentException("Run size should be positive")
+        }
+    }
+
+    override fun iterator(): MutableIterator<Entity> {
+        val sourceIt = source.iterator()
+        val head = ArrayList<Entity>()
+        while (head.size <= runSize && sourceIt.hasNext()) {
+            head.add(sourceIt.next())
+        }
+        if (head.size <= runSize) {
+            return InMemoryMergeSortIterableWithValueGetter(head, valueGetter, comparator).iterator()
+        }
+        val entities = (head.asSequence() + sourceIt.asSequence()).iterator()
+        val entryComparator = Comparator<Entry> { e1, e2 -> comparator.compare(e1.value, e2.value) }
+        val runs = RunsFile(store, tempDir)
+        try {
+            var chunk = ArrayList<Entry>(runSize)
+            while (entities.hasNext()) {
+                if (chunk.size >= runSize) {
+                    chunk.sortWith(entryComparator)
+                    if (!runs.write(chunk)) {
+                        logger.warn { "Values of unsupported property types can't be spilled to disk, sorting the rest of the source in memory" }
+                        break
+                    }
+                    chunk = ArrayList(runSize)
+                }
+                val entity = entities.next()
+                chunk.add(Entry(entity, valueGetter.select(entity)))
+            }
+            entities.forEachRemaining { chunk.add(Entry(it, valueGetter.select(it))) }
+            chunk.sortWith(entryComparator)
+            return MergingIterator(runs, chunk)
+        } catch (t: Throwable) {
+            runs.close()
+            throw t
+        }
+    }
+
+    private class Entry(val entity: Entity, val value: Comparable<Any>?)
+
+    private inner class MergingIterator(private val runs: RunsFile, lastRun: List<Entry>) : EntityIterator {
+
+        private val queue: PriorityQueue<Run>
+
+        init {
+            val readers = runs.read()
+            queue = PriorityQueue<Run>(readers.size + 1) { r1, r2 ->
+                val result = comparator.compare(r1.value, r2.value)
+                // runs are consecutive chunks of the source, so this keeps the sort stable
+                if (result != 0) result else r1.runIndex.compareTo(r2.runIndex)
+            }
+            readers.forEach { if (it.advance()) queue.offer(it) }
+            val inMemoryRun = InMemoryRun(lastRun, readers.size)
+            if (inMemoryRun.advance()) {
+                queue.offer(inMemoryRun)
+            }
+            if (queue.isEmpty()) {
+                runs.close()
+            }
+        }
+
+        override fun hasNext() = queue.isNotEmpty()
+
+        override fun next(): Entity {
+            val run = queue.poll() ?: throw NoSuchElementException()
+            val result = run.entity
+            try {
+                if (run.advance()) {
+                    queue.offer(run)
+                } else if (queue.isEmpty()) {
+                    runs.close()
+                }
+            } catch (t: Throwable) {
+                dispose()
+                throw t
+            }
+            return result
+        }
+
+        override fun nextId(): EntityId = next().id
+
+        override fun skip(number: Int): Boolean {
+            repeat(number) {
+                if (!hasNext()) {
+                    return false
+                }
+                next()
+            }
+            return hasNext()
+        }
+
+        override fun dispose(): Boolean {
+            queue.clear()
+            runs.close()
+            return true
+        }
+
+        override fun shouldBeDisposed() = true
+
+        override fun remove() {
+            throw UnsupportedOperationException()
+        }
+    }
+
+    private abstract class Run(val runIndex: Int) {
+
+        abstract val entity: Entity
+
+        abstract val value: Comparable<Any>?
+
+        abstract fun advance(): Boolean
+    }
+
+    private class InMemoryRun(private val entries: List<Entry>, runIndex: Int) : Run(runIndex) {
+
+        private var current = -1
+
+        override val entity: Entity get() = entries[current].entity
+
+        override val value: Comparable<Any>? get() = entries[current].value
+
+        override fun advance() = ++current < entries.size
+    }
+
+    /**
+     * Temporary file containing sorted runs one after another. The file is created on first write.
+     */
+    private class RunsFile(private val store: PersistentEntityStoreImpl, private val tempDir: File?) : Closeable {
+
+        private val propertyTypes = store.propertyTypes
+        private val runs = ArrayList<LongArray>() // pairs of (start address, entries count)
+        private var length = 0L
+        private var file: File? = null
+        private var output: DataOutputStream? = null
+        private var raf: RandomAccessFile? = null
+
+        /**
+         * Writes the run unless it contains values of unsupported property types.
+         *
+         * @return `false` if nothing was written
+         */
+        fun write(run: List<Entry>): Boolean {
+            if (run.any { entry -> entry.value?.let { !propertyTypes.isPropertyType(it.javaClass) } == true }) {
+                return false
+            }
+            val output = output ?: File.createTempFile("xodus-sort", ".run", tempDir).let { file ->
+                this.file = file
+                DataOutputStream(BufferedOutputStream(FileOutputStream(file), BUFFER_SIZE)).also { this.output = it }
+            }
+            runs.add(longArrayOf(length, run.size.toLong()))
+            run.forEach { entry ->
+                val id = entry.entity.id
+                output.writeInt(id.typeId)
+                output.writeLong(id.localId)
+                val value = entry.value
+                if (value == null) {
+                    output.writeInt(-1)
+                    length += 16
+                } else {
+                    val bytes = PropertyTypes.propertyValueToEntry(propertyTypes.dataToPropertyValue(value))
+                    val bytesLength = bytes.length
+                    output.writeInt(bytesLength)
+                    output.write(bytes.bytesUnsafe, 0, bytesLength)
+                    length += 16 + bytesLength
+                }
+            }
+            return true
+        }
+
+        fun read(): List<RunReader> {
+            val file = file ?: return emptyList()
+            output?.close()
+            output = null
+            val raf = RandomAccessFile(file, "r")
+            this.raf = raf
+            // the file is no longer needed by name, so try to remove it right away
+            if (file.delete()) {
+                this.file = null
+            }
+            return runs.mapIndexed { i, run -> RunReader(raf, store, i, run[0], run[1]) }
+        }
+
+        override fun close() {
+            try {
+                output?.close()
+                raf?.close()
+            } finally {
+                output = null
+                raf = null
+                file?.let {
+                    if (!it.delete() && it.exists()) {
+                        it.deleteOnExit()
+                    }
+                }
+                file = null
+            }
+        }
+    }
+
+    private class RunReader(raf: RandomAccessFile,
+                            private val store: PersistentEntityStoreImpl,
+                            runIndex: Int,
+                            start: Long,
+                            private var remaining: Long) : Run(runIndex) {
+
+        private val input = DataInputStream(RunInputStream(raf, start))
+        private var typeId = 0
+        private var localId = 0L
+
+        override val entity: Entity get() = store.getEntity(PersistentEntityId(typeId, localId))
+
+        override var value: Comparable<Any>? = null
+
+        override fun advance(): Boolean {
+            if (remaining <= 0) {
+                return false
+            }
+            --remaining
+            typeId = input.readInt()
+            localId = input.readLong()
+            val bytesLength = input.readInt()
+            value = if (bytesLength < 0) {
+                null
+            } else {
+                val bytes = ByteArray(bytesLength)
+                input.readFully(bytes)
+                store.propertyTypes.entryToPropertyValue(ArrayByteIterable(bytes)).data
+            }
+            return true
+        }
+    }
+
+    private class RunInputStream(private val raf: RandomAccessFile, private var position: Long) : InputStream() {
+
+        private val buffer = ByteArray(READ_BUFFER_SIZE)
+        private var offset = 0
+        private var length = 0
+
+        override fun read(): Int {
+            if (offset >= length && !fill()) {
+                return -1
+            }
+            return buffer[offset++].toInt() and 0xff
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) {
+                return 0
+            }
+            if (offset >= length && !fill()) {
+                return -1
+            }
+            val read = minOf(len, length - offset)
+            System.arraycopy(buffer, offset, b, off, read)
+            offset += read
+            return read
+        }
+
+        private fun fill(): Boolean {
+            raf.seek(position)
+            length = raf.read(buffer)
+            offset = 0
+            if (length <= 0) {
+                length = 0
+                return false
+            }
+            position += length
+            return true
+        }
+    }
+
+    companion object : KLogging() {
+
+        private const val BUFFER_SIZE = 1 shl 16
+        private const val READ_BUFFER_SIZE = 1 shl 12
+    }
+}
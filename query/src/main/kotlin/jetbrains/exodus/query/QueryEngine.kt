@@ -238,6 +238,22 @@ open class QueryEngine(val modelMetaData: ModelMetaData?, val persistentStore: P
         return inMemorySelectManyDistinct(it, linkName)
     }
 
+    /**
+     * Returns not more than [number] first entities of the iterable. If the iterable is a query with sorts, the limit
+     * is pushed down to the sort which defines the primary order, so that sorting costs O(n log(number)).
+     */
+    open fun take(it: Iterable<Entity>, number: Int): Iterable<Entity> {
+        if (number <= 0) return EMPTY
+        val instance = adjustEntityIterable(
+            if (it is TreeKeepingEntityIterable) it.instantiate(number) else StaticTypedEntityIterable.instantiate(it)
+        )
+        return when {
+            instance.isPersistent -> (instance as EntityIterable).take(number)
+            instance is InMemoryBoundedHeapSortIterable && instance.capacity <= number -> instance
+            else -> instance.asSequence().take(number).asIterable()
+        }
+    }
+
     open fun toEntityIterable(it: Iterable<Entity>): Iterable<Entity> {
         return adjustEntityIterable(if (it is StaticTypedEntityIterable) it.instantiate() else it)
     }
@@ -23,6 +23,7 @@ import jetbrains.exodus.kotlin.notNull
 import jetbrains.exodus.query.metadata.AssociationType
 import jetbrains.exodus.query.metadata.EntityMetaData
 import jetbrains.exodus.query.metadata.ModelMetaData
+import java.io.File
 
 open class SortEngine {
 
@@ -35,6 +36,17 @@ open class SortEngine {
     }
 
     fun sort(entityType: String, propertyName: String, source: Iterable<Entity>?, asc: Boolean): Iterable<Entity> {
+        return sort(entityType, propertyName, source, asc, Int.MAX_VALUE)
+    }
+
+    /**
+     * Returns not more than [limit] first entities of the sorted sequence. Sorting by property index stops as soon
+     * as the limit is reached, in-memory sort keeps a bounded heap, so it costs O(n log(limit)).
+     */
+    fun sort(entityType: String, propertyName: String, source: Iterable<Entity>?, asc: Boolean, limit: Int): Iterable<Entity> {
+        if (limit <= 0) {
+            return queryEngine.wrap(EntityIterableBase.EMPTY)
+        }
         val txn = queryEngine.persistentStore.andCheckCurrentTransaction
         val valueGetter = propertyGetter(propertyName, txn.isReadonly)
         val mmd = queryEngine.modelMetaData
@@ -45,9 +57,9 @@ open class SortEngine {
                     return mergeSorted(emd, object : IterableGetter {
                         override fun getIterable(type: String): EntityIterableBase {
                             queryEngine.assertOperational()
-                            return queryEngine.persistentStore.andCheckCurrentTransaction.sort(type, propertyName, asc) as EntityIterableBase
+                            return take(queryEngine.persistentStore.andCheckCurrentTransaction.sort(type, propertyName, asc), limit)
                         }
-                    }, valueGetter, caseInsensitiveComparator(asc))
+                    }, valueGetter, caseInsensitiveComparator(asc), limit)
                 }
                 val i = queryEngine.toEntityIterable(source)
                 if (queryEngine.isPersistentIterable(i)) {
@@ -60,13 +72,13 @@ open class SortEngine {
                     } else mergeSorted(emd, object : IterableGetter {
                         override fun getIterable(type: String): EntityIterableBase {
                             queryEngine.assertOperational()
-                            return queryEngine.persistentStore.andCheckCurrentTransaction.sort(type, propertyName, it, asc) as EntityIterableBase
+                            return take(queryEngine.persistentStore.andCheckCurrentTransaction.sort(type, propertyName, it, asc), limit)
                         }
-                    }, valueGetter, caseInsensitiveComparator(asc))
+                    }, valueGetter, caseInsensitiveComparator(asc), limit)
                 }
             }
         }
-        return sortInMemory(source ?: getAllEntities(entityType, mmd), valueGetter, asc)
+        return sortInMemory(source ?: getAllEntities(entityType, mmd), valueGetter, asc, limit)
     }
 
     fun sort(enumType: String, propName: String, entityType: String, linkName: String, source: Iterable<Entity>?, asc: Boolean): Iterable<Entity> {
@@ -186,6 +198,18 @@ open class SortEngine {
         }
     }
 
+    protected fun sortInMemory(source: Iterable<Entity>, valueGetter: ComparableGetter, asc: Boolean, limit: Int): Iterable<Entity> {
+        if (limit == Int.MAX_VALUE) {
+            return sortInMemory(source, valueGetter, asc)
+        }
+        val comparator = if (asc) toComparator(valueGetter) else ReverseComparator(toComparator(valueGetter))
+        return if (source is InMemorySortIterable) {
+            InMemoryBoundedHeapSortIterable(limit, source, MergedComparator(source.comparator, comparator))
+        } else {
+            InMemoryBoundedHeapSortIterable(limit, source, comparator)
+        }
+    }
+
     protected fun sortInMemory(source: Iterable<Entity>, valueGetter: ComparableGetter, asc: Boolean): Iterable<Entity> {
         return if (source is InMemorySortIterable) {
             val comparator = MergedComparator(source.comparator,
@@ -196,7 +220,14 @@ open class SortEngine {
             )
             InMemoryMergeSortIterable(source, comparator)
         } else {
-            InMemoryMergeSortIterableWithValueGetter(source, valueGetter, caseInsensitiveComparator(asc))
+            val sourceSize = (source as? EntityIterable)?.roughCount ?: -1L
+            if (sourceSize < 0 || sourceSize > SORT_SPILL_THRESHOLD) {
+                // the source is buffered, and sorted runs are spilled to disk only if it has more entities than the threshold
+                ExternalMergeSortIterableWithValueGetter(queryEngine.persistentStore,
+                        source, valueGetter, caseInsensitiveComparator(asc), SORT_SPILL_THRESHOLD, SORT_SPILL_DIR)
+            } else {
+                InMemoryMergeSortIterableWithValueGetter(source, valueGetter, caseInsensitiveComparator(asc))
+            }
         }
     }
 
@@ -235,8 +266,12 @@ open class SortEngine {
         return queryEngine.wrap(it)
     }
 
-    private fun mergeSorted(emd: EntityMetaData, sorted: IterableGetter, valueGetter: ComparableGetter, comparator: Comparator<Comparable<Any>>): EntityIterableBase {
-        val result: EntityIterableBase
+    private fun take(sorted: EntityIterable, limit: Int): EntityIterableBase {
+        return (if (limit == Int.MAX_VALUE) sorted else sorted.take(limit)) as EntityIterableBase
+    }
+
+    private fun mergeSorted(emd: EntityMetaData, sorted: IterableGetter, valueGetter: ComparableGetter, comparator: Comparator<Comparable<Any>>, limit: Int = Int.MAX_VALUE): EntityIterableBase {
+        var result: EntityIterableBase
         if (!emd.hasSubTypes()) {
             result = sorted.getIterable(emd.type)
         } else {
@@ -261,6 +296,10 @@ open class SortEngine {
                             ComparableGetter { entity -> valueGetter.select(attach(entity)) }, comparator) as EntityIterableBase
                 }
             }
+            // each of merged iterables is already limited, but the limit is not yet applied to the merge result
+            if (iterablesCount > 1) {
+                result = take(result, limit)
+            }
         }
         return queryEngine.wrap(result.source.asSortResult()) as EntityIterableBase
     }
@@ -349,6 +388,8 @@ open class SortEngine {
         private val MAX_ENTRIES_TO_SORT_IN_MEMORY = Integer.getInteger("jetbrains.exodus.query.maxEntriesToSortInMemory", 10000000)
         private val MAX_ENUM_COUNT_TO_SORT_LINKS = Integer.getInteger("jetbrains.exodus.query.maxEnumCountToSortLinks", 2048)
         private val MIN_ENTRIES_TO_SORT_LINKS = Integer.getInteger("jetbrains.exodus.query.minEntriesToSortLinks", 16)
+        private val SORT_SPILL_THRESHOLD = Integer.getInteger("jetbrains.exodus.query.sortSpillThreshold", 1000000)
+        private val SORT_SPILL_DIR = System.getProperty("jetbrains.exodus.query.sortSpillDir")?.let { File(it) }
 
         private val PROPERTY_VALUE_COMPARATOR = Comparator<Comparable<Any>> { o1, o2 -> compareNullableComparables(o1, o2) }
         private val REVERSE_PROPERTY_VALUE_COMPARATOR = Comparator<Comparable<Any>> { o1, o2 -> compareNullableComparables(o2, o1) }
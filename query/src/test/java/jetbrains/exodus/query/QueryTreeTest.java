@@ -22,6 +22,9 @@ import jetbrains.exodus.entitystore.EntityStoreTestBase;
 import jetbrains.exodus.entitystore.PersistentStoreTransaction;
 import org.junit.Assert;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import static jetbrains.exodus.query.And.and;
@@ -29,7 +32,7 @@ import static jetbrains.exodus.query.Or.or;
 import static jetbrains.exodus.query.metadata.AssociationEndCardinality._0_1;
 import static jetbrains.exodus.query.metadata.MetaBuilder.*;
 
-@SuppressWarnings({"HardcodedLineSeparator", "OverlyCoupledMethod"})
+@SuppressWarnings({"HardcodedLineSeparator", "OverlyCoupledMethod", "rawtypes"})
 public class QueryTreeTest extends EntityStoreTestBase {
 
     private PropertyEqual propertyEqual;
@@ -135,6 +138,24 @@ public class QueryTreeTest extends EntityStoreTestBase {
         Assert.assertNotEquals(propertyEqual, sortByProperty);
     }
 
+    public void testTakeFromSortByProperty() {
+        final PersistentStoreTransaction txn = getStoreTransaction();
+        final List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            final Entity e = txn.newEntity("TstClass");
+            e.setProperty("i", 100 - i);
+            entities.add(e);
+        }
+        txn.flush();
+        final Iterable<Entity> persistent = queryEngine.take(queryEngine.query("TstClass", new SortByProperty(null, "i", true)), 2);
+        Assert.assertEquals(Arrays.asList(9, 91), getValues(persistent, "i"));
+        // in-memory sort of the first entities keeps a bounded heap
+        final Iterable<Entity> inMemory = queryEngine.take(queryEngine.query(entities, "TstClass", new SortByProperty(null, "i", false)), 3);
+        Assert.assertTrue(inMemory instanceof InMemoryBoundedHeapSortIterable);
+        Assert.assertEquals(3, ((InMemoryBoundedHeapSortIterable) inMemory).getCapacity());
+        Assert.assertEquals(Arrays.asList(100, 99, 98), getValues(inMemory, "i"));
+    }
+
     public void testUnaryNot() {
         Assert.assertEquals(and(propertyNotNull, or(propertyEqual, linkNotNull)), getOptimizedTree(and(propertyNotNull, new UnaryNot(and(new UnaryNot(propertyEqual), new UnaryNot(linkNotNull))))));
         Assert.assertEquals(and(propertyNotNull, new Minus(linkNotNull, propertyEqual)), getOptimizedTree(and(propertyNotNull, and(new UnaryNot(propertyEqual), linkNotNull))));
@@ -275,6 +296,14 @@ public class QueryTreeTest extends EntityStoreTestBase {
         Assert.assertEquals(expectedOptimizedTree, optimizedTree);
     }
 
+    private static List<Comparable> getValues(Iterable<Entity> it, String propertyName) {
+        final List<Comparable> result = new ArrayList<>();
+        for (final Entity entity : it) {
+            result.add(entity.getProperty(propertyName));
+        }
+        return result;
+    }
+
     private static NodeBase getTree(Iterable<Entity> seq) {
         return ((TreeKeepingEntityIterable) seq).getTree();
     }
@@ -15,8 +15,10 @@
  */
 package jetbrains.exodus.query
 
+import jetbrains.exodus.TestUtil
 import jetbrains.exodus.entitystore.ComparableGetter
 import jetbrains.exodus.entitystore.Entity
+import jetbrains.exodus.entitystore.EntityIterator
 import jetbrains.exodus.entitystore.EntityStoreTestBase
 import jetbrains.exodus.util.Random
 import org.junit.Assert
@@ -102,6 +104,62 @@ class InMemorySortTest : EntityStoreTestBase() {
         ) { InMemoryBoundedHeapSortIterable(PAGE_SIZE, it, comparator) }
     }
 
+    @Test
+    fun testExternalMergeSortWithValueGetter() {
+        testSort(storeTransaction.getAll("Issue"),
+                { ExternalMergeSortIterableWithValueGetter(entityStore, it, valueGetter, valueComparator, 1000) }, valueGetter, valueComparator)
+        // no spill
+        testSort(storeTransaction.getAll("Issue"),
+                { ExternalMergeSortIterableWithValueGetter(entityStore, it, valueGetter, valueComparator, 100000) }, valueGetter, valueComparator)
+    }
+
+    @Test
+    fun testExternalMergeSortIsComplete() {
+        val sorted = ExternalMergeSortIterableWithValueGetter(entityStore, storeTransaction.getAll("Issue"), valueGetter, valueComparator, 1000)
+        var prev: Entity? = null
+        var count = 0
+        sorted.forEach {
+            prev?.apply {
+                Assert.assertTrue(valueComparator.compare(valueGetter.select(this), valueGetter.select(it)) <= 0)
+            }
+            prev = it
+            ++count
+        }
+        Assert.assertEquals(PAGE_SIZE + 15000, count)
+    }
+
+    @Test
+    fun testExternalMergeSortDoesNotSpillSmallSource() {
+        val tempDir = TestUtil.createTempDir()
+        val it = ExternalMergeSortIterableWithValueGetter(entityStore, storeTransaction.getAll("Issue"), valueGetter, valueComparator, 100000, tempDir).iterator()
+        Assert.assertTrue(it.hasNext())
+        Assert.assertFalse(it is EntityIterator)
+        Assert.assertEquals(0, tempDir.list()?.size)
+    }
+
+    @Test
+    fun testExternalMergeSortDisposeClosesRuns() {
+        val tempDir = TestUtil.createTempDir()
+        val it = ExternalMergeSortIterableWithValueGetter(entityStore, storeTransaction.getAll("Issue"), valueGetter, valueComparator, 1000, tempDir).iterator()
+        Assert.assertTrue(it is EntityIterator)
+        it as EntityIterator
+        Assert.assertTrue(it.shouldBeDisposed())
+        Assert.assertTrue(it.skip(PAGE_SIZE))
+        Assert.assertTrue(it.dispose())
+        Assert.assertFalse(it.hasNext())
+        Assert.assertEquals(0, tempDir.list()?.size)
+    }
+
+    @Test
+    fun testExternalMergeSortOfUnsupportedValues() {
+        val tempDir = TestUtil.createTempDir()
+        val wrappingGetter = ComparableGetter { entity -> Wrapper(entity.getProperty("int") as Int) }
+        val sorted = ExternalMergeSortIterableWithValueGetter(entityStore, storeTransaction.getAll("Issue"), wrappingGetter, valueComparator, 1000, tempDir)
+        testSort(storeTransaction.getAll("Issue"), { sorted }, wrappingGetter, valueComparator)
+        Assert.assertEquals(PAGE_SIZE + 15000, sorted.count())
+        Assert.assertEquals(0, tempDir.list()?.size)
+    }
+
     private fun testSort(it: Iterable<Entity>, sortFun: (it: Iterable<Entity>) -> SortEngine.InMemorySortIterable) {
         val sorted = sortFun(it)
         var prev: Entity? = null
@@ -130,3 +188,8 @@ class InMemorySortTest : EntityStoreTestBase() {
         Assert.assertEquals(this.sum, sum)
     }
 }
+
+private data class Wrapper(val value: Int) : Comparable<Wrapper> {
+
+    override fun compareTo(other: Wrapper) = value.compareTo(other.value)
+}
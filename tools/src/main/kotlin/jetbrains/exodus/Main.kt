@@ -34,6 +34,7 @@ fun main(args: Array<String>) {
         "parbackup" -> jetbrains.exodus.parallelbackup.parallelBackup(args.skipFirst)
         "backuppost" -> jetbrains.exodus.parallelbackup.parallelBackupPostProcessing(args.skipFirst)
         "space" -> jetbrains.exodus.env.checkSpaceConsumption(args.skipFirst[0])
+        "iotrace" -> jetbrains.exodus.env.ioTrace(args.skipFirst)
         else -> printUsage()
     }
     exitProcess(0)
@@ -41,7 +42,7 @@ fun main(args: Array<String>) {
 
 internal fun printUsage() {
     println("Usage: <tool name> [tool parameters]")
-    println("Available tools: Reflect | Refactorings | Scytale | Vfs | EnvironmentJSConsole | EntityStoreJSConsole")
+    println("Available tools: Reflect | Refactorings | Scytale | IOTrace | Vfs | EnvironmentJSConsole | EntityStoreJSConsole")
     exitProcess(1)
 }
 
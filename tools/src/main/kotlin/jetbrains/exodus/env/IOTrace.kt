@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 - 2023 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrains.exodus.env
+
+import jetbrains.exodus.io.IOCause
+import jetbrains.exodus.io.IOTraceEvent
+import jetbrains.exodus.io.IOTracer
+import java.io.File
+import java.util.*
+import kotlin.system.exitProcess
+
+/**
+ * Summarizes I/O trace dumped by [jetbrains.exodus.env.management.EnvironmentLatencyMetricsMBean.dumpIOTrace]:
+ * prints statistics of durations by operation and cause and the slowest operations.
+ */
+fun ioTrace(args: Array<String>) {
+    if (args.isEmpty()) {
+        println("Usage: IOTrace <I/O trace dump file> [number of slowest operations to print, default is 20]")
+        exitProcess(1)
+    }
+    val slowest = if (args.size > 1) args[1].toInt() else 20
+    val events = File(args[0]).bufferedReader().useLines { lines ->
+        lines.filter { it.isNotEmpty() && it != IOTraceEvent.HEADER }.map { IOTraceEvent.parse(it) }.toList()
+    }
+    if (events.isEmpty()) {
+        println("No I/O operations traced")
+        return
+    }
+    println("Traced ${events.size} operations from ${Date(events.first().time)} to ${Date(events.last().time)}")
+    println()
+    println("%-16s%-8s%10s%14s%12s%12s%12s%12s".format("operation", "cause", "count", "bytes", "mean, µs", "p50, µs", "p99, µs", "max, µs"))
+    events.groupBy { it.operation to it.cause }.toSortedMap(compareBy<Pair<IOTracer.Operation, IOCause>>({ it.first }, { it.second })).forEach { (key, group) ->
+        val durations = group.map { it.durationNanos }.sorted()
+        println("%-16s%-8s%10d%14d%12.1f%12.1f%12.1f%12.1f".format(key.first, key.second, group.size,
+            group.sumOf { it.bytes.toLong() }, durations.average() / 1000.0,
+            durations.percentile(0.5) / 1000.0, durations.percentile(0.99) / 1000.0, durations.last() / 1000.0))
+    }
+    println()
+    println("Slowest operations:")
+    println(IOTraceEvent.HEADER)
+    events.sortedByDescending { it.durationNanos }.take(slowest).forEach { println(it) }
+}
+
+private fun List<Long>.percentile(p: Double) = this[((size - 1) * p).toInt()].toDouble()
@@ -20,6 +20,7 @@ import jetbrains.exodus.bindings.IntegerBinding
 import jetbrains.exodus.bindings.StringBinding
 import jetbrains.exodus.core.dataStructures.hash.IntHashMap
 import jetbrains.exodus.core.dataStructures.hash.LinkedHashSet
+import jetbrains.exodus.env.management.STORE_PROFILER_OBJECT_NAME_PREFIX
 import jetbrains.exodus.gc.GarbageCollector
 import jetbrains.exodus.io.AsyncFileDataWriter
 import jetbrains.exodus.io.FileDataReader
@@ -28,11 +29,15 @@ import jetbrains.exodus.log.Log
 import jetbrains.exodus.log.LogConfig
 import jetbrains.exodus.log.LogUtil
 import jetbrains.exodus.log.NullLoggable
+import jetbrains.exodus.management.MBeanBase
 import jetbrains.exodus.tree.LongIterator
 import jetbrains.exodus.tree.patricia.PatriciaTreeBase
 import java.io.File
 import java.io.PrintWriter
 import java.util.*
+import javax.management.ObjectName
+import javax.management.remote.JMXConnectorFactory
+import javax.management.remote.JMXServiceURL
 import kotlin.system.exitProcess
 
 fun main(args: Array<String>) {
@@ -42,6 +47,7 @@ fun main(args: Array<String>) {
     var envPath: String? = null
     var envPath2: String? = null
     var dumpUtilizationToFile: String? = null
+    var storeProfilerJmxAddress: String? = null
     var hasOptions = false
     var collectLogStats = false
     var validateRoots = false
@@ -68,6 +74,7 @@ fun main(args: Array<String>) {
                 else -> when {
                     arg.startsWith("-cl") -> files2Clean.add(arg.substring(3))
                     arg.startsWith("-d") -> dumpUtilizationToFile = arg.substring(2)
+                    arg.startsWith("-sp") -> storeProfilerJmxAddress = arg.substring(3)
                     else -> printUsage()
                 }
             }
@@ -84,6 +91,11 @@ fun main(args: Array<String>) {
         printUsage()
     }
 
+    storeProfilerJmxAddress?.let { address ->
+        // the environment is open by another process, so it can't be opened here
+        exitProcess(dumpStoreProfile(checkNotNull(envPath), address))
+    }
+
     println("Investigating $envPath")
 
     try {
@@ -134,9 +146,31 @@ internal fun printUsage() {
     println("  -u              display stored Utilization")
     println("  -p              print PersistentEntityStore tables usage (must be used with the '-t' option)")
     println("  -cl<file name>  CLean particular file before any reflection")
+    println("  -sp<host:port>  dump Store Profile of the environment open by a process with remote JMX at host:port")
     exitProcess(1)
 }
 
+/**
+ * Dumps profile of stores of the environment open by another process exposing JMX at the specified address.
+ *
+ * @see jetbrains.exodus.env.management.StoreProfilerMBean
+ */
+private fun dumpStoreProfile(envPath: String, address: String): Int {
+    val url = JMXServiceURL("service:jmx:rmi:///jndi/rmi://$address/jmxrmi")
+    JMXConnectorFactory.connect(url).use { connector ->
+        val connection = connector.mBeanServerConnection
+        val names = connection.queryNames(ObjectName("$STORE_PROFILER_OBJECT_NAME_PREFIX,*"), null)
+        val location = MBeanBase.escapeLocation(envPath)
+        val name = names.find { it.getKeyProperty("location") == location } ?: names.singleOrNull()
+        if (name == null) {
+            println("Store profiler of $envPath not found at $address, available profilers: $names")
+            return 1
+        }
+        println(connection.invoke(name, "dump", null, null))
+    }
+    return 0
+}
+
 class Reflect(directory: File) {
 
     companion object {
@@ -25,6 +25,7 @@ public class SharedRandomAccessFile extends RandomAccessFile {
 
     private final File file;
     private final AtomicInteger clients;
+    private volatile Object attachment;
 
     public SharedRandomAccessFile(File file, String mode) throws FileNotFoundException {
         super(file, mode);
@@ -36,6 +37,19 @@ public class SharedRandomAccessFile extends RandomAccessFile {
         return file;
     }
 
+    /**
+     * Returns an object attached to the file handle, e.g. a parsed file header.
+     *
+     * @return attached object or {@code null}.
+     */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(final Object attachment) {
+        this.attachment = attachment;
+    }
+
     /**
      * Employs the file and returns resulting number of its clients.
      *